@@ -3,10 +3,13 @@ package com.basic.example.main.rest;
 import java.nio.file.Paths;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 
 import com.github.thestyleofme.plugin.framework.integration.application.PluginApplication;
+import com.github.thestyleofme.plugin.framework.integration.operator.AsyncPluginOperator;
 import com.github.thestyleofme.plugin.framework.integration.operator.PluginOperator;
 import com.github.thestyleofme.plugin.framework.integration.operator.module.PluginInfo;
+import com.github.thestyleofme.plugin.framework.integration.operator.module.PluginOperationResult;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
@@ -25,10 +28,12 @@ public class PluginResource {
 
 
     private final PluginOperator pluginOperator;
+    private final AsyncPluginOperator asyncPluginOperator;
 
     @Autowired
     public PluginResource(PluginApplication pluginApplication) {
         this.pluginOperator = pluginApplication.getPluginOperator();
+        this.asyncPluginOperator = pluginApplication.getAsyncPluginOperator();
     }
     /**
      * 获取插件信息
@@ -153,6 +158,17 @@ public class PluginResource {
     }
 
 
+    /**
+     * 异步上传并安装插件, 不占用请求线程。注意: 该操作只适用于生产环境
+     * @param multipartFile 上传文件 multipartFile
+     * @return 操作结果
+     */
+    @PostMapping("/uploadInstallPluginJarAsync")
+    public CompletableFuture<PluginOperationResult> installAsync(@RequestParam("jarFile") MultipartFile multipartFile){
+        return asyncPluginOperator.uploadPluginAndStart(multipartFile);
+    }
+
+
     /**
      * 上传插件的配置文件。注意: 该操作只适用于生产环境
      * @param multipartFile 上传文件 multipartFile
@@ -4,8 +4,8 @@ import java.util.Set;
 
 import com.github.thestyleofme.plugin.framework.extension.mybatis.configuration.SpringBootMybatisConfig;
 import com.github.thestyleofme.plugin.framework.factory.process.pipe.classs.PluginClassGroupExtend;
+import com.github.thestyleofme.plugin.framework.factory.process.pipe.classs.PluginClassMatcher;
 import com.github.thestyleofme.plugin.framework.realize.BasePlugin;
-import com.github.thestyleofme.plugin.framework.utils.AnnotationsUtils;
 import org.apache.ibatis.type.Alias;
 
 /**
@@ -22,6 +22,10 @@ public class PluginEntityAliasesGroup implements PluginClassGroupExtend {
 
     private Set<String> typeAliasesPackage;
 
+    private final PluginClassMatcher matcher = PluginClassMatcher.create()
+            .annotations(Alias.class)
+            .packages(packageName -> typeAliasesPackage != null && typeAliasesPackage.contains(packageName));
+
     @Override
     public String groupId() {
         return DEFAULT_KEY;
@@ -36,19 +40,8 @@ public class PluginEntityAliasesGroup implements PluginClassGroupExtend {
     }
 
     @Override
-    public boolean filter(Class<?> aClass) {
-        if(AnnotationsUtils.haveAnnotations(aClass, false, Alias.class)){
-            return true;
-        }
-        if(typeAliasesPackage == null || typeAliasesPackage.isEmpty()){
-            return false;
-        }
-        for (String packageName : typeAliasesPackage) {
-            if(aClass.getPackage().getName().equals(packageName)){
-                return true;
-            }
-        }
-        return false;
+    public PluginClassMatcher matcher() {
+        return matcher;
     }
 
     @Override
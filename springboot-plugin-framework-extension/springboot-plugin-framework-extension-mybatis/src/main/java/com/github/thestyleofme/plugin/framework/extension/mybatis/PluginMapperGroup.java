@@ -2,8 +2,8 @@ package com.github.thestyleofme.plugin.framework.extension.mybatis;
 
 import com.github.thestyleofme.plugin.framework.extension.mybatis.annotation.PluginMapper;
 import com.github.thestyleofme.plugin.framework.factory.process.pipe.classs.PluginClassGroupExtend;
+import com.github.thestyleofme.plugin.framework.factory.process.pipe.classs.PluginClassMatcher;
 import com.github.thestyleofme.plugin.framework.realize.BasePlugin;
-import com.github.thestyleofme.plugin.framework.utils.AnnotationsUtils;
 import org.apache.ibatis.annotations.Mapper;
 
 /**
@@ -18,6 +18,9 @@ public class PluginMapperGroup implements PluginClassGroupExtend {
 
     public static final String GROUP_ID = "plugin_mybatis_mapper";
 
+    private final PluginClassMatcher matcher = PluginClassMatcher.create()
+            .annotations(PluginMapper.class, Mapper.class);
+
     @Override
     public String groupId() {
         return GROUP_ID;
@@ -29,9 +32,8 @@ public class PluginMapperGroup implements PluginClassGroupExtend {
     }
 
     @Override
-    public boolean filter(Class<?> aClass) {
-        return AnnotationsUtils.haveAnnotations(aClass, false, PluginMapper.class) ||
-                AnnotationsUtils.haveAnnotations(aClass, false, Mapper.class);
+    public PluginClassMatcher matcher() {
+        return matcher;
     }
 
     @Override
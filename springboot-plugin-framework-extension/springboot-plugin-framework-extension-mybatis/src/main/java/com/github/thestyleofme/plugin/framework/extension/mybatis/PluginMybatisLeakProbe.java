@@ -0,0 +1,73 @@
+package com.github.thestyleofme.plugin.framework.extension.mybatis;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import com.github.thestyleofme.plugin.framework.extension.mybatis.utils.TypeAliasRegistryUtils;
+import com.github.thestyleofme.plugin.framework.leak.PluginLeakProbe;
+import com.github.thestyleofme.plugin.framework.leak.PluginLeakProbes;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.ResultMap;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.springframework.context.ApplicationContext;
+
+/**
+ * <p>
+ * mybatis 中插件类加载器泄漏的探测。查找主程序 Configuration 中没有移除的插件别名、Mapper 与 MappedStatement
+ * </p>
+ *
+ * @author isaac 2020/10/26 16:30
+ * @since 1.0
+ */
+public class PluginMybatisLeakProbe implements PluginLeakProbe {
+
+    private final ApplicationContext mainApplicationContext;
+
+    PluginMybatisLeakProbe(ApplicationContext mainApplicationContext) {
+        this.mainApplicationContext = mainApplicationContext;
+    }
+
+    @Override
+    public List<String> find(ClassLoader pluginClassLoader) {
+        List<String> references = new ArrayList<>();
+        for (SqlSessionFactory sqlSessionFactory : mainApplicationContext
+                .getBeansOfType(SqlSessionFactory.class, false, false).values()) {
+            Configuration configuration = sqlSessionFactory.getConfiguration();
+            Map<String, Class<?>> typeAliases =
+                    TypeAliasRegistryUtils.getTypeAliases(configuration.getTypeAliasRegistry());
+            typeAliases.forEach((alias, aClass) -> {
+                if (PluginLeakProbes.refersTo(aClass, pluginClassLoader)) {
+                    references.add("Mybatis type alias '" + alias + "' of " + aClass.getName());
+                }
+            });
+            for (Class<?> mapper : configuration.getMapperRegistry().getMappers()) {
+                if (PluginLeakProbes.refersTo(mapper, pluginClassLoader)) {
+                    references.add("Mybatis mapper " + mapper.getName());
+                }
+            }
+            // 同名的 MappedStatement 以 Ambiguity 保存, 因此按对象迭代
+            for (Object value : configuration.getMappedStatements()) {
+                if (value instanceof MappedStatement && refersTo((MappedStatement) value, pluginClassLoader)) {
+                    references.add("Mybatis mapped statement '" + ((MappedStatement) value).getId() + "'");
+                }
+            }
+        }
+        return references;
+    }
+
+    private boolean refersTo(MappedStatement mappedStatement, ClassLoader pluginClassLoader) {
+        if (mappedStatement.getParameterMap() != null &&
+                PluginLeakProbes.refersTo(mappedStatement.getParameterMap().getType(), pluginClassLoader)) {
+            return true;
+        }
+        for (ResultMap resultMap : mappedStatement.getResultMaps()) {
+            if (PluginLeakProbes.refersTo(resultMap.getType(), pluginClassLoader)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+}
@@ -6,6 +6,7 @@ import java.util.List;
 import com.github.thestyleofme.plugin.framework.extension.AbstractExtension;
 import com.github.thestyleofme.plugin.framework.factory.process.pipe.PluginPipeProcessorExtend;
 import com.github.thestyleofme.plugin.framework.factory.process.pipe.classs.PluginClassGroupExtend;
+import com.github.thestyleofme.plugin.framework.leak.PluginLeakProbe;
 import com.github.thestyleofme.plugin.framework.loader.PluginResourceLoader;
 import org.springframework.context.ApplicationContext;
 
@@ -50,5 +51,12 @@ public class SpringBootMybatisExtension extends AbstractExtension {
         return pluginPipeProcessorExtends;
     }
 
+    @Override
+    public List<PluginLeakProbe> getPluginLeakProbes(ApplicationContext applicationContext) {
+        final List<PluginLeakProbe> pluginLeakProbes = new ArrayList<>();
+        pluginLeakProbes.add(new PluginMybatisLeakProbe(applicationContext));
+        return pluginLeakProbes;
+    }
+
 
 }
@@ -5,8 +5,10 @@ import java.util.List;
 import java.util.concurrent.TimeUnit;
 
 import com.github.thestyleofme.plugin.framework.extension.AbstractExtension;
+import com.github.thestyleofme.plugin.framework.extension.resources.resolver.PluginResourceResolver;
 import com.github.thestyleofme.plugin.framework.extension.resources.resolver.ResourceWebMvcConfigurer;
 import com.github.thestyleofme.plugin.framework.factory.process.post.PluginPostProcessorExtend;
+import com.github.thestyleofme.plugin.framework.leak.PluginLeakProbe;
 import org.springframework.context.ApplicationContext;
 import org.springframework.http.CacheControl;
 import org.springframework.util.StringUtils;
@@ -60,6 +62,13 @@ public class StaticResourceExtension extends AbstractExtension {
         return pluginPostProcessorExtends;
     }
 
+    @Override
+    public List<PluginLeakProbe> getPluginLeakProbes(ApplicationContext applicationContext) {
+        final List<PluginLeakProbe> pluginLeakProbes = new ArrayList<>();
+        pluginLeakProbes.add(PluginResourceResolver::findReferences);
+        return pluginLeakProbes;
+    }
+
     /**
      * 设置访问插件静态资源前缀
      *
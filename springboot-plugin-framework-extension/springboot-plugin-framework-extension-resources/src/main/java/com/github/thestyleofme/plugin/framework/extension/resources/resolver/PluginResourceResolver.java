@@ -276,6 +276,24 @@ public class PluginResourceResolver extends AbstractResourceResolver {
     }
 
 
+    /**
+     * 查找仍然保存着已卸载插件的资源信息
+     *
+     * @param pluginClassLoader 已卸载插件的类加载器
+     * @return 引用的描述
+     */
+    public static List<String> findReferences(ClassLoader pluginClassLoader) {
+        List<String> references = new ArrayList<>();
+        PLUGIN_RESOURCE_MAP.forEach((pluginId, pluginResource) -> {
+            BasePlugin basePlugin = pluginResource.getBasePlugin();
+            if (basePlugin != null && basePlugin.getClass().getClassLoader() == pluginClassLoader) {
+                references.add("Static resource of plugin '" + pluginId + "'");
+            }
+        });
+        return references;
+    }
+
+
     /**
      * 插件资源解析后的信息
      */
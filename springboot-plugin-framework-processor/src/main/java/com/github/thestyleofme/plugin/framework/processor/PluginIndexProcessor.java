@@ -0,0 +1,174 @@
+package com.github.thestyleofme.plugin.framework.processor;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.*;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+
+/**
+ * <p>
+ * 插件构建时生成类索引的注解处理器。将插件中每个类的注解(包括继承的注解)、实现的接口与父类写入 META-INF/plugin-index,
+ * 插件加载时根据索引得到插件中的类, 不再遍历插件包, 并且只加载可能属于分组的类
+ * <p>
+ * 索引每行一个类: 类名、注解、接口、父类, 以制表符分隔, 注解、接口与父类以逗号分隔。JDK 中的父类不记录。
+ * 增量编译时只处理变化的类, 因此与已有的索引合并
+ * </p>
+ *
+ * @author isaac 2020/10/25 10:15
+ * @since 1.0
+ */
+@SupportedAnnotationTypes("*")
+public class PluginIndexProcessor extends AbstractProcessor {
+
+    public static final String INDEX_FILE = "META-INF/plugin-index";
+
+    private static final String VERSION = "VERSION\t1";
+    private static final String SEPARATOR = "\t";
+    private static final String NAME_SEPARATOR = ",";
+
+    private final Map<String, String> entries = new TreeMap<>();
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        if (roundEnv.processingOver()) {
+            if (!entries.isEmpty()) {
+                writeIndex();
+            }
+            return false;
+        }
+        for (Element element : roundEnv.getRootElements()) {
+            if (element instanceof TypeElement) {
+                index((TypeElement) element);
+            }
+        }
+        // 不声明处理了注解, 不影响其他处理器
+        return false;
+    }
+
+    private void index(TypeElement typeElement) {
+        String className = processingEnv.getElementUtils().getBinaryName(typeElement).toString();
+        Set<String> annotationNames = new TreeSet<>();
+        for (AnnotationMirror annotationMirror : processingEnv.getElementUtils().getAllAnnotationMirrors(typeElement)) {
+            annotationNames.add(getName(annotationMirror.getAnnotationType()));
+        }
+        Set<String> interfaceNames = new TreeSet<>();
+        collectInterfaces(typeElement.asType(), interfaceNames);
+        Set<String> superClassNames = new TreeSet<>();
+        collectSuperClasses(typeElement, superClassNames);
+        entries.put(className, className + SEPARATOR + String.join(NAME_SEPARATOR, annotationNames) +
+                SEPARATOR + String.join(NAME_SEPARATOR, interfaceNames) +
+                SEPARATOR + String.join(NAME_SEPARATOR, superClassNames));
+        for (Element enclosedElement : typeElement.getEnclosedElements()) {
+            if (enclosedElement instanceof TypeElement) {
+                index((TypeElement) enclosedElement);
+            }
+        }
+    }
+
+    /**
+     * 收集类型实现的所有接口, 包括父类实现的接口与接口继承的接口
+     *
+     * @param typeMirror     类型
+     * @param interfaceNames 接口名称
+     */
+    private void collectInterfaces(TypeMirror typeMirror, Set<String> interfaceNames) {
+        for (TypeMirror supertype : processingEnv.getTypeUtils().directSupertypes(typeMirror)) {
+            if (supertype.getKind() != TypeKind.DECLARED) {
+                continue;
+            }
+            Element element = ((DeclaredType) supertype).asElement();
+            if (element.getKind() == ElementKind.INTERFACE && !interfaceNames.add(getName((DeclaredType) supertype))) {
+                continue;
+            }
+            collectInterfaces(supertype, interfaceNames);
+        }
+    }
+
+    /**
+     * 收集类的父类, 直到 JDK 中的类
+     *
+     * @param typeElement     类
+     * @param superClassNames 父类名称
+     */
+    private void collectSuperClasses(TypeElement typeElement, Set<String> superClassNames) {
+        TypeMirror superclass = typeElement.getSuperclass();
+        while (superclass.getKind() == TypeKind.DECLARED) {
+            String superClassName = getName((DeclaredType) superclass);
+            if (superClassName.startsWith("java.") || superClassName.startsWith("javax.")) {
+                return;
+            }
+            superClassNames.add(superClassName);
+            superclass = ((TypeElement) ((DeclaredType) superclass).asElement()).getSuperclass();
+        }
+    }
+
+    private String getName(DeclaredType declaredType) {
+        return processingEnv.getElementUtils().getBinaryName((TypeElement) declaredType.asElement()).toString();
+    }
+
+    private void writeIndex() {
+        Map<String, String> merged = new TreeMap<>(readExistingIndex());
+        merged.putAll(entries);
+        try {
+            FileObject fileObject = processingEnv.getFiler()
+                    .createResource(StandardLocation.CLASS_OUTPUT, "", INDEX_FILE);
+            try (Writer writer = new BufferedWriter(
+                    new OutputStreamWriter(fileObject.openOutputStream(), StandardCharsets.UTF_8))) {
+                writer.write(VERSION);
+                writer.write('\n');
+                for (String line : merged.values()) {
+                    writer.write(line);
+                    writer.write('\n');
+                }
+            }
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.WARNING,
+                    "Write " + INDEX_FILE + " failure. " + e.getMessage());
+        }
+    }
+
+    /**
+     * 读取已有的索引。没有或者版本不同时返回空
+     *
+     * @return 类名与索引行
+     */
+    private Map<String, String> readExistingIndex() {
+        Map<String, String> existing = new HashMap<>();
+        try {
+            FileObject fileObject = processingEnv.getFiler()
+                    .getResource(StandardLocation.CLASS_OUTPUT, "", INDEX_FILE);
+            try (BufferedReader reader = new BufferedReader(
+                    new InputStreamReader(fileObject.openInputStream(), StandardCharsets.UTF_8))) {
+                if (!VERSION.equals(reader.readLine())) {
+                    return existing;
+                }
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    int index = line.indexOf(SEPARATOR);
+                    if (index > 0) {
+                        existing.put(line.substring(0, index), line);
+                    }
+                }
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            // 没有已有的索引
+        }
+        return existing;
+    }
+
+}
@@ -0,0 +1,271 @@
+package com.github.thestyleofme.plugin.framework.cds;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+
+import com.github.thestyleofme.plugin.framework.integration.pf4j.PluginMetadataCatalog;
+import com.github.thestyleofme.plugin.framework.integration.pf4j.classloader.MyPluginClassLoader;
+import com.github.thestyleofme.plugin.framework.utils.PluginFileUtils;
+import org.pf4j.PluginManager;
+import org.pf4j.PluginWrapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>
+ * 插件类的 AppCDS 归档。由 {@link PluginCdsArchiveTool} 以 -XX:ArchiveClassesAtExit 启动应用并设置 {@link #DUMP_PROPERTY},
+ * 插件初始化完成后记录每个插件类加载器定义的类与插件包的摘要, 然后退出, 由JVM在退出时生成动态归档(JDK 13 及以上)。
+ * <p>
+ * 以 -XX:SharedArchiveFile 启动时, 插件初始化完成后检查归档记录: 插件包变化后JVM按类文件的大小与校验和不再使用其归档的类,
+ * 这些插件从插件包加载, 输出变化的插件以便重新生成归档
+ * </p>
+ *
+ * @author isaac 2020/10/27 14:00
+ * @since 1.0
+ */
+public final class PluginCdsArchive {
+
+    private static final Logger LOG = LoggerFactory.getLogger(PluginCdsArchive.class);
+
+    /**
+     * 生成归档的系统属性, 值为归档文件路径。设置后插件初始化完成时记录插件信息并退出
+     */
+    public static final String DUMP_PROPERTY = "plugin.cds.dump";
+
+    /**
+     * 插件初始化完成后退出的系统属性, 用于测量启动时间
+     */
+    public static final String EXIT_PROPERTY = "plugin.cds.exitAfterInit";
+
+    /**
+     * 启动时间文件的系统属性, 值为文件路径。插件初始化完成时将启动时间(JVM启动至今的毫秒数)写入该文件
+     */
+    public static final String STARTUP_FILE_PROPERTY = "plugin.cds.startupFile";
+
+    public static final String MANIFEST_SUFFIX = ".plugins";
+    public static final String CLASS_LIST_SUFFIX = ".classes";
+
+    private static final String SHARED_ARCHIVE_OPTION = "-XX:SharedArchiveFile=";
+    private static final String VERSION = "VERSION\t1";
+    private static final String SEPARATOR = "\t";
+    private static final int ENTRY_FIELDS = 5;
+
+    private static final String DUMP_ARCHIVE = System.getProperty(DUMP_PROPERTY);
+
+    private PluginCdsArchive() {
+    }
+
+    /**
+     * 是否正在生成归档。生成归档时插件类加载器记录定义的类
+     *
+     * @return boolean
+     */
+    public static boolean isDumping() {
+        return DUMP_ARCHIVE != null && !DUMP_ARCHIVE.isEmpty();
+    }
+
+    /**
+     * 插件初始化完成。生成归档时记录插件信息后退出, 使用归档时检查插件包是否变化
+     *
+     * @param pluginManager 插件管理者
+     */
+    public static void onPluginsInitialized(PluginManager pluginManager) {
+        if (isDumping()) {
+            try {
+                writeManifest(Paths.get(DUMP_ARCHIVE), pluginManager.getPlugins());
+            } catch (IOException e) {
+                LOG.error("Write plugin CDS archive manifest failure. {}", e.getMessage(), e);
+            }
+        } else {
+            Path archive = getSharedArchive();
+            if (archive != null) {
+                verify(archive, pluginManager.getPlugins());
+            }
+        }
+        if (isDumping() || Boolean.getBoolean(EXIT_PROPERTY)) {
+            long startupMillis = ManagementFactory.getRuntimeMXBean().getUptime();
+            LOG.info("Plugins initialized {} ms after JVM start, exit", startupMillis);
+            writeStartupMillis(startupMillis);
+            // 在插件初始化的线程中退出会与Spring关闭钩子争用上下文的锁, 在新线程中退出, 待上下文启动完成后关闭
+            Thread exitThread = new Thread(() -> System.exit(0), "plugin-cds-exit");
+            exitThread.start();
+        }
+    }
+
+    /**
+     * 得到归档文件的插件记录文件
+     *
+     * @param archive 归档文件
+     * @return 插件记录文件
+     */
+    public static Path getManifest(Path archive) {
+        return Paths.get(archive.toString() + MANIFEST_SUFFIX);
+    }
+
+    /**
+     * 当前JVM使用的归档文件。动态归档与基础归档一起指定时为最后一个
+     *
+     * @return 归档文件, 没有指定时为空
+     */
+    public static Path getSharedArchive() {
+        for (String argument : ManagementFactory.getRuntimeMXBean().getInputArguments()) {
+            if (argument.startsWith(SHARED_ARCHIVE_OPTION)) {
+                String[] archives = argument.substring(SHARED_ARCHIVE_OPTION.length()).split(File.pathSeparator);
+                return Paths.get(archives[archives.length - 1]);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 检查归档记录的插件包是否变化
+     *
+     * @param archive        归档文件
+     * @param pluginWrappers 当前的插件
+     * @return 插件包已变化或者没有记录的插件id
+     */
+    public static List<String> verify(Path archive, List<PluginWrapper> pluginWrappers) {
+        Map<String, String[]> entries = readManifest(getManifest(archive));
+        if (entries.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<String> archived = new ArrayList<>();
+        List<String> changed = new ArrayList<>();
+        for (PluginWrapper pluginWrapper : pluginWrappers) {
+            String pluginId = pluginWrapper.getPluginId();
+            if (isUnchanged(entries.get(pluginId), pluginWrapper.getPluginPath())) {
+                archived.add(pluginId);
+            } else {
+                changed.add(pluginId);
+            }
+        }
+        LOG.info("Plugin CDS archive '{}' covers plugins {}", archive, archived);
+        if (!changed.isEmpty()) {
+            LOG.warn("Plugins {} changed since CDS archive '{}' was created, their classes load from the plugin " +
+                    "jars. Regenerate the archive with PluginCdsArchiveTool", changed, archive);
+        }
+        return changed;
+    }
+
+    /**
+     * 记录插件包与插件类加载器定义的类。类名按插件写入归档文件旁的目录, 每行一个
+     *
+     * @param archive        归档文件
+     * @param pluginWrappers 插件
+     * @throws IOException 写入异常
+     */
+    static void writeManifest(Path archive, List<PluginWrapper> pluginWrappers) throws IOException {
+        Path classListDirectory = Paths.get(archive.toString() + CLASS_LIST_SUFFIX);
+        Files.createDirectories(classListDirectory);
+        Path manifest = getManifest(archive);
+        Path temp = Paths.get(manifest.toString() + ".tmp");
+        try (BufferedWriter writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+            writer.write(VERSION);
+            writer.newLine();
+            for (PluginWrapper pluginWrapper : pluginWrappers) {
+                Path pluginPath = pluginWrapper.getPluginPath().toAbsolutePath();
+                if (!Files.isRegularFile(pluginPath)) {
+                    // 开发环境的插件目录随时变化, 不记录
+                    continue;
+                }
+                List<String> classNames = getDefinedClassNames(pluginWrapper);
+                link(pluginWrapper.getPluginClassLoader(), classNames);
+                Files.write(classListDirectory.resolve(pluginWrapper.getPluginId() + ".classlist"), classNames,
+                        StandardCharsets.UTF_8);
+                writer.write(pluginWrapper.getPluginId() + SEPARATOR + pluginPath + SEPARATOR +
+                        PluginMetadataCatalog.fingerprint(pluginPath) + SEPARATOR +
+                        PluginFileUtils.digest(pluginPath) + SEPARATOR + classNames.size());
+                writer.newLine();
+                LOG.info("Plugin '{}' recorded {} classes for CDS archive", pluginWrapper.getPluginId(),
+                        classNames.size());
+            }
+        }
+        PluginFileUtils.moveAtomically(temp, manifest);
+    }
+
+    private static List<String> getDefinedClassNames(PluginWrapper pluginWrapper) {
+        ClassLoader classLoader = pluginWrapper.getPluginClassLoader();
+        if (!(classLoader instanceof MyPluginClassLoader)) {
+            return Collections.emptyList();
+        }
+        List<String> classNames = new ArrayList<>(((MyPluginClassLoader) classLoader).getDefinedClassNames());
+        Collections.sort(classNames);
+        return classNames;
+    }
+
+    /**
+     * JVM 只归档自定义类加载器中已链接的类。只加载未使用的类(例如只被注解扫描过)在此链接, 不执行类的初始化
+     */
+    private static void link(ClassLoader classLoader, List<String> classNames) {
+        for (String className : classNames) {
+            try {
+                // 反射得到声明的方法时JVM会先链接类
+                Class.forName(className, false, classLoader).getDeclaredMethods();
+            } catch (ClassNotFoundException | LinkageError e) {
+                LOG.debug("Link plugin class '{}' failure, it will not be archived. {}", className, e.toString());
+            }
+        }
+    }
+
+    private static Map<String, String[]> readManifest(Path manifest) {
+        if (!Files.isRegularFile(manifest)) {
+            return Collections.emptyMap();
+        }
+        List<String> lines;
+        try {
+            lines = Files.readAllLines(manifest, StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            LOG.warn("Read plugin CDS archive manifest '{}' failure. {}", manifest, e.getMessage());
+            return Collections.emptyMap();
+        }
+        if (lines.isEmpty() || !VERSION.equals(lines.get(0))) {
+            LOG.warn("Unknown plugin CDS archive manifest '{}'", manifest);
+            return Collections.emptyMap();
+        }
+        Map<String, String[]> entries = new HashMap<>();
+        for (int i = 1; i < lines.size(); i++) {
+            String[] fields = lines.get(i).split(SEPARATOR, -1);
+            if (fields.length == ENTRY_FIELDS) {
+                entries.put(fields[0], fields);
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * 大小与修改时间未变化时认为未变化, 否则比较摘要。重新打包但内容相同的插件包仍然可以使用归档
+     */
+    private static boolean isUnchanged(String[] entry, Path pluginPath) {
+        if (entry == null || !Files.isRegularFile(pluginPath)) {
+            return false;
+        }
+        if (entry[2].equals(PluginMetadataCatalog.fingerprint(pluginPath))) {
+            return true;
+        }
+        try {
+            return entry[3].equals(PluginFileUtils.digest(pluginPath));
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private static void writeStartupMillis(long startupMillis) {
+        String startupFile = System.getProperty(STARTUP_FILE_PROPERTY);
+        if (startupFile == null || startupFile.isEmpty()) {
+            return;
+        }
+        try {
+            Files.write(Paths.get(startupFile), String.valueOf(startupMillis).getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            LOG.error("Write startup time to '{}' failure. {}", startupFile, e.getMessage(), e);
+        }
+    }
+
+}
@@ -0,0 +1,218 @@
+package com.github.thestyleofme.plugin.framework.cds;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import com.github.thestyleofme.plugin.framework.exceptions.PluginException;
+
+/**
+ * <p>
+ * 生成插件类的 AppCDS 动态归档并测量启动时间的工具。以应用的类路径运行:
+ * <pre>
+ * java -cp &lt;应用类路径&gt; PluginCdsArchiveTool dump &lt;归档文件&gt; &lt;主类 | -jar 应用jar&gt; [应用参数]
+ * java -cp &lt;应用类路径&gt; PluginCdsArchiveTool benchmark &lt;归档文件&gt; &lt;次数&gt; &lt;主类 | -jar 应用jar&gt; [应用参数]
+ * </pre>
+ * dump 以 -XX:ArchiveClassesAtExit 启动应用, 插件初始化完成后退出并生成归档, 之后以 -XX:SharedArchiveFile 启动应用即可使用。
+ * JDK 13 以下不支持动态归档, 只记录插件的类名与插件包摘要。JVM 生成归档时类路径中只能是 jar, 不能有非空目录,
+ * Spring Boot 的可执行 jar 需要先解压, 以解压后的 jar 作为类路径启动。
+ * <p>
+ * benchmark 分别以不使用与使用归档的方式多次启动应用, 输出启动到插件初始化完成的时间。
+ * 工具自身的JVM参数(CDS与调试参数除外)传递给应用
+ * </p>
+ *
+ * @author isaac 2020/10/27 14:00
+ * @since 1.0
+ */
+public class PluginCdsArchiveTool {
+
+    private static final int DYNAMIC_ARCHIVE_VERSION = 13;
+    private static final int BUFFER_SIZE = 8192;
+
+    private static final List<String> EXCLUDED_OPTIONS = Arrays.asList(
+            "-XX:SharedArchiveFile", "-XX:ArchiveClassesAtExit", "-Xshare", "-agentlib:jdwp");
+
+    private final Path archive;
+    private final List<String> application;
+
+    private PluginCdsArchiveTool(Path archive, List<String> application) {
+        if (application.isEmpty()) {
+            throw new PluginException("Application main class or -jar is required");
+        }
+        this.archive = archive.toAbsolutePath();
+        this.application = application;
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 3 || "benchmark".equals(args[0]) && args.length < 4) {
+            String application = "<mainClass | -jar app.jar> [args]";
+            System.err.println("Usage: PluginCdsArchiveTool dump <archive> " + application);
+            System.err.println("       PluginCdsArchiveTool benchmark <archive> <runs> " + application);
+            System.exit(2);
+            return;
+        }
+        Path archive = Paths.get(args[1]);
+        if ("dump".equals(args[0])) {
+            new PluginCdsArchiveTool(archive, Arrays.asList(args).subList(2, args.length)).dump();
+        } else if ("benchmark".equals(args[0])) {
+            int runs = Integer.parseInt(args[2]);
+            new PluginCdsArchiveTool(archive, Arrays.asList(args).subList(3, args.length)).benchmark(runs);
+        } else {
+            throw new PluginException("Unknown command '" + args[0] + "', use dump or benchmark");
+        }
+    }
+
+    /**
+     * 启动应用生成归档
+     *
+     * @throws IOException          启动异常
+     * @throws InterruptedException 等待中断
+     */
+    public void dump() throws IOException, InterruptedException {
+        List<String> command = new ArrayList<>(getJvmCommand());
+        boolean supported = getJavaVersion() >= DYNAMIC_ARCHIVE_VERSION;
+        if (supported) {
+            checkClassPath();
+            Files.deleteIfExists(archive);
+            command.add("-XX:ArchiveClassesAtExit=" + archive);
+        } else {
+            System.err.println("Dynamic CDS archive requires JDK " + DYNAMIC_ARCHIVE_VERSION +
+                    " or later, only record plugin classes");
+        }
+        command.add("-D" + PluginCdsArchive.DUMP_PROPERTY + "=" + archive);
+        command.addAll(getLaunchCommand());
+        int exitCode = new ProcessBuilder(command).inheritIO().start().waitFor();
+        if (exitCode != 0) {
+            throw new PluginException("Application exit with code " + exitCode + ", archive is not created");
+        }
+        if (supported) {
+            if (!Files.isRegularFile(archive)) {
+                throw new PluginException("Archive '" + archive + "' is not created, check the JVM output");
+            }
+            System.out.println("Archive created. Start the application with -XX:SharedArchiveFile=" + archive);
+        }
+    }
+
+    /**
+     * 分别以不使用与使用归档的方式启动应用, 输出启动到插件初始化完成的时间
+     *
+     * @param runs 每种方式的启动次数
+     * @throws IOException          启动异常
+     * @throws InterruptedException 等待中断
+     */
+    public void benchmark(int runs) throws IOException, InterruptedException {
+        if (!Files.isRegularFile(archive)) {
+            throw new PluginException("Archive '" + archive + "' not found, run dump first");
+        }
+        List<Long> baseline = new ArrayList<>();
+        List<Long> archived = new ArrayList<>();
+        for (int i = 0; i < runs; i++) {
+            // 交替启动, 减少文件缓存等环境变化对两种方式的影响
+            baseline.add(startup(null));
+            archived.add(startup("-XX:SharedArchiveFile=" + archive));
+        }
+        System.out.println("Startup to plugins initialized (ms), runs=" + runs);
+        System.out.println("  without archive: " + summary(baseline));
+        System.out.println("  with archive   : " + summary(archived));
+    }
+
+    private long startup(String option) throws IOException, InterruptedException {
+        Path startupFile = Files.createTempFile("plugin-cds-startup", ".txt");
+        try {
+            List<String> command = new ArrayList<>(getJvmCommand());
+            if (option != null) {
+                command.add(option);
+            }
+            command.add("-D" + PluginCdsArchive.EXIT_PROPERTY + "=true");
+            command.add("-D" + PluginCdsArchive.STARTUP_FILE_PROPERTY + "=" + startupFile);
+            command.addAll(getLaunchCommand());
+            Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+            // 丢弃应用的输出, 避免输出缓冲区写满后应用阻塞
+            try (InputStream inputStream = process.getInputStream()) {
+                byte[] buffer = new byte[BUFFER_SIZE];
+                while (inputStream.read(buffer) >= 0) {
+                    // ignore
+                }
+            }
+            int exitCode = process.waitFor();
+            String startupMillis = new String(Files.readAllBytes(startupFile), StandardCharsets.UTF_8).trim();
+            if (startupMillis.isEmpty()) {
+                throw new PluginException("Application exit with code " + exitCode + " before plugins initialized");
+            }
+            return Long.parseLong(startupMillis);
+        } finally {
+            Files.deleteIfExists(startupFile);
+        }
+    }
+
+    /**
+     * JVM 在退出时才检查类路径, 应用启动完成后才失败, 因此预先检查
+     */
+    private void checkClassPath() {
+        if ("-jar".equals(application.get(0))) {
+            return;
+        }
+        for (String path : System.getProperty("java.class.path").split(File.pathSeparator)) {
+            File file = new File(path);
+            String[] children = file.list();
+            if (file.isDirectory() && children != null && children.length > 0) {
+                throw new PluginException("CDS archive can't be created with directory '" + path +
+                        "' in the classpath, package it as a jar");
+            }
+        }
+    }
+
+    private static String summary(List<Long> millis) {
+        List<Long> sorted = new ArrayList<>(millis);
+        Collections.sort(sorted);
+        long total = 0;
+        for (long value : sorted) {
+            total += value;
+        }
+        return "min=" + sorted.get(0) + ", median=" + sorted.get(sorted.size() / 2) +
+                ", mean=" + total / sorted.size() + ", max=" + sorted.get(sorted.size() - 1);
+    }
+
+    private static List<String> getJvmCommand() {
+        List<String> command = new ArrayList<>();
+        command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+        for (String argument : ManagementFactory.getRuntimeMXBean().getInputArguments()) {
+            if (EXCLUDED_OPTIONS.stream().noneMatch(argument::startsWith)) {
+                command.add(argument);
+            }
+        }
+        return command;
+    }
+
+    private List<String> getLaunchCommand() {
+        List<String> command = new ArrayList<>();
+        if (!"-jar".equals(application.get(0))) {
+            command.add("-cp");
+            command.add(System.getProperty("java.class.path"));
+        }
+        command.addAll(application);
+        return command;
+    }
+
+    private static int getJavaVersion() {
+        String version = System.getProperty("java.specification.version");
+        if (version.startsWith("1.")) {
+            version = version.substring(2);
+        }
+        try {
+            return Integer.parseInt(version);
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+}
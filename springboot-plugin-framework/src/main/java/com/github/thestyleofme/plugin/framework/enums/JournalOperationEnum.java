@@ -0,0 +1,24 @@
+package com.github.thestyleofme.plugin.framework.enums;
+
+/**
+ * <p>
+ * 插件操作日志中记录的操作
+ * </p>
+ *
+ * @author isaac 2020/10/23 14:05
+ * @since 1.0
+ */
+public enum JournalOperationEnum {
+    /**
+     * 安装
+     */
+    INSTALL,
+    /**
+     * 升级
+     */
+    UPGRADE,
+    /**
+     * 卸载
+     */
+    UNINSTALL
+}
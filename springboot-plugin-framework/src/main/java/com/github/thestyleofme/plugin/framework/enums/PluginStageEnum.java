@@ -0,0 +1,40 @@
+package com.github.thestyleofme.plugin.framework.enums;
+
+/**
+ * <p>
+ * 插件操作的阶段
+ * </p>
+ *
+ * @author isaac 2020/10/22 10:05
+ * @since 1.0
+ */
+public enum PluginStageEnum {
+    /**
+     * 插件包校验完成
+     */
+    VERIFIED,
+    /**
+     * 插件包已拷贝到插件目录
+     */
+    COPIED,
+    /**
+     * 插件已被插件管理者加载
+     */
+    LOADED,
+    /**
+     * 插件的类已扫描、分组
+     */
+    SCANNED,
+    /**
+     * 插件的bean已注册到Spring
+     */
+    REGISTERED,
+    /**
+     * 插件的bean已从Spring卸载
+     */
+    UNREGISTERED,
+    /**
+     * 插件的后置处理已完成(请求映射、调用者等)
+     */
+    BUILT
+}
@@ -0,0 +1,28 @@
+package com.github.thestyleofme.plugin.framework.enums;
+
+/**
+ * <p>
+ * 插件处理者执行的操作
+ * </p>
+ *
+ * @author isaac 2020/10/22 15:10
+ * @since 1.0
+ */
+public enum ProcessOperationEnum {
+    /**
+     * 准备
+     */
+    PREPARE,
+    /**
+     * 注册
+     */
+    REGISTER,
+    /**
+     * 卸载
+     */
+    UNREGISTER,
+    /**
+     * 升级
+     */
+    UPGRADE
+}
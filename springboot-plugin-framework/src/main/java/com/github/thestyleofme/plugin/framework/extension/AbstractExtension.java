@@ -7,6 +7,7 @@ import com.github.thestyleofme.plugin.framework.factory.process.pipe.PluginPipeP
 import com.github.thestyleofme.plugin.framework.factory.process.pipe.classs.PluginClassGroupExtend;
 import com.github.thestyleofme.plugin.framework.factory.process.post.PluginPostProcessorExtend;
 import com.github.thestyleofme.plugin.framework.integration.application.PluginApplication;
+import com.github.thestyleofme.plugin.framework.leak.PluginLeakProbe;
 import com.github.thestyleofme.plugin.framework.loader.PluginResourceLoader;
 import org.springframework.context.ApplicationContext;
 
@@ -85,5 +86,16 @@ public abstract class AbstractExtension {
         return Collections.emptyList();
     }
 
+    /**
+     * 返回扩展的插件类加载器泄漏探测。
+     * 插件卸载后类加载器没有被回收时, 查找扩展中仍然引用插件类的持有者。
+     *
+     * @param applicationContext 主程序ApplicationContext
+     * @return List PluginLeakProbe
+     */
+    public List<PluginLeakProbe> getPluginLeakProbes(ApplicationContext applicationContext) {
+        return Collections.emptyList();
+    }
+
 
 }
@@ -12,6 +12,7 @@ import com.github.thestyleofme.plugin.framework.exceptions.PluginException;
 import com.github.thestyleofme.plugin.framework.factory.process.pipe.PluginPipeProcessorExtend;
 import com.github.thestyleofme.plugin.framework.factory.process.pipe.classs.PluginClassGroupExtend;
 import com.github.thestyleofme.plugin.framework.factory.process.post.PluginPostProcessorExtend;
+import com.github.thestyleofme.plugin.framework.leak.PluginLeakProbe;
 import com.github.thestyleofme.plugin.framework.loader.PluginResourceLoader;
 import com.github.thestyleofme.plugin.framework.utils.CommonUtils;
 import com.github.thestyleofme.plugin.framework.utils.OrderPriority;
@@ -37,6 +38,7 @@ public class ExtensionInitializer {
     private static final List<PluginPipeProcessorExtend> PIPE_PROCESSOR_EXTENDS = new ArrayList<>();
     private static final List<PluginClassGroupExtend> CLASS_GROUP_EXTENDS = new ArrayList<>();
     private static final List<PluginPostProcessorExtend> POST_PROCESSOR_EXTENDS = new ArrayList<>();
+    private static final List<PluginLeakProbe> LEAK_PROBE_EXTENDS = new ArrayList<>();
 
     private ExtensionInitializer() {
     }
@@ -90,6 +92,8 @@ public class ExtensionInitializer {
             debug.append(pluginResourceLoader.key());
         }, PluginPostProcessorExtend::order);
 
+        iteration(abstractExtension.getPluginLeakProbes(applicationContext), LEAK_PROBE_EXTENDS::add, null);
+
         debug.append("] is registered");
         LOG.info("Plugin extension '{}' is registered", key);
         LOG.debug("{}", debug);
@@ -111,6 +115,10 @@ public class ExtensionInitializer {
         return POST_PROCESSOR_EXTENDS;
     }
 
+    public static List<PluginLeakProbe> getLeakProbeExtends() {
+        return LEAK_PROBE_EXTENDS;
+    }
+
     /**
      * 迭代器
      *
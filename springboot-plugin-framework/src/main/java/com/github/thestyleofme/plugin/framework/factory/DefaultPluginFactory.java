@@ -1,20 +1,30 @@
 package com.github.thestyleofme.plugin.framework.factory;
 
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
+import java.util.*;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 
 import com.github.thestyleofme.plugin.framework.enums.BuildTypeEnum;
+import com.github.thestyleofme.plugin.framework.enums.PluginStageEnum;
 import com.github.thestyleofme.plugin.framework.exceptions.PluginException;
 import com.github.thestyleofme.plugin.framework.factory.process.pipe.PluginPipeProcessor;
 import com.github.thestyleofme.plugin.framework.factory.process.pipe.PluginPipeProcessorFactory;
 import com.github.thestyleofme.plugin.framework.factory.process.post.PluginPostProcessor;
 import com.github.thestyleofme.plugin.framework.factory.process.post.PluginPostProcessorFactory;
+import com.github.thestyleofme.plugin.framework.integration.IntegrationConfiguration;
 import com.github.thestyleofme.plugin.framework.integration.listener.PluginListener;
 import com.github.thestyleofme.plugin.framework.integration.listener.PluginListenerFactory;
+import com.github.thestyleofme.plugin.framework.metrics.PluginStageRecorder;
 import com.github.thestyleofme.plugin.framework.utils.AopUtils;
 import org.pf4j.PluginWrapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.context.ApplicationContext;
 import org.springframework.context.support.GenericApplicationContext;
 
@@ -28,20 +38,34 @@ import org.springframework.context.support.GenericApplicationContext;
  */
 public class DefaultPluginFactory implements PluginFactory {
 
+    private final Logger log = LoggerFactory.getLogger(this.getClass());
+
     /**
      * 注册的插件集合
      */
-    private final Map<String, PluginRegistryInfo> registerPluginInfoMap = new HashMap<>();
+    private final Map<String, PluginRegistryInfo> registerPluginInfoMap = new ConcurrentHashMap<>();
+
+    /**
+     * 升级后被替换, 等待排空后卸载的旧版本插件
+     */
+    private final List<PluginRegistryInfo> upgradedPluginInfos = new ArrayList<>();
     private final GenericApplicationContext applicationContext;
     private final PluginPipeProcessor pluginPipeProcessor;
     private final PluginPostProcessor pluginPostProcessor;
     private final PluginListenerFactory pluginListenerFactory;
+    private final SpringBeanRegister springBeanRegister;
+    private final int registerParallelism;
 
     /**
-     * 0表示build、1 表示注册、2表示卸载
+     * Spring上下文的锁。只有修改 GenericApplicationContext、RequestMappingHandlerMapping 的阶段需要互斥,
+     * 插件的准备阶段在锁外执行。同一插件的操作由调用者保证串行
      */
-    private Integer buildType = BuildTypeEnum.BUILD.ordinal();
-    private final List<PluginRegistryInfo> buildContainer = new ArrayList<>();
+    private final Lock contextLock = new ReentrantLock();
+
+    /**
+     * 当前线程待构建的插件。注册、卸载与随后的 build 在同一线程中调用, 不同线程的操作互不影响
+     */
+    private final ThreadLocal<BuildContainer> buildContainers = ThreadLocal.withInitial(BuildContainer::new);
 
     public DefaultPluginFactory(ApplicationContext applicationContext) {
         this(applicationContext, null);
@@ -49,9 +73,22 @@ public class DefaultPluginFactory implements PluginFactory {
 
     public DefaultPluginFactory(ApplicationContext applicationContext,
                                 PluginListenerFactory pluginListenerFactory) {
-        this.pluginPipeProcessor = new PluginPipeProcessorFactory(applicationContext);
-        this.pluginPostProcessor = new PluginPostProcessorFactory(applicationContext);
+        this(applicationContext, pluginListenerFactory, null);
+    }
+
+    /**
+     * @param applicationContext    Spring上下文
+     * @param pluginListenerFactory 插件监听工厂
+     * @param stageRecorder         处理者的耗时记录者, 为空时不记录
+     */
+    public DefaultPluginFactory(ApplicationContext applicationContext,
+                                PluginListenerFactory pluginListenerFactory,
+                                PluginStageRecorder stageRecorder) {
+        this.pluginPipeProcessor = new PluginPipeProcessorFactory(applicationContext, stageRecorder);
+        this.pluginPostProcessor = new PluginPostProcessorFactory(applicationContext, stageRecorder);
         this.applicationContext = (GenericApplicationContext) applicationContext;
+        this.springBeanRegister = new SpringBeanRegister(applicationContext);
+        this.registerParallelism = applicationContext.getBean(IntegrationConfiguration.class).registerParallelism();
         if (pluginListenerFactory == null) {
             this.pluginListenerFactory = new PluginListenerFactory();
         } else {
@@ -67,7 +104,62 @@ public class DefaultPluginFactory implements PluginFactory {
     }
 
     @Override
-    public synchronized PluginFactory register(PluginWrapper pluginWrapper) {
+    public PluginFactory register(PluginWrapper pluginWrapper) {
+        checkRegister(pluginWrapper);
+        PluginRegistryInfo registerPluginInfo = new PluginRegistryInfo(pluginWrapper);
+        try {
+            pluginPipeProcessor.prepare(registerPluginInfo);
+            pluginListenerFactory.progress(pluginWrapper.getPluginId(), PluginStageEnum.SCANNED);
+        } catch (Exception e) {
+            pluginListenerFactory.failure(pluginWrapper.getPluginId(), e);
+            throw e;
+        }
+        contextLock.lock();
+        try {
+            checkRegister(pluginWrapper);
+            doRegister(registerPluginInfo);
+        } finally {
+            contextLock.unlock();
+        }
+        return this;
+    }
+
+    @Override
+    public Map<String, Exception> register(List<PluginWrapper> pluginWrappers) {
+        Map<String, Exception> failures = new LinkedHashMap<>();
+        if (pluginWrappers == null || pluginWrappers.isEmpty()) {
+            return failures;
+        }
+        List<PluginRegistryInfo> registerPluginInfos = new ArrayList<>(pluginWrappers.size());
+        for (PluginWrapper pluginWrapper : pluginWrappers) {
+            if (pluginWrapper == null) {
+                throw new IllegalArgumentException("Parameter:pluginWrappers cannot contain null");
+            }
+            registerPluginInfos.add(new PluginRegistryInfo(pluginWrapper));
+        }
+        PluginRegisterGraph registerGraph = new PluginRegisterGraph(registerPluginInfos,
+                PluginInfoContainer::existRegisterBeanName);
+        // 准备阶段与Spring上下文无关, 按配置的并行度执行。插件准备完成且依赖的插件注册完成后立即注册到Spring
+        int parallelism = Math.min(registerParallelism, registerPluginInfos.size());
+        if (parallelism <= 1) {
+            for (PluginRegistryInfo registerPluginInfo : registerPluginInfos) {
+                prepared(registerPluginInfo, prepare(registerPluginInfo), registerGraph, failures);
+            }
+        } else {
+            prepareConcurrently(registerPluginInfos, parallelism, registerGraph, failures);
+        }
+        dependentFailed(registerGraph.unresolved(), failures);
+        log.debug("Registered {} plugins in {} dependency layers", registerPluginInfos.size() - failures.size(),
+                registerGraph.getDepth());
+        return failures;
+    }
+
+    /**
+     * 校验插件是否可以注册
+     *
+     * @param pluginWrapper 插件
+     */
+    private void checkRegister(PluginWrapper pluginWrapper) {
         if (pluginWrapper == null) {
             throw new IllegalArgumentException("Parameter:pluginWrapper cannot be null");
         }
@@ -75,86 +167,319 @@ public class DefaultPluginFactory implements PluginFactory {
             throw new PluginException("The plugin '"
                     + pluginWrapper.getPluginId() + "' already exists, Can't register");
         }
-        if (!buildContainer.isEmpty() && buildType == BuildTypeEnum.UNREGISTER.ordinal()) {
+        BuildContainer buildContainer = buildContainers.get();
+        if (!buildContainer.isEmpty() && buildContainer.buildType == BuildTypeEnum.UNREGISTER) {
             throw new PluginException("Unable to Registry operate. Because there's no build");
         }
-        PluginRegistryInfo registerPluginInfo = new PluginRegistryInfo(pluginWrapper);
+    }
+
+    /**
+     * 在有界的 ForkJoinPool 中并行执行插件的准备阶段, 当前线程按完成的先后注册准备好的插件
+     *
+     * @param registerPluginInfos 插件注册的信息集合
+     * @param parallelism         并行度
+     * @param registerGraph       插件的依赖图
+     * @param failures            失败的插件id及其异常
+     */
+    private void prepareConcurrently(List<PluginRegistryInfo> registerPluginInfos, int parallelism,
+                                     PluginRegisterGraph registerGraph, Map<String, Exception> failures) {
+        // 插件中的配置文件等资源可能依赖上下文类加载器, 因此工作线程沿用当前线程的类加载器
+        ClassLoader contextClassLoader = Thread.currentThread().getContextClassLoader();
+        ForkJoinPool forkJoinPool = new ForkJoinPool(parallelism, pool -> {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+            thread.setName("plugin-register-" + thread.getPoolIndex());
+            thread.setContextClassLoader(contextClassLoader);
+            return thread;
+        }, null, false);
+        try {
+            CompletionService<PluginRegistryInfo> completionService = new ExecutorCompletionService<>(forkJoinPool);
+            Map<String, Exception> prepareFailures = new ConcurrentHashMap<>();
+            for (PluginRegistryInfo registerPluginInfo : registerPluginInfos) {
+                completionService.submit(() -> {
+                    Exception e = prepare(registerPluginInfo);
+                    if (e != null) {
+                        prepareFailures.put(registerPluginInfo.getPluginWrapper().getPluginId(), e);
+                    }
+                    return registerPluginInfo;
+                });
+            }
+            for (int i = 0; i < registerPluginInfos.size(); i++) {
+                PluginRegistryInfo registerPluginInfo = completionService.take().get();
+                prepared(registerPluginInfo,
+                        prepareFailures.get(registerPluginInfo.getPluginWrapper().getPluginId()),
+                        registerGraph, failures);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new PluginException("Plugins register interrupted", e);
+        } catch (ExecutionException e) {
+            throw new PluginException("Plugins prepare failure", e.getCause());
+        } finally {
+            forkJoinPool.shutdown();
+        }
+    }
+
+    /**
+     * 执行插件的准备阶段
+     *
+     * @param registerPluginInfo 插件注册的信息
+     * @return 准备失败的异常, 成功时为空
+     */
+    private Exception prepare(PluginRegistryInfo registerPluginInfo) {
+        String pluginId = registerPluginInfo.getPluginWrapper().getPluginId();
+        try {
+            pluginPipeProcessor.prepare(registerPluginInfo);
+            pluginListenerFactory.progress(pluginId, PluginStageEnum.SCANNED);
+            return null;
+        } catch (Exception e) {
+            return e;
+        }
+    }
+
+    /**
+     * 插件准备完成, 注册所有依赖已满足的插件
+     *
+     * @param registerPluginInfo 准备完成的插件
+     * @param prepareException   准备失败的异常, 成功时为空
+     * @param registerGraph      插件的依赖图
+     * @param failures           失败的插件id及其异常
+     */
+    private void prepared(PluginRegistryInfo registerPluginInfo, Exception prepareException,
+                          PluginRegisterGraph registerGraph, Map<String, Exception> failures) {
+        String pluginId = registerPluginInfo.getPluginWrapper().getPluginId();
+        if (prepareException == null) {
+            registerGraph.prepared(pluginId);
+        } else if (!registerGraph.isFailed(pluginId)) {
+            pluginListenerFactory.failure(pluginId, prepareException);
+            failures.put(pluginId, prepareException);
+            dependentFailed(registerGraph.failed(pluginId), failures);
+        }
+        List<PluginRegistryInfo> ready;
+        while (!(ready = registerGraph.pollReady()).isEmpty()) {
+            for (PluginRegistryInfo readyPluginInfo : ready) {
+                String readyPluginId = readyPluginInfo.getPluginWrapper().getPluginId();
+                if (registerGraph.isFailed(readyPluginId)) {
+                    continue;
+                }
+                contextLock.lock();
+                try {
+                    checkRegister(readyPluginInfo.getPluginWrapper());
+                    doRegister(readyPluginInfo);
+                    registerGraph.registered(readyPluginId);
+                } catch (Exception e) {
+                    failures.put(readyPluginId, e);
+                    dependentFailed(registerGraph.failed(readyPluginId), failures);
+                } finally {
+                    contextLock.unlock();
+                }
+            }
+        }
+    }
+
+    private void dependentFailed(Map<String, Exception> dependentFailures, Map<String, Exception> failures) {
+        dependentFailures.forEach((pluginId, e) -> {
+            pluginListenerFactory.failure(pluginId, e);
+            failures.put(pluginId, e);
+        });
+    }
+
+    /**
+     * 将准备好的插件注册到Spring, 调用者需持有Spring上下文的锁
+     *
+     * @param registerPluginInfo 插件注册的信息
+     */
+    private void doRegister(PluginRegistryInfo registerPluginInfo) {
+        PluginWrapper pluginWrapper = registerPluginInfo.getPluginWrapper();
+        BuildContainer buildContainer = buildContainers.get();
         AopUtils.resolveAop(pluginWrapper);
         try {
             pluginPipeProcessor.register(registerPluginInfo);
             registerPluginInfoMap.put(pluginWrapper.getPluginId(), registerPluginInfo);
             buildContainer.add(registerPluginInfo);
-            return this;
+            pluginListenerFactory.progress(pluginWrapper.getPluginId(), PluginStageEnum.REGISTERED);
         } catch (Exception e) {
             pluginListenerFactory.failure(pluginWrapper.getPluginId(), e);
             throw e;
         } finally {
-            buildType = 1;
+            buildContainer.buildType = BuildTypeEnum.REGISTER;
             AopUtils.recoverAop();
         }
     }
 
     @Override
-    public synchronized PluginFactory unregister(String pluginId) {
-        PluginRegistryInfo registerPluginInfo = registerPluginInfoMap.get(pluginId);
-        if (registerPluginInfo == null) {
-            throw new PluginException("Not found plugin '" + pluginId + "' registered");
-        }
-        if (!buildContainer.isEmpty() && buildType == 1) {
+    public PluginFactory unregister(String pluginId) {
+        BuildContainer buildContainer = buildContainers.get();
+        if (!buildContainer.isEmpty() && buildContainer.buildType == BuildTypeEnum.REGISTER) {
             throw new PluginException("Unable to unregister operate. Because there's no build");
         }
+        contextLock.lock();
         try {
-            pluginPipeProcessor.unregister(registerPluginInfo);
-            buildContainer.add(registerPluginInfo);
-            return this;
-        } catch (Exception e) {
-            pluginListenerFactory.failure(pluginId, e);
-            throw e;
+            PluginRegistryInfo registerPluginInfo = registerPluginInfoMap.get(pluginId);
+            if (registerPluginInfo == null) {
+                throw new PluginException("Not found plugin '" + pluginId + "' registered");
+            }
+            try {
+                pluginPipeProcessor.unregister(registerPluginInfo);
+                buildContainer.add(registerPluginInfo);
+                pluginListenerFactory.progress(pluginId, PluginStageEnum.UNREGISTERED);
+                return this;
+            } catch (Exception e) {
+                pluginListenerFactory.failure(pluginId, e);
+                throw e;
+            } finally {
+                registerPluginInfoMap.remove(pluginId);
+                buildContainer.buildType = BuildTypeEnum.UNREGISTER;
+            }
         } finally {
-            registerPluginInfoMap.remove(pluginId);
-            buildType = 2;
+            contextLock.unlock();
         }
     }
 
     @Override
-    public synchronized void build() {
-        if (buildContainer.isEmpty()) {
-            throw new PluginException("No Found registered or unregistered plugin. Unable to build");
+    public PluginFactory upgrade(PluginWrapper pluginWrapper) {
+        if (pluginWrapper == null) {
+            throw new IllegalArgumentException("Parameter:pluginWrapper cannot be null");
         }
-        // 构建注册的Class插件监听者
-        pluginListenerFactory.buildListenerClass(applicationContext);
+        String pluginId = pluginWrapper.getPluginId();
+        PluginRegistryInfo newRegistryInfo = new PluginRegistryInfo(pluginWrapper);
+        // 准备阶段与Spring上下文无关, 不影响正在运行的旧版本
         try {
-            if (buildType == 1) {
-                registryBuild();
-            } else {
-                unregisterBuild();
+            pluginPipeProcessor.prepare(newRegistryInfo);
+            pluginListenerFactory.progress(pluginId, PluginStageEnum.SCANNED);
+        } catch (Exception e) {
+            pluginListenerFactory.failure(pluginId, e);
+            throw e;
+        }
+        if (!buildContainers.get().isEmpty()) {
+            throw new PluginException("Unable to upgrade operate. Because there's no build");
+        }
+        contextLock.lock();
+        try {
+            PluginRegistryInfo oldRegistryInfo = registerPluginInfoMap.get(pluginId);
+            if (oldRegistryInfo == null) {
+                throw new PluginException("Not found plugin '" + pluginId + "' registered");
             }
-        } finally {
-            buildContainer.clear();
-            if (buildType == 1) {
-                AopUtils.recoverAop();
+            pluginListenerFactory.buildListenerClass(applicationContext);
+            // 旧版本的bean继续处理请求, 直到排空后调用 release 卸载。新版本的bean以带后缀的名称注册,
+            // 原名称作为别名指向新版本, 旧版本的请求映射由后置处理者在切换时替换
+            Map<String, String[]> oldBeanNames = springBeanRegister.deactivate(pluginId);
+            PluginInfoContainer.startStandby(pluginId);
+            try {
+                pipeRegister(newRegistryInfo);
+                pluginListenerFactory.progress(pluginId, PluginStageEnum.REGISTERED);
+                pluginPostProcessor.upgrade(Collections.singletonList(oldRegistryInfo),
+                        Collections.singletonList(newRegistryInfo));
+            } catch (Exception e) {
+                rollbackUpgrade(oldRegistryInfo, newRegistryInfo, oldBeanNames);
+                pluginListenerFactory.failure(pluginId, e);
+                throw e;
+            } finally {
+                PluginInfoContainer.stopStandby(pluginId);
             }
-            buildType = 0;
+            registerPluginInfoMap.put(pluginId, newRegistryInfo);
+            upgradedPluginInfos.add(oldRegistryInfo);
+        } finally {
+            contextLock.unlock();
         }
+        pluginListenerFactory.progress(pluginId, PluginStageEnum.BUILT);
+        pluginListenerFactory.unregister(pluginId);
+        pluginListenerFactory.register(pluginId);
+        return this;
     }
 
     /**
-     * 注册build
+     * 使用插件的类加载器进行AOP代理, 并执行管道处理者的注册
+     *
+     * @param registerPluginInfo 插件注册的信息
      */
-    private void registryBuild() {
-        pluginPostProcessor.register(buildContainer);
-        for (PluginRegistryInfo pluginRegistryInfo : buildContainer) {
-            pluginListenerFactory.register(pluginRegistryInfo.getPluginWrapper().getPluginId());
+    private void pipeRegister(PluginRegistryInfo registerPluginInfo) {
+        AopUtils.resolveAop(registerPluginInfo.getPluginWrapper());
+        try {
+            pluginPipeProcessor.register(registerPluginInfo);
+        } finally {
+            AopUtils.recoverAop();
         }
     }
 
     /**
-     * 卸载build
+     * 升级失败, 卸载新版本的bean并恢复旧版本的bean。后置处理者已自行恢复旧版本
+     *
+     * @param oldRegistryInfo 旧版本插件注册的信息
+     * @param newRegistryInfo 新版本插件注册的信息
+     * @param oldBeanNames    停用的旧版本bean名称与其别名
      */
-    private void unregisterBuild() {
-        pluginPostProcessor.unregister(buildContainer);
-        for (PluginRegistryInfo pluginRegistryInfo : buildContainer) {
-            pluginListenerFactory.unregister(pluginRegistryInfo.getPluginWrapper().getPluginId());
+    private void rollbackUpgrade(PluginRegistryInfo oldRegistryInfo, PluginRegistryInfo newRegistryInfo,
+                                 Map<String, String[]> oldBeanNames) {
+        String pluginId = oldRegistryInfo.getPluginWrapper().getPluginId();
+        try {
+            pluginPipeProcessor.unregister(newRegistryInfo);
+        } catch (Exception e) {
+            log.error("Plugin '{}' unregister new version failure. {}", pluginId, e.getMessage(), e);
+        }
+        try {
+            springBeanRegister.activate(pluginId, oldBeanNames);
+        } catch (Exception e) {
+            log.error("Plugin '{}' activate old version failure. {}", pluginId, e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public void release(PluginWrapper pluginWrapper) {
+        contextLock.lock();
+        try {
+            PluginRegistryInfo oldRegistryInfo = null;
+            Iterator<PluginRegistryInfo> iterator = upgradedPluginInfos.iterator();
+            while (iterator.hasNext()) {
+                PluginRegistryInfo upgradedPluginInfo = iterator.next();
+                if (upgradedPluginInfo.getPluginWrapper() == pluginWrapper) {
+                    oldRegistryInfo = upgradedPluginInfo;
+                    iterator.remove();
+                    break;
+                }
+            }
+            if (oldRegistryInfo == null) {
+                return;
+            }
+            pluginPipeProcessor.unregister(oldRegistryInfo);
+            pluginPostProcessor.release(Collections.singletonList(oldRegistryInfo));
+        } finally {
+            contextLock.unlock();
+        }
+    }
+
+    @Override
+    public void build() {
+        BuildContainer buildContainer = buildContainers.get();
+        if (buildContainer.isEmpty()) {
+            throw new PluginException("No Found registered or unregistered plugin. Unable to build");
+        }
+        List<PluginRegistryInfo> pluginRegistryInfos = buildContainer.pluginRegistryInfos;
+        boolean isRegister = buildContainer.buildType == BuildTypeEnum.REGISTER;
+        contextLock.lock();
+        try {
+            // 构建注册的Class插件监听者
+            pluginListenerFactory.buildListenerClass(applicationContext);
+            if (isRegister) {
+                pluginPostProcessor.register(pluginRegistryInfos);
+            } else {
+                pluginPostProcessor.unregister(pluginRegistryInfos);
+            }
+        } finally {
+            if (isRegister) {
+                AopUtils.recoverAop();
+            }
+            contextLock.unlock();
+            buildContainers.remove();
+        }
+        // 监听者在锁外通知, 不阻塞其他插件的操作
+        for (PluginRegistryInfo pluginRegistryInfo : pluginRegistryInfos) {
+            String pluginId = pluginRegistryInfo.getPluginWrapper().getPluginId();
+            pluginListenerFactory.progress(pluginId, PluginStageEnum.BUILT);
+            if (isRegister) {
+                pluginListenerFactory.register(pluginId);
+            } else {
+                pluginListenerFactory.unregister(pluginId);
+            }
         }
     }
 
@@ -178,4 +503,22 @@ public class DefaultPluginFactory implements PluginFactory {
         }
     }
 
+    /**
+     * 待构建的插件
+     */
+    private static final class BuildContainer {
+
+        private BuildTypeEnum buildType = BuildTypeEnum.BUILD;
+
+        private final List<PluginRegistryInfo> pluginRegistryInfos = new ArrayList<>();
+
+        private void add(PluginRegistryInfo pluginRegistryInfo) {
+            pluginRegistryInfos.add(pluginRegistryInfo);
+        }
+
+        private boolean isEmpty() {
+            return pluginRegistryInfos.isEmpty();
+        }
+    }
+
 }
@@ -1,5 +1,8 @@
 package com.github.thestyleofme.plugin.framework.factory;
 
+import java.util.List;
+import java.util.Map;
+
 import com.github.thestyleofme.plugin.framework.integration.PluginListenerContext;
 import org.pf4j.PluginWrapper;
 
@@ -26,6 +29,16 @@ public interface PluginFactory extends PluginListenerContext {
      */
     PluginFactory register(PluginWrapper pluginWrapper);
 
+    /**
+     * 批量注册插件。插件中与Spring上下文无关的准备阶段会并行执行, 插件准备完成且其依赖的插件(插件描述中的依赖、
+     * @Caller 调用的 @Supplier 所在的插件)注册完成后即注册到Spring, 没有依赖关系的插件按照集合顺序注册。
+     * 单个插件注册失败不会影响无关的插件, 依赖它的插件同样注册失败。
+     *
+     * @param pluginWrappers 插件集合
+     * @return 注册失败的插件id及其异常, 全部成功时返回空集合
+     */
+    Map<String, Exception> register(List<PluginWrapper> pluginWrappers);
+
     /**
      * 注销插件。
      *
@@ -34,6 +47,23 @@ public interface PluginFactory extends PluginListenerContext {
      */
     PluginFactory unregister(String pluginId);
 
+    /**
+     * 升级插件。使用新版本插件替换已注册的同id插件, 注册与切换在一次调用中完成, 不需要再调用 build。
+     * 旧版本的bean保持可用, 直到调用 {@link #release(PluginWrapper)}。
+     * 新版本注册失败时, 旧版本保持注册的状态。
+     *
+     * @param pluginWrapper 新版本插件
+     * @return 插件工厂
+     */
+    PluginFactory upgrade(PluginWrapper pluginWrapper);
+
+    /**
+     * 卸载升级后被替换的旧版本插件的bean。旧版本排空后调用
+     *
+     * @param pluginWrapper 旧版本插件
+     */
+    void release(PluginWrapper pluginWrapper);
+
     /**
      * 注册或者注销后的构建调用
      */
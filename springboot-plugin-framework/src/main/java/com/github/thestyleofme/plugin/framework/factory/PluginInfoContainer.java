@@ -1,15 +1,23 @@
 package com.github.thestyleofme.plugin.framework.factory;
 
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
+import com.github.thestyleofme.plugin.framework.constants.BaseConstants;
 import org.springframework.util.StringUtils;
 
 /**
  * <p>
  * 插件信息共享容器
+ * <p>
+ * 插件注册的bean名称以双向索引保存: bean名称到插件id, 插件id到bean名称集合, 查找均为一次哈希查找。
+ * 不同插件的注册、卸载可能并发执行, 同一插件的两个方向的修改在该插件的 compute 中完成
+ * <p>
+ * 插件升级时新版本的bean以带后缀的名称注册, 与旧版本的bean同时存在, 见 {@link #startStandby(String)}
  * </p>
  *
  * @author isaac 2020/6/16 10:26
@@ -22,9 +30,20 @@ public class PluginInfoContainer {
     }
 
     /**
-     * 全局插件中定义的BaneName
+     * 全局插件中定义的BeanName与所属的插件id。Spring容器中bean名称唯一, 一个bean名称只属于一个插件
+     */
+    private static final Map<String, String> BEAN_NAME_PLUGIN_IDS = new ConcurrentHashMap<>();
+
+    /**
+     * 插件id与插件中定义的BeanName
+     */
+    private static final Map<String, Set<String>> PLUGIN_BEAN_NAMES = new ConcurrentHashMap<>();
+
+    /**
+     * 正在升级的插件id与新版本bean名称的后缀
      */
-    private static final Map<String, Set<String>> SPRING_REGISTER_BEAN_NAMES = new ConcurrentHashMap<>();
+    private static final Map<String, String> STANDBY_SUFFIXES = new ConcurrentHashMap<>();
+    private static final AtomicLong STANDBY_SEQUENCE = new AtomicLong();
 
     /**
      * 添加注册的bean名称
@@ -33,9 +52,21 @@ public class PluginInfoContainer {
      * @param beanName 注册的bean名称
      */
     public static void addRegisterBeanName(String pluginId, String beanName) {
-        if (!StringUtils.isEmpty(beanName)) {
-            Set<String> beanNames = SPRING_REGISTER_BEAN_NAMES.computeIfAbsent(pluginId, k -> new HashSet<>());
+        if (StringUtils.isEmpty(beanName)) {
+            return;
+        }
+        String[] previous = new String[1];
+        PLUGIN_BEAN_NAMES.compute(pluginId, (key, beanNames) -> {
+            if (beanNames == null) {
+                beanNames = ConcurrentHashMap.newKeySet();
+            }
             beanNames.add(beanName);
+            previous[0] = BEAN_NAME_PLUGIN_IDS.put(beanName, pluginId);
+            return beanNames;
+        });
+        if (previous[0] != null && !previous[0].equals(pluginId)) {
+            // bean名称转移到了当前插件, 从原插件中删除
+            removeFromPlugin(previous[0], beanName);
         }
     }
 
@@ -46,10 +77,15 @@ public class PluginInfoContainer {
      * @param beanName 注册的bean名称
      */
     public static void removeRegisterBeanName(String pluginId, String beanName) {
-        Set<String> beanNames = SPRING_REGISTER_BEAN_NAMES.get(pluginId);
-        if (beanNames != null) {
-            beanNames.remove(beanName);
+        if (beanName == null) {
+            return;
         }
+        PLUGIN_BEAN_NAMES.computeIfPresent(pluginId, (key, beanNames) -> {
+            beanNames.remove(beanName);
+            // 只删除属于该插件的记录, bean名称可能已由其他插件注册
+            BEAN_NAME_PLUGIN_IDS.remove(beanName, pluginId);
+            return beanNames.isEmpty() ? null : beanNames;
+        });
     }
 
     /**
@@ -60,12 +96,10 @@ public class PluginInfoContainer {
      * @return true 存在。false不存在
      */
     public static boolean existRegisterBeanName(String pluginId, String beanName) {
-        Set<String> beanNames = SPRING_REGISTER_BEAN_NAMES.get(pluginId);
-        if (beanNames != null) {
-            return beanNames.contains(beanName);
-        } else {
+        if (pluginId == null || beanName == null) {
             return false;
         }
+        return pluginId.equals(BEAN_NAME_PLUGIN_IDS.get(beanName));
     }
 
     /**
@@ -75,11 +109,70 @@ public class PluginInfoContainer {
      * @return true 存在。false不存在
      */
     public static boolean existRegisterBeanName(String beanName) {
-        for (Set<String> beanNames : SPRING_REGISTER_BEAN_NAMES.values()) {
-            if (beanNames.contains(beanName)) {
-                return true;
-            }
+        return beanName != null && BEAN_NAME_PLUGIN_IDS.containsKey(beanName);
+    }
+
+    /**
+     * 得到注册bean名称的插件id
+     *
+     * @param beanName 注册的bean名称
+     * @return 插件id, 不是插件注册的bean时为空
+     */
+    public static String getPluginId(String beanName) {
+        return beanName == null ? null : BEAN_NAME_PLUGIN_IDS.get(beanName);
+    }
+
+    /**
+     * 得到插件注册的bean名称
+     *
+     * @param pluginId 插件id
+     * @return bean名称的快照
+     */
+    public static Set<String> getRegisterBeanNames(String pluginId) {
+        Set<String> beanNames = pluginId == null ? null : PLUGIN_BEAN_NAMES.get(pluginId);
+        if (beanNames == null) {
+            return Collections.emptySet();
         }
-        return false;
+        return Collections.unmodifiableSet(new HashSet<>(beanNames));
+    }
+
+    /**
+     * 开始注册插件的新版本。此后该插件注册的bean名称带有本次升级的后缀, 不与仍在使用的旧版本的bean名称冲突
+     *
+     * @param pluginId 插件id
+     */
+    public static void startStandby(String pluginId) {
+        STANDBY_SUFFIXES.put(pluginId, BaseConstants.Symbol.AT + "standby" + STANDBY_SEQUENCE.incrementAndGet());
+    }
+
+    /**
+     * 结束注册插件的新版本
+     *
+     * @param pluginId 插件id
+     */
+    public static void stopStandby(String pluginId) {
+        STANDBY_SUFFIXES.remove(pluginId);
+    }
+
+    /**
+     * 得到插件注册bean时使用的名称
+     *
+     * @param pluginId 插件id
+     * @param beanName bean名称
+     * @return 插件正在注册新版本时为带后缀的名称, 否则为原名称
+     */
+    public static String getStandbyBeanName(String pluginId, String beanName) {
+        String suffix = pluginId == null ? null : STANDBY_SUFFIXES.get(pluginId);
+        return suffix == null ? beanName : beanName + suffix;
+    }
+
+    private static void removeFromPlugin(String pluginId, String beanName) {
+        PLUGIN_BEAN_NAMES.computeIfPresent(pluginId, (key, beanNames) -> {
+            // 原插件可能已重新注册该bean名称
+            if (!pluginId.equals(BEAN_NAME_PLUGIN_IDS.get(beanName))) {
+                beanNames.remove(beanName);
+            }
+            return beanNames.isEmpty() ? null : beanNames;
+        });
     }
 }
@@ -0,0 +1,299 @@
+package com.github.thestyleofme.plugin.framework.factory;
+
+import java.util.*;
+import java.util.function.Predicate;
+
+import com.github.thestyleofme.plugin.framework.annotation.Caller;
+import com.github.thestyleofme.plugin.framework.annotation.Supplier;
+import com.github.thestyleofme.plugin.framework.exceptions.PluginException;
+import com.github.thestyleofme.plugin.framework.factory.process.pipe.classs.group.CallerGroup;
+import com.github.thestyleofme.plugin.framework.factory.process.pipe.classs.group.SupplierGroup;
+import org.pf4j.PluginDependency;
+
+/**
+ * <p>
+ * 批量注册插件时的依赖图。边来自插件描述中的依赖, 以及准备阶段分组得到的 @Caller 到 @Supplier 的引用。
+ * 插件准备完成且其依赖的插件注册完成后即可注册, 不需要等待其他无关插件。
+ * 依赖的插件注册失败时, 依赖它的插件同样失败
+ * </p>
+ *
+ * @author isaac 2020/10/24 9:30
+ * @since 1.0
+ */
+class PluginRegisterGraph {
+
+    private final Map<String, Node> nodes = new LinkedHashMap<>();
+
+    /**
+     * 判断 @Supplier 是否已由其他插件注册
+     */
+    private final Predicate<String> existSupplier;
+
+    private int depth = 0;
+
+    /**
+     * @param registerPluginInfos 插件注册的信息集合, 决定同一层插件的注册顺序
+     * @param existSupplier       判断 @Supplier 是否已由其他插件注册
+     */
+    PluginRegisterGraph(List<PluginRegistryInfo> registerPluginInfos, Predicate<String> existSupplier) {
+        this.existSupplier = existSupplier;
+        for (PluginRegistryInfo registerPluginInfo : registerPluginInfos) {
+            nodes.put(registerPluginInfo.getPluginWrapper().getPluginId(), new Node(registerPluginInfo));
+        }
+    }
+
+    /**
+     * 插件准备完成, 记录其提供与调用的 @Supplier。准备期间已因依赖的插件失败而失败的插件保持失败
+     *
+     * @param pluginId 插件id
+     */
+    void prepared(String pluginId) {
+        Node node = nodes.get(pluginId);
+        if (node.state == State.FAILED) {
+            return;
+        }
+        PluginRegistryInfo registerPluginInfo = node.registerPluginInfo;
+        for (Class<?> supplierClass : registerPluginInfo.getGroupClasses(SupplierGroup.GROUP_ID)) {
+            Supplier supplier = supplierClass.getAnnotation(Supplier.class);
+            if (supplier != null) {
+                node.suppliers.add(supplier.value());
+            }
+        }
+        for (Class<?> callerClass : registerPluginInfo.getGroupClasses(CallerGroup.GROUP_ID)) {
+            Caller caller = callerClass.getAnnotation(Caller.class);
+            if (caller != null) {
+                node.callers.add(caller.value());
+            }
+        }
+        // 调用本插件的 @Supplier 不产生依赖
+        node.callers.removeAll(node.suppliers);
+        node.state = State.PREPARED;
+    }
+
+    /**
+     * 插件注册完成
+     *
+     * @param pluginId 插件id
+     */
+    void registered(String pluginId) {
+        Node node = nodes.get(pluginId);
+        node.state = State.REGISTERED;
+        depth = Math.max(depth, node.layer);
+    }
+
+    /**
+     * 插件准备或注册失败, 依赖它的插件同样失败
+     *
+     * @param pluginId 插件id
+     * @return 因依赖失败而失败的插件id及其异常, 按注册顺序排列
+     */
+    Map<String, Exception> failed(String pluginId) {
+        Map<String, Exception> dependentFailures = new LinkedHashMap<>();
+        nodes.get(pluginId).state = State.FAILED;
+        Deque<String> failedIds = new ArrayDeque<>();
+        failedIds.add(pluginId);
+        while (!failedIds.isEmpty()) {
+            Node failedNode = nodes.get(failedIds.poll());
+            for (Node node : nodes.values()) {
+                if (node.state == State.FAILED || node.state == State.REGISTERED || !dependsOn(node, failedNode)) {
+                    continue;
+                }
+                node.state = State.FAILED;
+                String dependentId = node.getPluginId();
+                dependentFailures.put(dependentId, new PluginException("The plugin '" + dependentId +
+                        "' depends on plugin '" + failedNode.getPluginId() + "', which registry failure"));
+                failedIds.add(dependentId);
+            }
+        }
+        return dependentFailures;
+    }
+
+    /**
+     * 取出可以注册的插件。存在仍在准备的插件时, 只返回依赖均已注册的插件;
+     * 所有插件准备完成后, 剩余的插件之间相互调用时(调用者在构建阶段才绑定), 按原顺序返回其中插件描述的依赖均已满足的插件,
+     * 插件描述的依赖未满足的插件继续等待
+     *
+     * @return 可以注册的插件, 没有时为空集合
+     */
+    List<PluginRegistryInfo> pollReady() {
+        List<PluginRegistryInfo> ready = new ArrayList<>();
+        boolean preparing = false;
+        for (Node node : nodes.values()) {
+            if (node.state == State.PENDING) {
+                preparing = true;
+            } else if (node.state == State.PREPARED && isReady(node)) {
+                ready.add(node.registerPluginInfo);
+            }
+        }
+        if (ready.isEmpty() && !preparing) {
+            for (Node node : nodes.values()) {
+                if (node.state == State.PREPARED && isDependenciesRegistered(node)) {
+                    node.layer = depth + 1;
+                    ready.add(node.registerPluginInfo);
+                }
+            }
+        }
+        for (PluginRegistryInfo registerPluginInfo : ready) {
+            nodes.get(registerPluginInfo.getPluginWrapper().getPluginId()).state = State.REGISTERING;
+        }
+        return ready;
+    }
+
+    /**
+     * 所有插件准备完成后, 仍然无法注册的插件失败。插件描述的依赖由 pf4j 检查, 正常情况下不存在
+     *
+     * @return 无法注册的插件id及其异常, 按注册顺序排列
+     */
+    Map<String, Exception> unresolved() {
+        Map<String, Exception> unresolvedFailures = new LinkedHashMap<>();
+        for (Node node : nodes.values()) {
+            if (node.state == State.PREPARED) {
+                node.state = State.FAILED;
+                unresolvedFailures.put(node.getPluginId(), new PluginException("The plugin '" + node.getPluginId() +
+                        "' can't be registered, its dependencies are unresolved"));
+            }
+        }
+        return unresolvedFailures;
+    }
+
+    /**
+     * 插件是否已失败。同时取出的相互调用的插件, 其中一个注册失败时, 另一个不再注册
+     *
+     * @param pluginId 插件id
+     * @return boolean
+     */
+    boolean isFailed(String pluginId) {
+        return nodes.get(pluginId).state == State.FAILED;
+    }
+
+    /**
+     * 得到已注册插件的依赖层数, 即最长依赖链上的插件个数
+     *
+     * @return 依赖层数
+     */
+    int getDepth() {
+        return depth;
+    }
+
+    private boolean isReady(Node node) {
+        if (!isDependenciesRegistered(node)) {
+            return false;
+        }
+        int layer = 1;
+        for (PluginDependency dependency : node.getDependencies()) {
+            Node dependencyNode = nodes.get(dependency.getPluginId());
+            if (dependencyNode != null && dependencyNode.state == State.REGISTERED) {
+                layer = Math.max(layer, dependencyNode.layer + 1);
+            }
+        }
+        for (String supplierName : node.callers) {
+            Node supplierNode = getSupplierNode(supplierName);
+            if (supplierNode != null) {
+                if (supplierNode.state != State.REGISTERED) {
+                    return false;
+                }
+                layer = Math.max(layer, supplierNode.layer + 1);
+            } else if (!existSupplier.test(supplierName) && isPreparing()) {
+                // 提供者可能是仍在准备的插件
+                return false;
+            }
+        }
+        node.layer = layer;
+        return true;
+    }
+
+    /**
+     * 插件描述的依赖是否均已注册。不在本批中的依赖与失败的可选依赖不需要等待
+     */
+    private boolean isDependenciesRegistered(Node node) {
+        for (PluginDependency dependency : node.getDependencies()) {
+            Node dependencyNode = nodes.get(dependency.getPluginId());
+            if (dependencyNode == null || (dependencyNode.state == State.FAILED && dependency.isOptional())) {
+                continue;
+            }
+            if (dependencyNode.state != State.REGISTERED) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean dependsOn(Node node, Node dependencyNode) {
+        for (PluginDependency dependency : node.getDependencies()) {
+            if (!dependency.isOptional() && dependency.getPluginId().equals(dependencyNode.getPluginId())) {
+                return true;
+            }
+        }
+        for (String supplierName : node.callers) {
+            if (dependencyNode.suppliers.contains(supplierName)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private Node getSupplierNode(String supplierName) {
+        for (Node node : nodes.values()) {
+            if (node.suppliers.contains(supplierName)) {
+                return node;
+            }
+        }
+        return null;
+    }
+
+    private boolean isPreparing() {
+        for (Node node : nodes.values()) {
+            if (node.state == State.PENDING) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private enum State {
+        /**
+         * 准备中
+         */
+        PENDING,
+        /**
+         * 准备完成, 等待依赖的插件注册
+         */
+        PREPARED,
+        /**
+         * 已取出, 正在注册
+         */
+        REGISTERING,
+        /**
+         * 注册完成
+         */
+        REGISTERED,
+        /**
+         * 准备或注册失败
+         */
+        FAILED
+    }
+
+    private static class Node {
+
+        private final PluginRegistryInfo registerPluginInfo;
+        private final Set<String> suppliers = new HashSet<>();
+        private final Set<String> callers = new HashSet<>();
+        private State state = State.PENDING;
+        private int layer = 1;
+
+        private Node(PluginRegistryInfo registerPluginInfo) {
+            this.registerPluginInfo = registerPluginInfo;
+        }
+
+        private String getPluginId() {
+            return registerPluginInfo.getPluginWrapper().getPluginId();
+        }
+
+        private List<PluginDependency> getDependencies() {
+            List<PluginDependency> dependencies =
+                    registerPluginInfo.getPluginWrapper().getDescriptor().getDependencies();
+            return dependencies == null ? Collections.emptyList() : dependencies;
+        }
+    }
+
+}
@@ -1,6 +1,8 @@
 package com.github.thestyleofme.plugin.framework.factory;
 
 import java.text.MessageFormat;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.function.Consumer;
 
 import com.github.thestyleofme.plugin.framework.exceptions.PluginException;
@@ -8,6 +10,7 @@ import com.github.thestyleofme.plugin.framework.factory.process.pipe.bean.name.P
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.AnnotatedGenericBeanDefinition;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
 import org.springframework.beans.factory.support.BeanNameGenerator;
 import org.springframework.context.ApplicationContext;
 import org.springframework.context.support.GenericApplicationContext;
@@ -81,16 +84,18 @@ public class SpringBeanRegister {
         BeanNameGenerator beanNameGenerator =
                 new PluginAnnotationBeanNameGenerator(pluginId, suffixName);
         String beanName = beanNameGenerator.generateBeanName(beanDefinition, applicationContext);
-        if (PluginInfoContainer.existRegisterBeanName((beanName))) {
-            logger.debug("Bean name {} already exist of {}", beanName, aClass.getName());
+        String registerName = PluginInfoContainer.getStandbyBeanName(pluginId, beanName);
+        if (PluginInfoContainer.existRegisterBeanName((registerName))) {
+            logger.debug("Bean name {} already exist of {}", registerName, aClass.getName());
         } else {
             if (consumer != null) {
                 consumer.accept(beanDefinition);
             }
-            applicationContext.registerBeanDefinition(beanName, beanDefinition);
-            PluginInfoContainer.addRegisterBeanName(pluginId, beanName);
+            applicationContext.registerBeanDefinition(registerName, beanDefinition);
+            PluginInfoContainer.addRegisterBeanName(pluginId, registerName);
+            registerAlias(registerName, beanName);
         }
-        return beanName;
+        return registerName;
     }
 
     /**
@@ -99,9 +104,10 @@ public class SpringBeanRegister {
      * @param pluginId 插件id
      * @param beanName 指定的bean名称
      * @param aClass   注册的类
+     * @return 注册的bean名称
      */
-    public void registerOfSpecifyName(String pluginId, String beanName, Class<?> aClass) {
-        registerOfSpecifyName(pluginId, beanName, aClass, null);
+    public String registerOfSpecifyName(String pluginId, String beanName, Class<?> aClass) {
+        return registerOfSpecifyName(pluginId, beanName, aClass, null);
     }
 
     /**
@@ -111,14 +117,17 @@ public class SpringBeanRegister {
      * @param beanName 指定的bean名称
      * @param aClass   注册的类
      * @param consumer 注册异常
+     * @return 注册的bean名称, 插件升级时带有后缀
      */
-    public void registerOfSpecifyName(String pluginId,
-                                      String beanName,
-                                      Class<?> aClass,
-                                      Consumer<AnnotatedGenericBeanDefinition> consumer) {
+    public String registerOfSpecifyName(String pluginId,
+                                        String beanName,
+                                        Class<?> aClass,
+                                        Consumer<AnnotatedGenericBeanDefinition> consumer) {
         AnnotatedGenericBeanDefinition beanDefinition = new
                 AnnotatedGenericBeanDefinition(aClass);
-        if (PluginInfoContainer.existRegisterBeanName((beanName))) {
+        String registerName = PluginInfoContainer.getStandbyBeanName(pluginId, beanName);
+        if (PluginInfoContainer.existRegisterBeanName((beanName)) ||
+                PluginInfoContainer.existRegisterBeanName(registerName) || isOtherPluginAlias(pluginId, beanName)) {
             String error = MessageFormat.format("Bean name {0} already exist of {1}",
                     beanName, aClass.getName());
             throw new PluginException(error);
@@ -126,8 +135,68 @@ public class SpringBeanRegister {
         if (consumer != null) {
             consumer.accept(beanDefinition);
         }
-        PluginInfoContainer.addRegisterBeanName(pluginId, beanName);
-        applicationContext.registerBeanDefinition(beanName, beanDefinition);
+        PluginInfoContainer.addRegisterBeanName(pluginId, registerName);
+        applicationContext.registerBeanDefinition(registerName, beanDefinition);
+        registerAlias(registerName, beanName);
+        return registerName;
+    }
+
+    /**
+     * 注册单例对象
+     *
+     * @param pluginId  插件id
+     * @param beanName  bean名称
+     * @param singleton 单例对象
+     * @return 注册的bean名称, 插件升级时带有后缀
+     */
+    public String registerSingleton(String pluginId, String beanName, Object singleton) {
+        String registerName = PluginInfoContainer.getStandbyBeanName(pluginId, beanName);
+        DefaultListableBeanFactory beanFactory = applicationContext.getDefaultListableBeanFactory();
+        if (!beanFactory.containsSingleton(registerName)) {
+            beanFactory.registerSingleton(registerName, singleton);
+            registerAlias(registerName, beanName);
+        }
+        PluginInfoContainer.addRegisterBeanName(pluginId, registerName);
+        return registerName;
+    }
+
+    /**
+     * 停用插件注册的bean。插件升级时旧版本的bean在排空前继续使用, 但不再属于该插件, 也不再作为自动注入的候选,
+     * 按名称、类型获取到的是新版本的bean
+     *
+     * @param pluginId 插件id
+     * @return 停用的bean名称与指向它的别名
+     */
+    public Map<String, String[]> deactivate(String pluginId) {
+        DefaultListableBeanFactory beanFactory = applicationContext.getDefaultListableBeanFactory();
+        Map<String, String[]> beanNames = new HashMap<>();
+        for (String beanName : PluginInfoContainer.getRegisterBeanNames(pluginId)) {
+            beanNames.put(beanName, beanFactory.getAliases(beanName));
+            setAutowireCandidate(beanFactory, beanName, false);
+            PluginInfoContainer.removeRegisterBeanName(pluginId, beanName);
+        }
+        return beanNames;
+    }
+
+    /**
+     * 恢复停用的bean, 用于插件升级失败时恢复旧版本
+     *
+     * @param pluginId  插件id
+     * @param beanNames 停用的bean名称与指向它的别名
+     */
+    public void activate(String pluginId, Map<String, String[]> beanNames) {
+        DefaultListableBeanFactory beanFactory = applicationContext.getDefaultListableBeanFactory();
+        beanNames.forEach((beanName, aliases) -> {
+            if (applicationContext.isAlias(beanName)) {
+                // 新版本未能删除的别名
+                applicationContext.removeAlias(beanName);
+            }
+            setAutowireCandidate(beanFactory, beanName, true);
+            PluginInfoContainer.addRegisterBeanName(pluginId, beanName);
+            for (String alias : aliases) {
+                registerAlias(beanName, alias);
+            }
+        });
     }
 
 
@@ -139,8 +208,83 @@ public class SpringBeanRegister {
      */
     public void unregister(String pluginId, String beanName) {
         PluginInfoContainer.removeRegisterBeanName(pluginId, beanName);
+        removeAliases(beanName);
         applicationContext.removeBeanDefinition(beanName);
     }
 
+    /**
+     * 卸载单例对象
+     *
+     * @param pluginId 插件id
+     * @param beanName bean名称
+     */
+    public void unregisterSingleton(String pluginId, String beanName) {
+        DefaultListableBeanFactory beanFactory = applicationContext.getDefaultListableBeanFactory();
+        if (beanFactory.containsSingleton(beanName)) {
+            removeAliases(beanName);
+            beanFactory.destroySingleton(beanName);
+            PluginInfoContainer.removeRegisterBeanName(pluginId, beanName);
+        }
+    }
+
+    /**
+     * 插件升级时新版本的bean以带后缀的名称注册, 以原名称作为别名。Spring按名称获取bean时先解析别名,
+     * 因此原名称得到新版本的bean, 旧版本的bean仍以原名称存在, 直到排空后卸载
+     *
+     * @param registerName 注册的bean名称
+     * @param beanName     原名称
+     */
+    private void registerAlias(String registerName, String beanName) {
+        if (registerName.equals(beanName)) {
+            return;
+        }
+        if (applicationContext.isAlias(beanName)) {
+            // 上一次升级注册的别名, 指向即将卸载的旧版本
+            applicationContext.removeAlias(beanName);
+        }
+        applicationContext.registerAlias(registerName, beanName);
+    }
+
+    /**
+     * 删除指向该bean的别名。旧版本的bean名称已作为新版本的别名时, 别名属于新版本, 不删除
+     *
+     * @param beanName bean名称
+     */
+    private void removeAliases(String beanName) {
+        if (applicationContext.isAlias(beanName)) {
+            return;
+        }
+        for (String alias : applicationContext.getAliases(beanName)) {
+            applicationContext.removeAlias(alias);
+        }
+    }
+
+    /**
+     * 名称是否为其他插件的bean的别名
+     *
+     * @param pluginId 插件id
+     * @param beanName bean名称
+     * @return boolean
+     */
+    private boolean isOtherPluginAlias(String pluginId, String beanName) {
+        if (!applicationContext.isAlias(beanName)) {
+            return false;
+        }
+        String aliasPluginId = PluginInfoContainer.getPluginId(
+                applicationContext.getDefaultListableBeanFactory().canonicalName(beanName));
+        return aliasPluginId != null && !aliasPluginId.equals(pluginId);
+    }
+
+    private void setAutowireCandidate(DefaultListableBeanFactory beanFactory, String beanName,
+                                      boolean autowireCandidate) {
+        if (!beanFactory.containsBeanDefinition(beanName)) {
+            // 单例对象没有bean定义
+            return;
+        }
+        beanFactory.getBeanDefinition(beanName).setAutowireCandidate(autowireCandidate);
+        // 已创建的bean按合并后的bean定义判断是否为候选
+        beanFactory.getMergedBeanDefinition(beanName).setAutowireCandidate(autowireCandidate);
+    }
+
 
 }
@@ -20,6 +20,16 @@ public interface PluginPipeProcessor {
         // ignore
     }
 
+    /**
+     * 注册前的准备阶段。只处理与Spring上下文无关的操作(例如类加载分组、配置文件解析),
+     * 批量注册时会被多个插件并行调用, 因此实现中不允许修改Spring容器
+     *
+     * @param pluginRegistryInfo 插件注册的信息
+     */
+    default void prepare(PluginRegistryInfo pluginRegistryInfo) {
+        // ignore
+    }
+
     /**
      * 处理该插件的注册
      *
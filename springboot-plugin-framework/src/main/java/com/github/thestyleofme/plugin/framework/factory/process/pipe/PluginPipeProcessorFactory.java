@@ -1,8 +1,10 @@
 package com.github.thestyleofme.plugin.framework.factory.process.pipe;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
+import com.github.thestyleofme.plugin.framework.enums.ProcessOperationEnum;
 import com.github.thestyleofme.plugin.framework.extension.ExtensionInitializer;
 import com.github.thestyleofme.plugin.framework.factory.PluginRegistryInfo;
 import com.github.thestyleofme.plugin.framework.factory.process.pipe.bean.BasicBeanProcessor;
@@ -10,6 +12,7 @@ import com.github.thestyleofme.plugin.framework.factory.process.pipe.bean.Config
 import com.github.thestyleofme.plugin.framework.factory.process.pipe.bean.ConfigFileBeanProcessor;
 import com.github.thestyleofme.plugin.framework.factory.process.pipe.bean.OneselfListenerStopEventProcessor;
 import com.github.thestyleofme.plugin.framework.factory.process.pipe.classs.PluginClassProcess;
+import com.github.thestyleofme.plugin.framework.metrics.PluginStageRecorder;
 import org.springframework.context.ApplicationContext;
 
 /**
@@ -24,9 +27,15 @@ public class PluginPipeProcessorFactory implements PluginPipeProcessor {
 
     private final ApplicationContext applicationContext;
     private final List<PluginPipeProcessor> pluginPipeProcessors = new ArrayList<>();
+    private final PluginStageRecorder stageRecorder;
 
     public PluginPipeProcessorFactory(ApplicationContext applicationContext) {
+        this(applicationContext, null);
+    }
+
+    public PluginPipeProcessorFactory(ApplicationContext applicationContext, PluginStageRecorder stageRecorder) {
         this.applicationContext = applicationContext;
+        this.stageRecorder = stageRecorder;
     }
 
     @Override
@@ -48,18 +57,46 @@ public class PluginPipeProcessorFactory implements PluginPipeProcessor {
         }
     }
 
+    @Override
+    public void prepare(PluginRegistryInfo pluginRegistryInfo) {
+        for (PluginPipeProcessor pluginPipeProcessor : pluginPipeProcessors) {
+            execute(pluginRegistryInfo, ProcessOperationEnum.PREPARE, pluginPipeProcessor,
+                    () -> pluginPipeProcessor.prepare(pluginRegistryInfo));
+        }
+    }
+
     @Override
     public void register(PluginRegistryInfo pluginRegistryInfo) {
         for (PluginPipeProcessor pluginPipeProcessor : pluginPipeProcessors) {
-            pluginPipeProcessor.register(pluginRegistryInfo);
+            execute(pluginRegistryInfo, ProcessOperationEnum.REGISTER, pluginPipeProcessor,
+                    () -> pluginPipeProcessor.register(pluginRegistryInfo));
         }
     }
 
     @Override
     public void unregister(PluginRegistryInfo pluginRegistryInfo) {
         for (PluginPipeProcessor pluginPipeProcessor : pluginPipeProcessors) {
-            pluginPipeProcessor.unregister(pluginRegistryInfo);
+            execute(pluginRegistryInfo, ProcessOperationEnum.UNREGISTER, pluginPipeProcessor,
+                    () -> pluginPipeProcessor.unregister(pluginRegistryInfo));
+        }
+    }
+
+    /**
+     * 执行处理者, 并记录其耗时
+     *
+     * @param pluginRegistryInfo  插件注册的信息
+     * @param operation           执行的操作
+     * @param pluginPipeProcessor 处理者
+     * @param action              处理者的执行
+     */
+    private void execute(PluginRegistryInfo pluginRegistryInfo, ProcessOperationEnum operation,
+                         PluginPipeProcessor pluginPipeProcessor, Runnable action) {
+        if (stageRecorder == null) {
+            action.run();
+            return;
         }
+        stageRecorder.record(Collections.singletonList(pluginRegistryInfo.getPluginWrapper().getPluginId()),
+                operation, pluginPipeProcessor, action);
     }
 
 }
@@ -1,19 +1,16 @@
 package com.github.thestyleofme.plugin.framework.factory.process.pipe.bean;
 
-import java.util.HashSet;
-import java.util.List;
-import java.util.Set;
+import java.util.*;
 
 import com.github.thestyleofme.plugin.framework.annotation.ConfigDefinition;
-import com.github.thestyleofme.plugin.framework.factory.PluginInfoContainer;
 import com.github.thestyleofme.plugin.framework.factory.PluginRegistryInfo;
+import com.github.thestyleofme.plugin.framework.factory.SpringBeanRegister;
 import com.github.thestyleofme.plugin.framework.factory.process.pipe.PluginPipeProcessor;
 import com.github.thestyleofme.plugin.framework.factory.process.pipe.bean.configuration.ConfigurationParser;
 import com.github.thestyleofme.plugin.framework.factory.process.pipe.bean.configuration.PluginConfigDefinition;
 import com.github.thestyleofme.plugin.framework.factory.process.pipe.bean.configuration.YamlConfigurationParser;
 import com.github.thestyleofme.plugin.framework.factory.process.pipe.classs.group.ConfigDefinitionGroup;
 import com.github.thestyleofme.plugin.framework.integration.IntegrationConfiguration;
-import org.springframework.beans.factory.support.DefaultListableBeanFactory;
 import org.springframework.context.ApplicationContext;
 import org.springframework.util.StringUtils;
 
@@ -28,16 +25,16 @@ import org.springframework.util.StringUtils;
 public class ConfigFileBeanProcessor implements PluginPipeProcessor {
 
     private static final String KEY = "ConfigFileBeanProcessor";
+    private static final String PREPARE_KEY = "ConfigFileBeanProcessorParseObjects";
 
     private final ConfigurationParser configurationParser;
-    private final DefaultListableBeanFactory defaultListableBeanFactory;
+    private final SpringBeanRegister springBeanRegister;
 
     public ConfigFileBeanProcessor(ApplicationContext mainApplicationContext) {
         IntegrationConfiguration integrationConfiguration =
                 mainApplicationContext.getBean(IntegrationConfiguration.class);
         this.configurationParser = new YamlConfigurationParser(integrationConfiguration);
-        this.defaultListableBeanFactory = (DefaultListableBeanFactory)
-                mainApplicationContext.getAutowireCapableBeanFactory();
+        this.springBeanRegister = new SpringBeanRegister(mainApplicationContext);
     }
 
 
@@ -47,21 +44,29 @@ public class ConfigFileBeanProcessor implements PluginPipeProcessor {
     }
 
     @Override
-    public void register(PluginRegistryInfo pluginRegistryInfo) {
+    public void prepare(PluginRegistryInfo pluginRegistryInfo) {
         List<Class<?>> configDefinitions =
                 pluginRegistryInfo.getGroupClasses(ConfigDefinitionGroup.GROUP_ID);
         if (configDefinitions == null || configDefinitions.isEmpty()) {
             return;
         }
-        String pluginId = pluginRegistryInfo.getPluginWrapper().getPluginId();
-        Set<String> beanNames = new HashSet<>();
+        Map<String, Object> parseObjects = new LinkedHashMap<>();
         for (Class<?> aClass : configDefinitions) {
-            String beanName = registry(pluginRegistryInfo, aClass);
-            if (!StringUtils.isEmpty(beanName)) {
-                beanNames.add(beanName);
-                PluginInfoContainer.addRegisterBeanName(pluginId, beanName);
-            }
+            parse(pluginRegistryInfo, aClass, parseObjects);
         }
+        pluginRegistryInfo.addProcessorInfo(PREPARE_KEY, parseObjects);
+    }
+
+    @Override
+    public void register(PluginRegistryInfo pluginRegistryInfo) {
+        Map<String, Object> parseObjects = pluginRegistryInfo.getProcessorInfo(PREPARE_KEY);
+        if (parseObjects == null || parseObjects.isEmpty()) {
+            return;
+        }
+        String pluginId = pluginRegistryInfo.getPluginWrapper().getPluginId();
+        Set<String> beanNames = new HashSet<>();
+        parseObjects.forEach((beanName, parseObject) ->
+                beanNames.add(springBeanRegister.registerSingleton(pluginId, beanName, parseObject)));
         pluginRegistryInfo.addProcessorInfo(KEY, beanNames);
     }
 
@@ -73,24 +78,21 @@ public class ConfigFileBeanProcessor implements PluginPipeProcessor {
         }
         String pluginId = pluginRegistryInfo.getPluginWrapper().getPluginId();
         for (String beanName : beanNames) {
-            if (defaultListableBeanFactory.containsSingleton(beanName)) {
-                defaultListableBeanFactory.destroySingleton(beanName);
-                PluginInfoContainer.removeRegisterBeanName(pluginId, beanName);
-            }
+            springBeanRegister.unregisterSingleton(pluginId, beanName);
         }
     }
 
     /**
-     * 注册配置文件
+     * 解析配置文件
      *
      * @param pluginRegistryInfo 插件注册的信息
      * @param aClass             配置文件类
-     * @return 注册的bean名称
+     * @param parseObjects       存储bean名称与解析后对象的集合
      */
-    private String registry(PluginRegistryInfo pluginRegistryInfo, Class<?> aClass) {
+    private void parse(PluginRegistryInfo pluginRegistryInfo, Class<?> aClass, Map<String, Object> parseObjects) {
         ConfigDefinition configDefinition = aClass.getAnnotation(ConfigDefinition.class);
         if (configDefinition == null) {
-            return null;
+            return;
         }
         String fileName = configDefinition.value();
         if (StringUtils.isEmpty(fileName)) {
@@ -104,10 +106,7 @@ public class ConfigFileBeanProcessor implements PluginPipeProcessor {
         if (StringUtils.isEmpty(name)) {
             name = aClass.getName();
         }
-        if (!defaultListableBeanFactory.containsSingleton(name)) {
-            defaultListableBeanFactory.registerSingleton(name, parseObject);
-        }
-        return name;
+        parseObjects.put(name, parseObject);
     }
 
 }
@@ -1,18 +1,20 @@
 package com.github.thestyleofme.plugin.framework.factory.process.pipe.bean;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
 
 import com.github.thestyleofme.plugin.framework.factory.PluginRegistryInfo;
 import com.github.thestyleofme.plugin.framework.factory.process.pipe.PluginPipeProcessor;
-import com.github.thestyleofme.plugin.framework.integration.application.PluginApplication;
-import com.github.thestyleofme.plugin.framework.integration.user.PluginUser;
 import com.github.thestyleofme.plugin.framework.realize.BasePlugin;
 import com.github.thestyleofme.plugin.framework.realize.OneselfListener;
 import com.github.thestyleofme.plugin.framework.utils.CommonUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.aop.support.AopUtils;
+import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
 import org.springframework.context.ApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
 
 /**
  * <p>
@@ -27,12 +29,11 @@ public class OneselfListenerStopEventProcessor implements PluginPipeProcessor {
 
     private final Logger log = LoggerFactory.getLogger(this.getClass());
 
-    private final PluginUser pluginUser;
+    private final ConfigurableListableBeanFactory beanFactory;
 
     public OneselfListenerStopEventProcessor(ApplicationContext applicationContext) {
         Objects.requireNonNull(applicationContext);
-        PluginApplication pluginApplication = applicationContext.getBean(PluginApplication.class);
-        this.pluginUser = pluginApplication.getPluginUser();
+        this.beanFactory = ((ConfigurableApplicationContext) applicationContext).getBeanFactory();
     }
 
 
@@ -49,8 +50,7 @@ public class OneselfListenerStopEventProcessor implements PluginPipeProcessor {
     @Override
     public void unregister(PluginRegistryInfo pluginRegistryInfo) {
         BasePlugin basePlugin = pluginRegistryInfo.getBasePlugin();
-        String pluginId = basePlugin.getWrapper().getPluginId();
-        List<OneselfListener> oneselfListeners = pluginUser.getPluginBeans(pluginId, OneselfListener.class);
+        List<OneselfListener> oneselfListeners = getOneselfListeners(pluginRegistryInfo);
         oneselfListeners.stream()
                 .sorted(CommonUtils.orderPriority(OneselfListener::order))
                 .forEach(oneselfListener -> {
@@ -62,4 +62,23 @@ public class OneselfListenerStopEventProcessor implements PluginPipeProcessor {
                     }
                 });
     }
+
+    /**
+     * 得到该插件版本已创建的监听器。插件升级后旧版本的bean在排空前与新版本同时存在, 旧版本的bean名称可能已是
+     * 新版本的别名, 按类型查找时会被跳过, 因此遍历已创建的单例, 并以插件的类加载器区分版本
+     *
+     * @param pluginRegistryInfo 插件注册的信息
+     * @return 监听器集合
+     */
+    private List<OneselfListener> getOneselfListeners(PluginRegistryInfo pluginRegistryInfo) {
+        ClassLoader classLoader = pluginRegistryInfo.getPluginWrapper().getPluginClassLoader();
+        List<OneselfListener> oneselfListeners = new ArrayList<>();
+        for (String beanName : beanFactory.getSingletonNames()) {
+            Object bean = beanFactory.getSingleton(beanName);
+            if (bean instanceof OneselfListener && AopUtils.getTargetClass(bean).getClassLoader() == classLoader) {
+                oneselfListeners.add((OneselfListener) bean);
+            }
+        }
+        return oneselfListeners;
+    }
 }
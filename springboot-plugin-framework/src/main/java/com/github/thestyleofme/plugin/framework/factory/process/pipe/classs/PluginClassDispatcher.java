@@ -0,0 +1,127 @@
+package com.github.thestyleofme.plugin.framework.factory.process.pipe.classs;
+
+import java.lang.annotation.Annotation;
+import java.util.*;
+import java.util.function.Predicate;
+
+import org.springframework.util.ClassUtils;
+import org.springframework.util.ConcurrentReferenceHashMap;
+import org.springframework.util.StringUtils;
+
+/**
+ * <p>
+ * 根据分组器声明的匹配规则建立的分派表。每个类只遍历一次自身的注解, 由注解类型直接得到分组器;
+ * 没有声明匹配规则的分组器仍然调用 filter
+ * </p>
+ *
+ * @author isaac 2020/10/25 14:30
+ * @since 1.0
+ */
+class PluginClassDispatcher {
+
+    private static final String JAVA_ANNOTATION_PACKAGE = "java.lang.annotation.";
+
+    private final Map<Class<? extends Annotation>, List<PluginClassGroup>> annotationGroups = new HashMap<>();
+    private final Map<Class<? extends Annotation>, List<PluginClassGroup>> metaAnnotationGroups = new HashMap<>();
+    private final Map<Class<?>, List<PluginClassGroup>> superTypeGroups = new LinkedHashMap<>();
+    private final Map<PluginClassGroup, Predicate<String>> packageGroups = new LinkedHashMap<>();
+    private final List<PluginClassGroup> filterGroups = new ArrayList<>();
+
+    /**
+     * 注解类型的所有元注解, 包括自身。使用弱引用, 不阻止插件中的注解类被卸载
+     */
+    private final Map<Class<? extends Annotation>, Set<Class<? extends Annotation>>> metaAnnotationCache =
+            new ConcurrentReferenceHashMap<>(64, ConcurrentReferenceHashMap.ReferenceType.WEAK);
+
+    PluginClassDispatcher(List<PluginClassGroup> pluginClassGroups) {
+        for (PluginClassGroup pluginClassGroup : pluginClassGroups) {
+            if (pluginClassGroup == null || StringUtils.isEmpty(pluginClassGroup.groupId())) {
+                continue;
+            }
+            PluginClassMatcher matcher = pluginClassGroup.matcher();
+            if (matcher == null) {
+                filterGroups.add(pluginClassGroup);
+                continue;
+            }
+            for (Class<? extends Annotation> annotationType : matcher.getAnnotationTypes()) {
+                annotationGroups.computeIfAbsent(annotationType, key -> new ArrayList<>()).add(pluginClassGroup);
+            }
+            for (Class<? extends Annotation> annotationType : matcher.getMetaAnnotationTypes()) {
+                metaAnnotationGroups.computeIfAbsent(annotationType, key -> new ArrayList<>()).add(pluginClassGroup);
+            }
+            for (Class<?> superType : matcher.getSuperTypes()) {
+                superTypeGroups.computeIfAbsent(superType, key -> new ArrayList<>()).add(pluginClassGroup);
+            }
+            if (matcher.getPackagePredicate() != null) {
+                packageGroups.put(pluginClassGroup, matcher.getPackagePredicate());
+            }
+        }
+    }
+
+    /**
+     * 得到类所属的分组器
+     *
+     * @param aClass 类
+     * @return 分组器, 不属于任何分组时为空集合
+     */
+    Set<PluginClassGroup> dispatch(Class<?> aClass) {
+        Set<PluginClassGroup> groups = new LinkedHashSet<>();
+        if (!annotationGroups.isEmpty() || !metaAnnotationGroups.isEmpty()) {
+            for (Annotation annotation : aClass.getAnnotations()) {
+                Class<? extends Annotation> annotationType = annotation.annotationType();
+                addGroups(groups, annotationGroups.get(annotationType));
+                if (!metaAnnotationGroups.isEmpty()) {
+                    for (Class<? extends Annotation> metaAnnotationType : getMetaAnnotationTypes(annotationType)) {
+                        addGroups(groups, metaAnnotationGroups.get(metaAnnotationType));
+                    }
+                }
+            }
+        }
+        for (Map.Entry<Class<?>, List<PluginClassGroup>> entry : superTypeGroups.entrySet()) {
+            if (entry.getKey().isAssignableFrom(aClass)) {
+                addGroups(groups, entry.getValue());
+            }
+        }
+        if (!packageGroups.isEmpty()) {
+            String packageName = ClassUtils.getPackageName(aClass);
+            for (Map.Entry<PluginClassGroup, Predicate<String>> entry : packageGroups.entrySet()) {
+                if (entry.getValue().test(packageName)) {
+                    groups.add(entry.getKey());
+                }
+            }
+        }
+        for (PluginClassGroup pluginClassGroup : filterGroups) {
+            if (pluginClassGroup.filter(aClass)) {
+                groups.add(pluginClassGroup);
+            }
+        }
+        return groups;
+    }
+
+    private Set<Class<? extends Annotation>> getMetaAnnotationTypes(Class<? extends Annotation> annotationType) {
+        Set<Class<? extends Annotation>> metaAnnotationTypes = metaAnnotationCache.get(annotationType);
+        if (metaAnnotationTypes == null) {
+            metaAnnotationTypes = new HashSet<>();
+            collectMetaAnnotationTypes(annotationType, metaAnnotationTypes);
+            metaAnnotationCache.put(annotationType, metaAnnotationTypes);
+        }
+        return metaAnnotationTypes;
+    }
+
+    private static void collectMetaAnnotationTypes(Class<? extends Annotation> annotationType,
+                                                   Set<Class<? extends Annotation>> metaAnnotationTypes) {
+        if (annotationType.getName().startsWith(JAVA_ANNOTATION_PACKAGE) || !metaAnnotationTypes.add(annotationType)) {
+            return;
+        }
+        for (Annotation annotation : annotationType.getAnnotations()) {
+            collectMetaAnnotationTypes(annotation.annotationType(), metaAnnotationTypes);
+        }
+    }
+
+    private static void addGroups(Set<PluginClassGroup> groups, List<PluginClassGroup> pluginClassGroups) {
+        if (pluginClassGroups != null) {
+            groups.addAll(pluginClassGroups);
+        }
+    }
+
+}
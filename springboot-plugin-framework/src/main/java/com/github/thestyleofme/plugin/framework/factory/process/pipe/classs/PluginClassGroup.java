@@ -1,5 +1,6 @@
 package com.github.thestyleofme.plugin.framework.factory.process.pipe.classs;
 
+import com.github.thestyleofme.plugin.framework.loader.PluginClassIndex;
 import com.github.thestyleofme.plugin.framework.realize.BasePlugin;
 
 /**
@@ -26,13 +27,36 @@ public interface PluginClassGroup {
      */
     void initialize(BasePlugin basePlugin);
 
+    /**
+     * 声明分组器匹配的注解、父类型与包, 分组时据此建立分派表, 不再对每个类调用 filter。
+     * 返回空时对每个类调用 filter
+     *
+     * @return 匹配规则, 每次返回同一个对象
+     */
+    default PluginClassMatcher matcher() {
+        return null;
+    }
+
     /**
      * 过滤类。
      *
      * @param aClass 类
      * @return 返回true.说明符合该分组器。false不符合该分组器
      */
-    boolean filter(Class<?> aClass);
+    default boolean filter(Class<?> aClass) {
+        PluginClassMatcher matcher = matcher();
+        return matcher != null && matcher.matches(aClass);
+    }
 
+    /**
+     * 根据插件的类索引预先过滤类, 所有分组器都返回false的类不会被加载。类索引由类文件的字节码得到
+     *
+     * @param entry 类索引
+     * @return 返回true.说明类可能符合该分组器。默认根据匹配规则判断, 没有声明时无法判断, 返回true
+     */
+    default boolean preFilter(PluginClassIndex.Entry entry) {
+        PluginClassMatcher matcher = matcher();
+        return matcher == null || matcher.preMatches(entry);
+    }
 
 }
@@ -0,0 +1,146 @@
+package com.github.thestyleofme.plugin.framework.factory.process.pipe.classs;
+
+import java.lang.annotation.Annotation;
+import java.util.*;
+import java.util.function.Predicate;
+
+import com.github.thestyleofme.plugin.framework.loader.PluginClassIndex;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.util.ClassUtils;
+
+/**
+ * <p>
+ * 插件类分组器声明的匹配规则。类存在任一注解、实现或继承任一父类型、或者所在的包符合条件时属于该分组。
+ * 分组时根据所有分组器的声明建立分派表, 每个类只遍历一次自身的注解
+ * </p>
+ *
+ * @author isaac 2020/10/25 14:30
+ * @since 1.0
+ */
+public final class PluginClassMatcher {
+
+    private final Set<Class<? extends Annotation>> annotationTypes = new LinkedHashSet<>();
+    private final Set<Class<? extends Annotation>> metaAnnotationTypes = new LinkedHashSet<>();
+    private final Set<Class<?>> superTypes = new LinkedHashSet<>();
+    private Predicate<String> packagePredicate;
+
+    private PluginClassMatcher() {
+    }
+
+    public static PluginClassMatcher create() {
+        return new PluginClassMatcher();
+    }
+
+    /**
+     * 类上直接存在或继承(@Inherited)的注解
+     *
+     * @param annotationTypes 注解类型
+     * @return this
+     */
+    @SafeVarargs
+    public final PluginClassMatcher annotations(Class<? extends Annotation>... annotationTypes) {
+        this.annotationTypes.addAll(Arrays.asList(annotationTypes));
+        return this;
+    }
+
+    /**
+     * 类上存在的注解, 包括以该注解作为元注解的注解, 例如声明 Component 时同样匹配 Service
+     *
+     * @param metaAnnotationTypes 注解类型
+     * @return this
+     */
+    @SafeVarargs
+    public final PluginClassMatcher metaAnnotations(Class<? extends Annotation>... metaAnnotationTypes) {
+        this.metaAnnotationTypes.addAll(Arrays.asList(metaAnnotationTypes));
+        return this;
+    }
+
+    /**
+     * 类实现的接口或者继承的父类
+     *
+     * @param superTypes 父类型
+     * @return this
+     */
+    public PluginClassMatcher superTypes(Class<?>... superTypes) {
+        this.superTypes.addAll(Arrays.asList(superTypes));
+        return this;
+    }
+
+    /**
+     * 类所在的包。分组时对每个类调用, 可以依赖分组器 initialize 后的状态
+     *
+     * @param packagePredicate 包名条件
+     * @return this
+     */
+    public PluginClassMatcher packages(Predicate<String> packagePredicate) {
+        this.packagePredicate = packagePredicate;
+        return this;
+    }
+
+    public Set<Class<? extends Annotation>> getAnnotationTypes() {
+        return Collections.unmodifiableSet(annotationTypes);
+    }
+
+    public Set<Class<? extends Annotation>> getMetaAnnotationTypes() {
+        return Collections.unmodifiableSet(metaAnnotationTypes);
+    }
+
+    public Set<Class<?>> getSuperTypes() {
+        return Collections.unmodifiableSet(superTypes);
+    }
+
+    public Predicate<String> getPackagePredicate() {
+        return packagePredicate;
+    }
+
+    /**
+     * 判断类是否符合规则
+     *
+     * @param aClass 类
+     * @return boolean
+     */
+    public boolean matches(Class<?> aClass) {
+        if (aClass == null) {
+            return false;
+        }
+        for (Class<? extends Annotation> annotationType : annotationTypes) {
+            if (aClass.getAnnotation(annotationType) != null) {
+                return true;
+            }
+        }
+        for (Class<? extends Annotation> metaAnnotationType : metaAnnotationTypes) {
+            if (AnnotatedElementUtils.isAnnotated(aClass, metaAnnotationType)) {
+                return true;
+            }
+        }
+        for (Class<?> superType : superTypes) {
+            if (superType.isAssignableFrom(aClass)) {
+                return true;
+            }
+        }
+        return packagePredicate != null && packagePredicate.test(ClassUtils.getPackageName(aClass));
+    }
+
+    /**
+     * 根据类索引判断类是否可能符合规则。索引中没有元注解与父类, 存在这类声明时无法判断, 返回true
+     *
+     * @param entry 类索引
+     * @return boolean
+     */
+    public boolean preMatches(PluginClassIndex.Entry entry) {
+        if (!metaAnnotationTypes.isEmpty()) {
+            return true;
+        }
+        for (Class<?> superType : superTypes) {
+            if (!superType.isInterface()) {
+                return true;
+            }
+        }
+        if (entry.hasAnnotation(annotationTypes.toArray(new Class<?>[0])) ||
+                entry.hasInterface(superTypes.toArray(new Class<?>[0]))) {
+            return true;
+        }
+        return packagePredicate != null && packagePredicate.test(entry.getPackageName());
+    }
+
+}
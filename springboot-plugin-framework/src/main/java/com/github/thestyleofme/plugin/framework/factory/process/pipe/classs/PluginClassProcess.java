@@ -9,6 +9,7 @@ import com.github.thestyleofme.plugin.framework.extension.ExtensionInitializer;
 import com.github.thestyleofme.plugin.framework.factory.PluginRegistryInfo;
 import com.github.thestyleofme.plugin.framework.factory.process.pipe.PluginPipeProcessor;
 import com.github.thestyleofme.plugin.framework.factory.process.pipe.classs.group.*;
+import com.github.thestyleofme.plugin.framework.loader.PluginClassIndex;
 import com.github.thestyleofme.plugin.framework.loader.PluginResourceLoadFactory;
 import com.github.thestyleofme.plugin.framework.loader.ResourceWrapper;
 import com.github.thestyleofme.plugin.framework.loader.load.PluginClassLoader;
@@ -36,6 +37,7 @@ public class PluginClassProcess implements PluginPipeProcessor {
     public static final String OTHER = "other";
 
     private final List<PluginClassGroup> pluginClassGroups = new ArrayList<>();
+    private PluginClassDispatcher pluginClassDispatcher;
 
     @Override
     public void initialize() {
@@ -50,10 +52,11 @@ public class PluginClassProcess implements PluginPipeProcessor {
         pluginClassGroups.add(new OneselfListenerGroup());
         // 添加扩展
         pluginClassGroups.addAll(ExtensionInitializer.getClassGroupExtends());
+        pluginClassDispatcher = new PluginClassDispatcher(pluginClassGroups);
     }
 
     @Override
-    public void register(PluginRegistryInfo pluginRegistryInfo) {
+    public void prepare(PluginRegistryInfo pluginRegistryInfo) {
         BasePlugin basePlugin = pluginRegistryInfo.getBasePlugin();
         PluginResourceLoadFactory pluginResourceLoadFactory = basePlugin.getBasePluginExtend()
                 .getPluginResourceLoadFactory();
@@ -65,40 +68,103 @@ public class PluginClassProcess implements PluginPipeProcessor {
         if (pluginResources == null) {
             return;
         }
-        for (PluginClassGroup pluginClassGroup : pluginClassGroups) {
-            try {
-                pluginClassGroup.initialize(basePlugin);
-            } catch (Exception e) {
-                log.error("PluginClassGroup {} initialize exception. {}", pluginClassGroup.getClass(),
-                        e.getMessage(), e);
+        PluginClassIndex classIndex = (PluginClassIndex) resourceWrapper.getExtension(PluginClassIndex.KEY);
+        List<Class<?>> classes = null;
+        if (classIndex == null) {
+            classes = loadClasses(resourceWrapper, basePlugin);
+        }
+        // 分组器在 initialize 时会保存当前插件的状态, 因此多个插件并行准备时, 分组阶段需要串行执行
+        synchronized (pluginClassGroups) {
+            for (PluginClassGroup pluginClassGroup : pluginClassGroups) {
+                try {
+                    pluginClassGroup.initialize(basePlugin);
+                } catch (Exception e) {
+                    log.error("PluginClassGroup {} initialize exception. {}", pluginClassGroup.getClass(),
+                            e.getMessage(), e);
+                }
+            }
+            if (classIndex != null) {
+                // 预过滤依赖分组器初始化后的状态, 因此在分组阶段加载
+                classes = loadIndexedClasses(resourceWrapper, classIndex, basePlugin);
             }
+            handle(classes, pluginRegistryInfo);
         }
-        handle(resourceWrapper, basePlugin, pluginRegistryInfo);
     }
 
-    private void handle(ResourceWrapper resourceWrapper,
-                        BasePlugin basePlugin,
-                        PluginRegistryInfo pluginRegistryInfo) {
+    @Override
+    public void register(PluginRegistryInfo pluginRegistryInfo) {
+        // 类的加载与分组已在 prepare 阶段完成
+    }
+
+    /**
+     * 加载扫描到的插件类
+     *
+     * @param resourceWrapper 插件类资源
+     * @param basePlugin      当前插件信息
+     * @return 加载后的类集合
+     */
+    private List<Class<?>> loadClasses(ResourceWrapper resourceWrapper, BasePlugin basePlugin) {
         Set<String> classPackageNames = resourceWrapper.getClassPackageNames();
+        List<Class<?>> classes = new ArrayList<>(classPackageNames.size());
         for (String classPackageName : classPackageNames) {
-            Class<?> aClass;
             try {
-                aClass = Class.forName(classPackageName, false,
-                        basePlugin.getWrapper().getPluginClassLoader());
+                classes.add(Class.forName(classPackageName, false,
+                        basePlugin.getWrapper().getPluginClassLoader()));
             } catch (ClassNotFoundException e) {
                 throw new PluginException(e);
             }
-            boolean findGroup = false;
-            for (PluginClassGroup pluginClassGroup : pluginClassGroups) {
-                if (pluginClassGroup == null || StringUtils.isEmpty(pluginClassGroup.groupId())) {
-                    continue;
-                }
-                if (pluginClassGroup.filter(aClass)) {
-                    pluginRegistryInfo.addGroupClasses(pluginClassGroup.groupId(), aClass);
-                    findGroup = true;
-                }
+        }
+        return classes;
+    }
+
+    /**
+     * 根据插件的类索引, 只加载可能属于分组的类。不在索引中的类无法判断, 仍然加载
+     *
+     * @param resourceWrapper 插件类资源
+     * @param classIndex      插件的类索引
+     * @param basePlugin      当前插件信息
+     * @return 加载后的类集合
+     */
+    private List<Class<?>> loadIndexedClasses(ResourceWrapper resourceWrapper, PluginClassIndex classIndex,
+                                              BasePlugin basePlugin) {
+        Set<String> classPackageNames = resourceWrapper.getClassPackageNames();
+        List<Class<?>> classes = new ArrayList<>();
+        for (String classPackageName : classPackageNames) {
+            PluginClassIndex.Entry entry = classIndex.getEntry(classPackageName);
+            if (entry != null && !preFilter(entry)) {
+                continue;
+            }
+            try {
+                classes.add(Class.forName(classPackageName, false,
+                        basePlugin.getWrapper().getPluginClassLoader()));
+            } catch (ClassNotFoundException e) {
+                // 索引与插件包不一致, 例如增量编译时删除了类
+                log.warn("Class '{}' in plugin '{}' index not found, skip it.", classPackageName,
+                        basePlugin.getWrapper().getPluginId());
+            }
+        }
+        return classes;
+    }
+
+    private boolean preFilter(PluginClassIndex.Entry entry) {
+        for (PluginClassGroup pluginClassGroup : pluginClassGroups) {
+            if (pluginClassGroup == null || StringUtils.isEmpty(pluginClassGroup.groupId())) {
+                continue;
+            }
+            if (pluginClassGroup.preFilter(entry)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void handle(List<Class<?>> classes, PluginRegistryInfo pluginRegistryInfo) {
+        for (Class<?> aClass : classes) {
+            Set<PluginClassGroup> groups = pluginClassDispatcher.dispatch(aClass);
+            for (PluginClassGroup pluginClassGroup : groups) {
+                pluginRegistryInfo.addGroupClasses(pluginClassGroup.groupId(), aClass);
             }
-            if (!findGroup) {
+            if (groups.isEmpty()) {
                 pluginRegistryInfo.addGroupClasses(OTHER, aClass);
             }
             pluginRegistryInfo.addClasses(aClass);
@@ -3,8 +3,8 @@ package com.github.thestyleofme.plugin.framework.factory.process.pipe.classs.gro
 
 import com.github.thestyleofme.plugin.framework.annotation.Caller;
 import com.github.thestyleofme.plugin.framework.factory.process.pipe.classs.PluginClassGroup;
+import com.github.thestyleofme.plugin.framework.factory.process.pipe.classs.PluginClassMatcher;
 import com.github.thestyleofme.plugin.framework.realize.BasePlugin;
-import com.github.thestyleofme.plugin.framework.utils.AnnotationsUtils;
 
 /**
  * <p>
@@ -22,6 +22,7 @@ public class CallerGroup implements PluginClassGroup {
      */
     public static final String GROUP_ID = "caller";
 
+    private final PluginClassMatcher matcher = PluginClassMatcher.create().annotations(Caller.class);
 
     @Override
     public String groupId() {
@@ -34,8 +35,8 @@ public class CallerGroup implements PluginClassGroup {
     }
 
     @Override
-    public boolean filter(Class<?> aClass) {
-        return AnnotationsUtils.haveAnnotations(aClass, false, Caller.class);
+    public PluginClassMatcher matcher() {
+        return matcher;
     }
 
 }
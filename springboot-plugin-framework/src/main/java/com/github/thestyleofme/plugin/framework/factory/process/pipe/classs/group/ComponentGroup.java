@@ -1,8 +1,8 @@
 package com.github.thestyleofme.plugin.framework.factory.process.pipe.classs.group;
 
 import com.github.thestyleofme.plugin.framework.factory.process.pipe.classs.PluginClassGroup;
+import com.github.thestyleofme.plugin.framework.factory.process.pipe.classs.PluginClassMatcher;
 import com.github.thestyleofme.plugin.framework.realize.BasePlugin;
-import com.github.thestyleofme.plugin.framework.utils.AnnotationsUtils;
 import org.springframework.stereotype.Component;
 import org.springframework.stereotype.Service;
 
@@ -22,6 +22,9 @@ public class ComponentGroup implements PluginClassGroup {
      */
     public static final String GROUP_ID = "spring_component";
 
+    private final PluginClassMatcher matcher = PluginClassMatcher.create()
+            .annotations(Component.class, Service.class);
+
     @Override
     public String groupId() {
         return GROUP_ID;
@@ -33,7 +36,8 @@ public class ComponentGroup implements PluginClassGroup {
     }
 
     @Override
-    public boolean filter(Class<?> aClass) {
-        return AnnotationsUtils.haveAnnotations(aClass, false, Component.class, Service.class);
+    public PluginClassMatcher matcher() {
+        return matcher;
     }
+
 }
@@ -1,11 +1,9 @@
 package com.github.thestyleofme.plugin.framework.factory.process.pipe.classs.group;
 
-import java.util.Set;
-
 import com.github.thestyleofme.plugin.framework.factory.process.pipe.classs.PluginClassGroup;
+import com.github.thestyleofme.plugin.framework.factory.process.pipe.classs.PluginClassMatcher;
 import com.github.thestyleofme.plugin.framework.realize.BasePlugin;
 import com.github.thestyleofme.plugin.framework.realize.ConfigBean;
-import org.springframework.util.ClassUtils;
 
 /**
  * <p>
@@ -21,6 +19,7 @@ public class ConfigBeanGroup implements PluginClassGroup {
 
     public static final String GROUP_ID = "config_bean";
 
+    private final PluginClassMatcher matcher = PluginClassMatcher.create().superTypes(ConfigBean.class);
 
     @Override
     public String groupId() {
@@ -33,12 +32,8 @@ public class ConfigBeanGroup implements PluginClassGroup {
     }
 
     @Override
-    public boolean filter(Class<?> aClass) {
-        if (aClass == null) {
-            return false;
-        }
-        Set<Class<?>> allInterfacesForClassAsSet = ClassUtils.getAllInterfacesForClassAsSet(aClass);
-        return allInterfacesForClassAsSet.contains(ConfigBean.class);
+    public PluginClassMatcher matcher() {
+        return matcher;
     }
 
 }
@@ -2,8 +2,8 @@ package com.github.thestyleofme.plugin.framework.factory.process.pipe.classs.gro
 
 import com.github.thestyleofme.plugin.framework.annotation.ConfigDefinition;
 import com.github.thestyleofme.plugin.framework.factory.process.pipe.classs.PluginClassGroup;
+import com.github.thestyleofme.plugin.framework.factory.process.pipe.classs.PluginClassMatcher;
 import com.github.thestyleofme.plugin.framework.realize.BasePlugin;
-import com.github.thestyleofme.plugin.framework.utils.AnnotationsUtils;
 
 /**
  * <p>
@@ -20,6 +20,7 @@ public class ConfigDefinitionGroup implements PluginClassGroup {
      */
     public static final String GROUP_ID = "config_definition";
 
+    private final PluginClassMatcher matcher = PluginClassMatcher.create().annotations(ConfigDefinition.class);
 
     @Override
     public String groupId() {
@@ -32,8 +33,8 @@ public class ConfigDefinitionGroup implements PluginClassGroup {
     }
 
     @Override
-    public boolean filter(Class<?> aClass) {
-        return AnnotationsUtils.haveAnnotations(aClass, false, ConfigDefinition.class);
+    public PluginClassMatcher matcher() {
+        return matcher;
     }
 
 }
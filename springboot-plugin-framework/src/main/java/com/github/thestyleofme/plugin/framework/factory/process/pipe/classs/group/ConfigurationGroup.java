@@ -1,8 +1,8 @@
 package com.github.thestyleofme.plugin.framework.factory.process.pipe.classs.group;
 
 import com.github.thestyleofme.plugin.framework.factory.process.pipe.classs.PluginClassGroup;
+import com.github.thestyleofme.plugin.framework.factory.process.pipe.classs.PluginClassMatcher;
 import com.github.thestyleofme.plugin.framework.realize.BasePlugin;
-import com.github.thestyleofme.plugin.framework.utils.AnnotationsUtils;
 import org.springframework.context.annotation.Configuration;
 
 /**
@@ -20,6 +20,7 @@ public class ConfigurationGroup implements PluginClassGroup {
      */
     public static final String GROUP_ID = "spring_configuration";
 
+    private final PluginClassMatcher matcher = PluginClassMatcher.create().annotations(Configuration.class);
 
     @Override
     public String groupId() {
@@ -32,7 +33,8 @@ public class ConfigurationGroup implements PluginClassGroup {
     }
 
     @Override
-    public boolean filter(Class<?> aClass) {
-        return AnnotationsUtils.haveAnnotations(aClass, false, Configuration.class);
+    public PluginClassMatcher matcher() {
+        return matcher;
     }
+
 }
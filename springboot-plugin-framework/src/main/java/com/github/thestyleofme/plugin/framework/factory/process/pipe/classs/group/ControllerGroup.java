@@ -1,8 +1,8 @@
 package com.github.thestyleofme.plugin.framework.factory.process.pipe.classs.group;
 
 import com.github.thestyleofme.plugin.framework.factory.process.pipe.classs.PluginClassGroup;
+import com.github.thestyleofme.plugin.framework.factory.process.pipe.classs.PluginClassMatcher;
 import com.github.thestyleofme.plugin.framework.realize.BasePlugin;
-import com.github.thestyleofme.plugin.framework.utils.AnnotationsUtils;
 import org.springframework.stereotype.Controller;
 import org.springframework.web.bind.annotation.RestController;
 
@@ -21,6 +21,8 @@ public class ControllerGroup implements PluginClassGroup {
      */
     public static final String GROUP_ID = "spring_controller";
 
+    private final PluginClassMatcher matcher = PluginClassMatcher.create()
+            .annotations(RestController.class, Controller.class);
 
     @Override
     public String groupId() {
@@ -33,7 +35,8 @@ public class ControllerGroup implements PluginClassGroup {
     }
 
     @Override
-    public boolean filter(Class<?> aClass) {
-        return AnnotationsUtils.haveAnnotations(aClass, false, RestController.class, Controller.class);
+    public PluginClassMatcher matcher() {
+        return matcher;
     }
+
 }
@@ -1,11 +1,9 @@
 package com.github.thestyleofme.plugin.framework.factory.process.pipe.classs.group;
 
-import java.util.Set;
-
 import com.github.thestyleofme.plugin.framework.factory.process.pipe.classs.PluginClassGroup;
+import com.github.thestyleofme.plugin.framework.factory.process.pipe.classs.PluginClassMatcher;
 import com.github.thestyleofme.plugin.framework.realize.BasePlugin;
 import com.github.thestyleofme.plugin.framework.realize.OneselfListener;
-import org.springframework.util.ClassUtils;
 
 /**
  * <p>
@@ -19,6 +17,8 @@ public class OneselfListenerGroup implements PluginClassGroup {
 
     public static final String GROUP_ID = "oneself_listener";
 
+    private final PluginClassMatcher matcher = PluginClassMatcher.create().superTypes(OneselfListener.class);
+
     @Override
     public String groupId() {
         return GROUP_ID;
@@ -30,11 +30,8 @@ public class OneselfListenerGroup implements PluginClassGroup {
     }
 
     @Override
-    public boolean filter(Class<?> aClass) {
-        if (aClass == null) {
-            return false;
-        }
-        Set<Class<?>> allInterfacesForClassAsSet = ClassUtils.getAllInterfacesForClassAsSet(aClass);
-        return allInterfacesForClassAsSet.contains(OneselfListener.class);
+    public PluginClassMatcher matcher() {
+        return matcher;
     }
+
 }
@@ -1,8 +1,8 @@
 package com.github.thestyleofme.plugin.framework.factory.process.pipe.classs.group;
 
 import com.github.thestyleofme.plugin.framework.factory.process.pipe.classs.PluginClassGroup;
+import com.github.thestyleofme.plugin.framework.factory.process.pipe.classs.PluginClassMatcher;
 import com.github.thestyleofme.plugin.framework.realize.BasePlugin;
-import com.github.thestyleofme.plugin.framework.utils.AnnotationsUtils;
 import org.springframework.stereotype.Repository;
 
 /**
@@ -20,6 +20,7 @@ public class RepositoryGroup implements PluginClassGroup {
      */
     public static final String GROUP_ID = "spring_repository";
 
+    private final PluginClassMatcher matcher = PluginClassMatcher.create().annotations(Repository.class);
 
     @Override
     public String groupId() {
@@ -32,7 +33,8 @@ public class RepositoryGroup implements PluginClassGroup {
     }
 
     @Override
-    public boolean filter(Class<?> aClass) {
-        return AnnotationsUtils.haveAnnotations(aClass, false, Repository.class);
+    public PluginClassMatcher matcher() {
+        return matcher;
     }
+
 }
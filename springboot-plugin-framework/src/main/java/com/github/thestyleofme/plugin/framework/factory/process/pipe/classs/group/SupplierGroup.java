@@ -2,8 +2,8 @@ package com.github.thestyleofme.plugin.framework.factory.process.pipe.classs.gro
 
 import com.github.thestyleofme.plugin.framework.annotation.Supplier;
 import com.github.thestyleofme.plugin.framework.factory.process.pipe.classs.PluginClassGroup;
+import com.github.thestyleofme.plugin.framework.factory.process.pipe.classs.PluginClassMatcher;
 import com.github.thestyleofme.plugin.framework.realize.BasePlugin;
-import com.github.thestyleofme.plugin.framework.utils.AnnotationsUtils;
 
 /**
  * <p>
@@ -20,6 +20,7 @@ public class SupplierGroup implements PluginClassGroup {
      */
     public static final String GROUP_ID = "supplier";
 
+    private final PluginClassMatcher matcher = PluginClassMatcher.create().annotations(Supplier.class);
 
     @Override
     public String groupId() {
@@ -32,8 +33,8 @@ public class SupplierGroup implements PluginClassGroup {
     }
 
     @Override
-    public boolean filter(Class<?> aClass) {
-        return AnnotationsUtils.haveAnnotations(aClass, false, Supplier.class);
+    public PluginClassMatcher matcher() {
+        return matcher;
     }
 
 }
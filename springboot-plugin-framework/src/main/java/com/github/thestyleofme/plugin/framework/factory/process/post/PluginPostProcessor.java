@@ -35,4 +35,44 @@ public interface PluginPostProcessor {
      */
     void unregister(List<PluginRegistryInfo> pluginRegistryInfos);
 
+    /**
+     * 处理该插件的升级。默认先卸载旧版本再注册新版本, 实现者可重写该方法以保证切换期间旧版本持续可用。
+     * 新版本注册失败时, 需保证旧版本恢复为已注册的状态
+     *
+     * @param oldPluginRegistryInfos 旧版本插件注册的信息
+     * @param newPluginRegistryInfos 新版本插件注册的信息
+     */
+    default void upgrade(List<PluginRegistryInfo> oldPluginRegistryInfos,
+                         List<PluginRegistryInfo> newPluginRegistryInfos) {
+        unregister(oldPluginRegistryInfos);
+        try {
+            register(newPluginRegistryInfos);
+        } catch (Exception e) {
+            // 新版本注册失败, 恢复旧版本
+            register(oldPluginRegistryInfos);
+            throw e;
+        }
+    }
+
+    /**
+     * 撤销该插件的升级, 在其后的处理者升级失败时调用。默认以新旧版本互换的方式再次升级
+     *
+     * @param oldPluginRegistryInfos 旧版本插件注册的信息
+     * @param newPluginRegistryInfos 新版本插件注册的信息
+     */
+    default void rollbackUpgrade(List<PluginRegistryInfo> oldPluginRegistryInfos,
+                                 List<PluginRegistryInfo> newPluginRegistryInfos) {
+        upgrade(newPluginRegistryInfos, oldPluginRegistryInfos);
+    }
+
+    /**
+     * 释放升级后被替换的旧版本, 在旧版本排空后调用。默认升级时已卸载旧版本, 不做处理;
+     * 升级时保留旧版本的实现者在此卸载旧版本
+     *
+     * @param oldPluginRegistryInfos 旧版本插件注册的信息
+     */
+    default void release(List<PluginRegistryInfo> oldPluginRegistryInfos) {
+        // ignore
+    }
+
 }
@@ -1,14 +1,19 @@
 package com.github.thestyleofme.plugin.framework.factory.process.post;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
+import com.github.thestyleofme.plugin.framework.enums.ProcessOperationEnum;
 import com.github.thestyleofme.plugin.framework.extension.ExtensionInitializer;
 import com.github.thestyleofme.plugin.framework.factory.PluginRegistryInfo;
 import com.github.thestyleofme.plugin.framework.factory.process.post.bean.PluginConfigurationPostProcessor;
 import com.github.thestyleofme.plugin.framework.factory.process.post.bean.PluginControllerPostProcessor;
 import com.github.thestyleofme.plugin.framework.factory.process.post.bean.PluginInvokePostProcessor;
 import com.github.thestyleofme.plugin.framework.factory.process.post.bean.PluginOneselfStartEventProcessor;
+import com.github.thestyleofme.plugin.framework.metrics.PluginStageRecorder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.context.ApplicationContext;
 
 /**
@@ -21,11 +26,19 @@ import org.springframework.context.ApplicationContext;
  */
 public class PluginPostProcessorFactory implements PluginPostProcessor {
 
+    private static final Logger LOG = LoggerFactory.getLogger(PluginPostProcessorFactory.class);
+
     private final List<PluginPostProcessor> pluginPostProcessors = new ArrayList<>();
     private final ApplicationContext applicationContext;
+    private final PluginStageRecorder stageRecorder;
 
     public PluginPostProcessorFactory(ApplicationContext applicationContext) {
+        this(applicationContext, null);
+    }
+
+    public PluginPostProcessorFactory(ApplicationContext applicationContext, PluginStageRecorder stageRecorder) {
         this.applicationContext = applicationContext;
+        this.stageRecorder = stageRecorder;
     }
 
     @Override
@@ -47,15 +60,71 @@ public class PluginPostProcessorFactory implements PluginPostProcessor {
     @Override
     public void register(List<PluginRegistryInfo> pluginRegistryInfos) {
         for (PluginPostProcessor pluginPostProcessor : pluginPostProcessors) {
-            pluginPostProcessor.register(pluginRegistryInfos);
+            execute(pluginRegistryInfos, ProcessOperationEnum.REGISTER, pluginPostProcessor,
+                    () -> pluginPostProcessor.register(pluginRegistryInfos));
         }
     }
 
     @Override
     public void unregister(List<PluginRegistryInfo> pluginRegistryInfos) {
         for (PluginPostProcessor pluginPostProcessor : pluginPostProcessors) {
-            pluginPostProcessor.unregister(pluginRegistryInfos);
+            execute(pluginRegistryInfos, ProcessOperationEnum.UNREGISTER, pluginPostProcessor,
+                    () -> pluginPostProcessor.unregister(pluginRegistryInfos));
+        }
+    }
+
+    @Override
+    public void upgrade(List<PluginRegistryInfo> oldPluginRegistryInfos,
+                        List<PluginRegistryInfo> newPluginRegistryInfos) {
+        List<PluginPostProcessor> upgradedPostProcessors = new ArrayList<>();
+        try {
+            for (PluginPostProcessor pluginPostProcessor : pluginPostProcessors) {
+                execute(newPluginRegistryInfos, ProcessOperationEnum.UPGRADE, pluginPostProcessor,
+                        () -> pluginPostProcessor.upgrade(oldPluginRegistryInfos, newPluginRegistryInfos));
+                upgradedPostProcessors.add(pluginPostProcessor);
+            }
+        } catch (Exception e) {
+            // 逆序将已经升级的处理者切换回旧版本
+            Collections.reverse(upgradedPostProcessors);
+            for (PluginPostProcessor pluginPostProcessor : upgradedPostProcessors) {
+                try {
+                    pluginPostProcessor.rollbackUpgrade(oldPluginRegistryInfos, newPluginRegistryInfos);
+                } catch (Exception rollbackException) {
+                    LOG.error("PluginPostProcessor {} rollback upgrade failure. {}",
+                            pluginPostProcessor.getClass().getName(), rollbackException.getMessage(), rollbackException);
+                }
+            }
+            throw e;
+        }
+    }
+
+    @Override
+    public void release(List<PluginRegistryInfo> oldPluginRegistryInfos) {
+        for (PluginPostProcessor pluginPostProcessor : pluginPostProcessors) {
+            execute(oldPluginRegistryInfos, ProcessOperationEnum.UNREGISTER, pluginPostProcessor,
+                    () -> pluginPostProcessor.release(oldPluginRegistryInfos));
+        }
+    }
+
+    /**
+     * 执行处理者, 并记录其耗时
+     *
+     * @param pluginRegistryInfos 插件注册的信息集合
+     * @param operation           执行的操作
+     * @param pluginPostProcessor 处理者
+     * @param action              处理者的执行
+     */
+    private void execute(List<PluginRegistryInfo> pluginRegistryInfos, ProcessOperationEnum operation,
+                         PluginPostProcessor pluginPostProcessor, Runnable action) {
+        if (stageRecorder == null) {
+            action.run();
+            return;
+        }
+        List<String> pluginIds = new ArrayList<>(pluginRegistryInfos.size());
+        for (PluginRegistryInfo pluginRegistryInfo : pluginRegistryInfos) {
+            pluginIds.add(pluginRegistryInfo.getPluginWrapper().getPluginId());
         }
+        stageRecorder.record(pluginIds, operation, pluginPostProcessor, action);
     }
 
 }
@@ -5,6 +5,8 @@ import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.Method;
 import java.lang.reflect.Proxy;
 import java.util.*;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import com.github.thestyleofme.plugin.framework.constants.BaseConstants;
 import com.github.thestyleofme.plugin.framework.exceptions.PluginException;
@@ -23,6 +25,8 @@ import org.springframework.core.annotation.AnnotationUtils;
 import org.springframework.util.ReflectionUtils;
 import org.springframework.util.StringUtils;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.handler.AbstractHandlerMethodMapping;
 import org.springframework.web.servlet.mvc.method.RequestMappingInfo;
 import org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandlerMapping;
 
@@ -106,6 +110,73 @@ public class PluginControllerPostProcessor implements PluginPostProcessor {
         }
     }
 
+    @Override
+    public void upgrade(List<PluginRegistryInfo> oldPluginRegistryInfos,
+                        List<PluginRegistryInfo> newPluginRegistryInfos) {
+        Map<String, PluginRegistryInfo> oldPluginRegistryInfoMap = new LinkedHashMap<>();
+        for (PluginRegistryInfo oldPluginRegistryInfo : oldPluginRegistryInfos) {
+            oldPluginRegistryInfoMap.put(oldPluginRegistryInfo.getPluginWrapper().getPluginId(), oldPluginRegistryInfo);
+        }
+        List<PluginRegistryInfo> registerPluginRegistryInfos = new ArrayList<>();
+        for (PluginRegistryInfo newPluginRegistryInfo : newPluginRegistryInfos) {
+            PluginRegistryInfo oldPluginRegistryInfo =
+                    oldPluginRegistryInfoMap.remove(newPluginRegistryInfo.getPluginWrapper().getPluginId());
+            if (oldPluginRegistryInfo == null) {
+                registerPluginRegistryInfos.add(newPluginRegistryInfo);
+            } else {
+                upgrade(oldPluginRegistryInfo, newPluginRegistryInfo);
+            }
+        }
+        // 没有对应版本的插件按照普通的注册、卸载处理
+        unregister(new ArrayList<>(oldPluginRegistryInfoMap.values()));
+        register(registerPluginRegistryInfos);
+    }
+
+    @Override
+    public void rollbackUpgrade(List<PluginRegistryInfo> oldPluginRegistryInfos,
+                                List<PluginRegistryInfo> newPluginRegistryInfos) {
+        Map<String, PluginRegistryInfo> newPluginRegistryInfoMap = new LinkedHashMap<>();
+        for (PluginRegistryInfo newPluginRegistryInfo : newPluginRegistryInfos) {
+            newPluginRegistryInfoMap.put(newPluginRegistryInfo.getPluginWrapper().getPluginId(), newPluginRegistryInfo);
+        }
+        List<PluginRegistryInfo> registerPluginRegistryInfos = new ArrayList<>();
+        for (PluginRegistryInfo oldPluginRegistryInfo : oldPluginRegistryInfos) {
+            PluginRegistryInfo newPluginRegistryInfo =
+                    newPluginRegistryInfoMap.remove(oldPluginRegistryInfo.getPluginWrapper().getPluginId());
+            if (newPluginRegistryInfo == null) {
+                registerPluginRegistryInfos.add(oldPluginRegistryInfo);
+            } else {
+                rollbackUpgrade(oldPluginRegistryInfo, newPluginRegistryInfo);
+            }
+        }
+        unregister(new ArrayList<>(newPluginRegistryInfoMap.values()));
+        register(registerPluginRegistryInfos);
+    }
+
+    /**
+     * 卸载旧版本的controller bean。旧版本的请求映射已在升级时替换为新版本, 不再卸载
+     *
+     * @param oldPluginRegistryInfos 旧版本插件注册的信息
+     */
+    @Override
+    public void release(List<PluginRegistryInfo> oldPluginRegistryInfos) {
+        for (PluginRegistryInfo oldPluginRegistryInfo : oldPluginRegistryInfos) {
+            List<ControllerBeanWrapper> controllerBeanWrappers =
+                    oldPluginRegistryInfo.getProcessorInfo(getKey(oldPluginRegistryInfo));
+            if (controllerBeanWrappers == null) {
+                continue;
+            }
+            String pluginId = oldPluginRegistryInfo.getPluginWrapper().getPluginId();
+            for (ControllerBeanWrapper controllerBeanWrapper : controllerBeanWrappers) {
+                String beanName = controllerBeanWrapper == null ? null : controllerBeanWrapper.getBeanName();
+                // 没有新版本的插件在升级时已卸载
+                if (!StringUtils.isEmpty(beanName) && applicationContext.containsBeanDefinition(beanName)) {
+                    springBeanRegister.unregister(pluginId, beanName);
+                }
+            }
+        }
+    }
+
     /**
      * 注册单一插件
      *
@@ -124,21 +195,11 @@ public class PluginControllerPostProcessor implements PluginPostProcessor {
             ControllerBeanWrapper controllerBeanWrapper = new ControllerBeanWrapper();
             controllerBeanWrapper.setBeanName(beanName);
             setPathPrefix(pluginId, aClass);
-            Method getMappingForMethod = ReflectionUtils.findMethod(RequestMappingHandlerMapping.class,
-                    "getMappingForMethod", Method.class, Class.class);
-            assert getMappingForMethod != null;
-            getMappingForMethod.setAccessible(true);
-            Method[] methods = aClass.getMethods();
-            Set<RequestMappingInfo> requestMappingInfos = new HashSet<>();
-            for (Method method : methods) {
-                if (isHaveRequestMapping(method)) {
-                    RequestMappingInfo requestMappingInfo = (RequestMappingInfo)
-                            getMappingForMethod.invoke(requestMappingHandlerMapping, method, aClass);
-                    requestMappingHandlerMapping.registerMapping(requestMappingInfo, object, method);
-                    requestMappingInfos.add(requestMappingInfo);
-                }
+            Map<RequestMappingInfo, Method> requestMappings = getRequestMappings(aClass);
+            for (Map.Entry<RequestMappingInfo, Method> entry : requestMappings.entrySet()) {
+                requestMappingHandlerMapping.registerMapping(entry.getKey(), object, entry.getValue());
             }
-            controllerBeanWrapper.setRequestMappingInfos(requestMappingInfos);
+            controllerBeanWrapper.setRequestMappingInfos(new HashSet<>(requestMappings.keySet()));
             controllerBeanWrapper.setBeanClass(aClass);
             return controllerBeanWrapper;
         } catch (Exception e) {
@@ -148,6 +209,202 @@ public class PluginControllerPostProcessor implements PluginPostProcessor {
         }
     }
 
+    /**
+     * 解析 controller 中的请求映射
+     *
+     * @param aClass controller 类
+     * @return RequestMappingInfo 与对应的方法
+     * @throws ReflectiveOperationException 反射调用异常
+     */
+    private Map<RequestMappingInfo, Method> getRequestMappings(Class<?> aClass) throws ReflectiveOperationException {
+        Method getMappingForMethod = ReflectionUtils.findMethod(RequestMappingHandlerMapping.class,
+                "getMappingForMethod", Method.class, Class.class);
+        assert getMappingForMethod != null;
+        getMappingForMethod.setAccessible(true);
+        Map<RequestMappingInfo, Method> requestMappings = new LinkedHashMap<>();
+        for (Method method : aClass.getMethods()) {
+            if (isHaveRequestMapping(method)) {
+                RequestMappingInfo requestMappingInfo = (RequestMappingInfo)
+                        getMappingForMethod.invoke(requestMappingHandlerMapping, method, aClass);
+                requestMappings.put(requestMappingInfo, method);
+            }
+        }
+        return requestMappings;
+    }
+
+    /**
+     * 升级单一插件。新版本的 controller bean 以带后缀的名称注册, 与旧版本的bean同时存在,
+     * 再在请求映射注册表的写锁中一次性替换旧版本的请求映射, 切换期间的请求不会出现 404。
+     * 旧版本的bean在排空后由 {@link #release(List)} 卸载, 切换前进入的请求在旧的实例中正常完成
+     *
+     * @param oldPluginRegistryInfo 旧版本插件注册的信息
+     * @param newPluginRegistryInfo 新版本插件注册的信息
+     */
+    private void upgrade(PluginRegistryInfo oldPluginRegistryInfo, PluginRegistryInfo newPluginRegistryInfo) {
+        String pluginId = newPluginRegistryInfo.getPluginWrapper().getPluginId();
+        List<ControllerBeanWrapper> oldControllerBeanWrappers = getControllerBeanWrappers(oldPluginRegistryInfo);
+        List<ControllerBeanWrapper> newControllerBeanWrappers = new ArrayList<>();
+        Map<RequestMappingInfo, HandlerMethod> newHandlerMethods = new LinkedHashMap<>();
+        AopUtils.resolveAop(newPluginRegistryInfo.getPluginWrapper());
+        try {
+            for (Class<?> groupClass : newPluginRegistryInfo.getGroupClasses(ControllerGroup.GROUP_ID)) {
+                if (groupClass == null) {
+                    continue;
+                }
+                String beanName = springBeanRegister.register(pluginId, groupClass);
+                ControllerBeanWrapper controllerBeanWrapper = new ControllerBeanWrapper();
+                controllerBeanWrapper.setBeanName(beanName);
+                controllerBeanWrapper.setBeanClass(groupClass);
+                newControllerBeanWrappers.add(controllerBeanWrapper);
+                Object object = applicationContext.getBean(beanName);
+                setPathPrefix(pluginId, groupClass);
+                Map<RequestMappingInfo, Method> requestMappings = getRequestMappings(groupClass);
+                requestMappings.forEach((requestMappingInfo, method) ->
+                        newHandlerMethods.put(requestMappingInfo, new HandlerMethod(object, method)));
+                controllerBeanWrapper.setRequestMappingInfos(new HashSet<>(requestMappings.keySet()));
+            }
+            switchMappings(oldControllerBeanWrappers, newHandlerMethods);
+        } catch (Exception e) {
+            // 旧的请求映射仍指向旧的实例, 只卸载新版本的bean
+            for (ControllerBeanWrapper controllerBeanWrapper : newControllerBeanWrappers) {
+                springBeanRegister.unregister(pluginId, controllerBeanWrapper.getBeanName());
+            }
+            throw new PluginException(e);
+        } finally {
+            AopUtils.recoverAop();
+        }
+        newPluginRegistryInfo.addProcessorInfo(getKey(newPluginRegistryInfo), newControllerBeanWrappers);
+        for (ControllerBeanWrapper controllerBeanWrapper : oldControllerBeanWrappers) {
+            if (controllerBeanWrapper != null) {
+                process(2, pluginId, controllerBeanWrapper.getBeanClass());
+            }
+        }
+        for (ControllerBeanWrapper controllerBeanWrapper : newControllerBeanWrappers) {
+            process(1, pluginId, controllerBeanWrapper.getBeanClass());
+        }
+    }
+
+    /**
+     * 撤销单一插件的升级。旧版本的bean尚未卸载, 将请求映射切换回旧版本的实例后卸载新版本的bean
+     *
+     * @param oldPluginRegistryInfo 旧版本插件注册的信息
+     * @param newPluginRegistryInfo 新版本插件注册的信息
+     */
+    private void rollbackUpgrade(PluginRegistryInfo oldPluginRegistryInfo, PluginRegistryInfo newPluginRegistryInfo) {
+        String pluginId = oldPluginRegistryInfo.getPluginWrapper().getPluginId();
+        List<ControllerBeanWrapper> oldControllerBeanWrappers = getControllerBeanWrappers(oldPluginRegistryInfo);
+        List<ControllerBeanWrapper> newControllerBeanWrappers = getControllerBeanWrappers(newPluginRegistryInfo);
+        Map<RequestMappingInfo, HandlerMethod> oldHandlerMethods = new LinkedHashMap<>();
+        try {
+            for (ControllerBeanWrapper controllerBeanWrapper : oldControllerBeanWrappers) {
+                if (controllerBeanWrapper == null || controllerBeanWrapper.getBeanClass() == null) {
+                    continue;
+                }
+                // 原名称此时可能是新版本的别名, 按注册的名称直接得到旧的实例
+                Object object = applicationContext.getDefaultListableBeanFactory()
+                        .getSingleton(controllerBeanWrapper.getBeanName());
+                if (object == null) {
+                    continue;
+                }
+                getRequestMappings(controllerBeanWrapper.getBeanClass()).forEach((requestMappingInfo, method) ->
+                        oldHandlerMethods.put(requestMappingInfo, new HandlerMethod(object, method)));
+            }
+        } catch (ReflectiveOperationException e) {
+            throw new PluginException(e);
+        }
+        switchMappings(newControllerBeanWrappers, oldHandlerMethods);
+        for (ControllerBeanWrapper controllerBeanWrapper : newControllerBeanWrappers) {
+            if (controllerBeanWrapper != null && !StringUtils.isEmpty(controllerBeanWrapper.getBeanName())) {
+                springBeanRegister.unregister(pluginId, controllerBeanWrapper.getBeanName());
+                process(2, pluginId, controllerBeanWrapper.getBeanClass());
+            }
+        }
+        for (ControllerBeanWrapper controllerBeanWrapper : oldControllerBeanWrappers) {
+            if (controllerBeanWrapper != null) {
+                process(1, pluginId, controllerBeanWrapper.getBeanClass());
+            }
+        }
+    }
+
+    private List<ControllerBeanWrapper> getControllerBeanWrappers(PluginRegistryInfo pluginRegistryInfo) {
+        List<ControllerBeanWrapper> controllerBeanWrappers =
+                pluginRegistryInfo.getProcessorInfo(getKey(pluginRegistryInfo));
+        return controllerBeanWrappers == null ? Collections.emptyList() : controllerBeanWrappers;
+    }
+
+    /**
+     * 在请求映射注册表的写锁中, 将旧版本的请求映射替换为新版本的请求映射。新映射注册失败时恢复旧映射
+     *
+     * @param oldControllerBeanWrappers 替换前的controllerBean包装
+     * @param newHandlerMethods         替换后的请求映射
+     */
+    private void switchMappings(List<ControllerBeanWrapper> oldControllerBeanWrappers,
+                                Map<RequestMappingInfo, HandlerMethod> newHandlerMethods) {
+        List<RequestMappingInfo> oldRequestMappingInfos = new ArrayList<>();
+        for (ControllerBeanWrapper controllerBeanWrapper : oldControllerBeanWrappers) {
+            if (controllerBeanWrapper != null && controllerBeanWrapper.getRequestMappingInfos() != null) {
+                oldRequestMappingInfos.addAll(controllerBeanWrapper.getRequestMappingInfos());
+            }
+        }
+        Map<RequestMappingInfo, HandlerMethod> oldHandlerMethods = requestMappingHandlerMapping.getHandlerMethods();
+        Lock lock = getMappingRegistryWriteLock();
+        if (lock != null) {
+            lock.lock();
+        }
+        try {
+            oldRequestMappingInfos.forEach(requestMappingHandlerMapping::unregisterMapping);
+            List<RequestMappingInfo> registeredRequestMappingInfos = new ArrayList<>();
+            try {
+                newHandlerMethods.forEach((requestMappingInfo, handlerMethod) -> {
+                    requestMappingHandlerMapping.registerMapping(requestMappingInfo,
+                            handlerMethod.getBean(), handlerMethod.getMethod());
+                    registeredRequestMappingInfos.add(requestMappingInfo);
+                });
+            } catch (Exception e) {
+                registeredRequestMappingInfos.forEach(requestMappingHandlerMapping::unregisterMapping);
+                for (RequestMappingInfo requestMappingInfo : oldRequestMappingInfos) {
+                    HandlerMethod handlerMethod = oldHandlerMethods.get(requestMappingInfo);
+                    if (handlerMethod != null) {
+                        requestMappingHandlerMapping.registerMapping(requestMappingInfo,
+                                handlerMethod.getBean(), handlerMethod.getMethod());
+                    }
+                }
+                throw e;
+            }
+        } finally {
+            if (lock != null) {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * 得到请求映射注册表的写锁。请求映射的查找持有该锁的读锁, 因此在写锁中替换映射对请求是原子的
+     *
+     * @return 写锁, 获取失败返回 null
+     */
+    private Lock getMappingRegistryWriteLock() {
+        try {
+            Field mappingRegistryField = ReflectionUtils.findField(AbstractHandlerMethodMapping.class,
+                    "mappingRegistry");
+            if (mappingRegistryField == null) {
+                return null;
+            }
+            ReflectionUtils.makeAccessible(mappingRegistryField);
+            Object mappingRegistry = mappingRegistryField.get(requestMappingHandlerMapping);
+            Field readWriteLockField = ReflectionUtils.findField(mappingRegistry.getClass(), "readWriteLock");
+            if (readWriteLockField == null) {
+                return null;
+            }
+            ReflectionUtils.makeAccessible(readWriteLockField);
+            return ((ReentrantReadWriteLock) readWriteLockField.get(mappingRegistry)).writeLock();
+        } catch (Exception e) {
+            log.warn("Get the lock of RequestMappingHandlerMapping failure, switch mappings without lock. {}",
+                    e.getMessage());
+            return null;
+        }
+    }
+
     /**
      * 卸载具体的Controller操作
      *
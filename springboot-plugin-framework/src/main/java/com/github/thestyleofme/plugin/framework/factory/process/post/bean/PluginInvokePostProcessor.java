@@ -21,10 +21,13 @@ import com.github.thestyleofme.plugin.framework.factory.SpringBeanRegister;
 import com.github.thestyleofme.plugin.framework.factory.process.pipe.classs.group.CallerGroup;
 import com.github.thestyleofme.plugin.framework.factory.process.pipe.classs.group.SupplierGroup;
 import com.github.thestyleofme.plugin.framework.factory.process.post.PluginPostProcessor;
+import com.github.thestyleofme.plugin.framework.integration.lazy.LazyPluginActivator;
 import com.github.thestyleofme.plugin.framework.utils.AopUtils;
+import org.springframework.beans.BeansException;
 import org.springframework.beans.factory.FactoryBean;
 import org.springframework.beans.factory.support.AbstractBeanDefinition;
 import org.springframework.context.ApplicationContext;
+import org.springframework.context.ApplicationContextAware;
 import org.springframework.context.support.GenericApplicationContext;
 import org.springframework.util.ClassUtils;
 
@@ -94,6 +97,36 @@ public class PluginInvokePostProcessor implements PluginPostProcessor {
         }
     }
 
+    /**
+     * 新版本的被调用者与调用者以带后缀的名称注册, 原名称作为别名指向新版本, 调用者按名称调用到新版本。
+     * 旧版本的bean继续存在, 排空后在 {@link #release(List)} 中卸载
+     *
+     * @param oldPluginRegistryInfos 旧版本插件注册的信息
+     * @param newPluginRegistryInfos 新版本插件注册的信息
+     */
+    @Override
+    public void upgrade(List<PluginRegistryInfo> oldPluginRegistryInfos,
+                        List<PluginRegistryInfo> newPluginRegistryInfos) {
+        try {
+            register(newPluginRegistryInfos);
+        } catch (Exception e) {
+            // 卸载新版本, 原名称重新指向旧版本
+            unregister(newPluginRegistryInfos);
+            throw e;
+        }
+    }
+
+    @Override
+    public void rollbackUpgrade(List<PluginRegistryInfo> oldPluginRegistryInfos,
+                                List<PluginRegistryInfo> newPluginRegistryInfos) {
+        unregister(newPluginRegistryInfos);
+    }
+
+    @Override
+    public void release(List<PluginRegistryInfo> oldPluginRegistryInfos) {
+        unregister(oldPluginRegistryInfos);
+    }
+
     /**
      * 处理被调用者
      *
@@ -105,7 +138,9 @@ public class PluginInvokePostProcessor implements PluginPostProcessor {
         if (supperClasses.isEmpty()) {
             return;
         }
+        // 先记录, 注册失败时卸载已注册的bean
         Set<String> beanNames = new HashSet<>();
+        pluginRegistryInfo.addProcessorInfo(getKey(KEY_SUPPERS, pluginRegistryInfo), beanNames);
         String pluginId = pluginRegistryInfo.getPluginWrapper().getPluginId();
         for (Class<?> supperClass : supperClasses) {
             if (supperClass != null && supperClass.getAnnotation(Supplier.class) != null) {
@@ -117,11 +152,9 @@ public class PluginInvokePostProcessor implements PluginPostProcessor {
                             pluginRegistryInfo.getPluginWrapper().getPluginId(), beanName, supperClass.getName());
                     throw new PluginException(error);
                 }
-                springBeanRegister.registerOfSpecifyName(pluginId, beanName, supperClass);
-                beanNames.add(beanName);
+                beanNames.add(springBeanRegister.registerOfSpecifyName(pluginId, beanName, supperClass));
             }
         }
-        pluginRegistryInfo.addProcessorInfo(getKey(KEY_SUPPERS, pluginRegistryInfo), beanNames);
     }
 
     /**
@@ -135,22 +168,39 @@ public class PluginInvokePostProcessor implements PluginPostProcessor {
             return;
         }
         Set<String> beanNames = new HashSet<>();
+        pluginRegistryInfo.addProcessorInfo(getKey(KEY_CALLERS, pluginRegistryInfo), beanNames);
         String pluginId = pluginRegistryInfo.getPluginWrapper().getPluginId();
         for (Class<?> callerClass : callerClasses) {
             Caller caller = callerClass.getAnnotation(Caller.class);
             if (caller == null) {
                 continue;
             }
-            Object supper = applicationContext.getBean(caller.value());
+            Object supper = getSupper(caller.value());
             String beanName = springBeanRegister.register(pluginId, callerClass, beanDefinition -> {
                 beanDefinition.getPropertyValues().add("callerInterface", callerClass);
                 beanDefinition.getPropertyValues().add("supper", supper);
+                beanDefinition.getPropertyValues().add("supperName", caller.value());
                 beanDefinition.setBeanClass(CallerInterfaceFactory.class);
                 beanDefinition.setAutowireMode(AbstractBeanDefinition.AUTOWIRE_BY_TYPE);
             });
             beanNames.add(beanName);
         }
-        pluginRegistryInfo.addProcessorInfo(getKey(KEY_CALLERS, pluginRegistryInfo), beanNames);
+    }
+
+    /**
+     * 得到被调用者。被调用者所在的插件等待延迟激活时, 被调用者在第一次调用时获取
+     *
+     * @param supperName 被调用者的key
+     * @return 被调用者
+     */
+    private Object getSupper(String supperName) {
+        if (!applicationContext.containsBean(supperName)) {
+            LazyPluginActivator lazyPluginActivator = LazyPluginActivator.get(applicationContext);
+            if (lazyPluginActivator != null && lazyPluginActivator.hasLazyPlugins()) {
+                return null;
+            }
+        }
+        return applicationContext.getBean(supperName);
     }
 
     /**
@@ -184,32 +234,67 @@ public class PluginInvokePostProcessor implements PluginPostProcessor {
      */
     private static class ProxyHandler implements InvocationHandler {
 
-        private final Object supplier;
+        private final String supplierName;
+        private final ApplicationContext applicationContext;
+        private volatile Object supplier;
         private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
 
-        private ProxyHandler(Object supplier) {
+        private ProxyHandler(String supplierName, Object supplier, ApplicationContext applicationContext) {
+            this.supplierName = supplierName;
             this.supplier = supplier;
+            this.applicationContext = applicationContext;
         }
 
         @Override
         public Object invoke(Object proxy, Method method, Object[] args) {
+            Object currentSupplier = getSupplier();
             Caller.Method callerMethod = method.getAnnotation(Caller.Method.class);
             if (callerMethod == null) {
-                return notAnnotationInvoke(method, args);
+                return notAnnotationInvoke(currentSupplier, method, args);
             } else {
-                return annotationInvoke(method, callerMethod, args);
+                return annotationInvoke(currentSupplier, method, callerMethod, args);
             }
         }
 
+        /**
+         * 每次调用时通过名称获取被调用者, 被调用者所在的插件升级时原名称切换为新版本的别名, 之后调用新版本。
+         * 再次升级替换别名的瞬间原名称不存在, 此时沿用上一次获取的被调用者。
+         * 被调用者所在的插件等待延迟激活时, 先激活该插件
+         *
+         * @return 被调用者
+         */
+        private Object getSupplier() {
+            if (supplierName != null && applicationContext != null) {
+                if (supplier == null && !applicationContext.containsBean(supplierName)) {
+                    LazyPluginActivator lazyPluginActivator = LazyPluginActivator.get(applicationContext);
+                    if (lazyPluginActivator != null) {
+                        lazyPluginActivator.activateBean(supplierName);
+                    }
+                }
+                if (applicationContext.containsBean(supplierName)) {
+                    try {
+                        supplier = applicationContext.getBean(supplierName);
+                    } catch (BeansException e) {
+                        // 使用上一次获取的被调用者
+                    }
+                }
+            }
+            if (supplier == null) {
+                throw new PluginException("Not found @Supplier '" + supplierName + "'");
+            }
+            return supplier;
+        }
+
         /**
          * 有注解的调用
          *
+         * @param supplier     被调用者
          * @param method       调用接口的方法
          * @param callerMethod 调用者方法注解
          * @param args         传入参数
          * @return 返回值
          */
-        private Object annotationInvoke(Method method, Caller.Method callerMethod, Object[] args) {
+        private Object annotationInvoke(Object supplier, Method method, Caller.Method callerMethod, Object[] args) {
             String callerMethodName = callerMethod.value();
             Class<?> aClass = supplier.getClass();
             Method[] methods = aClass.getMethods();
@@ -224,12 +309,12 @@ public class PluginInvokePostProcessor implements PluginPostProcessor {
             }
             if (supplierMethod == null) {
                 // 如果为空, 说明没有找到被调用者的注解, 则走没有注解的代理调用。
-                return notAnnotationInvoke(method, args);
+                return notAnnotationInvoke(supplier, method, args);
             }
             Class<?>[] parameterTypes = supplierMethod.getParameterTypes();
             if (parameterTypes.length != args.length) {
                 // 参数不匹配
-                return notAnnotationInvoke(method, args);
+                return notAnnotationInvoke(supplier, method, args);
             }
             try {
                 Object[] supplierArgs = new Object[args.length];
@@ -255,11 +340,12 @@ public class PluginInvokePostProcessor implements PluginPostProcessor {
         /**
          * 没有注解调用
          *
-         * @param method 调用接口的方法
-         * @param args   传入参数
+         * @param supplier 被调用者
+         * @param method   调用接口的方法
+         * @param args     传入参数
          * @return 返回值
          */
-        private Object notAnnotationInvoke(Method method, Object[] args) {
+        private Object notAnnotationInvoke(Object supplier, Method method, Object[] args) {
             String name = method.getName();
             Class<?>[] argClasses = new Class<?>[args.length];
             for (int i = 0; i < args.length; i++) {
@@ -304,17 +390,19 @@ public class PluginInvokePostProcessor implements PluginPostProcessor {
      *
      * @param <T> 接口泛型
      */
-    private static class CallerInterfaceFactory<T> implements FactoryBean<T> {
+    private static class CallerInterfaceFactory<T> implements FactoryBean<T>, ApplicationContextAware {
 
         private Class<T> callerInterface;
         private Object supper;
+        private String supperName;
+        private ApplicationContext applicationContext;
 
         @SuppressWarnings("unchecked")
         @Override
         public T getObject() {
             ClassLoader classLoader = callerInterface.getClassLoader();
             Class<?>[] interfaces = new Class[]{callerInterface};
-            ProxyHandler proxy = new ProxyHandler(supper);
+            ProxyHandler proxy = new ProxyHandler(supperName, supper, applicationContext);
             return (T) Proxy.newProxyInstance(classLoader, interfaces, proxy);
         }
 
@@ -339,6 +427,19 @@ public class PluginInvokePostProcessor implements PluginPostProcessor {
         public void setSupper(Object supper) {
             this.supper = supper;
         }
+
+        public String getSupperName() {
+            return supperName;
+        }
+
+        public void setSupperName(String supperName) {
+            this.supperName = supperName;
+        }
+
+        @Override
+        public void setApplicationContext(ApplicationContext applicationContext) {
+            this.applicationContext = applicationContext;
+        }
     }
 
 }
@@ -72,4 +72,10 @@ public class PluginOneselfStartEventProcessor implements PluginPostProcessor {
         // 此处不卸载调用
     }
 
+    @Override
+    public void rollbackUpgrade(List<PluginRegistryInfo> oldPluginRegistryInfos,
+                                List<PluginRegistryInfo> newPluginRegistryInfos) {
+        // 升级时旧版本未停止, 不再触发其启动事件。新版本的停止事件在卸载新版本时触发
+    }
+
 }
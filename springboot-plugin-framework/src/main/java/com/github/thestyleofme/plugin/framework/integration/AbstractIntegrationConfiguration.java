@@ -29,4 +29,99 @@ public abstract class AbstractIntegrationConfiguration implements IntegrationCon
     public boolean enablePluginIdRestControllerPathPrefix() {
         return true;
     }
+
+    @Override
+    public int registerParallelism() {
+        return 1;
+    }
+
+    @Override
+    public long upgradeDrainMillis() {
+        return 30000L;
+    }
+
+    @Override
+    public boolean lazyActivation() {
+        return false;
+    }
+
+    @Override
+    public int asyncOperatorThreads() {
+        return 2;
+    }
+
+    @Override
+    public int asyncOperatorQueueCapacity() {
+        return 64;
+    }
+
+    @Override
+    public int stageTimingHistorySize() {
+        return 1000;
+    }
+
+    @Override
+    public int backupMaxCount() {
+        return 0;
+    }
+
+    @Override
+    public long backupMaxAgeMillis() {
+        return 0L;
+    }
+
+    @Override
+    public long backupMaxTotalSize() {
+        return 0L;
+    }
+
+    @Override
+    public long backupCompactIntervalMillis() {
+        return 600000L;
+    }
+
+    @Override
+    public boolean autoDeploy() {
+        return false;
+    }
+
+    @Override
+    public long autoDeployDebounceMillis() {
+        return 2000L;
+    }
+
+    @Override
+    public boolean devHotRestart() {
+        return false;
+    }
+
+    @Override
+    public long devHotRestartDebounceMillis() {
+        return 300L;
+    }
+
+    @Override
+    public int classLoaderNegativeCacheSize() {
+        return 4096;
+    }
+
+    @Override
+    public String sharedLibPath() {
+        return "lib-shared";
+    }
+
+    @Override
+    public boolean pluginLeakDetection() {
+        return false;
+    }
+
+    @Override
+    public long pluginLeakDetectionTimeoutMillis() {
+        return 10000L;
+    }
+
+    @Override
+    public boolean backupImportLegacy() {
+        return false;
+    }
 }
@@ -23,6 +23,25 @@ public class ConfigurationBuilder extends AbstractIntegrationConfiguration {
     private final String backupPath;
     private final String pluginRestControllerPathPrefix;
     private final Boolean enablePluginIdRestControllerPathPrefix;
+    private final Integer registerParallelism;
+    private final Long upgradeDrainMillis;
+    private final Boolean lazyActivation;
+    private final Integer asyncOperatorThreads;
+    private final Integer asyncOperatorQueueCapacity;
+    private final Integer stageTimingHistorySize;
+    private final Integer backupMaxCount;
+    private final Long backupMaxAgeMillis;
+    private final Long backupMaxTotalSize;
+    private final Long backupCompactIntervalMillis;
+    private final Boolean autoDeploy;
+    private final Long autoDeployDebounceMillis;
+    private final Boolean devHotRestart;
+    private final Long devHotRestartDebounceMillis;
+    private final Integer classLoaderNegativeCacheSize;
+    private final String sharedLibPath;
+    private final Boolean pluginLeakDetection;
+    private final Long pluginLeakDetectionTimeoutMillis;
+    private final Boolean backupImportLegacy;
 
     public ConfigurationBuilder(Builder builder) {
         this.runtimeMode = Objects.requireNonNull(builder.runtimeMode, "runtimeMode can't be empty");
@@ -33,6 +52,25 @@ public class ConfigurationBuilder extends AbstractIntegrationConfiguration {
         this.backupPath = builder.backupPath;
         this.pluginRestControllerPathPrefix = builder.pluginRestControllerPathPrefix;
         this.enablePluginIdRestControllerPathPrefix = builder.enablePluginIdRestControllerPathPrefix;
+        this.registerParallelism = builder.registerParallelism;
+        this.upgradeDrainMillis = builder.upgradeDrainMillis;
+        this.lazyActivation = builder.lazyActivation;
+        this.asyncOperatorThreads = builder.asyncOperatorThreads;
+        this.asyncOperatorQueueCapacity = builder.asyncOperatorQueueCapacity;
+        this.stageTimingHistorySize = builder.stageTimingHistorySize;
+        this.backupMaxCount = builder.backupMaxCount;
+        this.backupMaxAgeMillis = builder.backupMaxAgeMillis;
+        this.backupMaxTotalSize = builder.backupMaxTotalSize;
+        this.backupCompactIntervalMillis = builder.backupCompactIntervalMillis;
+        this.autoDeploy = builder.autoDeploy;
+        this.autoDeployDebounceMillis = builder.autoDeployDebounceMillis;
+        this.devHotRestart = builder.devHotRestart;
+        this.devHotRestartDebounceMillis = builder.devHotRestartDebounceMillis;
+        this.classLoaderNegativeCacheSize = builder.classLoaderNegativeCacheSize;
+        this.sharedLibPath = builder.sharedLibPath;
+        this.pluginLeakDetection = builder.pluginLeakDetection;
+        this.pluginLeakDetectionTimeoutMillis = builder.pluginLeakDetectionTimeoutMillis;
+        this.backupImportLegacy = builder.backupImportLegacy;
     }
 
     public static Builder toBuilder() {
@@ -48,6 +86,25 @@ public class ConfigurationBuilder extends AbstractIntegrationConfiguration {
         private String backupPath;
         private String pluginRestControllerPathPrefix;
         private Boolean enablePluginIdRestControllerPathPrefix;
+        private Integer registerParallelism;
+        private Long upgradeDrainMillis;
+        private Boolean lazyActivation;
+        private Integer asyncOperatorThreads;
+        private Integer asyncOperatorQueueCapacity;
+        private Integer stageTimingHistorySize;
+        private Integer backupMaxCount;
+        private Long backupMaxAgeMillis;
+        private Long backupMaxTotalSize;
+        private Long backupCompactIntervalMillis;
+        private Boolean autoDeploy;
+        private Long autoDeployDebounceMillis;
+        private Boolean devHotRestart;
+        private Long devHotRestartDebounceMillis;
+        private Integer classLoaderNegativeCacheSize;
+        private String sharedLibPath;
+        private Boolean pluginLeakDetection;
+        private Long pluginLeakDetectionTimeoutMillis;
+        private Boolean backupImportLegacy;
 
         public Builder runtimeMode(RuntimeMode runtimeMode) {
             this.runtimeMode = runtimeMode;
@@ -84,6 +141,101 @@ public class ConfigurationBuilder extends AbstractIntegrationConfiguration {
             return this;
         }
 
+        public Builder registerParallelism(Integer registerParallelism) {
+            this.registerParallelism = registerParallelism;
+            return this;
+        }
+
+        public Builder upgradeDrainMillis(Long upgradeDrainMillis) {
+            this.upgradeDrainMillis = upgradeDrainMillis;
+            return this;
+        }
+
+        public Builder lazyActivation(Boolean lazyActivation) {
+            this.lazyActivation = lazyActivation;
+            return this;
+        }
+
+        public Builder asyncOperatorThreads(Integer asyncOperatorThreads) {
+            this.asyncOperatorThreads = asyncOperatorThreads;
+            return this;
+        }
+
+        public Builder asyncOperatorQueueCapacity(Integer asyncOperatorQueueCapacity) {
+            this.asyncOperatorQueueCapacity = asyncOperatorQueueCapacity;
+            return this;
+        }
+
+        public Builder stageTimingHistorySize(Integer stageTimingHistorySize) {
+            this.stageTimingHistorySize = stageTimingHistorySize;
+            return this;
+        }
+
+        public Builder backupMaxCount(Integer backupMaxCount) {
+            this.backupMaxCount = backupMaxCount;
+            return this;
+        }
+
+        public Builder backupMaxAgeMillis(Long backupMaxAgeMillis) {
+            this.backupMaxAgeMillis = backupMaxAgeMillis;
+            return this;
+        }
+
+        public Builder backupMaxTotalSize(Long backupMaxTotalSize) {
+            this.backupMaxTotalSize = backupMaxTotalSize;
+            return this;
+        }
+
+        public Builder backupCompactIntervalMillis(Long backupCompactIntervalMillis) {
+            this.backupCompactIntervalMillis = backupCompactIntervalMillis;
+            return this;
+        }
+
+        public Builder autoDeploy(Boolean autoDeploy) {
+            this.autoDeploy = autoDeploy;
+            return this;
+        }
+
+        public Builder autoDeployDebounceMillis(Long autoDeployDebounceMillis) {
+            this.autoDeployDebounceMillis = autoDeployDebounceMillis;
+            return this;
+        }
+
+        public Builder devHotRestart(Boolean devHotRestart) {
+            this.devHotRestart = devHotRestart;
+            return this;
+        }
+
+        public Builder devHotRestartDebounceMillis(Long devHotRestartDebounceMillis) {
+            this.devHotRestartDebounceMillis = devHotRestartDebounceMillis;
+            return this;
+        }
+
+        public Builder classLoaderNegativeCacheSize(Integer classLoaderNegativeCacheSize) {
+            this.classLoaderNegativeCacheSize = classLoaderNegativeCacheSize;
+            return this;
+        }
+
+        public Builder sharedLibPath(String sharedLibPath) {
+            this.sharedLibPath = sharedLibPath;
+            return this;
+        }
+
+        public Builder pluginLeakDetection(Boolean pluginLeakDetection) {
+            this.pluginLeakDetection = pluginLeakDetection;
+            return this;
+        }
+
+        public Builder pluginLeakDetectionTimeoutMillis(Long pluginLeakDetectionTimeoutMillis) {
+            this.pluginLeakDetectionTimeoutMillis = pluginLeakDetectionTimeoutMillis;
+            return this;
+        }
+
+        public Builder backupImportLegacy(Boolean backupImportLegacy) {
+            this.backupImportLegacy = backupImportLegacy;
+            return this;
+        }
+
         public ConfigurationBuilder build() {
             return new ConfigurationBuilder(this);
         }
@@ -141,4 +293,175 @@ public class ConfigurationBuilder extends AbstractIntegrationConfiguration {
         }
     }
 
+    @Override
+    public int registerParallelism() {
+        if (registerParallelism == null) {
+            return super.registerParallelism();
+        } else {
+            return registerParallelism;
+        }
+    }
+
+    @Override
+    public long upgradeDrainMillis() {
+        if (upgradeDrainMillis == null) {
+            return super.upgradeDrainMillis();
+        } else {
+            return upgradeDrainMillis;
+        }
+    }
+
+    @Override
+    public boolean lazyActivation() {
+        if (lazyActivation == null) {
+            return super.lazyActivation();
+        } else {
+            return lazyActivation;
+        }
+    }
+
+    @Override
+    public int asyncOperatorThreads() {
+        if (asyncOperatorThreads == null) {
+            return super.asyncOperatorThreads();
+        } else {
+            return asyncOperatorThreads;
+        }
+    }
+
+    @Override
+    public int asyncOperatorQueueCapacity() {
+        if (asyncOperatorQueueCapacity == null) {
+            return super.asyncOperatorQueueCapacity();
+        } else {
+            return asyncOperatorQueueCapacity;
+        }
+    }
+
+    @Override
+    public int stageTimingHistorySize() {
+        if (stageTimingHistorySize == null) {
+            return super.stageTimingHistorySize();
+        } else {
+            return stageTimingHistorySize;
+        }
+    }
+
+    @Override
+    public int backupMaxCount() {
+        if (backupMaxCount == null) {
+            return super.backupMaxCount();
+        } else {
+            return backupMaxCount;
+        }
+    }
+
+    @Override
+    public long backupMaxAgeMillis() {
+        if (backupMaxAgeMillis == null) {
+            return super.backupMaxAgeMillis();
+        } else {
+            return backupMaxAgeMillis;
+        }
+    }
+
+    @Override
+    public long backupMaxTotalSize() {
+        if (backupMaxTotalSize == null) {
+            return super.backupMaxTotalSize();
+        } else {
+            return backupMaxTotalSize;
+        }
+    }
+
+    @Override
+    public long backupCompactIntervalMillis() {
+        if (backupCompactIntervalMillis == null) {
+            return super.backupCompactIntervalMillis();
+        } else {
+            return backupCompactIntervalMillis;
+        }
+    }
+
+    @Override
+    public boolean autoDeploy() {
+        if (autoDeploy == null) {
+            return super.autoDeploy();
+        } else {
+            return autoDeploy;
+        }
+    }
+
+    @Override
+    public long autoDeployDebounceMillis() {
+        if (autoDeployDebounceMillis == null) {
+            return super.autoDeployDebounceMillis();
+        } else {
+            return autoDeployDebounceMillis;
+        }
+    }
+
+    @Override
+    public boolean devHotRestart() {
+        if (devHotRestart == null) {
+            return super.devHotRestart();
+        } else {
+            return devHotRestart;
+        }
+    }
+
+    @Override
+    public long devHotRestartDebounceMillis() {
+        if (devHotRestartDebounceMillis == null) {
+            return super.devHotRestartDebounceMillis();
+        } else {
+            return devHotRestartDebounceMillis;
+        }
+    }
+
+    @Override
+    public int classLoaderNegativeCacheSize() {
+        if (classLoaderNegativeCacheSize == null) {
+            return super.classLoaderNegativeCacheSize();
+        } else {
+            return classLoaderNegativeCacheSize;
+        }
+    }
+
+    @Override
+    public String sharedLibPath() {
+        if (sharedLibPath == null) {
+            return super.sharedLibPath();
+        } else {
+            return sharedLibPath;
+        }
+    }
+
+    @Override
+    public boolean pluginLeakDetection() {
+        if (pluginLeakDetection == null) {
+            return super.pluginLeakDetection();
+        } else {
+            return pluginLeakDetection;
+        }
+    }
+
+    @Override
+    public long pluginLeakDetectionTimeoutMillis() {
+        if (pluginLeakDetectionTimeoutMillis == null) {
+            return super.pluginLeakDetectionTimeoutMillis();
+        } else {
+            return pluginLeakDetectionTimeoutMillis;
+        }
+    }
+
+    @Override
+    public boolean backupImportLegacy() {
+        if (backupImportLegacy == null) {
+            return super.backupImportLegacy();
+        } else {
+            return backupImportLegacy;
+        }
+    }
+
 }
@@ -65,5 +65,148 @@ public interface IntegrationConfiguration {
      */
     boolean enablePluginIdRestControllerPathPrefix();
 
+    /**
+     * 插件注册的并行度。批量注册插件时, 插件中与Spring上下文无关的阶段(类加载分组、配置文件解析)
+     * 会在该并行度的 ForkJoinPool 中执行, Spring bean 的注册依旧串行。小于等于1表示全部串行执行。
+     *
+     * @return 并行度
+     */
+    int registerParallelism();
+
+    /**
+     * 插件升级后旧版本的排空时间(毫秒)。新版本切换完成后, 旧版本插件在该时间后才停止并释放类加载器,
+     * 以便正在处理中的请求执行完成。小于等于0表示切换后立即释放。
+     *
+     * @return 排空时间
+     */
+    long upgradeDrainMillis();
+
+    /**
+     * 是否延迟激活插件。启用后, 启动时只读取插件描述并注册占位的请求路径,
+     * 插件的类扫描、bean注册、请求映射在第一次访问该插件的请求路径或第一次通过 PluginUser 获取插件bean时执行。
+     * 占位的请求路径需要启用 enablePluginIdRestControllerPathPrefix
+     *
+     * @return boolean
+     */
+    boolean lazyActivation();
+
+    /**
+     * 异步插件操作者的线程数。不同插件的操作可以并发执行, 同一插件的操作依旧串行
+     *
+     * @return 线程数
+     */
+    int asyncOperatorThreads();
+
+    /**
+     * 异步插件操作者等待执行的操作数量上限。超过上限时操作直接以失败结束, 不会阻塞调用线程
+     *
+     * @return 队列容量
+     */
+    int asyncOperatorQueueCapacity();
+
+    /**
+     * 保留的插件处理者耗时记录数量。每个处理者对每个插件的每次执行记录一条, 超过数量时丢弃最早的记录。
+     * 小于等于0表示不保留历史记录, 但仍然输出到 PluginMetricsSink
+     *
+     * @return 记录数量
+     */
+    int stageTimingHistorySize();
+
+    /**
+     * 每个插件保留的备份数量。超出的较早备份在后台压缩时被清除, 每个插件最近的一个备份总会保留。小于等于0表示不限制, 默认不限制。
+     *
+     * @return 备份数量
+     */
+    int backupMaxCount();
+
+    /**
+     * 备份的保留时间(毫秒)。超出的备份在后台压缩时被清除, 每个插件最近的一个备份总会保留。小于等于0表示不限制, 默认不限制。
+     *
+     * @return 保留时间
+     */
+    long backupMaxAgeMillis();
+
+    /**
+     * 备份目录的总大小上限(字节)。超出时从最早的备份开始清除, 每个插件最近的一个备份总会保留。小于等于0表示不限制。
+     *
+     * @return 总大小上限
+     */
+    long backupMaxTotalSize();
+
+    /**
+     * 备份后台压缩的间隔(毫秒)。压缩时按保留策略清除备份, 并删除不再被引用的备份文件。小于等于0表示只在备份后压缩。
+     *
+     * @return 压缩间隔
+     */
+    long backupCompactIntervalMillis();
+
+    /**
+     * 是否监听插件目录自动部署。启用后, 插件目录中新增或修改的插件包在写入完成后自动安装或升级, 删除的插件包自动卸载。
+     * 开发环境下不生效。
+     *
+     * @return boolean
+     */
+    boolean autoDeploy();
+
+    /**
+     * 自动部署的防抖时间(毫秒)。插件目录在该时间内没有新的变化, 且插件包大小稳定、压缩包中央目录完整时, 才批量部署这段时间内的变化。
+     *
+     * @return 防抖时间
+     */
+    long autoDeployDebounceMillis();
+
+    /**
+     * 开发环境下是否监听插件编译输出目录自动重启插件。启用后, 插件的类文件重新编译后, 只重启该插件及依赖它的插件,
+     * 重启时创建新的类加载器, 类名与类索引只更新变化的类。生产环境下不生效。
+     *
+     * @return boolean
+     */
+    boolean devHotRestart();
+
+    /**
+     * 开发环境自动重启的防抖时间(毫秒)。编译输出目录在该时间内没有新的变化, 才重启这段时间内类文件变化的插件。
+     *
+     * @return 防抖时间
+     */
+    long devHotRestartDebounceMillis();
+
+    /**
+     * 插件类加载器缓存的不存在的类与资源的数量。框架与第三方库会反复探测可选的类, 缓存后再次查找时不再经过父类加载器、
+     * 插件与依赖插件, 也不再创建异常堆栈。小于等于0时不缓存。
+     *
+     * @return 缓存数量
+     */
+    int classLoaderNegativeCacheSize();
+
+    /**
+     * 共享库目录。目录中的 jar 只加载一次, 位于主程序与插件的类加载器之间, 插件通过描述中的 plugin.sharedLibraries
+     * (MANIFEST.MF 中为 Plugin-Shared-Libraries) 声明使用的共享库。目录不存在时不使用共享库。
+     *
+     * @return 共享库目录
+     */
+    String sharedLibPath();
+
+    /**
+     * 是否检查插件卸载后类加载器被回收。启用时插件卸载、替换后在后台触发GC检查,
+     * 没有被回收时输出仍然引用类加载器的持有者。
+     *
+     * @return 是否检查
+     */
+    boolean pluginLeakDetection();
+
+    /**
+     * 插件类加载器泄漏检查等待回收的超时时间(毫秒)。
+     *
+     * @return 超时时间
+     */
+    long pluginLeakDetectionTimeoutMillis();
+
+    /**
+     * 是否在备份后台压缩时导入备份目录下旧版本格式([标志][时间]_文件名)的备份文件。默认不导入。
+     * 导入后原文件被移入备份存储, 并与其余备份一样受保留策略约束。
+     *
+     * @return true 导入, false 不导入
+     */
+    boolean backupImportLegacy();
 
 }
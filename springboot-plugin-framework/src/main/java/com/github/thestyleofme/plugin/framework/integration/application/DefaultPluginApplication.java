@@ -3,9 +3,12 @@ package com.github.thestyleofme.plugin.framework.integration.application;
 import java.util.Objects;
 import java.util.concurrent.atomic.AtomicBoolean;
 
+import com.github.thestyleofme.plugin.framework.cds.PluginCdsArchive;
 import com.github.thestyleofme.plugin.framework.exceptions.PluginException;
 import com.github.thestyleofme.plugin.framework.integration.IntegrationConfiguration;
 import com.github.thestyleofme.plugin.framework.integration.listener.PluginInitializerListener;
+import com.github.thestyleofme.plugin.framework.integration.operator.AsyncPluginOperator;
+import com.github.thestyleofme.plugin.framework.integration.operator.DefaultAsyncPluginOperator;
 import com.github.thestyleofme.plugin.framework.integration.operator.DefaultPluginOperator;
 import com.github.thestyleofme.plugin.framework.integration.operator.PluginOperator;
 import com.github.thestyleofme.plugin.framework.integration.pf4j.DefaultPf4jFactory;
@@ -15,17 +18,18 @@ import com.github.thestyleofme.plugin.framework.integration.user.PluginUser;
 import org.pf4j.PluginManager;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.context.ApplicationContext;
 
 /**
  * <p>
- * 默认的插件 PluginApplication
+ * 默认的插件 PluginApplication。作为 Spring bean 时, 容器关闭时关闭插件操作者的后台任务
  * </p>
  *
  * @author isaac 2020/6/16 14:15
  * @since 1.0
  */
-public class DefaultPluginApplication extends AbstractPluginApplication {
+public class DefaultPluginApplication extends AbstractPluginApplication implements DisposableBean {
 
     private final Logger log = LoggerFactory.getLogger(this.getClass());
 
@@ -33,6 +37,7 @@ public class DefaultPluginApplication extends AbstractPluginApplication {
 
     private PluginUser pluginUser;
     private PluginOperator pluginOperator;
+    private AsyncPluginOperator asyncPluginOperator;
 
     private final AtomicBoolean beInitialized = new AtomicBoolean(false);
 
@@ -58,12 +63,16 @@ public class DefaultPluginApplication extends AbstractPluginApplication {
         PluginManager pluginManager = integrationFactory.getPluginManager();
         pluginUser = createPluginUser(applicationContext, pluginManager);
         pluginOperator = createPluginOperator(applicationContext, pluginManager, configuration);
+        asyncPluginOperator = createAsyncPluginOperator(pluginOperator, configuration);
         try {
             pluginOperator.initPlugins(listener);
             beInitialized.set(true);
         } catch (Exception e) {
             log.error("initPlugins error,", e);
         }
+        if (beInitialized.get()) {
+            PluginCdsArchive.onPluginsInitialized(pluginManager);
+        }
     }
 
     /**
@@ -98,18 +107,49 @@ public class DefaultPluginApplication extends AbstractPluginApplication {
     }
 
 
+    /**
+     * 创建异步的插件操作者。子类可扩展
+     *
+     * @param pluginOperator 插件操作者
+     * @param configuration  当前集成的配置
+     * @return AsyncPluginOperator
+     */
+    protected AsyncPluginOperator createAsyncPluginOperator(PluginOperator pluginOperator,
+                                                            IntegrationConfiguration configuration) {
+        return new DefaultAsyncPluginOperator(pluginOperator, configuration);
+    }
+
     @Override
     public PluginOperator getPluginOperator() {
         assertInjected();
         return pluginOperator;
     }
 
+    @Override
+    public AsyncPluginOperator getAsyncPluginOperator() {
+        assertInjected();
+        return asyncPluginOperator;
+    }
+
     @Override
     public PluginUser getPluginUser() {
         assertInjected();
         return pluginUser;
     }
 
+    /**
+     * Spring 容器关闭时, 关闭异步执行的线程池与插件操作者的后台任务
+     */
+    @Override
+    public void destroy() {
+        if (asyncPluginOperator != null) {
+            asyncPluginOperator.shutdown();
+        }
+        if (pluginOperator != null) {
+            pluginOperator.shutdown();
+        }
+    }
+
     /**
      * 检查注入
      */
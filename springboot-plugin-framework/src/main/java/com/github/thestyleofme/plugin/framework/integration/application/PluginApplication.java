@@ -3,6 +3,7 @@ package com.github.thestyleofme.plugin.framework.integration.application;
 import com.github.thestyleofme.plugin.framework.extension.AbstractExtension;
 import com.github.thestyleofme.plugin.framework.integration.PluginListenerContext;
 import com.github.thestyleofme.plugin.framework.integration.listener.PluginInitializerListener;
+import com.github.thestyleofme.plugin.framework.integration.operator.AsyncPluginOperator;
 import com.github.thestyleofme.plugin.framework.integration.operator.PluginOperator;
 import com.github.thestyleofme.plugin.framework.integration.user.PluginUser;
 import org.springframework.context.ApplicationContext;
@@ -33,6 +34,13 @@ public interface PluginApplication extends PluginListenerContext {
      */
     PluginOperator getPluginOperator();
 
+    /**
+     * 获得异步的插件操作者
+     *
+     * @return 异步的插件操作者
+     */
+    AsyncPluginOperator getAsyncPluginOperator();
+
     /**
      * 获得插插件操作者
      *
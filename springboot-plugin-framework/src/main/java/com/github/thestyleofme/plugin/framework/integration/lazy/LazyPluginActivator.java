@@ -0,0 +1,390 @@
+package com.github.thestyleofme.plugin.framework.integration.lazy;
+
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import com.github.thestyleofme.plugin.framework.constants.BaseConstants;
+import com.github.thestyleofme.plugin.framework.exceptions.PluginException;
+import com.github.thestyleofme.plugin.framework.integration.IntegrationConfiguration;
+import com.github.thestyleofme.plugin.framework.integration.operator.PluginOperator;
+import org.pf4j.PluginDependency;
+import org.pf4j.PluginManager;
+import org.pf4j.PluginState;
+import org.pf4j.PluginWrapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.support.GenericApplicationContext;
+import org.springframework.util.ReflectionUtils;
+import org.springframework.util.StringUtils;
+import org.springframework.web.servlet.mvc.method.RequestMappingInfo;
+import org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandlerMapping;
+import org.springframework.web.util.UrlPathHelper;
+
+/**
+ * <p>
+ * 插件延迟激活者。启动时只为插件注册占位的请求路径 /pathPrefix/pluginId/**,
+ * 第一次访问该路径、第一次获取插件bean或者第一次调用插件的 @Supplier 时, 才启动插件并注册到Spring。
+ * 同一插件并发的激活只执行一次, 其余调用者等待该次激活完成
+ * <p>
+ * 按名称或类型获取bean时, 根据插件的bean路由信息({@link LazyPluginRoute})只激活可能提供该bean的插件,
+ * 没有插件提供时不激活任何插件。插件构建时生成了类索引时, 添加插件时即读取路由信息, 否则在第一次需要时扫描插件包读取
+ * </p>
+ *
+ * @author isaac 2020/10/21 16:25
+ * @since 1.0
+ */
+public class LazyPluginActivator {
+
+    /**
+     * 在Spring上下文中注册的bean名称
+     */
+    public static final String BEAN_NAME = "pluginLazyActivator";
+
+    private static final Method HANDLE_METHOD = ReflectionUtils.findMethod(PlaceholderHandler.class, "handle",
+            HttpServletRequest.class, HttpServletResponse.class);
+
+    private final Logger log = LoggerFactory.getLogger(this.getClass());
+
+    private final GenericApplicationContext applicationContext;
+    private final IntegrationConfiguration integrationConfiguration;
+    private final PluginManager pluginManager;
+    private final PluginOperator pluginOperator;
+
+    /**
+     * 等待激活的插件id与其占位的请求路径。没有占位路径时值为空串
+     */
+    private final Map<String, String> lazyPlugins = new ConcurrentHashMap<>();
+
+    /**
+     * 正在激活的插件
+     */
+    private final Map<String, Activation> activations = new ConcurrentHashMap<>();
+
+    /**
+     * 等待激活的插件的bean路由信息
+     */
+    private final Map<String, LazyPluginRoute> routes = new ConcurrentHashMap<>();
+
+    private RequestMappingHandlerMapping requestMappingHandlerMapping;
+
+    public LazyPluginActivator(ApplicationContext applicationContext,
+                               IntegrationConfiguration integrationConfiguration,
+                               PluginManager pluginManager,
+                               PluginOperator pluginOperator) {
+        Objects.requireNonNull(applicationContext, "ApplicationContext can't be null");
+        this.applicationContext = (GenericApplicationContext) applicationContext;
+        this.integrationConfiguration = integrationConfiguration;
+        this.pluginManager = pluginManager;
+        this.pluginOperator = pluginOperator;
+    }
+
+    /**
+     * 从Spring上下文中获取延迟激活者
+     *
+     * @param applicationContext Spring上下文
+     * @return 延迟激活者, 未启用延迟激活时为空
+     */
+    public static LazyPluginActivator get(ApplicationContext applicationContext) {
+        if (applicationContext == null || !applicationContext.containsBean(BEAN_NAME)) {
+            return null;
+        }
+        return applicationContext.getBean(BEAN_NAME, LazyPluginActivator.class);
+    }
+
+    /**
+     * 将自身注册到Spring上下文中, 供插件bean的获取者、@Caller 代理使用
+     */
+    public void registerToContext() {
+        if (!applicationContext.containsBean(BEAN_NAME)) {
+            applicationContext.getBeanFactory().registerSingleton(BEAN_NAME, this);
+        }
+    }
+
+    /**
+     * 添加等待激活的插件, 并注册占位的请求路径
+     *
+     * @param pluginWrapper 插件
+     */
+    public void addLazyPlugin(PluginWrapper pluginWrapper) {
+        String pluginId = pluginWrapper.getPluginId();
+        String placeholderPath = getPlaceholderPath(pluginId);
+        if (!placeholderPath.isEmpty()) {
+            RequestMappingInfo requestMappingInfo = RequestMappingInfo.paths(placeholderPath).build();
+            getRequestMappingHandlerMapping().registerMapping(requestMappingInfo,
+                    new PlaceholderHandler(pluginId), HANDLE_METHOD);
+        }
+        try {
+            LazyPluginRoute route = LazyPluginRoute.read(pluginWrapper, applicationContext, false);
+            if (route != null) {
+                routes.put(pluginId, route);
+            }
+        } catch (IOException e) {
+            log.warn("Plugin '{}' read bean routes failure, read it on first use. {}", pluginId, e.getMessage());
+        }
+        lazyPlugins.put(pluginId, placeholderPath);
+        log.info("Plugin '{}' will be activated on first use", pluginId);
+    }
+
+    /**
+     * 移除等待激活的插件及其占位的请求路径。插件被启动或卸载时调用
+     *
+     * @param pluginId 插件id
+     */
+    public void removeLazyPlugin(String pluginId) {
+        String placeholderPath = lazyPlugins.remove(pluginId);
+        routes.remove(pluginId);
+        if (placeholderPath == null || placeholderPath.isEmpty()) {
+            return;
+        }
+        try {
+            getRequestMappingHandlerMapping().unregisterMapping(RequestMappingInfo.paths(placeholderPath).build());
+        } catch (Exception e) {
+            log.warn("Plugin '{}' unregister placeholder mapping '{}' failure. {}",
+                    pluginId, placeholderPath, e.getMessage());
+        }
+    }
+
+    /**
+     * 插件是否等待激活
+     *
+     * @param pluginId 插件id
+     * @return boolean
+     */
+    public boolean isLazy(String pluginId) {
+        return pluginId != null && lazyPlugins.containsKey(pluginId);
+    }
+
+    /**
+     * 激活插件。插件依赖的等待激活的插件先被激活。并发调用时只执行一次激活, 其余调用者等待其结果
+     *
+     * @param pluginId 插件id
+     * @return 插件是否已启动
+     */
+    public boolean activate(String pluginId) {
+        if (!isLazy(pluginId)) {
+            PluginWrapper pluginWrapper = pluginManager.getPlugin(pluginId);
+            return pluginWrapper != null && pluginWrapper.getPluginState() == PluginState.STARTED;
+        }
+        Activation activation = new Activation();
+        Activation inFlight = activations.putIfAbsent(pluginId, activation);
+        if (inFlight != null) {
+            if (inFlight.thread == Thread.currentThread()) {
+                // 激活过程中再次获取该插件, 例如插件启动时获取自身的bean
+                return false;
+            }
+            try {
+                return inFlight.result.join();
+            } catch (CompletionException e) {
+                throw new PluginException("Plugin '" + pluginId + "' activate failure", e.getCause());
+            }
+        }
+        try {
+            boolean started = doActivate(pluginId);
+            activation.result.complete(started);
+            return started;
+        } catch (Exception e) {
+            activation.result.completeExceptionally(e);
+            throw e;
+        } finally {
+            activations.remove(pluginId, activation);
+        }
+    }
+
+    /**
+     * 激活所有等待激活的插件
+     */
+    public void activateAll() {
+        for (String pluginId : new ArrayList<>(lazyPlugins.keySet())) {
+            activateQuietly(pluginId);
+        }
+    }
+
+    /**
+     * 激活提供该bean的插件。插件bean名称以 "插件id@" 开头时只激活该插件, 否则激活路由信息中提供该名称的插件。
+     * 没有插件提供该名称时不激活任何插件
+     *
+     * @param beanName bean名称, 包括 @Supplier 的key
+     * @return bean是否存在
+     */
+    public boolean activateBean(String beanName) {
+        if (applicationContext.containsBean(beanName)) {
+            return true;
+        }
+        int index = beanName.indexOf(BaseConstants.Symbol.AT);
+        if (index > 0 && isLazy(beanName.substring(0, index))) {
+            activate(beanName.substring(0, index));
+            return applicationContext.containsBean(beanName);
+        }
+        for (String pluginId : new ArrayList<>(lazyPlugins.keySet())) {
+            LazyPluginRoute route = getRoute(pluginId);
+            if (route == null || route.providesBean(beanName)) {
+                activateQuietly(pluginId);
+                if (applicationContext.containsBean(beanName)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 激活路由信息中可能提供该类型的bean的插件。没有插件提供该类型时不激活任何插件
+     *
+     * @param type bean的类型
+     */
+    public void activateType(Class<?> type) {
+        for (String pluginId : new ArrayList<>(lazyPlugins.keySet())) {
+            LazyPluginRoute route = getRoute(pluginId);
+            if (route == null || route.providesType(type)) {
+                activateQuietly(pluginId);
+            }
+        }
+    }
+
+    /**
+     * 是否存在等待激活的插件
+     *
+     * @return boolean
+     */
+    public boolean hasLazyPlugins() {
+        return !lazyPlugins.isEmpty();
+    }
+
+    /**
+     * 得到插件的bean路由信息, 插件构建时没有生成类索引时扫描插件包读取
+     *
+     * @param pluginId 插件id
+     * @return bean路由信息, 无法读取时为空, 此时无法判断插件提供的bean
+     */
+    private LazyPluginRoute getRoute(String pluginId) {
+        LazyPluginRoute route = routes.get(pluginId);
+        if (route != null) {
+            return route;
+        }
+        PluginWrapper pluginWrapper = pluginManager.getPlugin(pluginId);
+        if (pluginWrapper == null) {
+            return null;
+        }
+        try {
+            route = LazyPluginRoute.read(pluginWrapper, applicationContext, true);
+        } catch (IOException e) {
+            log.warn("Plugin '{}' read bean routes failure. {}", pluginId, e.getMessage());
+            return null;
+        }
+        if (isLazy(pluginId)) {
+            routes.put(pluginId, route);
+        }
+        return route;
+    }
+
+    private void activateQuietly(String pluginId) {
+        try {
+            activate(pluginId);
+        } catch (Exception e) {
+            log.error("Plugin '{}' activate failure. {}", pluginId, e.getMessage(), e);
+        }
+    }
+
+    private boolean doActivate(String pluginId) {
+        PluginWrapper pluginWrapper = pluginManager.getPlugin(pluginId);
+        if (pluginWrapper == null) {
+            removeLazyPlugin(pluginId);
+            throw new PluginException("Plugin activate failure, Not found plugin '" + pluginId + "'");
+        }
+        for (PluginDependency dependency : pluginWrapper.getDescriptor().getDependencies()) {
+            if (isLazy(dependency.getPluginId())) {
+                activate(dependency.getPluginId());
+            }
+        }
+        if (!isLazy(pluginId)) {
+            return pluginWrapper.getPluginState() == PluginState.STARTED;
+        }
+        long start = System.currentTimeMillis();
+        // 启动成功后由插件操作者移除占位路径
+        boolean started = pluginOperator.start(pluginId);
+        log.info("Plugin '{}' activated in {} ms", pluginId, System.currentTimeMillis() - start);
+        return started;
+    }
+
+    /**
+     * 得到占位的请求路径。未启用插件id作为请求路径前缀时, 无法区分插件的请求, 不注册占位路径
+     *
+     * @param pluginId 插件id
+     * @return 占位的请求路径
+     */
+    private String getPlaceholderPath(String pluginId) {
+        if (integrationConfiguration == null || !integrationConfiguration.enablePluginIdRestControllerPathPrefix()) {
+            return "";
+        }
+        String pathPrefix = integrationConfiguration.pluginRestControllerPathPrefix();
+        if (StringUtils.isEmpty(pathPrefix)) {
+            pathPrefix = BaseConstants.Symbol.SLASH + pluginId;
+        } else if (pathPrefix.endsWith(BaseConstants.Symbol.SLASH)) {
+            pathPrefix = pathPrefix + pluginId;
+        } else {
+            pathPrefix = pathPrefix + BaseConstants.Symbol.SLASH + pluginId;
+        }
+        return pathPrefix + "/**";
+    }
+
+    private synchronized RequestMappingHandlerMapping getRequestMappingHandlerMapping() {
+        if (requestMappingHandlerMapping == null) {
+            requestMappingHandlerMapping = applicationContext.getBean(RequestMappingHandlerMapping.class);
+        }
+        return requestMappingHandlerMapping;
+    }
+
+    /**
+     * 一次激活
+     */
+    private static class Activation {
+
+        private final Thread thread = Thread.currentThread();
+        private final CompletableFuture<Boolean> result = new CompletableFuture<>();
+
+    }
+
+    /**
+     * 占位请求的处理者。激活插件后将请求转发到插件真实的请求路径
+     */
+    private class PlaceholderHandler {
+
+        private final String pluginId;
+        private final UrlPathHelper urlPathHelper = new UrlPathHelper();
+
+        private PlaceholderHandler(String pluginId) {
+            this.pluginId = pluginId;
+        }
+
+        @SuppressWarnings("unused")
+        public void handle(HttpServletRequest request, HttpServletResponse response)
+                throws ServletException, IOException {
+            boolean started;
+            try {
+                started = activate(pluginId);
+            } catch (Exception e) {
+                log.error("Plugin '{}' activate failure. {}", pluginId, e.getMessage(), e);
+                started = false;
+            }
+            if (!started || isLazy(pluginId)) {
+                response.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE,
+                        "Plugin '" + pluginId + "' activate failure");
+                return;
+            }
+            String path = urlPathHelper.getPathWithinApplication(request);
+            request.getRequestDispatcher(path).forward(request, response);
+        }
+    }
+
+}
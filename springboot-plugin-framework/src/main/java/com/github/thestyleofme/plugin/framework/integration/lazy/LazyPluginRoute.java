@@ -0,0 +1,145 @@
+package com.github.thestyleofme.plugin.framework.integration.lazy;
+
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import com.github.thestyleofme.plugin.framework.annotation.Supplier;
+import com.github.thestyleofme.plugin.framework.constants.BaseConstants;
+import com.github.thestyleofme.plugin.framework.factory.process.pipe.bean.name.PluginAnnotationBeanNameGenerator;
+import com.github.thestyleofme.plugin.framework.loader.PluginClassIndex;
+import com.github.thestyleofme.plugin.framework.utils.ScanUtils;
+import org.pf4j.PluginWrapper;
+import org.springframework.beans.factory.annotation.AnnotatedGenericBeanDefinition;
+import org.springframework.beans.factory.support.BeanDefinitionRegistry;
+import org.springframework.context.annotation.Bean;
+import org.springframework.core.type.AnnotationMetadata;
+import org.springframework.core.type.MethodMetadata;
+import org.springframework.core.type.classreading.CachingMetadataReaderFactory;
+import org.springframework.core.type.classreading.MetadataReaderFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+/**
+ * <p>
+ * 等待激活的插件可能提供的bean, 用于按名称或类型获取bean时只激活可能提供该bean的插件, 不启动插件也不加载插件的类。
+ * 插件中的类、父类与接口来自插件的类索引, 显式指定的bean名称、@Bean 方法的名称与返回类型以及 @Supplier 的key
+ * 读取带注解的类的类文件得到。以 "插件id@" 开头的bean名称由前缀判断, 不在此记录
+ * <p>
+ * 只记录插件中的类定义的bean, @Bean 方法返回插件外的类型时只记录声明的返回类型。
+ * JDK 中的类型无法判断, 视为所有插件都可能提供
+ * </p>
+ *
+ * @author isaac 2020/10/27 16:00
+ * @since 1.0
+ */
+class LazyPluginRoute {
+
+    private final Set<String> beanNames = new HashSet<>();
+    private final Set<String> typeNames = new HashSet<>();
+
+    /**
+     * 插件中的类的父类是否已知。旧版本的处理器生成的索引没有父类, 此时无法判断插件是否提供类(非接口)类型的bean
+     */
+    private boolean superClassKnown = true;
+
+    private LazyPluginRoute() {
+    }
+
+    /**
+     * 读取插件的bean路由信息
+     *
+     * @param pluginWrapper 插件
+     * @param registry      生成bean名称的bean定义注册者
+     * @param scan          插件构建时没有生成类索引时是否扫描插件包
+     * @return bean路由信息, 没有类索引且不扫描时为空
+     * @throws IOException 读取异常
+     */
+    static LazyPluginRoute read(PluginWrapper pluginWrapper, BeanDefinitionRegistry registry, boolean scan)
+            throws IOException {
+        ClassLoader classLoader = pluginWrapper.getPluginClassLoader();
+        PluginClassIndex classIndex = PluginClassIndex.find(classLoader);
+        if (classIndex == null) {
+            if (!scan) {
+                return null;
+            }
+            // 与插件默认的扫描包相同, 为插件主类所在的包
+            String pluginClass = pluginWrapper.getDescriptor().getPluginClass();
+            String scanPackage = StringUtils.isEmpty(pluginClass) || pluginClass.lastIndexOf('.') < 0 ? "" :
+                    pluginClass.substring(0, pluginClass.lastIndexOf('.'));
+            classIndex = PluginClassIndex.read(classLoader,
+                    ScanUtils.scanClassPackageName(scanPackage, classLoader));
+        }
+        LazyPluginRoute route = new LazyPluginRoute();
+        String pluginId = pluginWrapper.getPluginId();
+        PluginAnnotationBeanNameGenerator beanNameGenerator = new PluginAnnotationBeanNameGenerator(pluginId, null);
+        MetadataReaderFactory metadataReaderFactory = new CachingMetadataReaderFactory(classLoader);
+        for (PluginClassIndex.Entry entry : classIndex.getEntries()) {
+            route.typeNames.add(entry.getClassName());
+            route.typeNames.addAll(entry.getInterfaceNames());
+            if (entry.getSuperClassNames() == null) {
+                route.superClassKnown = false;
+            } else {
+                route.typeNames.addAll(entry.getSuperClassNames());
+            }
+            if (!entry.getAnnotationNames().isEmpty()) {
+                route.readBeans(metadataReaderFactory.getMetadataReader(entry.getClassName())
+                        .getAnnotationMetadata(), pluginId, beanNameGenerator, registry);
+            }
+        }
+        return route;
+    }
+
+    /**
+     * 插件是否可能提供该名称的bean
+     *
+     * @param beanName bean名称, 包括 @Supplier 的key
+     * @return boolean
+     */
+    boolean providesBean(String beanName) {
+        return beanNames.contains(beanName);
+    }
+
+    /**
+     * 插件是否可能提供该类型的bean
+     *
+     * @param type bean的类型
+     * @return boolean
+     */
+    boolean providesType(Class<?> type) {
+        String typeName = type.getName();
+        if (typeNames.contains(typeName) || typeName.startsWith("java.") || typeName.startsWith("javax.")) {
+            return true;
+        }
+        return !type.isInterface() && !superClassKnown;
+    }
+
+    private void readBeans(AnnotationMetadata metadata, String pluginId,
+                           PluginAnnotationBeanNameGenerator beanNameGenerator, BeanDefinitionRegistry registry) {
+        Map<String, Object> supplier = metadata.getAnnotationAttributes(Supplier.class.getName());
+        if (supplier != null) {
+            beanNames.add((String) supplier.get("value"));
+        }
+        if (metadata.isAnnotated(Component.class.getName())) {
+            String beanName = beanNameGenerator.generateBeanName(new AnnotatedGenericBeanDefinition(metadata),
+                    registry);
+            if (!beanName.startsWith(pluginId + BaseConstants.Symbol.AT)) {
+                beanNames.add(beanName);
+            }
+        }
+        for (MethodMetadata methodMetadata : metadata.getAnnotatedMethods(Bean.class.getName())) {
+            typeNames.add(methodMetadata.getReturnTypeName());
+            Map<String, Object> bean = methodMetadata.getAnnotationAttributes(Bean.class.getName());
+            String[] names = bean == null ? null : (String[]) bean.get("name");
+            if (names == null || names.length == 0) {
+                beanNames.add(methodMetadata.getMethodName());
+            } else {
+                for (String name : names) {
+                    beanNames.add(name);
+                }
+            }
+        }
+    }
+
+}
@@ -1,5 +1,7 @@
 package com.github.thestyleofme.plugin.framework.integration.listener;
 
+import com.github.thestyleofme.plugin.framework.enums.PluginStageEnum;
+
 /**
  * <p>
  * 插件bean监听者
@@ -33,6 +35,16 @@ public interface PluginListener {
      */
     void failure(String pluginId, Throwable throwable);
 
+    /**
+     * 插件操作的阶段进度。在执行该阶段的线程中同步通知, 实现者不应执行耗时的操作
+     *
+     * @param pluginId 插件id
+     * @param stage    完成的阶段
+     */
+    default void progress(String pluginId, PluginStageEnum stage) {
+        // ignore
+    }
+
 
 }
 
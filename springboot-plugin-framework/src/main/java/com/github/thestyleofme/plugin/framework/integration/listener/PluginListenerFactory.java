@@ -2,7 +2,9 @@ package com.github.thestyleofme.plugin.framework.integration.listener;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 
+import com.github.thestyleofme.plugin.framework.enums.PluginStageEnum;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.support.BeanDefinitionBuilder;
@@ -20,7 +22,10 @@ public class PluginListenerFactory implements PluginListener {
 
     private final Logger log = LoggerFactory.getLogger(this.getClass());
 
-    private final List<PluginListener> listeners = new ArrayList<>();
+    /**
+     * 插件的操作可能在不同线程中并发通知监听者
+     */
+    private final List<PluginListener> listeners = new CopyOnWriteArrayList<>();
     private final List<Class<?>> listenerClasses = new ArrayList<>();
 
     @Override
@@ -56,6 +61,17 @@ public class PluginListenerFactory implements PluginListener {
         }
     }
 
+    @Override
+    public void progress(String pluginId, PluginStageEnum stage) {
+        for (PluginListener listener : listeners) {
+            try {
+                listener.progress(pluginId, stage);
+            } catch (Exception e) {
+                log.error("listener progress error,", e);
+            }
+        }
+    }
+
     /**
      * 添加监听者
      *
@@ -0,0 +1,92 @@
+package com.github.thestyleofme.plugin.framework.integration.operator;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import com.github.thestyleofme.plugin.framework.integration.operator.module.PluginOperationResult;
+import org.springframework.web.multipart.MultipartFile;
+
+/**
+ * <p>
+ * 异步的插件操作者。操作在专用的有界线程池中执行, 调用线程(例如请求线程)立即返回。
+ * 操作的阶段进度通过 PluginListener#progress 通知
+ * </p>
+ *
+ * @author isaac 2020/10/22 10:40
+ * @since 1.0
+ */
+public interface AsyncPluginOperator {
+
+    /**
+     * 安装插件
+     *
+     * @param path 插件路径
+     * @return 操作结果
+     */
+    CompletableFuture<PluginOperationResult> install(Path path);
+
+    /**
+     * 批量安装插件
+     *
+     * @param paths 插件路径集合
+     * @return 与插件路径一一对应的操作结果
+     */
+    CompletableFuture<List<PluginOperationResult>> installAll(List<Path> paths);
+
+    /**
+     * 上传插件并启动。上传的文件在调用线程中保存到临时目录, 安装在异步线程中执行
+     *
+     * @param pluginFile 插件文件
+     * @return 操作结果
+     */
+    CompletableFuture<PluginOperationResult> uploadPluginAndStart(MultipartFile pluginFile);
+
+    /**
+     * 升级插件
+     *
+     * @param pluginId 插件id
+     * @param path     新版本插件路径
+     * @return 操作结果
+     */
+    CompletableFuture<PluginOperationResult> upgrade(String pluginId, Path path);
+
+    /**
+     * 卸载插件
+     *
+     * @param pluginId 插件id
+     * @param isBackup 是否备份原来的插件
+     * @return 操作结果
+     */
+    CompletableFuture<PluginOperationResult> uninstall(String pluginId, boolean isBackup);
+
+    /**
+     * 启动插件
+     *
+     * @param pluginId 插件id
+     * @return 操作结果
+     */
+    CompletableFuture<PluginOperationResult> start(String pluginId);
+
+    /**
+     * 批量启动插件
+     *
+     * @param pluginIds 插件id集合
+     * @return 与插件id一一对应的操作结果
+     */
+    CompletableFuture<List<PluginOperationResult>> startAll(List<String> pluginIds);
+
+    /**
+     * 停止插件
+     *
+     * @param pluginId 插件id
+     * @return 操作结果
+     */
+    CompletableFuture<PluginOperationResult> stop(String pluginId);
+
+    /**
+     * 关闭异步执行的线程池。已提交的操作会执行完成
+     */
+    void shutdown();
+
+}
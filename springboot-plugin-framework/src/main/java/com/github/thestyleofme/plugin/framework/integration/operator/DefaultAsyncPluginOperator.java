@@ -0,0 +1,178 @@
+package com.github.thestyleofme.plugin.framework.integration.operator;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import com.github.thestyleofme.plugin.framework.exceptions.PluginException;
+import com.github.thestyleofme.plugin.framework.integration.IntegrationConfiguration;
+import com.github.thestyleofme.plugin.framework.integration.operator.module.PluginOperationResult;
+import com.github.thestyleofme.plugin.framework.utils.PluginFileUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.util.StringUtils;
+import org.springframework.web.multipart.MultipartFile;
+
+/**
+ * <p>
+ * 默认的异步插件操作者。委托同步的插件操作者在有界线程池中执行
+ * </p>
+ *
+ * @author isaac 2020/10/22 11:02
+ * @since 1.0
+ */
+public class DefaultAsyncPluginOperator implements AsyncPluginOperator {
+
+    private final Logger log = LoggerFactory.getLogger(this.getClass());
+
+    protected final PluginOperator pluginOperator;
+    protected final IntegrationConfiguration integrationConfiguration;
+    private final ThreadPoolExecutor executor;
+
+    public DefaultAsyncPluginOperator(PluginOperator pluginOperator,
+                                      IntegrationConfiguration integrationConfiguration) {
+        Objects.requireNonNull(pluginOperator, "PluginOperator can't be null");
+        Objects.requireNonNull(integrationConfiguration, "IntegrationConfiguration can't be null");
+        this.pluginOperator = pluginOperator;
+        this.integrationConfiguration = integrationConfiguration;
+        int threads = Math.max(1, integrationConfiguration.asyncOperatorThreads());
+        int queueCapacity = Math.max(1, integrationConfiguration.asyncOperatorQueueCapacity());
+        AtomicInteger threadNumber = new AtomicInteger(1);
+        // 插件中的配置文件等资源可能依赖上下文类加载器, 工作线程沿用创建者的类加载器
+        ClassLoader contextClassLoader = Thread.currentThread().getContextClassLoader();
+        this.executor = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+            Thread thread = new Thread(runnable, "plugin-operator-" + threadNumber.getAndIncrement());
+            thread.setDaemon(true);
+            thread.setContextClassLoader(contextClassLoader);
+            return thread;
+        }, new ThreadPoolExecutor.AbortPolicy());
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    @Override
+    public CompletableFuture<PluginOperationResult> install(Path path) {
+        String pathString = String.valueOf(path);
+        return submit(null, pathString, () -> pluginOperator.install(path));
+    }
+
+    @Override
+    public CompletableFuture<List<PluginOperationResult>> installAll(List<Path> paths) {
+        return supplyAsync(() -> pluginOperator.installAll(paths));
+    }
+
+    @Override
+    public CompletableFuture<PluginOperationResult> uploadPluginAndStart(MultipartFile pluginFile) {
+        if (pluginFile == null) {
+            throw new IllegalArgumentException("Method:uploadPluginAndStart param 'pluginFile' can not be null");
+        }
+        String fileName = pluginFile.getOriginalFilename();
+        if (StringUtils.isEmpty(fileName)) {
+            throw new IllegalArgumentException("Method:uploadPluginAndStart param 'pluginFile' name can not be empty");
+        }
+        // 请求结束后上传的文件会被清除, 因此在调用线程中先保存到临时目录。安装时插件文件名保持不变, 使用独立的子目录避免冲突
+        Path uploadDir = Paths.get(integrationConfiguration.uploadTempPath(),
+                "async-" + System.currentTimeMillis() + "-" + System.nanoTime());
+        Path tempPath = uploadDir.resolve(Paths.get(fileName).getFileName().toString());
+        try (InputStream inputStream = pluginFile.getInputStream()) {
+            PluginFileUtils.createExistFile(tempPath);
+            Files.copy(inputStream, tempPath, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            deleteTemp(tempPath, uploadDir);
+            throw new PluginException(e);
+        }
+        CompletableFuture<PluginOperationResult> future =
+                submit(null, fileName, () -> pluginOperator.install(tempPath));
+        future.whenComplete((result, throwable) -> deleteTemp(tempPath, uploadDir));
+        return future;
+    }
+
+    @Override
+    public CompletableFuture<PluginOperationResult> upgrade(String pluginId, Path path) {
+        return submit(pluginId, String.valueOf(path), () -> pluginOperator.upgrade(pluginId, path));
+    }
+
+    @Override
+    public CompletableFuture<PluginOperationResult> uninstall(String pluginId, boolean isBackup) {
+        return submit(pluginId, null, () -> pluginOperator.uninstall(pluginId, isBackup));
+    }
+
+    @Override
+    public CompletableFuture<PluginOperationResult> start(String pluginId) {
+        return submit(pluginId, null, () -> pluginOperator.start(pluginId));
+    }
+
+    @Override
+    public CompletableFuture<List<PluginOperationResult>> startAll(List<String> pluginIds) {
+        return supplyAsync(() -> pluginOperator.startAll(pluginIds));
+    }
+
+    @Override
+    public CompletableFuture<PluginOperationResult> stop(String pluginId) {
+        return submit(pluginId, null, () -> pluginOperator.stop(pluginId));
+    }
+
+    @Override
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    /**
+     * 异步执行返回 boolean 的操作, 并转换为操作结果。操作抛出的异常同样转换为失败的结果
+     *
+     * @param pluginId  插件id
+     * @param path      插件路径
+     * @param operation 操作
+     * @return 操作结果
+     */
+    private CompletableFuture<PluginOperationResult> submit(String pluginId, String path,
+                                                            Supplier<Boolean> operation) {
+        return supplyAsync(() -> {
+            try {
+                if (Boolean.TRUE.equals(operation.get())) {
+                    return PluginOperationResult.success(pluginId, path);
+                }
+                return PluginOperationResult.failure(pluginId, path, "failure");
+            } catch (Exception e) {
+                log.error("Plugin '{}' async operate failure. {}", pluginId == null ? path : pluginId,
+                        e.getMessage());
+                return PluginOperationResult.failure(pluginId, path, e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * 在线程池中执行操作。线程池已满时返回异常结束的结果, 不阻塞调用线程
+     *
+     * @param supplier 操作
+     * @param <T>      结果类型
+     * @return 操作结果
+     */
+    private <T> CompletableFuture<T> supplyAsync(Supplier<T> supplier) {
+        try {
+            return CompletableFuture.supplyAsync(supplier, executor);
+        } catch (RejectedExecutionException e) {
+            CompletableFuture<T> future = new CompletableFuture<>();
+            future.completeExceptionally(new PluginException("Too many plugin operations, please try again later", e));
+            return future;
+        }
+    }
+
+    private void deleteTemp(Path tempPath, Path uploadDir) {
+        try {
+            Files.deleteIfExists(tempPath);
+            Files.deleteIfExists(uploadDir);
+        } catch (IOException e) {
+            log.warn("Delete upload temp file '{}' failure. {}", tempPath, e.getMessage());
+        }
+    }
+
+}
@@ -3,26 +3,56 @@ package com.github.thestyleofme.plugin.framework.integration.operator;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.InputStream;
 import java.nio.file.*;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import com.github.thestyleofme.plugin.framework.constants.BaseConstants;
+import com.github.thestyleofme.plugin.framework.enums.JournalOperationEnum;
+import com.github.thestyleofme.plugin.framework.enums.PluginStageEnum;
 import com.github.thestyleofme.plugin.framework.exceptions.PluginException;
+import com.github.thestyleofme.plugin.framework.extension.ExtensionInitializer;
 import com.github.thestyleofme.plugin.framework.factory.DefaultPluginFactory;
 import com.github.thestyleofme.plugin.framework.factory.PluginFactory;
 import com.github.thestyleofme.plugin.framework.integration.IntegrationConfiguration;
+import com.github.thestyleofme.plugin.framework.integration.lazy.LazyPluginActivator;
 import com.github.thestyleofme.plugin.framework.integration.listener.PluginInitializerListener;
 import com.github.thestyleofme.plugin.framework.integration.listener.PluginInitializerListenerFactory;
 import com.github.thestyleofme.plugin.framework.integration.listener.PluginListenerFactory;
+import com.github.thestyleofme.plugin.framework.integration.operator.backup.PluginBackupStore;
+import com.github.thestyleofme.plugin.framework.integration.operator.deploy.PluginClassesWatcher;
+import com.github.thestyleofme.plugin.framework.integration.operator.deploy.PluginDirectoryWatcher;
+import com.github.thestyleofme.plugin.framework.integration.operator.journal.PluginOperationJournal;
+import com.github.thestyleofme.plugin.framework.integration.operator.module.PluginBackupEntry;
 import com.github.thestyleofme.plugin.framework.integration.operator.module.PluginInfo;
+import com.github.thestyleofme.plugin.framework.integration.operator.module.PluginOperationResult;
 import com.github.thestyleofme.plugin.framework.integration.operator.verify.DefaultPluginVerify;
 import com.github.thestyleofme.plugin.framework.integration.operator.verify.PluginLegalVerify;
+import com.github.thestyleofme.plugin.framework.integration.pf4j.MyDefaultPluginManager;
+import com.github.thestyleofme.plugin.framework.integration.pf4j.PluginMetadataCatalog;
+import com.github.thestyleofme.plugin.framework.leak.PluginLeakDetector;
+import com.github.thestyleofme.plugin.framework.leak.PluginLeakProbe;
+import com.github.thestyleofme.plugin.framework.leak.PluginLeakProbes;
+import com.github.thestyleofme.plugin.framework.metrics.PluginClassLoadingReporter;
+import com.github.thestyleofme.plugin.framework.metrics.PluginMetricsSink;
+import com.github.thestyleofme.plugin.framework.metrics.PluginStageRecorder;
+import com.github.thestyleofme.plugin.framework.metrics.PluginStageTiming;
 import com.github.thestyleofme.plugin.framework.utils.GlobalRegistryInfo;
 import com.github.thestyleofme.plugin.framework.utils.PluginFileUtils;
 import com.github.thestyleofme.plugin.framework.utils.PluginOperatorInfo;
+import com.github.thestyleofme.plugin.framework.utils.StripedLocks;
+import org.pf4j.PluginDependency;
+import org.pf4j.PluginDescriptor;
 import org.pf4j.PluginManager;
 import org.pf4j.PluginState;
 import org.pf4j.PluginWrapper;
@@ -47,14 +77,46 @@ public class DefaultPluginOperator implements PluginOperator {
     protected final Logger log = LoggerFactory.getLogger(this.getClass());
 
     private static final DateTimeFormatter FORMAT = DateTimeFormatter.ofPattern(BaseConstants.Pattern.NONE_DATETIME);
+    private static final int PLUGIN_LOCK_STRIPES = 64;
 
     protected final IntegrationConfiguration integrationConfiguration;
     protected final PluginManager pluginManager;
     protected final PluginFactory pluginFactory;
     protected final PluginInitializerListenerFactory pluginInitializerListenerFactory;
+    protected final PluginListenerFactory pluginListenerFactory;
+    protected final PluginStageRecorder stageRecorder;
+    protected final PluginBackupStore backupStore;
+    protected final PluginOperationJournal operationJournal;
 
     protected PluginLegalVerify pluginLegalVerify;
 
+    private ScheduledExecutorService drainExecutor;
+
+    /**
+     * 插件操作的锁。同一插件的操作串行执行, 不同插件的操作可并发执行
+     */
+    private final StripedLocks pluginLocks = new StripedLocks(PLUGIN_LOCK_STRIPES);
+
+    /**
+     * 已加载插件的插件包摘要, 用于判断重复安装的插件包是否变化
+     */
+    private final Map<String, PluginDigest> pluginDigests = new ConcurrentHashMap<>();
+
+    /**
+     * 插件延迟激活者。未启用延迟激活时为空
+     */
+    protected final LazyPluginActivator lazyPluginActivator;
+
+    /**
+     * 插件目录的监听者。未启用自动部署时为空
+     */
+    protected PluginDirectoryWatcher pluginDirectoryWatcher;
+
+    /**
+     * 开发环境下监听插件编译输出目录的监听者, 未启用时为空
+     */
+    protected PluginClassesWatcher pluginClassesWatcher;
+
 
     public DefaultPluginOperator(ApplicationContext applicationContext,
                                  IntegrationConfiguration integrationConfiguration,
@@ -64,10 +126,29 @@ public class DefaultPluginOperator implements PluginOperator {
         Objects.requireNonNull(pluginManager, "PluginManager can't be null");
         this.integrationConfiguration = integrationConfiguration;
         this.pluginManager = pluginManager;
-        this.pluginFactory = new DefaultPluginFactory(applicationContext, pluginListenerFactory);
+        this.stageRecorder = new PluginStageRecorder(integrationConfiguration.stageTimingHistorySize());
+        applicationContext.getBeansOfType(PluginMetricsSink.class).values().forEach(stageRecorder::addSink);
+        if (pluginListenerFactory != null) {
+            pluginListenerFactory.addPluginListener(new PluginClassLoadingReporter(pluginManager, stageRecorder));
+        }
+        this.pluginFactory = new DefaultPluginFactory(applicationContext, pluginListenerFactory, stageRecorder);
         this.pluginInitializerListenerFactory = new PluginInitializerListenerFactory(applicationContext);
+        this.pluginListenerFactory = pluginListenerFactory;
 
+        this.backupStore = new PluginBackupStore(integrationConfiguration);
+        this.operationJournal = new PluginOperationJournal(integrationConfiguration);
         this.pluginLegalVerify = new DefaultPluginVerify(pluginManager);
+        if (integrationConfiguration.lazyActivation()) {
+            this.lazyPluginActivator = new LazyPluginActivator(applicationContext, integrationConfiguration,
+                    pluginManager, this);
+        } else {
+            this.lazyPluginActivator = null;
+        }
+        if (pluginManager instanceof MyDefaultPluginManager) {
+            PluginLeakDetector leakDetector = ((MyDefaultPluginManager) pluginManager).getLeakDetector();
+            PluginLeakProbes.defaults(applicationContext).forEach(leakDetector::addProbe);
+            applicationContext.getBeansOfType(PluginLeakProbe.class).values().forEach(leakDetector::addProbe);
+        }
     }
 
     /**
@@ -89,6 +170,12 @@ public class DefaultPluginOperator implements PluginOperator {
         try {
             // 启动前, 清除空文件
             PluginFileUtils.cleanEmptyFile(pluginManager.getPluginsRoot());
+            if (!isDev()) {
+                // 加载插件前, 完成上次运行中断的插件操作
+                recoverOperations();
+                // 后台按保留策略压缩备份
+                backupStore.startCompaction();
+            }
 
             pluginInitializerListenerFactory.addPluginInitializerListeners(pluginInitializerListener);
             log.info("Plugins start initialize of root path '{}'", pluginManager.getPluginsRoot());
@@ -96,22 +183,41 @@ public class DefaultPluginOperator implements PluginOperator {
             pluginInitializerListenerFactory.before();
             // 开始初始化插件工厂
             pluginFactory.initialize();
+            if (pluginManager instanceof MyDefaultPluginManager) {
+                // 扩展在初始化监听器中完成初始化
+                ExtensionInitializer.getLeakProbeExtends()
+                        .forEach(((MyDefaultPluginManager) pluginManager).getLeakDetector()::addProbe);
+            }
             // 开始加载插件
             pluginManager.loadPlugins();
+            for (PluginWrapper pluginWrapper : pluginManager.getPlugins()) {
+                recordPluginFile(pluginWrapper.getPluginId());
+            }
+            if (lazyPluginActivator != null) {
+                initLazyPlugins();
+                startAutoDeploy();
+                startHotRestart();
+                return;
+            }
             pluginManager.startPlugins();
             List<PluginWrapper> pluginWrappers = pluginManager.getStartedPlugins();
             if (pluginWrappers == null || pluginWrappers.isEmpty()) {
                 log.warn("Not found plugin!");
+                startAutoDeploy();
+                startHotRestart();
                 return;
             }
-            boolean isFoundException = false;
             for (PluginWrapper pluginWrapper : pluginWrappers) {
-                String pluginId = pluginWrapper.getPluginId();
-                GlobalRegistryInfo.addOperatorPluginInfo(pluginId,
+                GlobalRegistryInfo.addOperatorPluginInfo(pluginWrapper.getPluginId(),
                         PluginOperatorInfo.OperatorType.INSTALL, false);
-                isFoundException = register(pluginWrapper, pluginId);
             }
+            // 按依赖顺序注册插件信息到Spring boot, 与Spring上下文无关的阶段按配置的并行度执行
+            Map<String, Exception> failures = pluginFactory.register(pluginWrappers);
+            failures.forEach((pluginId, e) ->
+                    log.error("Plugin '{}' registry failure. Reason : {}", pluginId, e.getMessage(), e));
+            boolean isFoundException = !failures.isEmpty();
             pluginFactory.build();
+            saveMetadataCatalog();
             isInit = true;
             if (isFoundException) {
                 log.error("Plugins initialize failure");
@@ -119,22 +225,181 @@ public class DefaultPluginOperator implements PluginOperator {
                 log.info("Plugins initialize success");
                 pluginInitializerListenerFactory.complete();
             }
+            startAutoDeploy();
+            startHotRestart();
         } catch (Exception e) {
             pluginInitializerListenerFactory.failure(e);
             throw e;
         }
     }
 
-    private boolean register(PluginWrapper pluginWrapper, String pluginId) {
-        boolean isFoundException = false;
+    /**
+     * 恢复上次运行中断的插件操作。插件包已完整写入时继续完成操作, 否则恢复到操作之前的状态
+     */
+    private void recoverOperations() {
+        List<PluginOperationJournal.Entry> journalEntries = operationJournal.getOpenEntries();
+        if (!journalEntries.isEmpty()) {
+            cleanTempFiles(pluginManager.getPluginsRoot());
+        }
+        for (PluginOperationJournal.Entry journalEntry : journalEntries) {
+            try {
+                if (recoverOperation(journalEntry)) {
+                    log.info("Unfinished plugin operation [{}] rolled forward", journalEntry);
+                    operationJournal.commit(journalEntry);
+                } else {
+                    log.info("Unfinished plugin operation [{}] rolled back", journalEntry);
+                    operationJournal.abort(journalEntry);
+                }
+            } catch (IOException e) {
+                throw new PluginException("Recover plugin operation [" + journalEntry + "] failure", e);
+            }
+        }
+    }
+
+    /**
+     * 恢复一个中断的插件操作
+     *
+     * @param journalEntry 操作记录
+     * @return 继续完成时返回true, 恢复到操作之前时返回false
+     * @throws IOException IO异常
+     */
+    private boolean recoverOperation(PluginOperationJournal.Entry journalEntry) throws IOException {
+        Path targetPath = journalEntry.getTargetPath();
+        switch (journalEntry.getOperation()) {
+            case INSTALL:
+                if (isSameFile(targetPath, journalEntry.getDigest())) {
+                    // 插件包已完整拷贝, 启动时正常加载
+                    return true;
+                }
+                rollbackInstall(journalEntry);
+                return false;
+            case UPGRADE:
+                if (!isSameFile(targetPath, journalEntry.getDigest())) {
+                    // 新版本未完整拷贝, 旧版本插件包未被修改
+                    return false;
+                }
+                // 新版本已完整拷贝, 移走旧版本, 避免启动时加载同id的两个插件
+                Path previousPath = journalEntry.getPreviousPath();
+                if (previousPath != null && !previousPath.equals(targetPath) && Files.exists(previousPath)) {
+                    backup(journalEntry.getPluginId(), previousPath, "upgrade", 1);
+                }
+                return true;
+            case UNINSTALL:
+                if (journalEntry.isBackup()) {
+                    if (Files.exists(targetPath)) {
+                        backup(journalEntry.getPluginId(), targetPath, "uninstall", 1);
+                    }
+                } else {
+                    Files.deleteIfExists(targetPath);
+                }
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * 安装失败或中断时, 删除拷贝的插件包, 并从备份中恢复被替换的同名插件包
+     *
+     * @param journalEntry 安装操作的记录
+     */
+    private void rollbackInstall(PluginOperationJournal.Entry journalEntry) {
+        Path targetPath = journalEntry.getTargetPath();
+        String previousDigest = journalEntry.getPreviousDigest();
         try {
-            // 依次注册插件信息到Spring boot
-            pluginFactory.register(pluginWrapper);
-        } catch (Exception e) {
-            log.error("Plugin '{}' registry failure. Reason : {}", pluginId, e.getMessage(), e);
-            isFoundException = true;
+            if (isSameFile(targetPath, journalEntry.getDigest()) && !isSameFile(targetPath, previousDigest)) {
+                Files.deleteIfExists(targetPath);
+            }
+            if (previousDigest != null && !Files.exists(targetPath)) {
+                Path backupFile = backupStore.getBackupFile(previousDigest);
+                if (backupFile == null) {
+                    log.warn("Not found backup of '{}', can't restore it", targetPath);
+                } else {
+                    PluginFileUtils.copyAtomically(backupFile, targetPath);
+                }
+            }
+        } catch (IOException e) {
+            log.error("Rollback install of '{}' failure. {}", targetPath, e.getMessage(), e);
         }
-        return isFoundException;
+    }
+
+    private boolean isSameFile(Path path, String digest) throws IOException {
+        return digest != null && Files.isRegularFile(path) && digest.equals(PluginFileUtils.digest(path));
+    }
+
+    /**
+     * 删除原子拷贝中断时遗留的临时文件
+     *
+     * @param pluginsRoot 插件目录
+     */
+    private void cleanTempFiles(Path pluginsRoot) {
+        if (!Files.isDirectory(pluginsRoot)) {
+            return;
+        }
+        try (Stream<Path> stream = Files.list(pluginsRoot)) {
+            for (Path path : stream.collect(Collectors.toList())) {
+                String fileName = path.getFileName().toString();
+                if (fileName.startsWith(".") && fileName.endsWith(".tmp")) {
+                    Files.deleteIfExists(path);
+                }
+            }
+        } catch (IOException e) {
+            log.warn("Clean temp files of '{}' failure. {}", pluginsRoot, e.getMessage());
+        }
+    }
+
+    /**
+     * 启用自动部署时, 开始监听插件目录
+     */
+    private void startAutoDeploy() {
+        if (!integrationConfiguration.autoDeploy() || isDev()) {
+            return;
+        }
+        PluginDirectoryWatcher watcher = new PluginDirectoryWatcher(pluginManager.getPluginsRoot(), this,
+                integrationConfiguration.autoDeployDebounceMillis());
+        try {
+            watcher.start();
+            pluginDirectoryWatcher = watcher;
+        } catch (IOException e) {
+            log.error("Plugin directory '{}' auto deploy start failure. {}",
+                    pluginManager.getPluginsRoot(), e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 开发环境下启用自动重启时, 开始监听插件的编译输出目录
+     */
+    private void startHotRestart() {
+        if (!integrationConfiguration.devHotRestart() || !isDev() ||
+                !(pluginManager instanceof MyDefaultPluginManager)) {
+            return;
+        }
+        PluginClassesWatcher watcher = new PluginClassesWatcher(this,
+                ((MyDefaultPluginManager) pluginManager).getClassIndexCache(),
+                integrationConfiguration.devHotRestartDebounceMillis());
+        try {
+            watcher.start();
+            pluginClassesWatcher = watcher;
+        } catch (IOException e) {
+            log.error("Plugin classes hot restart start failure. {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 延迟激活插件。只注册占位的请求路径, 插件在第一次使用时启动
+     */
+    private void initLazyPlugins() {
+        lazyPluginActivator.registerToContext();
+        int count = 0;
+        for (PluginWrapper pluginWrapper : pluginManager.getResolvedPlugins()) {
+            if (pluginWrapper.getPluginState() == PluginState.RESOLVED) {
+                lazyPluginActivator.addLazyPlugin(pluginWrapper);
+                count++;
+            }
+        }
+        isInit = true;
+        log.info("Plugins initialize success, {} plugins will be activated on first use", count);
+        pluginInitializerListenerFactory.complete();
     }
 
     @Override
@@ -145,14 +410,37 @@ public class DefaultPluginOperator implements PluginOperator {
         if (path == null) {
             throw new IllegalArgumentException("Method:install param 'pluginId' can not be empty");
         }
-        String pluginId = null;
-        try {
-            pluginId = load(path);
-            if (StringUtils.isEmpty(pluginId)) {
-                log.error("Plugin '{}' install failure, this plugin id is empty.", pluginId);
-                return false;
+        if (!Files.exists(path)) {
+            throw new PluginException(new FileNotFoundException("Not found this path " + path));
+        }
+        // 先从插件描述得到插件id, 持有该插件的锁加载并启动, 与同id插件的其他操作互斥
+        String pluginId = pluginLegalVerify.getPluginDescriptor(path).getPluginId();
+        if (StringUtils.isEmpty(pluginId)) {
+            log.error("Plugin '{}' install failure, this plugin id is empty.", path);
+            return false;
+        }
+        return executeWithLock(Collections.singletonList(pluginId), () -> {
+            if (pluginManager.getPlugin(pluginId) != null) {
+                // 已安装同id的插件: 内容相同时不做任何操作, 否则升级
+                return doReinstall(pluginId, path, null);
             }
-            GlobalRegistryInfo.addOperatorPluginInfo(pluginId, PluginOperatorInfo.OperatorType.INSTALL, true);
+            return doInstall(pluginId, path);
+        });
+    }
+
+    /**
+     * 加载并启动插件, 调用者需持有插件的锁
+     *
+     * @param pluginId 插件描述中的插件id
+     * @param path     插件路径
+     * @return 结果
+     */
+    private boolean doInstall(String pluginId, Path path) {
+        GlobalRegistryInfo.addOperatorPluginInfo(pluginId, PluginOperatorInfo.OperatorType.INSTALL, true);
+        boolean loaded = false;
+        try {
+            load(path);
+            loaded = true;
             if (start(pluginId)) {
                 log.info("Plugin '{}' install success", pluginId);
                 return true;
@@ -161,9 +449,9 @@ public class DefaultPluginOperator implements PluginOperator {
                 return false;
             }
         } catch (Exception e) {
-            // 说明load成功, 但是没有启动成功, 则卸载该插件
-            if (!StringUtils.isEmpty(pluginId)) {
-                log.error("Plugin '{}' install failure. {}", pluginId, e.getMessage());
+            log.error("Plugin '{}' install failure. {}", pluginId, e.getMessage());
+            if (loaded) {
+                // 说明load成功, 但是没有启动成功, 则卸载该插件
                 log.info("Start uninstall plugin '{}' failure", pluginId);
                 try {
                     uninstall(pluginId, false);
@@ -173,10 +461,234 @@ public class DefaultPluginOperator implements PluginOperator {
             }
             throw new PluginException(e);
         } finally {
-            if (!StringUtils.isEmpty(pluginId)) {
+            GlobalRegistryInfo.setOperatorPluginInfo(pluginId, false);
+        }
+    }
+
+    @Override
+    public List<PluginOperationResult> installAll(List<Path> paths) {
+        if (isDev()) {
+            throw new PluginException("Plugin cannot be installed in 'dev' environment");
+        }
+        if (paths == null) {
+            throw new IllegalArgumentException("Method:installAll param 'paths' can not be null");
+        }
+        PluginOperationResult[] results = new PluginOperationResult[paths.size()];
+        // 先从插件描述得到插件id, 再持有这些插件的锁加载并启动, 与同id插件的其他操作互斥
+        Map<String, Integer> pluginIndex = new LinkedHashMap<>();
+        for (int i = 0; i < paths.size(); i++) {
+            Path path = paths.get(i);
+            String pathString = String.valueOf(path);
+            try {
+                if (path == null || !Files.exists(path)) {
+                    throw new FileNotFoundException("Not found this path " + path);
+                }
+                String pluginId = pluginLegalVerify.getPluginDescriptor(path).getPluginId();
+                if (StringUtils.isEmpty(pluginId)) {
+                    log.error("Plugin '{}' install failure, this plugin id is empty.", pathString);
+                    results[i] = PluginOperationResult.failure(null, pathString, "plugin id is empty");
+                } else if (pluginIndex.containsKey(pluginId)) {
+                    log.error("Plugin '{}' install failure, plugin id '{}' is repeated.", pathString, pluginId);
+                    results[i] = PluginOperationResult.failure(pluginId, pathString, "plugin id is repeated");
+                } else {
+                    pluginIndex.put(pluginId, i);
+                }
+            } catch (Exception e) {
+                log.error("Plugin '{}' install failure. {}", pathString, e.getMessage());
+                results[i] = PluginOperationResult.failure(null, pathString, e.getMessage());
+            }
+        }
+        Map<String, Integer> loadedPluginIndex = new LinkedHashMap<>();
+        try {
+            executeWithLock(pluginIndex.keySet(), () -> {
+                pluginIndex.forEach((pluginId, i) -> {
+                    Path path = paths.get(i);
+                    if (pluginManager.getPlugin(pluginId) != null) {
+                        results[i] = reinstall(pluginId, path);
+                        return;
+                    }
+                    try {
+                        load(path);
+                        GlobalRegistryInfo.addOperatorPluginInfo(pluginId,
+                                PluginOperatorInfo.OperatorType.INSTALL, true);
+                        loadedPluginIndex.put(pluginId, i);
+                    } catch (Exception e) {
+                        log.error("Plugin '{}' install failure. {}", path, e.getMessage());
+                        results[i] = PluginOperationResult.failure(pluginId, String.valueOf(path), e.getMessage());
+                    }
+                });
+                startLoadedPlugins(paths, loadedPluginIndex, results);
+                return null;
+            });
+        } finally {
+            for (String pluginId : loadedPluginIndex.keySet()) {
                 GlobalRegistryInfo.setOperatorPluginInfo(pluginId, false);
             }
         }
+        return Arrays.asList(results);
+    }
+
+    /**
+     * 批量启动已加载的插件, 启动失败的插件会被卸载
+     *
+     * @param paths             插件路径集合
+     * @param loadedPluginIndex 已加载的插件id与其路径的下标
+     * @param results           操作结果, 与插件路径一一对应
+     */
+    private void startLoadedPlugins(List<Path> paths, Map<String, Integer> loadedPluginIndex,
+                                    PluginOperationResult[] results) {
+        Map<String, PluginOperationResult> startResults = doStartAll(new ArrayList<>(loadedPluginIndex.keySet()));
+        loadedPluginIndex.forEach((pluginId, i) -> {
+            PluginOperationResult startResult = startResults.get(pluginId);
+            if (startResult.isSuccess()) {
+                log.info("Plugin '{}' install success", pluginId);
+            } else {
+                // 说明load成功, 但是没有启动成功, 则卸载该插件
+                log.info("Start uninstall plugin '{}' failure", pluginId);
+                try {
+                    uninstall(pluginId, false);
+                } catch (Exception uninstallException) {
+                    log.error("Plugin '{}' uninstall failure. {}", pluginId, uninstallException.getMessage());
+                }
+            }
+            results[i] = startResult.withPath(String.valueOf(paths.get(i)));
+        });
+    }
+
+    /**
+     * 重复安装的插件作为单独的操作执行, 失败时只影响该插件的结果
+     *
+     * @param pluginId 插件id
+     * @param path     插件路径
+     * @return 操作结果
+     */
+    private PluginOperationResult reinstall(String pluginId, Path path) {
+        String pathString = String.valueOf(path);
+        try {
+            if (executeWithLock(Collections.singletonList(pluginId), () -> doReinstall(pluginId, path, null))) {
+                return PluginOperationResult.success(pluginId, pathString);
+            }
+            return PluginOperationResult.failure(pluginId, pathString, "failure");
+        } catch (Exception e) {
+            log.error("Plugin '{}' install failure. {}", pluginId, e.getMessage());
+            return PluginOperationResult.failure(pluginId, pathString, e.getMessage());
+        }
+    }
+
+    /**
+     * 重复安装插件。插件包摘要与已安装的插件相同时, 不触碰类加载器、Spring上下文与请求路径, 直接返回;
+     * 不同时升级插件
+     *
+     * @param pluginId 插件id
+     * @param path     插件路径
+     * @param digest   已知的插件包摘要, 为空时读取插件包计算
+     * @return 结果
+     */
+    private boolean doReinstall(String pluginId, Path path, String digest) {
+        PluginWrapper pluginWrapper = pluginManager.getPlugin(pluginId);
+        if (pluginWrapper == null) {
+            // 等待锁期间插件已被卸载
+            return doInstall(pluginId, path);
+        }
+        if (digest == null) {
+            try {
+                digest = PluginFileUtils.digest(path);
+            } catch (IOException e) {
+                throw new PluginException(e);
+            }
+        }
+        if (digest.equals(getPluginDigest(pluginWrapper))) {
+            if (pluginWrapper.getPluginState() == PluginState.STARTED ||
+                    (lazyPluginActivator != null && lazyPluginActivator.isLazy(pluginId))) {
+                log.info("Plugin '{}' is unchanged, skip install", pluginId);
+                return true;
+            }
+            log.info("Plugin '{}' is unchanged but not started, start it", pluginId);
+            return doStart(pluginId);
+        }
+        log.info("Plugin '{}' has changed, upgrade it", pluginId);
+        Path upgradePath = path;
+        if (path.toAbsolutePath().equals(pluginWrapper.getPluginPath().toAbsolutePath())) {
+            upgradePath = moveReplacedPlugin(path);
+        }
+        boolean upgraded = doUpgrade(pluginId, upgradePath);
+        if (upgraded) {
+            recordPluginFile(pluginId);
+            PluginDigest recorded = pluginDigests.get(pluginId);
+            if (recorded != null) {
+                recorded.digest = digest;
+            }
+        }
+        return upgraded;
+    }
+
+    /**
+     * 运行中插件的插件包被原地替换时, 将新插件包移到带时间的文件名再升级, 旧版本排空后不会误备份新插件包
+     *
+     * @param path 被替换的插件包路径
+     * @return 新插件包路径
+     */
+    private Path moveReplacedPlugin(Path path) {
+        Path target = path.resolveSibling("[upgrade][" + getNowTimeByFormat() + "]_" + path.getFileName());
+        try {
+            PluginFileUtils.moveAtomically(path, target);
+        } catch (IOException e) {
+            throw new PluginException(e);
+        }
+        return target;
+    }
+
+    /**
+     * 得到已加载插件的插件包摘要。插件包的大小与修改时间在加载时记录, 摘要在第一次使用时计算, 插件包未变化时复用
+     *
+     * @param pluginWrapper 插件
+     * @return 摘要。没有加载时的记录、插件包在加载后被原地修改、或者无法读取时为空
+     */
+    private String getPluginDigest(PluginWrapper pluginWrapper) {
+        String pluginId = pluginWrapper.getPluginId();
+        Path pluginPath = pluginWrapper.getPluginPath();
+        try {
+            PluginDigest recorded = pluginDigests.get(pluginId);
+            // 此时才记录得到的是当前文件的内容, 不一定是加载的内容
+            if (recorded == null || !recorded.isSamePath(pluginPath) || !recorded.isUnmodified()) {
+                return null;
+            }
+            if (recorded.digest == null) {
+                String digest = PluginFileUtils.digest(pluginPath);
+                if (!recorded.isUnmodified()) {
+                    // 计算摘要期间插件包被修改
+                    return null;
+                }
+                recorded.digest = digest;
+            }
+            return recorded.digest;
+        } catch (IOException e) {
+            log.warn("Read plugin '{}' digest failure. {}", pluginId, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * 记录插件加载时插件包的大小与修改时间, 之后据此判断插件包是否被原地修改
+     *
+     * @param pluginId 插件id
+     */
+    private void recordPluginFile(String pluginId) {
+        PluginWrapper pluginWrapper = pluginManager.getPlugin(pluginId);
+        if (pluginWrapper == null || !Files.isRegularFile(pluginWrapper.getPluginPath())) {
+            return;
+        }
+        try {
+            PluginDigest pluginDigest = new PluginDigest(pluginWrapper.getPluginPath());
+            PluginMetadataCatalog metadataCatalog = getMetadataCatalog();
+            if (metadataCatalog != null) {
+                // 插件包未变化时, 使用插件元数据目录中记录的摘要
+                pluginDigest.digest = metadataCatalog.getDigest(pluginWrapper.getPluginPath());
+            }
+            pluginDigests.put(pluginId, pluginDigest);
+        } catch (IOException e) {
+            log.warn("Record plugin '{}' file failure. {}", pluginId, e.getMessage());
+        }
     }
 
     private String load(Path path) throws IOException {
@@ -185,7 +697,8 @@ public class DefaultPluginOperator implements PluginOperator {
             throw new FileNotFoundException("Not found this path " + path);
         }
         // 校验插件文件
-        pluginLegalVerify.verify(path);
+        String verifiedPluginId = pluginLegalVerify.verifyDescriptor(path).getPluginId();
+        progress(verifiedPluginId, PluginStageEnum.VERIFIED);
         Path pluginsRoot = pluginManager.getPluginsRoot();
         if (path.getParent().endsWith(pluginsRoot)) {
             // 说明该插件文件存在于插件root目录下。直接加载该插件
@@ -194,26 +707,226 @@ public class DefaultPluginOperator implements PluginOperator {
             File sourceFile = path.toFile();
             String targetPathString = pluginsRoot.toString() + File.separator + sourceFile.getName();
             Path targetPath = Paths.get(targetPathString);
-            if (Files.exists(targetPath)) {
-                // 如果存在该文件, 则移动备份
-                backup(targetPath, "install-backup", 1);
+            String previousDigest = Files.exists(targetPath) ? PluginFileUtils.digest(targetPath) : null;
+            // 修改插件目录前先记录操作
+            PluginOperationJournal.Entry journalEntry = operationJournal.begin(JournalOperationEnum.INSTALL,
+                    verifiedPluginId, targetPath, PluginFileUtils.digest(path),
+                    previousDigest == null ? null : targetPath, previousDigest, true);
+            try {
+                if (previousDigest != null) {
+                    // 如果存在该文件, 则移动备份
+                    backup(targetPath, "install-backup", 1);
+                }
+                PluginFileUtils.copyAtomically(path, targetPath);
+                progress(verifiedPluginId, PluginStageEnum.COPIED);
+                pluginId = pluginManager.loadPlugin(targetPath);
+            } catch (Exception e) {
+                rollbackInstall(journalEntry);
+                operationJournal.abort(journalEntry);
+                throw e;
             }
-            PluginFileUtils.createExistFile(targetPath);
-            Files.copy(path, targetPath, StandardCopyOption.REPLACE_EXISTING);
-            pluginId = pluginManager.loadPlugin(targetPath);
+            operationJournal.commit(journalEntry);
         }
+        progress(pluginId, PluginStageEnum.LOADED);
+        recordPluginFile(pluginId);
         return pluginId;
     }
 
+    @Override
+    public boolean upgrade(String pluginId, Path path) {
+        if (isDev()) {
+            throw new PluginException("Plugin cannot be upgraded in 'dev' environment");
+        }
+        if (StringUtils.isEmpty(pluginId)) {
+            throw new IllegalArgumentException("Method:upgrade param 'pluginId' can not be empty");
+        }
+        if (path == null) {
+            throw new IllegalArgumentException("Method:upgrade param 'path' can not be null");
+        }
+        if (!Files.exists(path)) {
+            throw new PluginException("Not found this path " + path);
+        }
+        return executeWithLock(Collections.singletonList(pluginId), () -> doUpgrade(pluginId, path));
+    }
+
+    private boolean doUpgrade(String pluginId, Path path) {
+        PluginWrapper pluginWrapper = getPluginWrapper(pluginId, "Upgrade");
+        if (path.toAbsolutePath().equals(pluginWrapper.getPluginPath().toAbsolutePath())) {
+            throw new PluginException("The path '" + path + "' is the path of the running plugin '" + pluginId + "'");
+        }
+        PluginDescriptor pluginDescriptor = pluginLegalVerify.getPluginDescriptor(path);
+        if (!pluginId.equals(pluginDescriptor.getPluginId())) {
+            throw new PluginException("The plugin id of '" + path + "' is '" + pluginDescriptor.getPluginId()
+                    + "', not '" + pluginId + "'");
+        }
+        if (pluginWrapper.getPluginState() != PluginState.STARTED ||
+                !(pluginManager instanceof MyDefaultPluginManager)) {
+            // 没有需要保持的服务或者无法在线切换, 直接卸载后重新安装
+            log.info("Plugin '{}' upgrade by reinstall", pluginId);
+            uninstall(pluginId, true);
+            return install(path);
+        }
+        MyDefaultPluginManager myPluginManager = (MyDefaultPluginManager) pluginManager;
+        Path targetPath = null;
+        PluginWrapper standbyPluginWrapper = null;
+        PluginOperationJournal.Entry journalEntry = null;
+        GlobalRegistryInfo.addOperatorPluginInfo(pluginId, PluginOperatorInfo.OperatorType.INSTALL, true);
+        try {
+            progress(pluginId, PluginStageEnum.VERIFIED);
+            Path upgradePath = resolveUpgradePath(path, pluginWrapper.getPluginPath());
+            // 修改插件目录前先记录操作, 旧版本排空并备份后才结束
+            journalEntry = operationJournal.begin(JournalOperationEnum.UPGRADE, pluginId, upgradePath,
+                    PluginFileUtils.digest(path), pluginWrapper.getPluginPath(), null, true);
+            targetPath = copyUpgradePlugin(path, upgradePath);
+            progress(pluginId, PluginStageEnum.COPIED);
+            // 新版本在独立的类加载器中加载, 旧版本继续处理请求
+            standbyPluginWrapper = myPluginManager.loadStandbyPlugin(targetPath);
+            progress(pluginId, PluginStageEnum.LOADED);
+            pluginFactory.upgrade(standbyPluginWrapper);
+        } catch (Exception e) {
+            log.error("Plugin '{}' upgrade failure. {}", pluginId, e.getMessage());
+            if (standbyPluginWrapper != null) {
+                myPluginManager.releasePlugin(standbyPluginWrapper);
+            }
+            if (targetPath != null && !targetPath.equals(path)) {
+                // 删除拷贝的新版本插件文件
+                try {
+                    Files.deleteIfExists(targetPath);
+                } catch (IOException deleteException) {
+                    log.error("Delete plugin file '{}' failure. {}", targetPath, deleteException.getMessage());
+                }
+            }
+            operationJournal.abort(journalEntry);
+            throw new PluginException(e);
+        } finally {
+            GlobalRegistryInfo.setOperatorPluginInfo(pluginId, false);
+        }
+        PluginWrapper oldPluginWrapper = myPluginManager.switchPlugin(standbyPluginWrapper);
+        recordPluginFile(pluginId);
+        drain(myPluginManager, oldPluginWrapper, journalEntry);
+        log.info("Plugin '{}' upgrade success", pluginId);
+        return true;
+    }
+
+    /**
+     * 得到新版本插件在插件目录下的路径。旧版本插件文件仍被其类加载器使用, 同名时新版本使用带时间的文件名
+     *
+     * @param path          新版本插件路径
+     * @param oldPluginPath 旧版本插件路径
+     * @return 插件目录下新版本插件的路径
+     */
+    private Path resolveUpgradePath(Path path, Path oldPluginPath) {
+        Path pluginsRoot = pluginManager.getPluginsRoot();
+        if (path.getParent().endsWith(pluginsRoot)) {
+            // 说明该插件文件存在于插件root目录下。直接使用该插件
+            return path;
+        }
+        String fileName = path.getFileName().toString();
+        Path targetPath = Paths.get(pluginsRoot.toString() + File.separator + fileName);
+        if (targetPath.toAbsolutePath().equals(oldPluginPath.toAbsolutePath())) {
+            targetPath = Paths.get(pluginsRoot.toString() + File.separator +
+                    "[upgrade][" + getNowTimeByFormat() + "]_" + fileName);
+        }
+        return targetPath;
+    }
+
+    /**
+     * 拷贝新版本插件到插件目录
+     *
+     * @param path       新版本插件路径
+     * @param targetPath 插件目录下新版本插件的路径
+     * @return 插件目录下新版本插件的路径
+     * @throws IOException IO异常
+     */
+    private Path copyUpgradePlugin(Path path, Path targetPath) throws IOException {
+        if (targetPath.equals(path)) {
+            return path;
+        }
+        if (Files.exists(targetPath)) {
+            // 如果存在该文件, 则移动备份
+            backup(targetPath, "install-backup", 1);
+        }
+        PluginFileUtils.copyAtomically(path, targetPath);
+        return targetPath;
+    }
+
+    /**
+     * 排空旧版本插件。在排空时间后卸载旧版本的bean、停止旧版本插件、释放其类加载器, 并将旧版本插件文件移到备份目录
+     *
+     * @param myPluginManager  插件管理者
+     * @param oldPluginWrapper 旧版本插件
+     * @param journalEntry     升级操作的记录, 旧版本备份后结束
+     */
+    private void drain(MyDefaultPluginManager myPluginManager, PluginWrapper oldPluginWrapper,
+                       PluginOperationJournal.Entry journalEntry) {
+        String pluginId = oldPluginWrapper.getPluginId();
+        // 持有插件的锁释放, 与同id插件的其他操作互斥
+        Runnable release = () -> executeWithLock(Collections.singletonList(pluginId), () -> {
+            try {
+                pluginFactory.release(oldPluginWrapper);
+            } catch (Exception e) {
+                log.error("Plugin '{}' old version beans release failure. {}", pluginId, e.getMessage(), e);
+            }
+            myPluginManager.releasePlugin(oldPluginWrapper);
+            if (Files.exists(oldPluginWrapper.getPluginPath())) {
+                // 原地替换的插件包已在升级前移走
+                backup(pluginId, oldPluginWrapper.getPluginPath(), "upgrade", 1);
+            }
+            operationJournal.commit(journalEntry);
+            log.info("Plugin '{}' old version '{}' released", pluginId, oldPluginWrapper.getDescriptor().getVersion());
+            verifyUnloaded(pluginId);
+            return null;
+        });
+        long drainMillis = integrationConfiguration.upgradeDrainMillis();
+        if (drainMillis <= 0) {
+            release.run();
+            return;
+        }
+        getDrainExecutor().schedule(release, drainMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 启用泄漏检查时, 在后台检查插件已释放的类加载器是否被回收
+     *
+     * @param pluginId 插件id
+     */
+    private void verifyUnloaded(String pluginId) {
+        if (integrationConfiguration.pluginLeakDetection() && pluginManager instanceof MyDefaultPluginManager) {
+            ((MyDefaultPluginManager) pluginManager).getLeakDetector()
+                    .verifyLater(pluginId, integrationConfiguration.pluginLeakDetectionTimeoutMillis());
+        }
+    }
+
+    private synchronized ScheduledExecutorService getDrainExecutor() {
+        if (drainExecutor == null) {
+            drainExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "plugin-upgrade-drain");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return drainExecutor;
+    }
+
     @Override
     public boolean uninstall(String pluginId, boolean isBackup) {
         if (StringUtils.isEmpty(pluginId)) {
             throw new IllegalArgumentException("Method:uninstall param 'pluginId' can not be empty");
         }
+        return executeWithLock(Collections.singletonList(pluginId), () -> doUninstall(pluginId, isBackup));
+    }
+
+    private boolean doUninstall(String pluginId, boolean isBackup) {
         PluginWrapper pluginWrapper = pluginManager.getPlugin(pluginId);
         if (pluginWrapper == null) {
             throw new PluginException("Plugin uninstall failure, Not found plugin '" + pluginId + "'");
         }
+        Path pluginPath = pluginWrapper.getPluginPath();
+        // 开发环境下插件为目录, 不修改插件目录
+        PluginOperationJournal.Entry journalEntry = isDev() ? null :
+                operationJournal.begin(JournalOperationEnum.UNINSTALL, pluginId, pluginPath, null,
+                        null, null, isBackup);
+        removeLazyPlugin(pluginId);
         if (pluginWrapper.getPluginState() == PluginState.STARTED) {
             try {
                 pluginFactory.unregister(pluginId);
@@ -222,23 +935,38 @@ public class DefaultPluginOperator implements PluginOperator {
                 log.error("Plugin '{}' uninstall failure, {}", pluginId, e.getMessage());
             }
         }
+        boolean unloaded;
         try {
-            if (pluginManager.unloadPlugin(pluginId)) {
-                Path pluginPath = pluginWrapper.getPluginPath();
-                if (isBackup) {
-                    // 将插件文件移到备份文件中
-                    backup(pluginPath, "uninstall", 1);
-                } else {
-                    // 不备份的话。直接删除该文件
-                    Files.deleteIfExists(pluginPath);
-                }
-                log.info("Plugin '{}' uninstall success", pluginId);
-                return true;
+            unloaded = pluginManager.unloadPlugin(pluginId);
+        } catch (RuntimeException e) {
+            if (pluginManager.getPlugin(pluginId) != null) {
+                // 插件仍然加载, 插件文件未修改。结束操作记录, 避免下次启动时移走正在使用的插件文件
+                operationJournal.abort(journalEntry);
+                throw e;
+            }
+            log.warn("Plugin '{}' unload exception, but it has been unloaded. {}", pluginId, e.getMessage());
+            unloaded = true;
+        }
+        if (!unloaded) {
+            operationJournal.abort(journalEntry);
+            log.error("Plugin '{}' uninstall failure", pluginId);
+            return false;
+        }
+        try {
+            pluginDigests.remove(pluginId);
+            if (isBackup) {
+                // 将插件文件移到备份文件中
+                backup(pluginId, pluginPath, "uninstall", 1);
             } else {
-                log.error("Plugin '{}' uninstall failure", pluginId);
-                return false;
+                // 不备份的话。直接删除该文件
+                Files.deleteIfExists(pluginPath);
             }
+            operationJournal.commit(journalEntry);
+            log.info("Plugin '{}' uninstall success", pluginId);
+            verifyUnloaded(pluginId);
+            return true;
         } catch (IOException e) {
+            // 插件已卸载, 插件文件的删除在下次启动时由操作日志完成
             String error = String.format("Plugin '%s' uninstall failure: %s", pluginId, e.getMessage());
             if (BaseConstants.OS_IS_WINDOWS) {
                 log.warn(error);
@@ -256,6 +984,10 @@ public class DefaultPluginOperator implements PluginOperator {
         if (StringUtils.isEmpty(pluginId)) {
             throw new IllegalArgumentException("Method:start param 'pluginId' can not be empty");
         }
+        return executeWithLock(Collections.singletonList(pluginId), () -> doStart(pluginId));
+    }
+
+    private boolean doStart(String pluginId) {
         PluginWrapper pluginWrapper = getPluginWrapper(pluginId, "Start");
         if (pluginWrapper.getPluginState() == PluginState.STARTED) {
             throw new PluginException("This plugin '" + pluginId + "' have already started");
@@ -266,6 +998,7 @@ public class DefaultPluginOperator implements PluginOperator {
                 GlobalRegistryInfo.addOperatorPluginInfo(pluginId, PluginOperatorInfo.OperatorType.START, false);
                 pluginFactory.register(pluginWrapper);
                 pluginFactory.build();
+                removeLazyPlugin(pluginId);
                 log.info("Plugin '{}' start success", pluginId);
                 return true;
             }
@@ -285,11 +1018,121 @@ public class DefaultPluginOperator implements PluginOperator {
         return false;
     }
 
+    @Override
+    public List<PluginOperationResult> startAll(List<String> pluginIds) {
+        if (pluginIds == null) {
+            throw new IllegalArgumentException("Method:startAll param 'pluginIds' can not be null");
+        }
+        Map<String, PluginOperationResult> results = executeWithLock(pluginIds, () -> doStartAll(pluginIds));
+        return pluginIds.stream()
+                .map(results::get)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * 批量启动插件。所有插件注册到Spring后只构建一次, 启动失败的插件会被停止
+     *
+     * @param pluginIds 插件id集合
+     * @return 插件id与操作结果
+     */
+    private Map<String, PluginOperationResult> doStartAll(List<String> pluginIds) {
+        Map<String, PluginOperationResult> results = new LinkedHashMap<>();
+        List<PluginWrapper> startedPlugins = new ArrayList<>();
+        for (String pluginId : pluginIds) {
+            try {
+                if (StringUtils.isEmpty(pluginId)) {
+                    throw new IllegalArgumentException("Method:startAll param 'pluginIds' can not contain empty");
+                }
+                PluginWrapper pluginWrapper = getPluginWrapper(pluginId, "Start");
+                if (pluginWrapper.getPluginState() == PluginState.STARTED) {
+                    throw new PluginException("This plugin '" + pluginId + "' have already started");
+                }
+                PluginState pluginState = pluginManager.startPlugin(pluginId);
+                if (pluginState != PluginState.STARTED) {
+                    log.error("Plugin '{}' start failure, plugin state is not start. Current plugin state is '{}'",
+                            pluginId, pluginState);
+                    results.put(pluginId, PluginOperationResult.failure(pluginId, null,
+                            "plugin state is " + pluginState));
+                    continue;
+                }
+                GlobalRegistryInfo.addOperatorPluginInfo(pluginId, PluginOperatorInfo.OperatorType.START, false);
+                startedPlugins.add(pluginWrapper);
+            } catch (Exception e) {
+                log.error("Plugin '{}' start failure: {}", pluginId, e.getMessage());
+                results.put(pluginId, PluginOperationResult.failure(pluginId, null, e.getMessage()));
+            }
+        }
+        if (startedPlugins.isEmpty()) {
+            return results;
+        }
+        Map<String, Exception> failures = new HashMap<>(pluginFactory.register(startedPlugins));
+        List<String> registeredPluginIds = startedPlugins.stream()
+                .map(PluginWrapper::getPluginId)
+                .filter(pluginId -> !failures.containsKey(pluginId))
+                .collect(Collectors.toList());
+        if (!registeredPluginIds.isEmpty()) {
+            try {
+                pluginFactory.build();
+            } catch (Exception e) {
+                // 构建失败, 本次注册的插件全部回滚
+                registeredPluginIds.forEach(pluginId -> failures.put(pluginId, e));
+                rollbackStart(registeredPluginIds);
+            }
+        }
+        for (PluginWrapper pluginWrapper : startedPlugins) {
+            String pluginId = pluginWrapper.getPluginId();
+            Exception exception = failures.get(pluginId);
+            if (exception == null) {
+                removeLazyPlugin(pluginId);
+                log.info("Plugin '{}' start success", pluginId);
+                results.put(pluginId, PluginOperationResult.success(pluginId, null));
+                continue;
+            }
+            log.error("Plugin '{}' start failure: {}", pluginId, exception.getMessage());
+            log.info("Start stop plugin {}", pluginId);
+            try {
+                pluginManager.stopPlugin(pluginId);
+            } catch (Exception stopException) {
+                log.error("Plugin '{}' stop failure: {}", pluginId, stopException.getMessage());
+            }
+            results.put(pluginId, PluginOperationResult.failure(pluginId, null, exception.getMessage()));
+        }
+        return results;
+    }
+
+    /**
+     * 从Spring中注销构建失败的插件, 并只进行一次构建
+     *
+     * @param pluginIds 插件id集合
+     */
+    private void rollbackStart(List<String> pluginIds) {
+        boolean needBuild = false;
+        for (String pluginId : pluginIds) {
+            try {
+                pluginFactory.unregister(pluginId);
+                needBuild = true;
+            } catch (Exception e) {
+                log.error("Plugin '{}' unregister failure. {}", pluginId, e.getMessage());
+            }
+        }
+        if (needBuild) {
+            try {
+                pluginFactory.build();
+            } catch (Exception e) {
+                log.error("Plugins {} rollback build failure. {}", pluginIds, e.getMessage());
+            }
+        }
+    }
+
     @Override
     public boolean stop(String pluginId) {
         if (StringUtils.isEmpty(pluginId)) {
             throw new IllegalArgumentException("Method:stop param 'pluginId' can not be empty");
         }
+        return executeWithLock(Collections.singletonList(pluginId), () -> doStop(pluginId));
+    }
+
+    private boolean doStop(String pluginId) {
         PluginWrapper pluginWrapper = getPluginWrapper(pluginId, "Stop");
         if (pluginWrapper.getPluginState() != PluginState.STARTED) {
             throw new PluginException("This plugin '" + pluginId + "' is not started");
@@ -312,6 +1155,106 @@ public class DefaultPluginOperator implements PluginOperator {
     }
 
 
+    @Override
+    public boolean restart(String pluginId) {
+        if (StringUtils.isEmpty(pluginId)) {
+            throw new IllegalArgumentException("Method:restart param 'pluginId' can not be empty");
+        }
+        Set<String> pluginIds = new LinkedHashSet<>();
+        pluginIds.add(pluginId);
+        pluginIds.addAll(getDependents(pluginId));
+        while (true) {
+            Set<String> lockedPluginIds = new LinkedHashSet<>(pluginIds);
+            Boolean result = executeWithLock(lockedPluginIds, () -> {
+                // 获取锁期间可能安装了新的依赖者, 持有锁后重新计算, 没有全部持有锁时释放后重试
+                List<String> dependents = getDependents(pluginId);
+                if (!lockedPluginIds.containsAll(dependents)) {
+                    pluginIds.addAll(dependents);
+                    return null;
+                }
+                return doRestart(pluginId, dependents);
+            });
+            if (result != null) {
+                return result;
+            }
+            log.debug("Plugin '{}' dependents changed before restart, retry with {}", pluginId, pluginIds);
+        }
+    }
+
+    /**
+     * 重启插件。插件管理者卸载插件时会一同卸载依赖它的插件, 因此这些插件一同重新加载, 已启动的一同启动
+     *
+     * @param pluginId   插件id
+     * @param dependents 持有锁后计算的依赖者
+     * @return 成功返回true
+     */
+    private boolean doRestart(String pluginId, List<String> dependents) {
+        PluginWrapper pluginWrapper = getPluginWrapper(pluginId, "Restart");
+        List<PluginWrapper> pluginWrappers = new ArrayList<>();
+        pluginWrappers.add(pluginWrapper);
+        for (String dependent : dependents) {
+            PluginWrapper dependentWrapper = pluginManager.getPlugin(dependent);
+            if (dependentWrapper != null) {
+                pluginWrappers.add(dependentWrapper);
+            }
+        }
+        List<String> startPluginIds = new ArrayList<>();
+        startPluginIds.add(pluginId);
+        List<String> startedPluginIds = new ArrayList<>();
+        for (PluginWrapper wrapper : pluginWrappers) {
+            if (wrapper.getPluginState() == PluginState.STARTED) {
+                startedPluginIds.add(wrapper.getPluginId());
+                if (!pluginId.equals(wrapper.getPluginId())) {
+                    startPluginIds.add(wrapper.getPluginId());
+                }
+            }
+        }
+        if (!startedPluginIds.isEmpty()) {
+            // 先注销依赖者, 只进行一次构建
+            Collections.reverse(startedPluginIds);
+            rollbackStart(startedPluginIds);
+        }
+        if (!pluginManager.unloadPlugin(pluginId)) {
+            throw new PluginException("Plugin '" + pluginId + "' restart failure, unload failure");
+        }
+        // 重新加载时创建新的类加载器
+        for (PluginWrapper wrapper : pluginWrappers) {
+            recordPluginFile(pluginManager.loadPlugin(wrapper.getPluginPath()));
+        }
+        Map<String, PluginOperationResult> results = doStartAll(startPluginIds);
+        PluginOperationResult result = results.get(pluginId);
+        if (result == null || !result.isSuccess()) {
+            throw new PluginException("Plugin '" + pluginId + "' restart failure. " +
+                    (result == null ? "" : result.getMessage()));
+        }
+        log.info("Plugin '{}' restart success", pluginId);
+        return true;
+    }
+
+    /**
+     * 得到直接或间接依赖该插件的插件
+     *
+     * @param pluginId 插件id
+     * @return 插件id, 依赖者在被依赖者之后
+     */
+    private List<String> getDependents(String pluginId) {
+        Set<String> dependents = new LinkedHashSet<>();
+        Deque<String> queue = new ArrayDeque<>();
+        queue.add(pluginId);
+        while (!queue.isEmpty()) {
+            String current = queue.poll();
+            for (PluginWrapper wrapper : pluginManager.getPlugins()) {
+                for (PluginDependency dependency : wrapper.getDescriptor().getDependencies()) {
+                    if (dependency.getPluginId().equals(current) && !wrapper.getPluginId().equals(pluginId) &&
+                            dependents.add(wrapper.getPluginId())) {
+                        queue.add(wrapper.getPluginId());
+                    }
+                }
+            }
+        }
+        return new ArrayList<>(dependents);
+    }
+
     @Override
     public boolean uploadPluginAndStart(MultipartFile pluginFile) {
         if (isDev()) {
@@ -320,8 +1263,14 @@ public class DefaultPluginOperator implements PluginOperator {
         if (pluginFile == null) {
             throw new IllegalArgumentException("Method:uploadPluginAndStart param 'pluginFile' can not be null");
         }
-        Path path = uploadPlugin(pluginFile);
-        if (this.install(path)) {
+        // 持有插件的锁移入插件目录并安装, 重复安装时使用上传时计算的摘要
+        boolean installed = uploadPlugin(pluginFile, (pluginId, path, digest) -> {
+            if (pluginManager.getPlugin(pluginId) != null) {
+                return doReinstall(pluginId, path, digest);
+            }
+            return doInstall(pluginId, path);
+        });
+        if (installed) {
             log.info("Plugin upload and start success");
             return true;
         } else {
@@ -339,7 +1288,8 @@ public class DefaultPluginOperator implements PluginOperator {
         String configPath = integrationConfiguration.pluginConfigFilePath() +
                 File.separator + sourceFile.getName();
         try {
-            Path targetPath = PluginFileUtils.createExistFile(Paths.get(configPath));
+            Path targetPath = Paths.get(configPath);
+            Files.createDirectories(targetPath.toAbsolutePath().getParent());
             if (Files.exists(targetPath)) {
                 // 如果文件存在, 则移动备份
                 backup(targetPath, "install-config-backup", 1);
@@ -359,16 +1309,24 @@ public class DefaultPluginOperator implements PluginOperator {
         String fileName = configFile.getOriginalFilename();
         String configPath = integrationConfiguration.pluginConfigFilePath() +
                 File.separator + fileName;
-        try {
-            Path targetPath = PluginFileUtils.createExistFile(Paths.get(configPath));
+        Path tempPath = null;
+        try (InputStream inputStream = configFile.getInputStream()) {
+            Path targetPath = Paths.get(configPath);
+            Files.createDirectories(targetPath.toAbsolutePath().getParent());
             if (Files.exists(targetPath)) {
                 // 如果文件存在, 则拷贝备份
                 backup(targetPath, "upload-config-backup", 2);
             }
-            // 然后写入数据到该文件
-            Files.write(targetPath, configFile.getBytes());
+            // 然后写入数据到同目录的临时文件, 再原子重命名为该文件
+            tempPath = Files.createTempFile(targetPath.toAbsolutePath().getParent(),
+                    "." + targetPath.getFileName().toString(), ".tmp");
+            Files.copy(inputStream, tempPath, StandardCopyOption.REPLACE_EXISTING);
+            PluginFileUtils.moveAtomically(tempPath, targetPath);
             return true;
         } catch (IOException e) {
+            if (tempPath != null) {
+                verifyFailureDelete(tempPath, e);
+            }
             throw new PluginException(e);
         }
     }
@@ -383,7 +1341,7 @@ public class DefaultPluginOperator implements PluginOperator {
     @Override
     public boolean backupPlugin(String pluginId, String sign) {
         PluginWrapper wrapper = getPluginWrapper(pluginId, "BackupPlugin by pluginId");
-        return backupPlugin(wrapper.getPluginPath(), sign);
+        return backup(pluginId, wrapper.getPluginPath(), sign, 2);
     }
 
     @Override
@@ -409,6 +1367,37 @@ public class DefaultPluginOperator implements PluginOperator {
         return getPluginInfo(pluginWrapper);
     }
 
+    @Override
+    public List<PluginStageTiming> getStageTimings(String pluginId) {
+        return stageRecorder.getTimings(pluginId);
+    }
+
+    @Override
+    public List<PluginBackupEntry> getBackups(String pluginId) {
+        return backupStore.getEntries(pluginId);
+    }
+
+    @Override
+    public void shutdown() {
+        if (pluginDirectoryWatcher != null) {
+            pluginDirectoryWatcher.stop();
+        }
+        if (pluginClassesWatcher != null) {
+            pluginClassesWatcher.stop();
+        }
+        synchronized (this) {
+            if (drainExecutor != null) {
+                // 未排空的升级保留操作记录, 下次启动时移走旧版本插件包
+                drainExecutor.shutdownNow();
+                drainExecutor = null;
+            }
+        }
+        backupStore.shutdown();
+        if (pluginManager instanceof MyDefaultPluginManager) {
+            ((MyDefaultPluginManager) pluginManager).getLeakDetector().shutdown();
+        }
+    }
+
     /**
      * 通过PluginWrapper得到插件信息
      *
@@ -418,7 +1407,8 @@ public class DefaultPluginOperator implements PluginOperator {
     private PluginInfo getPluginInfo(PluginWrapper pluginWrapper) {
         return new PluginInfo(pluginWrapper.getDescriptor(), pluginWrapper.getPluginState(),
                 pluginWrapper.getPluginPath().toAbsolutePath().toString(),
-                pluginManager.getRuntimeMode().toString());
+                pluginManager.getRuntimeMode().toString(),
+                PluginClassLoadingReporter.getMetrics(pluginManager, pluginWrapper.getPluginId()));
     }
 
 
@@ -430,6 +1420,11 @@ public class DefaultPluginOperator implements PluginOperator {
             paths.add(integrationConfiguration.pluginPath());
             return paths;
         }
+        PluginDirectoryWatcher watcher = pluginDirectoryWatcher;
+        if (watcher != null && watcher.isRunning()) {
+            // 监听插件目录时使用内存中的索引, 不再遍历目录
+            return watcher.getPluginFilePaths();
+        }
         List<File> files = org.pf4j.util.FileUtils.getJars(Paths.get(integrationConfiguration.pluginPath()));
         return files.stream()
                 .filter(Objects::nonNull)
@@ -454,6 +1449,18 @@ public class DefaultPluginOperator implements PluginOperator {
      * @return 返回上传的插件路径
      */
     protected Path uploadPlugin(MultipartFile pluginFile) {
+        return uploadPlugin(pluginFile, (pluginId, path, digest) -> path);
+    }
+
+    /**
+     * 上传插件, 持有插件的锁将插件包移入插件目录后处理
+     *
+     * @param pluginFile 插件文件
+     * @param handler    移入插件目录后的处理, 同样持有插件的锁
+     * @param <T>        处理结果类型
+     * @return 处理结果
+     */
+    private <T> T uploadPlugin(MultipartFile pluginFile, UploadedPluginHandler<T> handler) {
         if (pluginFile == null) {
             throw new IllegalArgumentException("Method:uploadPlugin param 'pluginFile' can not be null");
         }
@@ -470,42 +1477,80 @@ public class DefaultPluginOperator implements PluginOperator {
             throw new IllegalArgumentException("Invalid file type, please select .jar or .zip file");
         }
         String tempPathString = integrationConfiguration.uploadTempPath() + File.separator + fileName;
-        Path tempPath;
-        try {
-            tempPath = PluginFileUtils.createExistFile(Paths.get(tempPathString));
-            Files.write(tempPath, pluginFile.getBytes());
+        Path tempPath = Paths.get(tempPathString);
+        // 直接将上传的流写入临时文件, 同时计算摘要, 不将整个插件包读入内存
+        String uploadDigest;
+        try (InputStream inputStream = pluginFile.getInputStream()) {
+            PluginFileUtils.createExistFile(tempPath);
+            uploadDigest = PluginFileUtils.copyWithDigest(inputStream, tempPath);
+            log.info("Plugin file '{}' uploaded, sha-256: {}", fileName, uploadDigest);
         } catch (IOException e) {
+            verifyFailureDelete(tempPath, e);
             throw new PluginException(e);
         }
+        Path verifyPath;
+        String pluginId;
+        String digest;
         try {
-            Path verifyPath = pluginLegalVerify.verify(tempPath);
-            if (verifyPath != null) {
-                String targetPathString = pluginManager.getPluginsRoot().toString() +
-                        File.separator + fileName;
-                Path targetPluginPath = Paths.get(targetPathString);
-                if (Files.exists(targetPluginPath)) {
-                    // 存在则拷贝一份
-                    backup(targetPluginPath, "upload", 2);
-                }
-                doCopyAndDelete(verifyPath, targetPluginPath, tempPath);
-                return targetPluginPath;
-            } else {
-                Exception exception =
-                        new Exception(fileName + " verify failure, verifyPath is null");
-                verifyFailureDelete(tempPath, exception);
-                throw exception;
+            verifyPath = pluginLegalVerify.verify(tempPath);
+            if (verifyPath == null) {
+                throw new Exception(fileName + " verify failure, verifyPath is null");
+            }
+            pluginId = pluginLegalVerify.getPluginDescriptor(verifyPath).getPluginId();
+            if (StringUtils.isEmpty(pluginId)) {
+                throw new Exception(fileName + " verify failure, plugin id is empty");
             }
+            // 校验返回其他文件时, 摘要以该文件为准
+            digest = verifyPath.equals(tempPath) ? uploadDigest : PluginFileUtils.digest(verifyPath);
         } catch (Exception e) {
             // 出现异常, 删除刚才上传的临时文件
             verifyFailureDelete(tempPath, e);
             throw new PluginException(e);
         }
+        Path targetPluginPath = Paths.get(pluginManager.getPluginsRoot().toString() + File.separator + fileName);
+        return executeWithLock(Collections.singletonList(pluginId), () -> {
+            moveUploadedPlugin(pluginId, verifyPath, tempPath, targetPluginPath, digest);
+            return handler.handle(pluginId, targetPluginPath, digest);
+        });
+    }
+
+    /**
+     * 将上传的插件包移入插件目录, 调用者需持有插件的锁。移入前记录操作, 中断时可恢复被替换的同名插件包
+     *
+     * @param pluginId         插件id
+     * @param verifyPath       校验后的插件包路径
+     * @param tempPath         上传的临时文件路径
+     * @param targetPluginPath 插件目录中的路径
+     * @param digest           插件包摘要
+     */
+    private void moveUploadedPlugin(String pluginId, Path verifyPath, Path tempPath, Path targetPluginPath,
+                                    String digest) {
+        PluginOperationJournal.Entry journalEntry = null;
+        try {
+            String previousDigest = Files.exists(targetPluginPath) ? PluginFileUtils.digest(targetPluginPath) : null;
+            // 修改插件目录前先记录操作
+            journalEntry = operationJournal.begin(JournalOperationEnum.INSTALL, pluginId, targetPluginPath,
+                    digest, previousDigest == null ? null : targetPluginPath, previousDigest, true);
+            if (previousDigest != null) {
+                // 存在则拷贝一份
+                backup(targetPluginPath, "upload", 2);
+            }
+            doMoveAndDelete(verifyPath, targetPluginPath, tempPath);
+        } catch (Exception e) {
+            verifyFailureDelete(tempPath, e);
+            if (journalEntry != null) {
+                rollbackInstall(journalEntry);
+                operationJournal.abort(journalEntry);
+            }
+            throw new PluginException(e);
+        }
+        operationJournal.commit(journalEntry);
     }
 
-    private void doCopyAndDelete(Path verifyPath, Path targetPluginPath, Path tempPath) throws IOException {
+    private void doMoveAndDelete(Path verifyPath, Path targetPluginPath, Path tempPath) throws IOException {
+        // 原子重命名校验的路径到插件路径下, 插件目录中不会出现写了一半的插件包
+        PluginFileUtils.moveAtomically(verifyPath, targetPluginPath);
         try {
-            // 拷贝校验的路径到插件路径下
-            Files.copy(verifyPath, targetPluginPath, StandardCopyOption.REPLACE_EXISTING);
             // 删除临时文件
             Files.deleteIfExists(tempPath);
         } catch (FileSystemException e) {
@@ -552,6 +1597,19 @@ public class DefaultPluginOperator implements PluginOperator {
      * @return 结果
      */
     protected boolean backup(Path sourcePath, String sign, int type) {
+        return backup(null, sourcePath, sign, type);
+    }
+
+    /**
+     * 备份到按内容寻址的备份存储中, 内容相同的备份只保存一份
+     *
+     * @param pluginId   插件id, 为空时从插件包中解析
+     * @param sourcePath 源文件的路径
+     * @param sign       文件标志
+     * @param type       类型 1移动 2拷贝
+     * @return 结果
+     */
+    protected boolean backup(String pluginId, Path sourcePath, String sign, int type) {
         try {
             if (isDev()) {
                 // 如果是开发环境, 则不进行备份
@@ -564,28 +1622,14 @@ public class DefaultPluginOperator implements PluginOperator {
                 log.error("Path '{}' does not exist", sourcePath);
                 return false;
             }
-            String fileName = sourcePath.getFileName().toString();
-            String targetName = integrationConfiguration.backupPath() + File.separator;
-            if (!StringUtils.isEmpty(sign)) {
-                targetName = targetName + "[" + sign + "]";
-            }
-            targetName = targetName + "[" + getNowTimeByFormat() + "]";
-            Path target = Paths.get(targetName + "_" + fileName);
-            if (!Files.exists(target.getParent())) {
-                Files.createDirectories(target.getParent());
-            }
-            File sourceFile = sourcePath.toFile();
-            if (sourceFile.length() == 0) {
+            if (Files.size(sourcePath) == 0) {
                 // 源文件字节为0, 说明为删除的插件。不需要备份
                 return true;
             }
-            if (type == 1) {
-                // 是移动的话, 则删除源文件
-                Files.move(sourcePath, target, StandardCopyOption.REPLACE_EXISTING);
-            } else {
-                // 拷贝
-                Files.copy(sourcePath, target, StandardCopyOption.REPLACE_EXISTING);
+            if (pluginId == null) {
+                pluginId = resolveBackupPluginId(sourcePath);
             }
+            backupStore.backup(pluginId, sign, sourcePath, type == 1);
             return true;
         } catch (FileSystemException e) {
             log.warn("Backup plugin jar '{}' failure. {}", sourcePath, e.getMessage());
@@ -596,6 +1640,92 @@ public class DefaultPluginOperator implements PluginOperator {
         }
     }
 
+    /**
+     * 解析备份文件所属的插件id。不是插件包时返回空
+     *
+     * @param sourcePath 源文件的路径
+     * @return 插件id
+     */
+    private String resolveBackupPluginId(Path sourcePath) {
+        Path absolutePath = sourcePath.toAbsolutePath();
+        for (PluginWrapper pluginWrapper : pluginManager.getPlugins()) {
+            if (absolutePath.equals(pluginWrapper.getPluginPath().toAbsolutePath())) {
+                return pluginWrapper.getPluginId();
+            }
+        }
+        String fileName = sourcePath.getFileName().toString().toLowerCase();
+        if (!fileName.endsWith("." + BaseConstants.Suffix.JAR) && !fileName.endsWith("." + BaseConstants.Suffix.ZIP)) {
+            return null;
+        }
+        try {
+            return pluginLegalVerify.getPluginDescriptor(sourcePath).getPluginId();
+        } catch (Exception e) {
+            log.debug("Resolve plugin id of backup '{}' failure. {}", sourcePath, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * 通知插件操作的阶段进度
+     *
+     * @param pluginId 插件id
+     * @param stage    完成的阶段
+     */
+    protected void progress(String pluginId, PluginStageEnum stage) {
+        if (pluginListenerFactory != null) {
+            pluginListenerFactory.progress(pluginId, stage);
+        }
+    }
+
+    /**
+     * 插件已启动或已卸载, 不再等待激活
+     *
+     * @param pluginId 插件id
+     */
+    private void removeLazyPlugin(String pluginId) {
+        if (lazyPluginActivator != null) {
+            lazyPluginActivator.removeLazyPlugin(pluginId);
+        }
+    }
+
+    /**
+     * 持有插件的锁执行操作。多个插件的锁按固定顺序获取, 避免批量操作之间死锁
+     *
+     * @param pluginIds 插件id集合
+     * @param operation 操作
+     * @param <T>       操作结果类型
+     * @return 操作结果
+     */
+    private <T> T executeWithLock(Collection<String> pluginIds, Supplier<T> operation) {
+        List<Lock> locks = pluginLocks.getAll(pluginIds);
+        locks.forEach(Lock::lock);
+        try {
+            return operation.get();
+        } finally {
+            for (int i = locks.size() - 1; i >= 0; i--) {
+                locks.get(i).unlock();
+            }
+            saveMetadataCatalog();
+        }
+    }
+
+    /**
+     * 保存插件元数据目录中新增的插件描述与扫描到的类名, 下次启动时不再打开未变化的插件包
+     */
+    private void saveMetadataCatalog() {
+        PluginMetadataCatalog metadataCatalog = getMetadataCatalog();
+        if (metadataCatalog != null) {
+            metadataCatalog.save();
+        }
+    }
+
+    private PluginMetadataCatalog getMetadataCatalog() {
+        if (pluginManager instanceof MyDefaultPluginManager) {
+            return ((MyDefaultPluginManager) pluginManager).getMetadataCatalog();
+        }
+        return null;
+    }
+
     /**
      * 获取现在的时间
      *
@@ -615,4 +1745,49 @@ public class DefaultPluginOperator implements PluginOperator {
         return integrationConfiguration.environment() == RuntimeMode.DEVELOPMENT;
     }
 
+    /**
+     * 插件加载时的插件包。路径、大小与修改时间均未变化时, 插件包的内容即为加载的内容
+     */
+    private static class PluginDigest {
+
+        private final Path path;
+        private final long size;
+        private final long lastModified;
+        private volatile String digest;
+
+        private PluginDigest(Path path) throws IOException {
+            this.path = path.toAbsolutePath();
+            this.size = Files.size(path);
+            this.lastModified = Files.getLastModifiedTime(path).toMillis();
+        }
+
+        private boolean isSamePath(Path path) {
+            return this.path.equals(path.toAbsolutePath());
+        }
+
+        private boolean isUnmodified() throws IOException {
+            return Files.exists(path) && size == Files.size(path) &&
+                    lastModified == Files.getLastModifiedTime(path).toMillis();
+        }
+    }
+
+    /**
+     * 上传的插件包移入插件目录后的处理
+     *
+     * @param <T> 处理结果类型
+     */
+    @FunctionalInterface
+    private interface UploadedPluginHandler<T> {
+
+        /**
+         * 处理移入插件目录的插件包
+         *
+         * @param pluginId 插件id
+         * @param path     插件目录中的路径
+         * @param digest   插件包摘要
+         * @return 处理结果
+         */
+        T handle(String pluginId, Path path, String digest);
+    }
+
 }
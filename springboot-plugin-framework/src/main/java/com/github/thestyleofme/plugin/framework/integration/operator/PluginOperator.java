@@ -5,7 +5,10 @@ import java.util.List;
 import java.util.Set;
 
 import com.github.thestyleofme.plugin.framework.integration.listener.PluginInitializerListener;
+import com.github.thestyleofme.plugin.framework.integration.operator.module.PluginBackupEntry;
 import com.github.thestyleofme.plugin.framework.integration.operator.module.PluginInfo;
+import com.github.thestyleofme.plugin.framework.integration.operator.module.PluginOperationResult;
+import com.github.thestyleofme.plugin.framework.metrics.PluginStageTiming;
 import org.pf4j.PluginWrapper;
 import org.springframework.web.multipart.MultipartFile;
 
@@ -30,19 +33,42 @@ public interface PluginOperator {
 
     /**
      * 通过路径安装插件(会启用), 该插件文件必须存在于服务器 [适用于生产环境]
-     * 如果在插件目录存在同名的插件包, 系统会自动备份该插件包。备份文件命名规则为；[install-backup][时间]_原jar名.jar
+     * 如果在插件目录存在同名的插件包, 系统会自动备份该插件包。备份标志为 install-backup, 见 getBackups
+     * 如果已安装同id的插件, 插件包内容(摘要)相同时不做任何操作, 不同时升级该插件
      *
      * @param path 插件路径
      * @return 成功返回true.不成功抛出异常或者返回false
      */
     boolean install(Path path);
 
+    /**
+     * 通过路径批量安装插件(会启用), 插件文件必须存在于服务器 [适用于生产环境]
+     * 所有插件注册完成后只进行一次构建。单个插件安装失败时, 只回滚该插件, 不影响其他插件。
+     * 已安装的插件与 install 相同: 内容相同时不做任何操作, 不同时升级
+     *
+     * @param paths 插件路径集合
+     * @return 每个插件的操作结果, 顺序与参数一致
+     */
+    List<PluginOperationResult> installAll(List<Path> paths);
+
+
+    /**
+     * 通过路径升级插件, 该插件文件必须存在于服务器 [适用于生产环境]
+     * 新版本在独立的类加载器中加载并准备好bean及请求映射后, 一次性替换旧版本的请求映射与 @Supplier bean,
+     * 旧版本在排空时间后停止, 插件文件移到备份目录。备份标志为 upgrade, 见 getBackups
+     * 插件未启动时, 等同于卸载后重新安装。
+     *
+     * @param pluginId 插件id
+     * @param path     新版本插件路径
+     * @return 成功返回true.不成功抛出异常或者返回false
+     */
+    boolean upgrade(String pluginId, Path path);
 
     /**
      * 卸载插件 [适用于生产环境]
      *
      * @param pluginId 插件id
-     * @param isBackup 是否备份原来的插件。备份文件命名规则为；[uninstall][时间]_原jar名.jar
+     * @param isBackup 是否备份原来的插件。备份标志为 uninstall, 见 getBackups
      * @return 成功返回true.不成功抛出异常或者返回false
      */
     boolean uninstall(String pluginId, boolean isBackup);
@@ -55,6 +81,15 @@ public interface PluginOperator {
      */
     boolean start(String pluginId);
 
+    /**
+     * 批量启用插件 [适用于生产环境、开发环境]
+     * 所有插件注册完成后只进行一次构建。单个插件启用失败时, 只停止该插件, 不影响其他插件
+     *
+     * @param pluginIds 插件id集合
+     * @return 每个插件的操作结果, 顺序与参数一致
+     */
+    List<PluginOperationResult> startAll(List<String> pluginIds);
+
 
     /**
      * 停止插件 [适用于生产环境、开发环境]
@@ -64,9 +99,18 @@ public interface PluginOperator {
      */
     boolean stop(String pluginId);
 
+    /**
+     * 重启插件 [适用于开发环境]
+     * 卸载插件后重新加载, 创建新的类加载器后启动。依赖该插件且已启动的插件一同重启
+     *
+     * @param pluginId 插件id
+     * @return 成功返回true.不成功抛出异常或者返回false
+     */
+    boolean restart(String pluginId);
+
     /**
      * 上传插件并启用插件。[适用于生产环境]
-     * 如果在插件目录存在同名的插件包, 系统会自动备份该插件包。备份文件命名规则为；[install-backup][时间]_原jar名.jar
+     * 如果在插件目录存在同名的插件包, 系统会自动备份该插件包。备份标志为 upload, 见 getBackups
      *
      * @param pluginFile 配置文件
      * @return 成功返回true.不成功返回false, 或者抛出异常
@@ -75,7 +119,7 @@ public interface PluginOperator {
 
     /**
      * 通过路径安装插件的配置文件。该文件必须存在于服务器。[适用于生产环境]
-     * 如果配置文件目录存在同名的配置文件, 系统会自动备份该配置文件。备份文件命名规则为；[install-config-backup][时间]_原jar名.jar
+     * 如果配置文件目录存在同名的配置文件, 系统会自动备份该配置文件。备份标志为 install-config-backup, 见 getBackups
      *
      * @param path 配置文件路径。
      * @return 成功返回true.不成功返回false, 或者抛出异常
@@ -85,7 +129,7 @@ public interface PluginOperator {
 
     /**
      * 上传配置文件。[适用于生产环境]
-     * 如果配置文件目录存在同名的配置文件, 系统会自动备份该配置文件。备份文件命名规则为；[upload-config-backup][时间]_原jar名.jar
+     * 如果配置文件目录存在同名的配置文件, 系统会自动备份该配置文件。备份标志为 upload-config-backup, 见 getBackups
      *
      * @param configFile 配置文件
      * @return 成功返回true.不成功返回false, 或者抛出异常
@@ -125,6 +169,27 @@ public interface PluginOperator {
      */
     PluginInfo getPluginInfo(String pluginId);
 
+    /**
+     * 得到插件处理者的耗时记录, 按时间先后排列。用于分析插件启动、停止缓慢的阶段
+     *
+     * @param pluginId 插件id, 为空时返回所有插件的记录
+     * @return 耗时记录
+     */
+    List<PluginStageTiming> getStageTimings(String pluginId);
+
+    /**
+     * 得到插件的备份记录, 按时间由新到旧排列
+     *
+     * @param pluginId 插件id, 为空时返回所有备份记录
+     * @return 备份记录
+     */
+    List<PluginBackupEntry> getBackups(String pluginId);
+
+    /**
+     * 关闭后台任务: 停止监听插件目录与编译输出目录, 停止备份压缩、旧版本排空与泄漏检查。不卸载插件
+     */
+    void shutdown();
+
 
     /**
      * 得到插件文件的路径 [适用于生产环境]
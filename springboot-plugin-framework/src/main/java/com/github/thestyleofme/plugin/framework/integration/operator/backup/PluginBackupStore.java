@@ -0,0 +1,410 @@
+package com.github.thestyleofme.plugin.framework.integration.operator.backup;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import com.github.thestyleofme.plugin.framework.integration.IntegrationConfiguration;
+import com.github.thestyleofme.plugin.framework.integration.operator.module.PluginBackupEntry;
+import com.github.thestyleofme.plugin.framework.utils.PluginFileUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>
+ * 按内容寻址的插件备份存储。备份文件以 SHA-256 摘要为名保存在 objects 目录下, 内容相同的备份只保存一份;
+ * 每次备份在索引中记录 (插件id, 标志, 时间) 到摘要的映射。
+ * 后台定时按数量、时间与总大小的保留策略清除索引记录, 并删除不再被引用的备份文件
+ * </p>
+ *
+ * @author isaac 2020/10/22 17:10
+ * @since 1.0
+ */
+public class PluginBackupStore {
+
+    private static final Logger LOG = LoggerFactory.getLogger(PluginBackupStore.class);
+
+    private static final String OBJECTS_DIR = "objects";
+    private static final String INDEX_FILE = "backup-index";
+    private static final String SEPARATOR = "\t";
+    private static final int INDEX_FIELDS = 6;
+
+    /**
+     * 旧版本的备份文件名: [标志][时间]_文件名, 标志可省略
+     */
+    private static final Pattern LEGACY_NAME = Pattern.compile("^(?:\\[([^\\]]*)])?\\[\\d+]_(.+)$");
+
+    private final Path root;
+    private final Path objectsRoot;
+    private final Path indexPath;
+    private final IntegrationConfiguration integrationConfiguration;
+
+    private final List<PluginBackupEntry> entries = new ArrayList<>();
+    private final AtomicBoolean compactScheduled = new AtomicBoolean(false);
+    private boolean loaded = false;
+    private ScheduledExecutorService compactExecutor;
+
+    public PluginBackupStore(IntegrationConfiguration integrationConfiguration) {
+        Objects.requireNonNull(integrationConfiguration, "IntegrationConfiguration can't be null");
+        this.integrationConfiguration = integrationConfiguration;
+        this.root = Paths.get(integrationConfiguration.backupPath());
+        this.objectsRoot = root.resolve(OBJECTS_DIR);
+        this.indexPath = root.resolve(INDEX_FILE);
+    }
+
+    /**
+     * 备份文件。内容已存在时只添加索引记录, 移动时删除源文件
+     *
+     * @param pluginId 插件id, 可为空
+     * @param sign     备份标志
+     * @param source   源文件
+     * @param move     是否移动源文件, 否则拷贝
+     * @return 备份记录
+     * @throws IOException 备份异常
+     */
+    public PluginBackupEntry backup(String pluginId, String sign, Path source, boolean move) throws IOException {
+        // 摘要在锁外计算, 避免大文件阻塞其余备份
+        String digest = PluginFileUtils.digest(source);
+        long size = Files.size(source);
+        PluginBackupEntry entry = new PluginBackupEntry(pluginId, sign, System.currentTimeMillis(), digest,
+                source.getFileName().toString(), size);
+        synchronized (this) {
+            load();
+            storeObject(source, digest, move);
+            entries.add(entry);
+            writeIndex();
+        }
+        LOG.info("Backup '{}' as {} [{}]", source, digest, sign);
+        compactAsync();
+        return entry;
+    }
+
+    /**
+     * 得到备份记录, 按时间由新到旧排列
+     *
+     * @param pluginId 插件id, 为空时返回所有备份记录
+     * @return 备份记录
+     */
+    public synchronized List<PluginBackupEntry> getEntries(String pluginId) {
+        load();
+        return entries.stream()
+                .filter(entry -> pluginId == null || pluginId.equals(entry.getPluginId()))
+                .sorted(Comparator.comparingLong(PluginBackupEntry::getTime).reversed())
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * 得到备份记录对应的备份文件
+     *
+     * @param entry 备份记录
+     * @return 备份文件路径
+     */
+    public Path getBackupFile(PluginBackupEntry entry) {
+        return getObjectPath(entry.getDigest());
+    }
+
+    /**
+     * 得到摘要对应的备份文件
+     *
+     * @param digest 备份文件内容的摘要
+     * @return 备份文件路径, 不存在时为空
+     */
+    public Path getBackupFile(String digest) {
+        if (digest == null || digest.length() < 2) {
+            return null;
+        }
+        Path objectPath = getObjectPath(digest);
+        return Files.exists(objectPath) ? objectPath : null;
+    }
+
+    /**
+     * 启动后台定时压缩
+     */
+    public synchronized void startCompaction() {
+        long interval = integrationConfiguration.backupCompactIntervalMillis();
+        ScheduledExecutorService executor = getCompactExecutor();
+        if (interval > 0) {
+            executor.scheduleWithFixedDelay(this::safeCompact, 0, interval, TimeUnit.MILLISECONDS);
+        } else {
+            compactAsync();
+        }
+    }
+
+    /**
+     * 停止后台压缩
+     */
+    public synchronized void shutdown() {
+        if (compactExecutor != null) {
+            compactExecutor.shutdown();
+            compactExecutor = null;
+        }
+    }
+
+    /**
+     * 压缩备份: 配置导入时导入旧版本的备份文件, 按保留策略清除索引记录, 并删除不再被引用的备份文件
+     *
+     * @throws IOException 压缩异常
+     */
+    public synchronized void compact() throws IOException {
+        load();
+        if (integrationConfiguration.backupImportLegacy()) {
+            importLegacyFiles();
+        }
+        List<PluginBackupEntry> retained = applyRetention(entries, System.currentTimeMillis());
+        int removed = entries.size() - retained.size();
+        entries.clear();
+        entries.addAll(retained);
+        if (removed > 0) {
+            writeIndex();
+        }
+        int deleted = deleteUnreferencedObjects();
+        if (removed > 0 || deleted > 0) {
+            LOG.info("Backup compacted, {} entries removed, {} files deleted", removed, deleted);
+        }
+    }
+
+    private void compactAsync() {
+        if (compactScheduled.compareAndSet(false, true)) {
+            try {
+                getCompactExecutor().execute(() -> {
+                    compactScheduled.set(false);
+                    safeCompact();
+                });
+            } catch (Exception e) {
+                compactScheduled.set(false);
+                LOG.warn("Submit backup compaction failure. {}", e.getMessage());
+            }
+        }
+    }
+
+    private void safeCompact() {
+        try {
+            compact();
+        } catch (Exception e) {
+            LOG.error("Backup compaction failure. {}", e.getMessage(), e);
+        }
+    }
+
+    private synchronized ScheduledExecutorService getCompactExecutor() {
+        if (compactExecutor == null) {
+            compactExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "plugin-backup-compactor");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return compactExecutor;
+    }
+
+    /**
+     * 按保留策略得到保留的记录。每个分组最近的一个备份总会保留, 不受数量、时间与总大小限制
+     *
+     * @param all 所有记录
+     * @param now 当前时间
+     * @return 保留的记录, 按时间由旧到新排列
+     */
+    private List<PluginBackupEntry> applyRetention(List<PluginBackupEntry> all, long now) {
+        int maxCount = integrationConfiguration.backupMaxCount();
+        long maxAge = integrationConfiguration.backupMaxAgeMillis();
+        long maxTotalSize = integrationConfiguration.backupMaxTotalSize();
+        List<PluginBackupEntry> newestFirst = new ArrayList<>(all);
+        newestFirst.sort(Comparator.comparingLong(PluginBackupEntry::getTime).reversed());
+        Map<String, Integer> counts = new HashMap<>();
+        List<PluginBackupEntry> retained = new ArrayList<>();
+        Set<PluginBackupEntry> newestOfKey = new HashSet<>();
+        for (PluginBackupEntry entry : newestFirst) {
+            int count = counts.merge(entry.getRetentionKey(), 1, Integer::sum);
+            if (count == 1) {
+                newestOfKey.add(entry);
+                retained.add(entry);
+                continue;
+            }
+            if (maxCount > 0 && count > maxCount) {
+                continue;
+            }
+            if (maxAge > 0 && now - entry.getTime() > maxAge) {
+                continue;
+            }
+            retained.add(entry);
+        }
+        Collections.reverse(retained);
+        if (maxTotalSize <= 0) {
+            return retained;
+        }
+        Map<String, Integer> references = new HashMap<>();
+        Map<String, Long> sizes = new HashMap<>();
+        for (PluginBackupEntry entry : retained) {
+            references.merge(entry.getDigest(), 1, Integer::sum);
+            sizes.put(entry.getDigest(), entry.getSize());
+        }
+        long totalSize = sizes.values().stream().mapToLong(Long::longValue).sum();
+        Iterator<PluginBackupEntry> iterator = retained.iterator();
+        while (totalSize > maxTotalSize && iterator.hasNext()) {
+            PluginBackupEntry entry = iterator.next();
+            if (newestOfKey.contains(entry)) {
+                continue;
+            }
+            iterator.remove();
+            if (references.merge(entry.getDigest(), -1, Integer::sum) == 0) {
+                totalSize -= entry.getSize();
+            }
+        }
+        return retained;
+    }
+
+    /**
+     * 将内容保存到备份文件。内容已存在时不再保存
+     */
+    private void storeObject(Path source, String digest, boolean move) throws IOException {
+        Path objectPath = getObjectPath(digest);
+        if (Files.exists(objectPath)) {
+            if (move) {
+                Files.deleteIfExists(source);
+            }
+            return;
+        }
+        Files.createDirectories(objectPath.getParent());
+        if (move) {
+            PluginFileUtils.moveAtomically(source, objectPath);
+        } else {
+            Path temp = Files.createTempFile(objectPath.getParent(), "." + digest, ".tmp");
+            try {
+                Files.copy(source, temp, StandardCopyOption.REPLACE_EXISTING);
+                PluginFileUtils.moveAtomically(temp, objectPath);
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+        }
+    }
+
+    /**
+     * 导入备份目录下旧版本的备份文件, 导入后删除原文件
+     */
+    private void importLegacyFiles() throws IOException {
+        if (!Files.isDirectory(root)) {
+            return;
+        }
+        List<Path> legacyFiles;
+        try (Stream<Path> stream = Files.list(root)) {
+            legacyFiles = stream.filter(Files::isRegularFile)
+                    .filter(path -> LEGACY_NAME.matcher(path.getFileName().toString()).matches())
+                    .collect(Collectors.toList());
+        }
+        if (legacyFiles.isEmpty()) {
+            return;
+        }
+        for (Path legacyFile : legacyFiles) {
+            Matcher matcher = LEGACY_NAME.matcher(legacyFile.getFileName().toString());
+            if (!matcher.matches()) {
+                continue;
+            }
+            long time = Files.getLastModifiedTime(legacyFile).toMillis();
+            String digest = PluginFileUtils.digest(legacyFile);
+            long size = Files.size(legacyFile);
+            storeObject(legacyFile, digest, true);
+            entries.add(new PluginBackupEntry(null, matcher.group(1), time, digest, matcher.group(2), size));
+        }
+        writeIndex();
+        LOG.info("Imported {} legacy backup files", legacyFiles.size());
+    }
+
+    private int deleteUnreferencedObjects() throws IOException {
+        if (!Files.isDirectory(objectsRoot)) {
+            return 0;
+        }
+        Set<String> referenced = entries.stream().map(PluginBackupEntry::getDigest).collect(Collectors.toSet());
+        List<Path> unreferenced;
+        try (Stream<Path> stream = Files.walk(objectsRoot)) {
+            unreferenced = stream.filter(Files::isRegularFile)
+                    .filter(path -> !referenced.contains(path.getFileName().toString()))
+                    .collect(Collectors.toList());
+        }
+        for (Path path : unreferenced) {
+            Files.deleteIfExists(path);
+        }
+        return unreferenced.size();
+    }
+
+    private Path getObjectPath(String digest) {
+        return objectsRoot.resolve(digest.substring(0, 2)).resolve(digest);
+    }
+
+    private void load() {
+        if (loaded) {
+            return;
+        }
+        loaded = true;
+        if (!Files.exists(indexPath)) {
+            return;
+        }
+        try {
+            for (String line : Files.readAllLines(indexPath, StandardCharsets.UTF_8)) {
+                PluginBackupEntry entry = parse(line);
+                if (entry != null) {
+                    entries.add(entry);
+                } else if (!line.isEmpty()) {
+                    LOG.warn("Skip illegal backup index line '{}'", line);
+                }
+            }
+        } catch (IOException e) {
+            LOG.error("Read backup index '{}' failure. {}", indexPath, e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 写入索引。先写临时文件再原子重命名, 索引不会只写入一半
+     */
+    private void writeIndex() throws IOException {
+        Files.createDirectories(root);
+        Path temp = Files.createTempFile(root, "." + INDEX_FILE, ".tmp");
+        try {
+            try (BufferedWriter writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+                for (PluginBackupEntry entry : entries) {
+                    writer.write(format(entry));
+                    writer.newLine();
+                }
+            }
+            PluginFileUtils.moveAtomically(temp, indexPath);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private static String format(PluginBackupEntry entry) {
+        return entry.getTime() + SEPARATOR + entry.getDigest() + SEPARATOR + entry.getSize() + SEPARATOR +
+                clean(entry.getSign()) + SEPARATOR + clean(entry.getPluginId()) + SEPARATOR +
+                clean(entry.getFileName());
+    }
+
+    private static PluginBackupEntry parse(String line) {
+        String[] fields = line.split(SEPARATOR, -1);
+        if (fields.length != INDEX_FIELDS || fields[1].length() < 2) {
+            return null;
+        }
+        try {
+            return new PluginBackupEntry(emptyToNull(fields[4]), emptyToNull(fields[3]),
+                    Long.parseLong(fields[0]), fields[1], fields[5], Long.parseLong(fields[2]));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static String clean(String value) {
+        return value == null ? "" : value.replaceAll("[\\t\\r\\n]", " ");
+    }
+
+    private static String emptyToNull(String value) {
+        return value.isEmpty() ? null : value;
+    }
+
+}
@@ -0,0 +1,328 @@
+package com.github.thestyleofme.plugin.framework.integration.operator.deploy;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import com.github.thestyleofme.plugin.framework.integration.operator.PluginOperator;
+import com.github.thestyleofme.plugin.framework.loader.PluginClassIndexCache;
+import org.pf4j.PluginWrapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.util.ClassUtils;
+
+/**
+ * <p>
+ * 开发环境下插件编译输出目录的监听者。基于 WatchService 监听插件类加载器中的类目录(包括子目录),
+ * 变化在防抖时间内合并后, 只重启类文件变化的插件。监听期间在内存中维护每个插件的类名,
+ * 重启时不再遍历类目录, 类索引只重新读取变化的类
+ * </p>
+ *
+ * @author isaac 2020/10/25 16:40
+ * @since 1.0
+ */
+public class PluginClassesWatcher {
+
+    private static final String JAVA_CLASS_SUFFIX = ".class";
+
+    private final Logger log = LoggerFactory.getLogger(this.getClass());
+
+    private final PluginOperator pluginOperator;
+    private final PluginClassIndexCache classIndexCache;
+    private final long debounceMillis;
+
+    /**
+     * 监听的目录, 以及目录所属的插件与类目录
+     */
+    private final Map<WatchKey, WatchedDirectory> watchedDirectories = new HashMap<>();
+
+    /**
+     * 插件id与编译输出目录中的类名
+     */
+    private final Map<String, Set<String>> pluginClassNames = new HashMap<>();
+
+    /**
+     * 插件id与防抖时间内变化的类名
+     */
+    private final Map<String, Set<String>> changedClassNames = new HashMap<>();
+
+    private WatchService watchService;
+    private ScheduledExecutorService restartExecutor;
+    private ScheduledFuture<?> flushFuture;
+    private volatile boolean running = false;
+
+    public PluginClassesWatcher(PluginOperator pluginOperator, PluginClassIndexCache classIndexCache,
+                                long debounceMillis) {
+        this.pluginOperator = Objects.requireNonNull(pluginOperator, "PluginOperator can't be null");
+        this.classIndexCache = Objects.requireNonNull(classIndexCache, "PluginClassIndexCache can't be null");
+        this.debounceMillis = Math.max(0L, debounceMillis);
+    }
+
+    /**
+     * 开始监听当前所有插件的编译输出目录
+     *
+     * @throws IOException 注册监听异常
+     */
+    public synchronized void start() throws IOException {
+        if (running) {
+            return;
+        }
+        watchService = FileSystems.getDefault().newWatchService();
+        for (PluginWrapper pluginWrapper : pluginOperator.getPluginWrapper()) {
+            String pluginId = pluginWrapper.getPluginId();
+            Set<String> classNames = new HashSet<>();
+            for (Path classesDirectory : getClassesDirectories(pluginWrapper)) {
+                register(pluginId, classesDirectory, classesDirectory, classNames);
+            }
+            pluginClassNames.put(pluginId, classNames);
+            classIndexCache.track(pluginId, classNames);
+        }
+        restartExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "plugin-hot-restart");
+            thread.setDaemon(true);
+            return thread;
+        });
+        Thread watchThread = new Thread(this::watch, "plugin-classes-watcher");
+        watchThread.setDaemon(true);
+        running = true;
+        watchThread.start();
+        log.info("Plugin classes hot restart started, watch plugins {}", pluginClassNames.keySet());
+    }
+
+    /**
+     * 停止监听。等待重启的变化被丢弃
+     */
+    public synchronized void stop() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        try {
+            watchService.close();
+        } catch (IOException e) {
+            log.warn("Close plugin classes watch service failure. {}", e.getMessage());
+        }
+        restartExecutor.shutdownNow();
+        pluginClassNames.keySet().forEach(classIndexCache::untrack);
+        watchedDirectories.clear();
+        changedClassNames.clear();
+    }
+
+    /**
+     * 是否正在监听
+     *
+     * @return boolean
+     */
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * 插件类加载器中位于插件目录下的类目录, 即插件的编译输出目录
+     *
+     * @param pluginWrapper 插件
+     * @return 类目录
+     */
+    private List<Path> getClassesDirectories(PluginWrapper pluginWrapper) {
+        List<Path> classesDirectories = new ArrayList<>();
+        ClassLoader pluginClassLoader = pluginWrapper.getPluginClassLoader();
+        if (!(pluginClassLoader instanceof URLClassLoader)) {
+            return classesDirectories;
+        }
+        Path pluginPath = pluginWrapper.getPluginPath().toAbsolutePath();
+        for (URL url : ((URLClassLoader) pluginClassLoader).getURLs()) {
+            try {
+                Path path = Paths.get(url.toURI()).toAbsolutePath();
+                if (Files.isDirectory(path) && path.startsWith(pluginPath)) {
+                    classesDirectories.add(path);
+                }
+            } catch (URISyntaxException | IllegalArgumentException | FileSystemNotFoundException e) {
+                log.debug("Skip plugin '{}' classpath '{}'. {}", pluginWrapper.getPluginId(), url, e.getMessage());
+            }
+        }
+        return classesDirectories;
+    }
+
+    /**
+     * 监听目录及其子目录, 并收集其中的类名
+     */
+    private void register(String pluginId, Path classesDirectory, Path directory,
+                          Set<String> classNames) throws IOException {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            for (Path path : paths.collect(Collectors.toList())) {
+                if (Files.isDirectory(path)) {
+                    WatchKey watchKey = path.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                            StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+                    watchedDirectories.put(watchKey, new WatchedDirectory(pluginId, classesDirectory, path));
+                } else if (isClassFile(path)) {
+                    classNames.add(toClassName(classesDirectory, path));
+                }
+            }
+        }
+    }
+
+    private void watch() {
+        while (running) {
+            WatchKey watchKey;
+            try {
+                watchKey = watchService.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (ClosedWatchServiceException e) {
+                return;
+            }
+            handle(watchKey);
+        }
+    }
+
+    private synchronized void handle(WatchKey watchKey) {
+        WatchedDirectory watchedDirectory = watchedDirectories.get(watchKey);
+        if (watchedDirectory == null) {
+            watchKey.cancel();
+            return;
+        }
+        String pluginId = watchedDirectory.pluginId;
+        for (WatchEvent<?> event : watchKey.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                // 事件丢失, 重新收集该插件的类名, 并在重启时重新读取所有类
+                rescan(pluginId);
+                continue;
+            }
+            Path path = watchedDirectory.directory.resolve((Path) event.context());
+            if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE && Files.isDirectory(path)) {
+                // 新建的包目录, 其中的类可能在注册监听前已写入
+                Set<String> classNames = new HashSet<>();
+                try {
+                    register(pluginId, watchedDirectory.classesDirectory, path, classNames);
+                } catch (IOException e) {
+                    log.warn("Watch plugin '{}' directory '{}' failure. {}", pluginId, path, e.getMessage());
+                }
+                changedClassNames.computeIfAbsent(pluginId, key -> new HashSet<>()).addAll(classNames);
+            } else if (isClassFile(path)) {
+                changedClassNames.computeIfAbsent(pluginId, key -> new HashSet<>())
+                        .add(toClassName(watchedDirectory.classesDirectory, path));
+            }
+        }
+        if (!watchKey.reset()) {
+            // 目录被删除
+            watchedDirectories.remove(watchKey);
+        }
+        if (!changedClassNames.isEmpty()) {
+            scheduleFlush();
+        }
+    }
+
+    private void rescan(String pluginId) {
+        Set<String> classNames = new HashSet<>();
+        Set<Path> classesDirectories = new HashSet<>();
+        for (WatchedDirectory watchedDirectory : watchedDirectories.values()) {
+            if (watchedDirectory.pluginId.equals(pluginId)) {
+                classesDirectories.add(watchedDirectory.classesDirectory);
+            }
+        }
+        for (Path classesDirectory : classesDirectories) {
+            try (Stream<Path> paths = Files.walk(classesDirectory)) {
+                paths.filter(this::isClassFile)
+                        .forEach(path -> classNames.add(toClassName(classesDirectory, path)));
+            } catch (IOException e) {
+                log.warn("Rescan plugin '{}' directory '{}' failure. {}", pluginId, classesDirectory, e.getMessage());
+            }
+        }
+        Set<String> changed = changedClassNames.computeIfAbsent(pluginId, key -> new HashSet<>());
+        changed.addAll(classNames);
+        changed.addAll(pluginClassNames.getOrDefault(pluginId, Collections.emptySet()));
+    }
+
+    /**
+     * 防抖: 每次变化都重新计时, 防抖时间内没有新的变化才重启
+     */
+    private void scheduleFlush() {
+        if (!running) {
+            return;
+        }
+        if (flushFuture != null) {
+            flushFuture.cancel(false);
+        }
+        flushFuture = restartExecutor.schedule(this::flush, debounceMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private void flush() {
+        Map<String, Set<String>> changed;
+        synchronized (this) {
+            changed = new LinkedHashMap<>(changedClassNames);
+            changedClassNames.clear();
+            for (Map.Entry<String, Set<String>> entry : changed.entrySet()) {
+                String pluginId = entry.getKey();
+                Set<String> classNames = pluginClassNames.computeIfAbsent(pluginId, key -> new HashSet<>());
+                for (String className : entry.getValue()) {
+                    if (classExists(pluginId, className)) {
+                        classNames.add(className);
+                    } else {
+                        classNames.remove(className);
+                    }
+                }
+                classIndexCache.changed(pluginId, classNames, entry.getValue());
+            }
+        }
+        for (Map.Entry<String, Set<String>> entry : changed.entrySet()) {
+            String pluginId = entry.getKey();
+            long startMillis = System.currentTimeMillis();
+            try {
+                log.info("Plugin '{}' classes {} changed, hot restart", pluginId, entry.getValue().size());
+                pluginOperator.restart(pluginId);
+                log.info("Plugin '{}' hot restart in {} ms", pluginId, System.currentTimeMillis() - startMillis);
+            } catch (Exception e) {
+                log.error("Plugin '{}' hot restart failure. {}", pluginId, e.getMessage(), e);
+            }
+        }
+    }
+
+    private synchronized boolean classExists(String pluginId, String className) {
+        String relativePath = ClassUtils.convertClassNameToResourcePath(className) + JAVA_CLASS_SUFFIX;
+        for (WatchedDirectory watchedDirectory : watchedDirectories.values()) {
+            if (watchedDirectory.pluginId.equals(pluginId) &&
+                    Files.isRegularFile(watchedDirectory.classesDirectory.resolve(relativePath))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean isClassFile(Path path) {
+        return path.getFileName().toString().endsWith(JAVA_CLASS_SUFFIX);
+    }
+
+    private String toClassName(Path classesDirectory, Path path) {
+        String relativePath = classesDirectory.relativize(path).toString().replace(File.separatorChar, '/');
+        return ClassUtils.convertResourcePathToClassName(
+                relativePath.substring(0, relativePath.length() - JAVA_CLASS_SUFFIX.length()));
+    }
+
+    /**
+     * 被监听的目录
+     */
+    private static class WatchedDirectory {
+
+        private final String pluginId;
+        private final Path classesDirectory;
+        private final Path directory;
+
+        private WatchedDirectory(String pluginId, Path classesDirectory, Path directory) {
+            this.pluginId = pluginId;
+            this.classesDirectory = classesDirectory;
+            this.directory = directory;
+        }
+    }
+
+}
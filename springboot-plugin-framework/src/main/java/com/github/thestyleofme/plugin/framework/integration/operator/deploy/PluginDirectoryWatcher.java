@@ -0,0 +1,342 @@
+package com.github.thestyleofme.plugin.framework.integration.operator.deploy;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.ZipFile;
+
+import com.github.thestyleofme.plugin.framework.constants.BaseConstants;
+import com.github.thestyleofme.plugin.framework.integration.operator.PluginOperator;
+import com.github.thestyleofme.plugin.framework.integration.operator.module.PluginOperationResult;
+import org.pf4j.PluginWrapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>
+ * 插件目录的监听者。基于 WatchService 监听插件目录, 变化在防抖时间内合并,
+ * 插件包大小稳定且压缩包中央目录完整后, 批量安装、升级新增或修改的插件包, 卸载被删除的插件包。
+ * 同时在内存中维护插件目录下的插件包索引
+ * </p>
+ *
+ * @author isaac 2020/10/23 10:20
+ * @since 1.0
+ */
+public class PluginDirectoryWatcher {
+
+    /**
+     * 插件包大小稳定但中央目录一直不完整时, 放弃部署前的检查次数
+     */
+    private static final int MAX_INCOMPLETE_CHECKS = 5;
+
+    private final Logger log = LoggerFactory.getLogger(this.getClass());
+
+    private final Path pluginsRoot;
+    private final PluginOperator pluginOperator;
+    private final long debounceMillis;
+
+    /**
+     * 等待部署的插件包
+     */
+    private final Map<Path, PendingFile> pendingFiles = new HashMap<>();
+
+    /**
+     * 插件目录下写入完成的插件包路径。变化时整体替换, 读取时不需要加锁
+     */
+    private volatile Set<String> pluginFilePaths = Collections.emptySet();
+
+    private WatchService watchService;
+    private ScheduledExecutorService deployExecutor;
+    private ScheduledFuture<?> flushFuture;
+    private volatile boolean running = false;
+
+    public PluginDirectoryWatcher(Path pluginsRoot, PluginOperator pluginOperator, long debounceMillis) {
+        Objects.requireNonNull(pluginsRoot, "PluginsRoot can't be null");
+        Objects.requireNonNull(pluginOperator, "PluginOperator can't be null");
+        this.pluginsRoot = pluginsRoot.toAbsolutePath();
+        this.pluginOperator = pluginOperator;
+        this.debounceMillis = Math.max(0L, debounceMillis);
+    }
+
+    /**
+     * 开始监听插件目录
+     *
+     * @throws IOException 注册监听异常
+     */
+    public synchronized void start() throws IOException {
+        if (running) {
+            return;
+        }
+        Files.createDirectories(pluginsRoot);
+        watchService = pluginsRoot.getFileSystem().newWatchService();
+        pluginsRoot.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+        pluginFilePaths = Collections.unmodifiableSet(listPluginFiles().stream()
+                .map(Path::toString)
+                .collect(Collectors.toSet()));
+        deployExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "plugin-auto-deploy");
+            thread.setDaemon(true);
+            return thread;
+        });
+        Thread watchThread = new Thread(this::watch, "plugin-directory-watcher");
+        watchThread.setDaemon(true);
+        running = true;
+        watchThread.start();
+        log.info("Plugin directory '{}' auto deploy started", pluginsRoot);
+    }
+
+    /**
+     * 停止监听插件目录。等待部署的变化被丢弃
+     */
+    public synchronized void stop() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        try {
+            watchService.close();
+        } catch (IOException e) {
+            log.warn("Close plugin directory watch service failure. {}", e.getMessage());
+        }
+        deployExecutor.shutdownNow();
+        pendingFiles.clear();
+    }
+
+    /**
+     * 是否正在监听
+     *
+     * @return boolean
+     */
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * 得到插件目录下写入完成的插件包路径
+     *
+     * @return 不可修改的插件包绝对路径集合
+     */
+    public Set<String> getPluginFilePaths() {
+        return pluginFilePaths;
+    }
+
+    private void watch() {
+        while (running) {
+            WatchKey watchKey;
+            try {
+                watchKey = watchService.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (ClosedWatchServiceException e) {
+                return;
+            }
+            boolean overflow = false;
+            for (WatchEvent<?> event : watchKey.pollEvents()) {
+                if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                    overflow = true;
+                    continue;
+                }
+                Path path = pluginsRoot.resolve((Path) event.context());
+                if (isPluginFile(path)) {
+                    addPendingFile(path);
+                }
+            }
+            if (overflow) {
+                // 事件丢失, 重新比对整个目录
+                rescan();
+            }
+            if (!watchKey.reset()) {
+                log.warn("Plugin directory '{}' is no longer accessible, auto deploy stopped", pluginsRoot);
+                stop();
+                return;
+            }
+        }
+    }
+
+    private synchronized void addPendingFile(Path path) {
+        pendingFiles.computeIfAbsent(path, PendingFile::new).isStable();
+        scheduleFlush();
+    }
+
+    private void rescan() {
+        List<Path> paths;
+        try {
+            paths = listPluginFiles();
+        } catch (IOException e) {
+            log.error("List plugin directory '{}' failure. {}", pluginsRoot, e.getMessage(), e);
+            return;
+        }
+        for (String indexed : pluginFilePaths) {
+            paths.add(Paths.get(indexed));
+        }
+        paths.forEach(this::addPendingFile);
+    }
+
+    /**
+     * 防抖: 每次变化都重新计时, 防抖时间内没有新的变化才部署
+     */
+    private synchronized void scheduleFlush() {
+        if (!running) {
+            return;
+        }
+        if (flushFuture != null) {
+            flushFuture.cancel(false);
+        }
+        flushFuture = deployExecutor.schedule(this::flush, debounceMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private void flush() {
+        List<Path> completedFiles = new ArrayList<>();
+        List<Path> deletedFiles = new ArrayList<>();
+        synchronized (this) {
+            Iterator<Map.Entry<Path, PendingFile>> iterator = pendingFiles.entrySet().iterator();
+            while (iterator.hasNext()) {
+                Map.Entry<Path, PendingFile> entry = iterator.next();
+                Path path = entry.getKey();
+                PendingFile pendingFile = entry.getValue();
+                if (!Files.exists(path)) {
+                    deletedFiles.add(path);
+                    iterator.remove();
+                } else if (!pendingFile.isStable()) {
+                    // 仍在写入
+                    log.debug("Plugin file '{}' is still being written", path);
+                } else if (isCompleteZip(path)) {
+                    completedFiles.add(path);
+                    iterator.remove();
+                } else if (++pendingFile.incompleteChecks >= MAX_INCOMPLETE_CHECKS) {
+                    log.warn("Plugin file '{}' is not a complete jar, skip auto deploy", path);
+                    iterator.remove();
+                }
+            }
+            if (!pendingFiles.isEmpty()) {
+                scheduleFlush();
+            }
+        }
+        if (completedFiles.isEmpty() && deletedFiles.isEmpty()) {
+            return;
+        }
+        updateIndex(completedFiles, deletedFiles);
+        deploy(completedFiles, deletedFiles);
+    }
+
+    private void updateIndex(List<Path> completedFiles, List<Path> deletedFiles) {
+        Set<String> paths = new HashSet<>(pluginFilePaths);
+        deletedFiles.forEach(path -> paths.remove(path.toString()));
+        completedFiles.forEach(path -> paths.add(path.toString()));
+        pluginFilePaths = Collections.unmodifiableSet(paths);
+    }
+
+    /**
+     * 先卸载被删除的插件包对应的插件, 再批量安装写入完成的插件包。已安装的插件包由插件操作者判断是否需要升级
+     *
+     * @param completedFiles 写入完成的插件包
+     * @param deletedFiles   被删除的插件包
+     */
+    private void deploy(List<Path> completedFiles, List<Path> deletedFiles) {
+        for (Path deletedFile : deletedFiles) {
+            for (PluginWrapper pluginWrapper : pluginOperator.getPluginWrapper()) {
+                if (!deletedFile.equals(pluginWrapper.getPluginPath().toAbsolutePath())) {
+                    continue;
+                }
+                String pluginId = pluginWrapper.getPluginId();
+                try {
+                    log.info("Plugin file '{}' deleted, auto uninstall plugin '{}'", deletedFile, pluginId);
+                    pluginOperator.uninstall(pluginId, false);
+                } catch (Exception e) {
+                    log.error("Plugin '{}' auto uninstall failure. {}", pluginId, e.getMessage(), e);
+                }
+            }
+        }
+        if (completedFiles.isEmpty()) {
+            return;
+        }
+        log.info("Plugin files {} changed, auto deploy", completedFiles);
+        try {
+            for (PluginOperationResult result : pluginOperator.installAll(completedFiles)) {
+                if (!result.isSuccess()) {
+                    log.error("Plugin file '{}' auto deploy failure. {}", result.getPath(), result.getMessage());
+                }
+            }
+        } catch (Exception e) {
+            log.error("Plugin files {} auto deploy failure. {}", completedFiles, e.getMessage(), e);
+        }
+    }
+
+    private List<Path> listPluginFiles() throws IOException {
+        try (Stream<Path> stream = Files.list(pluginsRoot)) {
+            return stream.filter(Files::isRegularFile)
+                    .filter(this::isPluginFile)
+                    .collect(Collectors.toCollection(ArrayList::new));
+        }
+    }
+
+    /**
+     * 只处理插件目录下的 jar 包, 忽略隐藏的临时文件
+     *
+     * @param path 路径
+     * @return boolean
+     */
+    private boolean isPluginFile(Path path) {
+        String fileName = path.getFileName().toString();
+        return !fileName.startsWith(".") &&
+                fileName.toLowerCase().endsWith("." + BaseConstants.Suffix.JAR);
+    }
+
+    /**
+     * 压缩包的中央目录位于文件末尾, 能完整读取说明文件已写入完成
+     *
+     * @param path 插件包路径
+     * @return boolean
+     */
+    private boolean isCompleteZip(Path path) {
+        try (ZipFile ignored = new ZipFile(path.toFile())) {
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * 等待部署的插件包, 记录最近一次观察到的大小与修改时间
+     */
+    private static class PendingFile {
+
+        private final Path path;
+        private long size = -1;
+        private long lastModified = -1;
+        private int incompleteChecks = 0;
+
+        private PendingFile(Path path) {
+            this.path = path;
+        }
+
+        /**
+         * 与上次观察相比大小与修改时间是否不变, 并记录本次观察
+         *
+         * @return boolean
+         */
+        private boolean isStable() {
+            long currentSize;
+            long currentLastModified;
+            try {
+                currentSize = Files.size(path);
+                currentLastModified = Files.getLastModifiedTime(path).toMillis();
+            } catch (IOException e) {
+                return false;
+            }
+            boolean stable = currentSize == size && currentLastModified == lastModified;
+            size = currentSize;
+            lastModified = currentLastModified;
+            return stable;
+        }
+    }
+
+}
@@ -0,0 +1,302 @@
+package com.github.thestyleofme.plugin.framework.integration.operator.journal;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.github.thestyleofme.plugin.framework.enums.JournalOperationEnum;
+import com.github.thestyleofme.plugin.framework.exceptions.PluginException;
+import com.github.thestyleofme.plugin.framework.integration.IntegrationConfiguration;
+import com.github.thestyleofme.plugin.framework.utils.PluginFileUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>
+ * 插件操作的预写日志。安装、升级、卸载修改插件目录前先记录操作意图、插件包摘要与之前的状态并刷盘,
+ * 完成后记录结束。没有未结束的操作时清空日志, 因此启动时只需读取日志的末尾即可找到未完成的操作
+ * </p>
+ *
+ * @author isaac 2020/10/23 14:10
+ * @since 1.0
+ */
+public class PluginOperationJournal {
+
+    private static final Logger LOG = LoggerFactory.getLogger(PluginOperationJournal.class);
+
+    private static final String JOURNAL_FILE = "operation-journal";
+    private static final String SEPARATOR = "\t";
+    private static final String NEW_LINE = "\n";
+    private static final String BEGIN = "BEGIN";
+    private static final String COMMIT = "COMMIT";
+    private static final String ABORT = "ABORT";
+    private static final int BEGIN_FIELDS = 9;
+
+    private final Path journalPath;
+    private final AtomicLong sequence = new AtomicLong();
+
+    /**
+     * 未结束的操作, 包括上次运行遗留的操作
+     */
+    private final Map<String, Entry> openEntries = new LinkedHashMap<>();
+    private boolean loaded = false;
+    private FileChannel channel;
+
+    public PluginOperationJournal(IntegrationConfiguration integrationConfiguration) {
+        Objects.requireNonNull(integrationConfiguration, "IntegrationConfiguration can't be null");
+        this.journalPath = Paths.get(integrationConfiguration.backupPath(), JOURNAL_FILE);
+    }
+
+    /**
+     * 记录操作开始。记录刷盘后才返回
+     *
+     * @param operation      操作
+     * @param pluginId       插件id
+     * @param targetPath     操作的插件目录下的插件包
+     * @param digest         安装、升级的插件包摘要
+     * @param previousPath   之前的插件包, 没有时为空
+     * @param previousDigest 之前的插件包摘要, 没有时为空
+     * @param backup         卸载时是否备份
+     * @return 操作记录
+     */
+    public synchronized Entry begin(JournalOperationEnum operation, String pluginId, Path targetPath, String digest,
+                                    Path previousPath, String previousDigest, boolean backup) {
+        load();
+        Entry entry = new Entry(System.currentTimeMillis() + "-" + sequence.incrementAndGet(), operation,
+                pluginId, targetPath.toAbsolutePath(), digest,
+                previousPath == null ? null : previousPath.toAbsolutePath(), previousDigest, backup);
+        append(toBeginLine(entry));
+        openEntries.put(entry.id, entry);
+        return entry;
+    }
+
+    /**
+     * 记录操作完成
+     *
+     * @param entry 操作记录
+     */
+    public void commit(Entry entry) {
+        end(entry, COMMIT);
+    }
+
+    /**
+     * 记录操作放弃, 插件目录已恢复到操作之前的状态
+     *
+     * @param entry 操作记录
+     */
+    public void abort(Entry entry) {
+        end(entry, ABORT);
+    }
+
+    /**
+     * 得到未结束的操作, 按开始的先后排列
+     *
+     * @return 未结束的操作
+     */
+    public synchronized List<Entry> getOpenEntries() {
+        load();
+        return new ArrayList<>(openEntries.values());
+    }
+
+    private synchronized void end(Entry entry, String type) {
+        if (entry == null || openEntries.remove(entry.id) == null) {
+            return;
+        }
+        if (openEntries.isEmpty()) {
+            // 没有未结束的操作, 清空日志
+            truncate();
+        } else {
+            append(type + SEPARATOR + entry.id);
+        }
+    }
+
+    private void load() {
+        if (loaded) {
+            return;
+        }
+        loaded = true;
+        if (!Files.exists(journalPath)) {
+            return;
+        }
+        List<String> lines;
+        try {
+            lines = Files.readAllLines(journalPath, StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new PluginException("Read plugin operation journal '" + journalPath + "' failure", e);
+        }
+        for (String line : lines) {
+            String[] fields = line.split(SEPARATOR, -1);
+            if (BEGIN.equals(fields[0]) && fields.length == BEGIN_FIELDS) {
+                Entry entry = parse(fields);
+                if (entry != null) {
+                    openEntries.put(entry.id, entry);
+                }
+            } else if ((COMMIT.equals(fields[0]) || ABORT.equals(fields[0])) && fields.length == 2) {
+                openEntries.remove(fields[1]);
+            } else if (!line.isEmpty()) {
+                // 崩溃时未写完的最后一行
+                LOG.warn("Skip illegal plugin operation journal line '{}'", line);
+            }
+        }
+        if (!openEntries.isEmpty()) {
+            LOG.warn("Found {} unfinished plugin operations in '{}'", openEntries.size(), journalPath);
+        }
+        rewrite();
+    }
+
+    /**
+     * 只保留未结束的操作重写日志, 没有时清空。崩溃时未写完的最后一行没有换行, 不重写时之后追加的记录会与其连成一行
+     */
+    private void rewrite() {
+        try {
+            if (openEntries.isEmpty()) {
+                truncate();
+                return;
+            }
+            Path temp = Paths.get(journalPath.toString() + ".tmp");
+            try (FileChannel fileChannel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                for (Entry entry : openEntries.values()) {
+                    write(fileChannel, toBeginLine(entry));
+                }
+                fileChannel.force(false);
+            }
+            PluginFileUtils.moveAtomically(temp, journalPath);
+        } catch (IOException e) {
+            throw new PluginException("Rewrite plugin operation journal '" + journalPath + "' failure", e);
+        }
+    }
+
+    private static String toBeginLine(Entry entry) {
+        return BEGIN + SEPARATOR + entry.id + SEPARATOR + entry.operation + SEPARATOR + clean(entry.pluginId) +
+                SEPARATOR + entry.targetPath + SEPARATOR + clean(entry.digest) + SEPARATOR +
+                clean(entry.previousPath) + SEPARATOR + clean(entry.previousDigest) + SEPARATOR + entry.backup;
+    }
+
+    private static Entry parse(String[] fields) {
+        try {
+            return new Entry(fields[1], JournalOperationEnum.valueOf(fields[2]), emptyToNull(fields[3]),
+                    Paths.get(fields[4]), emptyToNull(fields[5]),
+                    fields[6].isEmpty() ? null : Paths.get(fields[6]), emptyToNull(fields[7]),
+                    Boolean.parseBoolean(fields[8]));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private void append(String line) {
+        try {
+            FileChannel fileChannel = getChannel();
+            write(fileChannel, line);
+            fileChannel.force(false);
+        } catch (IOException e) {
+            throw new PluginException("Write plugin operation journal '" + journalPath + "' failure", e);
+        }
+    }
+
+    private static void write(FileChannel fileChannel, String line) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap((line + NEW_LINE).getBytes(StandardCharsets.UTF_8));
+        while (buffer.hasRemaining()) {
+            fileChannel.write(buffer);
+        }
+    }
+
+    private void truncate() {
+        try {
+            FileChannel fileChannel = getChannel();
+            fileChannel.truncate(0);
+            fileChannel.force(false);
+        } catch (IOException e) {
+            throw new PluginException("Truncate plugin operation journal '" + journalPath + "' failure", e);
+        }
+    }
+
+    private FileChannel getChannel() throws IOException {
+        if (channel == null || !channel.isOpen()) {
+            Files.createDirectories(journalPath.toAbsolutePath().getParent());
+            channel = FileChannel.open(journalPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.APPEND);
+        }
+        return channel;
+    }
+
+    private static String clean(Object value) {
+        return value == null ? "" : value.toString().replaceAll("[\\t\\r\\n]", " ");
+    }
+
+    private static String emptyToNull(String value) {
+        return value.isEmpty() ? null : value;
+    }
+
+    /**
+     * 一次插件操作的记录
+     */
+    public static class Entry {
+
+        private final String id;
+        private final JournalOperationEnum operation;
+        private final String pluginId;
+        private final Path targetPath;
+        private final String digest;
+        private final Path previousPath;
+        private final String previousDigest;
+        private final boolean backup;
+
+        private Entry(String id, JournalOperationEnum operation, String pluginId, Path targetPath, String digest,
+                      Path previousPath, String previousDigest, boolean backup) {
+            this.id = id;
+            this.operation = operation;
+            this.pluginId = pluginId;
+            this.targetPath = targetPath;
+            this.digest = digest;
+            this.previousPath = previousPath;
+            this.previousDigest = previousDigest;
+            this.backup = backup;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public JournalOperationEnum getOperation() {
+            return operation;
+        }
+
+        public String getPluginId() {
+            return pluginId;
+        }
+
+        public Path getTargetPath() {
+            return targetPath;
+        }
+
+        public String getDigest() {
+            return digest;
+        }
+
+        public Path getPreviousPath() {
+            return previousPath;
+        }
+
+        public String getPreviousDigest() {
+            return previousDigest;
+        }
+
+        public boolean isBackup() {
+            return backup;
+        }
+
+        @Override
+        public String toString() {
+            return operation + " '" + pluginId + "' " + targetPath;
+        }
+    }
+
+}
@@ -0,0 +1,96 @@
+package com.github.thestyleofme.plugin.framework.integration.operator.module;
+
+/**
+ * <p>
+ * 插件备份记录。内容相同的备份共用同一个摘要对应的备份文件
+ * </p>
+ *
+ * @author isaac 2020/10/22 17:05
+ * @since 1.0
+ */
+public class PluginBackupEntry {
+
+    /**
+     * 插件id。备份的不是插件包(例如配置文件)或无法解析时为空
+     */
+    private final String pluginId;
+
+    /**
+     * 备份标志, 例如 upload、uninstall
+     */
+    private final String sign;
+
+    /**
+     * 备份时间戳(毫秒)
+     */
+    private final long time;
+
+    /**
+     * 备份文件内容的 SHA-256 摘要
+     */
+    private final String digest;
+
+    /**
+     * 备份的原文件名
+     */
+    private final String fileName;
+
+    /**
+     * 备份文件大小(字节)
+     */
+    private final long size;
+
+    public PluginBackupEntry(String pluginId, String sign, long time, String digest, String fileName, long size) {
+        this.pluginId = pluginId;
+        this.sign = sign;
+        this.time = time;
+        this.digest = digest;
+        this.fileName = fileName;
+        this.size = size;
+    }
+
+    public String getPluginId() {
+        return pluginId;
+    }
+
+    public String getSign() {
+        return sign;
+    }
+
+    public long getTime() {
+        return time;
+    }
+
+    public String getDigest() {
+        return digest;
+    }
+
+    public String getFileName() {
+        return fileName;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * 保留策略按该键分组, 有插件id时为插件id, 否则为原文件名
+     *
+     * @return 分组的键
+     */
+    public String getRetentionKey() {
+        return pluginId == null ? fileName : pluginId;
+    }
+
+    @Override
+    public String toString() {
+        return "PluginBackupEntry{" +
+                "pluginId='" + pluginId + '\'' +
+                ", sign='" + sign + '\'' +
+                ", time=" + time +
+                ", digest='" + digest + '\'' +
+                ", fileName='" + fileName + '\'' +
+                ", size=" + size +
+                '}';
+    }
+}
@@ -1,5 +1,6 @@
 package com.github.thestyleofme.plugin.framework.integration.operator.module;
 
+import com.github.thestyleofme.plugin.framework.metrics.PluginClassLoadingMetrics;
 import org.pf4j.PluginDescriptor;
 import org.pf4j.PluginState;
 
@@ -33,15 +34,29 @@ public class PluginInfo {
      */
     private final String runMode;
 
+    /**
+     * 插件类加载器的类加载指标。插件类加载器不是框架的类加载器时为空
+     */
+    private final PluginClassLoadingMetrics classLoadingMetrics;
+
 
     public PluginInfo(PluginDescriptor pluginDescriptor,
                       PluginState pluginState,
                       String path,
                       String runMode) {
+        this(pluginDescriptor, pluginState, path, runMode, null);
+    }
+
+    public PluginInfo(PluginDescriptor pluginDescriptor,
+                      PluginState pluginState,
+                      String path,
+                      String runMode,
+                      PluginClassLoadingMetrics classLoadingMetrics) {
         this.pluginDescriptor = pluginDescriptor;
         this.pluginState = pluginState;
         this.path = path;
         this.runMode = runMode;
+        this.classLoadingMetrics = classLoadingMetrics;
     }
 
     public PluginDescriptor getPluginDescriptor() {
@@ -64,4 +79,8 @@ public class PluginInfo {
         return runMode;
     }
 
+    public PluginClassLoadingMetrics getClassLoadingMetrics() {
+        return classLoadingMetrics;
+    }
+
 }
@@ -0,0 +1,98 @@
+package com.github.thestyleofme.plugin.framework.integration.operator.module;
+
+/**
+ * <p>
+ * 插件操作结果
+ * </p>
+ *
+ * @author isaac 2020/10/17 10:12
+ * @since 1.0
+ */
+public class PluginOperationResult {
+
+    /**
+     * 插件id。插件未能加载时为空
+     */
+    private final String pluginId;
+
+    /**
+     * 插件路径。按插件id操作时为空
+     */
+    private final String path;
+
+    /**
+     * 是否成功
+     */
+    private final boolean success;
+
+    /**
+     * 结果信息
+     */
+    private final String message;
+
+    public PluginOperationResult(String pluginId, String path, boolean success, String message) {
+        this.pluginId = pluginId;
+        this.path = path;
+        this.success = success;
+        this.message = message;
+    }
+
+    /**
+     * 成功的结果
+     *
+     * @param pluginId 插件id
+     * @param path     插件路径
+     * @return PluginOperationResult
+     */
+    public static PluginOperationResult success(String pluginId, String path) {
+        return new PluginOperationResult(pluginId, path, true, "success");
+    }
+
+    /**
+     * 失败的结果
+     *
+     * @param pluginId 插件id
+     * @param path     插件路径
+     * @param message  失败信息
+     * @return PluginOperationResult
+     */
+    public static PluginOperationResult failure(String pluginId, String path, String message) {
+        return new PluginOperationResult(pluginId, path, false, message);
+    }
+
+    /**
+     * 复制当前结果并设置插件路径
+     *
+     * @param path 插件路径
+     * @return PluginOperationResult
+     */
+    public PluginOperationResult withPath(String path) {
+        return new PluginOperationResult(pluginId, path, success, message);
+    }
+
+    public String getPluginId() {
+        return pluginId;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    public boolean isSuccess() {
+        return success;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    @Override
+    public String toString() {
+        return "PluginOperationResult{" +
+                "pluginId='" + pluginId + '\'' +
+                ", path='" + path + '\'' +
+                ", success=" + success +
+                ", message='" + message + '\'' +
+                '}';
+    }
+}
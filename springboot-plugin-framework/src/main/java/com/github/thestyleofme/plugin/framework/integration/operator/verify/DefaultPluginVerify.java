@@ -4,6 +4,7 @@ import java.nio.file.Path;
 import java.util.Objects;
 
 import com.github.thestyleofme.plugin.framework.exceptions.PluginException;
+import com.github.thestyleofme.plugin.framework.integration.pf4j.ZipPluginDescriptorFinder;
 import org.pf4j.*;
 
 /**
@@ -20,6 +21,7 @@ public class DefaultPluginVerify extends PluginLegalVerify {
 
     public DefaultPluginVerify(PluginManager pluginManager) {
         super(new CompoundPluginDescriptorFinder()
+                .add(new ZipPluginDescriptorFinder())
                 .add(new ManifestPluginDescriptorFinder())
                 .add(new PropertiesPluginDescriptorFinder()));
         Objects.requireNonNull(pluginManager);
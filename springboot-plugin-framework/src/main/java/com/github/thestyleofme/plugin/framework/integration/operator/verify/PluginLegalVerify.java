@@ -27,6 +27,28 @@ public class PluginLegalVerify implements PluginVerify {
 
     @Override
     public Path verify(Path path) {
+        return postVerify(path, getPluginDescriptor(path));
+    }
+
+    /**
+     * 校验插件包, 并得到插件描述
+     *
+     * @param path 路径
+     * @return 插件描述
+     */
+    public PluginDescriptor verifyDescriptor(Path path) {
+        PluginDescriptor pluginDescriptor = getPluginDescriptor(path);
+        postVerify(path, pluginDescriptor);
+        return pluginDescriptor;
+    }
+
+    /**
+     * 校验插件包是否合法, 并得到插件描述
+     *
+     * @param path 路径
+     * @return 插件描述
+     */
+    public PluginDescriptor getPluginDescriptor(Path path) {
         if (path == null) {
             throw new IllegalArgumentException("path can not be null");
         }
@@ -44,7 +66,7 @@ public class PluginLegalVerify implements PluginVerify {
         if (StringUtils.isEmpty(pluginDescriptor.getPluginClass())) {
             throw new PluginException(path.toString() + " : Not found plugin Class");
         }
-        return postVerify(path, pluginDescriptor);
+        return pluginDescriptor;
     }
 
     /**
@@ -0,0 +1,43 @@
+package com.github.thestyleofme.plugin.framework.integration.pf4j;
+
+import java.nio.file.Path;
+import java.util.Objects;
+
+import org.pf4j.PluginDescriptor;
+import org.pf4j.PluginDescriptorFinder;
+
+/**
+ * <p>
+ * 优先从插件元数据目录中得到插件描述的查找者。插件包未变化时不打开插件包, 否则由被委托的查找者读取并记录到目录
+ * </p>
+ *
+ * @author isaac 2020/10/24 15:50
+ * @since 1.0
+ */
+public class CatalogPluginDescriptorFinder implements PluginDescriptorFinder {
+
+    private final PluginMetadataCatalog metadataCatalog;
+    private final PluginDescriptorFinder delegate;
+
+    public CatalogPluginDescriptorFinder(PluginMetadataCatalog metadataCatalog, PluginDescriptorFinder delegate) {
+        this.metadataCatalog = Objects.requireNonNull(metadataCatalog, "PluginMetadataCatalog can't be null");
+        this.delegate = Objects.requireNonNull(delegate, "PluginDescriptorFinder can't be null");
+    }
+
+    @Override
+    public boolean isApplicable(Path pluginPath) {
+        return delegate.isApplicable(pluginPath);
+    }
+
+    @Override
+    public PluginDescriptor find(Path pluginPath) {
+        PluginDescriptor pluginDescriptor = metadataCatalog.getDescriptor(pluginPath);
+        if (pluginDescriptor != null) {
+            return pluginDescriptor;
+        }
+        pluginDescriptor = delegate.find(pluginPath);
+        metadataCatalog.putDescriptor(pluginPath, pluginDescriptor);
+        return pluginDescriptor;
+    }
+
+}
@@ -9,7 +9,9 @@ import com.github.thestyleofme.plugin.framework.integration.IntegrationConfigura
 import com.github.thestyleofme.plugin.framework.integration.pf4j.classloader.MyDefaultPluginLoader;
 import com.github.thestyleofme.plugin.framework.integration.pf4j.classloader.MyDevelopmentPluginLoader;
 import com.github.thestyleofme.plugin.framework.integration.pf4j.classloader.MyJarPluginLoader;
+import com.github.thestyleofme.plugin.framework.integration.pf4j.classloader.SharedLibraryClassLoader;
 import org.pf4j.*;
+import org.springframework.util.StringUtils;
 
 /**
  * <p>
@@ -23,6 +25,9 @@ public class DefaultPf4jFactory implements Pf4jFactory {
 
     private final IntegrationConfiguration configuration;
 
+    private SharedLibraryClassLoader sharedLibraryClassLoader;
+    private boolean sharedLibraryClassLoaderCreated = false;
+
     public DefaultPf4jFactory(IntegrationConfiguration configuration) {
         this.configuration = configuration;
     }
@@ -40,7 +45,7 @@ public class DefaultPf4jFactory implements Pf4jFactory {
         if (RuntimeMode.DEVELOPMENT == environment) {
             // 开发环境下的插件管理者
             Path path = Paths.get(getDevPluginDir(configuration));
-            return new DefaultPluginManager(path) {
+            return new MyDefaultPluginManager(path) {
                 @Override
                 public RuntimeMode getRuntimeMode() {
                     System.setProperty("pf4j.mode", RuntimeMode.DEVELOPMENT.toString());
@@ -51,33 +56,51 @@ public class DefaultPf4jFactory implements Pf4jFactory {
                 protected PluginDescriptorFinder createPluginDescriptorFinder() {
                     return new CompoundPluginDescriptorFinder()
                             .add(new ResolvePropertiesPluginDescriptorFinder())
-                            .add(new ManifestPluginDescriptorFinder());
+                            .add(new MyManifestPluginDescriptorFinder());
                 }
 
                 @Override
                 protected PluginLoader createPluginLoader() {
+                    int negativeCacheSize = configuration.classLoaderNegativeCacheSize();
+                    SharedLibraryClassLoader shared = getSharedLibraryClassLoader();
                     return new CompoundPluginLoader()
-                            .add(new MyDevelopmentPluginLoader(this), this::isDevelopment)
-                            .add(new MyJarPluginLoader(this), this::isNotDevelopment)
-                            .add(new MyDefaultPluginLoader(this), this::isNotDevelopment);
+                            .add(new MyDevelopmentPluginLoader(this, negativeCacheSize, shared), this::isDevelopment)
+                            .add(new MyJarPluginLoader(this, negativeCacheSize, shared), this::isNotDevelopment)
+                            .add(new MyDefaultPluginLoader(this, negativeCacheSize, shared), this::isNotDevelopment);
                 }
             };
         } else if (RuntimeMode.DEPLOYMENT == environment) {
             // 运行环境下的插件管理者
             Path path = Paths.get(getProdPluginDir(configuration));
-            return new DefaultPluginManager(path) {
+            return new MyDefaultPluginManager(path) {
                 @Override
                 protected PluginRepository createPluginRepository() {
                     return new CompoundPluginRepository()
                             .add(new JarPluginRepository(getPluginsRoot()));
                 }
 
+                @Override
+                protected PluginMetadataCatalog createMetadataCatalog() {
+                    return new PluginMetadataCatalog(getPluginsRoot());
+                }
+
+                @Override
+                protected PluginDescriptorFinder createPluginDescriptorFinder() {
+                    // 插件包未变化时, 从插件元数据目录中得到插件描述, 不再打开插件包
+                    return new CatalogPluginDescriptorFinder(getMetadataCatalog(), new CompoundPluginDescriptorFinder()
+                            .add(new ZipPluginDescriptorFinder())
+                            .add(new MyPropertiesPluginDescriptorFinder())
+                            .add(new MyManifestPluginDescriptorFinder()));
+                }
+
                 @Override
                 protected PluginLoader createPluginLoader() {
+                    int negativeCacheSize = configuration.classLoaderNegativeCacheSize();
+                    SharedLibraryClassLoader shared = getSharedLibraryClassLoader();
                     return new CompoundPluginLoader()
-                            .add(new MyDevelopmentPluginLoader(this), this::isDevelopment)
-                            .add(new MyJarPluginLoader(this), this::isNotDevelopment)
-                            .add(new MyDefaultPluginLoader(this), this::isNotDevelopment);
+                            .add(new MyDevelopmentPluginLoader(this, negativeCacheSize, shared), this::isDevelopment)
+                            .add(new MyJarPluginLoader(this, negativeCacheSize, shared), this::isNotDevelopment)
+                            .add(new MyDefaultPluginLoader(this, negativeCacheSize, shared), this::isNotDevelopment);
                 }
             };
         } else {
@@ -86,6 +109,21 @@ public class DefaultPf4jFactory implements Pf4jFactory {
     }
 
 
+    /**
+     * 共享库的类加载器, 开发环境与生产环境的插件管理者只创建一次
+     */
+    private synchronized SharedLibraryClassLoader getSharedLibraryClassLoader() {
+        if (!sharedLibraryClassLoaderCreated) {
+            sharedLibraryClassLoaderCreated = true;
+            String sharedLibPath = configuration.sharedLibPath();
+            if (!StringUtils.isEmpty(sharedLibPath)) {
+                sharedLibraryClassLoader = SharedLibraryClassLoader.create(Paths.get(sharedLibPath),
+                        DefaultPf4jFactory.class.getClassLoader());
+            }
+        }
+        return sharedLibraryClassLoader;
+    }
+
     private String getDevPluginDir(IntegrationConfiguration configuration) {
         String pluginDir = configuration.pluginPath();
         if (Objects.equals("", pluginDir)) {
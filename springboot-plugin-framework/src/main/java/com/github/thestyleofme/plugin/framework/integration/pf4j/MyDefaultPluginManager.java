@@ -0,0 +1,303 @@
+package com.github.thestyleofme.plugin.framework.integration.pf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import com.github.thestyleofme.plugin.framework.leak.PluginLeakDetector;
+import com.github.thestyleofme.plugin.framework.loader.PluginClassIndexCache;
+import org.pf4j.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>
+ * 扩展的插件管理者。支持在独立的类加载器中预先加载新版本插件(备用插件), 再与当前运行的同id插件进行替换
+ * <p>
+ * 不同插件的操作可能在不同线程中并发执行。插件集合替换为线程安全的集合, 修改插件状态的操作以当前管理者加锁
+ * </p>
+ *
+ * @author isaac 2020/10/19 9:36
+ * @since 1.0
+ */
+public class MyDefaultPluginManager extends DefaultPluginManager {
+
+    private static final Logger LOG = LoggerFactory.getLogger(MyDefaultPluginManager.class);
+
+    /**
+     * 父类的构造方法中即会创建插件描述的查找者, 因此在第一次使用时创建。字段不能有初始值, 否则会覆盖构造期间创建的目录
+     */
+    private PluginMetadataCatalog metadataCatalog;
+    private boolean metadataCatalogCreated;
+
+    private final PluginClassIndexCache classIndexCache = new PluginClassIndexCache();
+
+    private final PluginLeakDetector leakDetector = new PluginLeakDetector();
+
+    public MyDefaultPluginManager(Path pluginsRoot) {
+        super(pluginsRoot);
+    }
+
+    /**
+     * 得到插件元数据目录
+     *
+     * @return 插件元数据目录, 不使用目录时为空
+     */
+    public synchronized PluginMetadataCatalog getMetadataCatalog() {
+        if (!metadataCatalogCreated) {
+            metadataCatalogCreated = true;
+            metadataCatalog = createMetadataCatalog();
+        }
+        return metadataCatalog;
+    }
+
+    /**
+     * 创建插件元数据目录。默认不使用目录
+     *
+     * @return 插件元数据目录, 不使用目录时为空
+     */
+    protected PluginMetadataCatalog createMetadataCatalog() {
+        return null;
+    }
+
+    /**
+     * 得到开发环境下插件类名与类索引的缓存
+     *
+     * @return 类索引缓存
+     */
+    public PluginClassIndexCache getClassIndexCache() {
+        return classIndexCache;
+    }
+
+    /**
+     * 得到插件类加载器的泄漏检测
+     *
+     * @return 泄漏检测
+     */
+    public PluginLeakDetector getLeakDetector() {
+        return leakDetector;
+    }
+
+    @Override
+    protected void initialize() {
+        super.initialize();
+        plugins = new ConcurrentHashMap<>();
+        pluginClassLoaders = new ConcurrentHashMap<>();
+        unresolvedPlugins = new CopyOnWriteArrayList<>();
+        resolvedPlugins = new CopyOnWriteArrayList<>();
+        startedPlugins = new CopyOnWriteArrayList<>();
+    }
+
+    @Override
+    public synchronized void loadPlugins() {
+        super.loadPlugins();
+        PluginMetadataCatalog catalog = getMetadataCatalog();
+        if (catalog != null) {
+            // 删除已不存在的插件包的记录
+            catalog.retain(pluginRepository.getPluginPaths());
+            catalog.save();
+        }
+    }
+
+    @Override
+    public synchronized String loadPlugin(Path pluginPath) {
+        try {
+            return super.loadPlugin(pluginPath);
+        } finally {
+            PluginMetadataCatalog catalog = getMetadataCatalog();
+            if (catalog != null) {
+                catalog.save();
+            }
+        }
+    }
+
+    @Override
+    protected PluginWrapper loadPluginFromPath(Path pluginPath) {
+        PluginWrapper pluginWrapper = super.loadPluginFromPath(pluginPath);
+        if (pluginWrapper != null) {
+            leakDetector.track(pluginWrapper.getPluginId(), pluginWrapper.getPluginClassLoader());
+        }
+        return pluginWrapper;
+    }
+
+    @Override
+    protected synchronized boolean unloadPlugin(String pluginId, boolean unloadDependents) {
+        // 父类卸载后即从集合中删除类加载器, 因此先取得
+        ClassLoader classLoader = pluginClassLoaders.get(pluginId);
+        boolean unloaded = super.unloadPlugin(pluginId, unloadDependents);
+        if (unloaded) {
+            leakDetector.released(classLoader);
+        }
+        return unloaded;
+    }
+
+    @Override
+    public synchronized boolean deletePlugin(String pluginId) {
+        return super.deletePlugin(pluginId);
+    }
+
+    @Override
+    public synchronized void startPlugins() {
+        super.startPlugins();
+    }
+
+    @Override
+    public synchronized PluginState startPlugin(String pluginId) {
+        return super.startPlugin(pluginId);
+    }
+
+    @Override
+    public synchronized void stopPlugins() {
+        // 父类通过迭代器删除已启动的插件, CopyOnWriteArrayList 不支持, 因此逆序逐个停止
+        List<PluginWrapper> pluginWrappers = new ArrayList<>(startedPlugins);
+        Collections.reverse(pluginWrappers);
+        for (PluginWrapper pluginWrapper : pluginWrappers) {
+            if (pluginWrapper.getPluginState() == PluginState.STARTED) {
+                stopPlugin(pluginWrapper.getPluginId());
+            }
+        }
+    }
+
+    @Override
+    protected synchronized PluginState stopPlugin(String pluginId, boolean stopDependents) {
+        return super.stopPlugin(pluginId, stopDependents);
+    }
+
+    @Override
+    public synchronized boolean enablePlugin(String pluginId) {
+        return super.enablePlugin(pluginId);
+    }
+
+    @Override
+    public synchronized boolean disablePlugin(String pluginId) {
+        return super.disablePlugin(pluginId);
+    }
+
+    /**
+     * 加载并启动备用插件。备用插件拥有独立的类加载器, 但不纳入插件管理者, 不影响当前运行的同id插件
+     *
+     * @param pluginPath 插件路径
+     * @return 备用插件
+     */
+    public PluginWrapper loadStandbyPlugin(Path pluginPath) {
+        PluginDescriptor pluginDescriptor = getPluginDescriptorFinder().find(pluginPath);
+        validatePluginDescriptor(pluginDescriptor);
+        String pluginId = pluginDescriptor.getPluginId();
+        checkStandbyDependencies(pluginDescriptor);
+        checkDependents(pluginId);
+        ClassLoader pluginClassLoader = getPluginLoader().loadPlugin(pluginPath, pluginDescriptor);
+        PluginWrapper pluginWrapper = new PluginWrapper(this, pluginDescriptor, pluginPath, pluginClassLoader);
+        pluginWrapper.setPluginFactory(getPluginFactory());
+        leakDetector.track(pluginId, pluginClassLoader);
+        try {
+            if (!isPluginValid(pluginWrapper)) {
+                throw new PluginRuntimeException("Plugin '{}' requires a minimum system version of {}",
+                        pluginId, pluginDescriptor.getRequires());
+            }
+            pluginWrapper.getPlugin().start();
+            pluginWrapper.setPluginState(PluginState.STARTED);
+            return pluginWrapper;
+        } catch (Exception e) {
+            closeClassLoader(pluginWrapper);
+            throw e;
+        }
+    }
+
+    /**
+     * 使用备用插件替换当前运行的同id插件
+     *
+     * @param standbyPluginWrapper 备用插件
+     * @return 被替换的旧版本插件
+     */
+    public synchronized PluginWrapper switchPlugin(PluginWrapper standbyPluginWrapper) {
+        String pluginId = standbyPluginWrapper.getPluginId();
+        PluginWrapper pluginWrapper = plugins.get(pluginId);
+        if (pluginWrapper == null) {
+            throw new PluginRuntimeException("Plugin '{}' not found, can't switch", pluginId);
+        }
+        plugins.put(pluginId, standbyPluginWrapper);
+        pluginClassLoaders.put(pluginId, standbyPluginWrapper.getPluginClassLoader());
+        // PluginWrapper 以插件id判断相等, 因此可直接按位置替换
+        replace(resolvedPlugins, standbyPluginWrapper);
+        replace(startedPlugins, standbyPluginWrapper);
+        firePluginStateEvent(new PluginStateEvent(this, standbyPluginWrapper, PluginState.RESOLVED));
+        return pluginWrapper;
+    }
+
+    /**
+     * 停止并释放不再由插件管理者管理的插件。例如被替换的旧版本插件、替换失败的备用插件
+     *
+     * @param pluginWrapper 插件
+     */
+    public void releasePlugin(PluginWrapper pluginWrapper) {
+        try {
+            if (pluginWrapper.getPluginState() == PluginState.STARTED) {
+                pluginWrapper.getPlugin().stop();
+            }
+        } catch (Exception e) {
+            LOG.error("Stop plugin '{}' failure", getPluginLabel(pluginWrapper.getDescriptor()), e);
+        } finally {
+            pluginWrapper.setPluginState(PluginState.STOPPED);
+            closeClassLoader(pluginWrapper);
+        }
+    }
+
+    /**
+     * 备用插件依赖的插件必须已经启动
+     *
+     * @param pluginDescriptor 插件描述
+     */
+    private void checkStandbyDependencies(PluginDescriptor pluginDescriptor) {
+        for (PluginDependency dependency : pluginDescriptor.getDependencies()) {
+            PluginWrapper dependencyPlugin = getPlugin(dependency.getPluginId());
+            if (dependencyPlugin != null && dependencyPlugin.getPluginState() == PluginState.STARTED) {
+                continue;
+            }
+            if (!dependency.isOptional()) {
+                throw new PluginRuntimeException("Dependency '{}' of plugin '{}' is not started",
+                        dependency.getPluginId(), pluginDescriptor.getPluginId());
+            }
+        }
+    }
+
+    /**
+     * 被其他已启动插件依赖的插件无法替换, 依赖者已加载的类仍然链接着旧版本的类
+     *
+     * @param pluginId 插件id
+     */
+    private void checkDependents(String pluginId) {
+        for (PluginWrapper startedPlugin : startedPlugins) {
+            for (PluginDependency dependency : startedPlugin.getDescriptor().getDependencies()) {
+                if (pluginId.equals(dependency.getPluginId())) {
+                    throw new PluginRuntimeException("Plugin '{}' is depended on by started plugin '{}', can't switch",
+                            pluginId, startedPlugin.getPluginId());
+                }
+            }
+        }
+    }
+
+    private void replace(List<PluginWrapper> pluginWrappers, PluginWrapper pluginWrapper) {
+        int index = pluginWrappers.indexOf(pluginWrapper);
+        if (index >= 0) {
+            pluginWrappers.set(index, pluginWrapper);
+        }
+    }
+
+    private void closeClassLoader(PluginWrapper pluginWrapper) {
+        ClassLoader classLoader = pluginWrapper.getPluginClassLoader();
+        if (classLoader instanceof Closeable) {
+            try {
+                ((Closeable) classLoader).close();
+            } catch (IOException e) {
+                LOG.error("Close classloader of plugin '{}' failure", pluginWrapper.getPluginId(), e);
+            }
+        }
+        leakDetector.released(classLoader);
+    }
+
+}
@@ -0,0 +1,32 @@
+package com.github.thestyleofme.plugin.framework.integration.pf4j;
+
+import java.util.jar.Manifest;
+
+import org.pf4j.DefaultPluginDescriptor;
+import org.pf4j.ManifestPluginDescriptorFinder;
+import org.pf4j.PluginDescriptor;
+
+/**
+ * <p>
+ * 由 MANIFEST.MF 创建扩展的插件描述
+ * </p>
+ *
+ * @author isaac 2020/10/26 14:00
+ * @since 1.0
+ */
+public class MyManifestPluginDescriptorFinder extends ManifestPluginDescriptorFinder {
+
+    @Override
+    protected PluginDescriptor createPluginDescriptor(Manifest manifest) {
+        MyPluginDescriptor pluginDescriptor = (MyPluginDescriptor) super.createPluginDescriptor(manifest);
+        pluginDescriptor.setSharedLibraries(
+                manifest.getMainAttributes().getValue(MyPluginDescriptor.SHARED_LIBRARIES_ATTRIBUTE));
+        return pluginDescriptor;
+    }
+
+    @Override
+    protected DefaultPluginDescriptor createPluginDescriptorInstance() {
+        return new MyPluginDescriptor();
+    }
+
+}
@@ -0,0 +1,61 @@
+package com.github.thestyleofme.plugin.framework.integration.pf4j;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.pf4j.DefaultPluginDescriptor;
+import org.springframework.util.StringUtils;
+
+/**
+ * <p>
+ * 扩展的插件描述。增加插件使用的共享库, 由 plugin.properties 的 plugin.sharedLibraries
+ * 或 MANIFEST.MF 的 Plugin-Shared-Libraries 声明, 多个共享库以逗号分隔
+ * </p>
+ *
+ * @author isaac 2020/10/26 14:00
+ * @since 1.0
+ */
+public class MyPluginDescriptor extends DefaultPluginDescriptor {
+
+    public static final String SHARED_LIBRARIES_PROPERTY = "plugin.sharedLibraries";
+    public static final String SHARED_LIBRARIES_ATTRIBUTE = "Plugin-Shared-Libraries";
+
+    private List<String> sharedLibraries = Collections.emptyList();
+
+    public MyPluginDescriptor() {
+        super();
+    }
+
+    public MyPluginDescriptor(String pluginId, String pluginDescription, String pluginClass, String version,
+                              String requires, String provider, String license) {
+        super(pluginId, pluginDescription, pluginClass, version, requires, provider, license);
+    }
+
+    /**
+     * 得到插件使用的共享库
+     *
+     * @return 共享库的坐标, 例如 com.google.guava:guava、com.google.guava:guava:29.0-jre 或者 *(全部共享库)
+     */
+    public List<String> getSharedLibraries() {
+        return sharedLibraries;
+    }
+
+    /**
+     * 设置插件使用的共享库
+     *
+     * @param sharedLibraries 以逗号分隔的共享库坐标
+     * @return this
+     */
+    public MyPluginDescriptor setSharedLibraries(String sharedLibraries) {
+        List<String> coordinates = new ArrayList<>();
+        for (String coordinate : StringUtils.commaDelimitedListToStringArray(sharedLibraries)) {
+            if (StringUtils.hasText(coordinate)) {
+                coordinates.add(coordinate.trim());
+            }
+        }
+        this.sharedLibraries = Collections.unmodifiableList(coordinates);
+        return this;
+    }
+
+}
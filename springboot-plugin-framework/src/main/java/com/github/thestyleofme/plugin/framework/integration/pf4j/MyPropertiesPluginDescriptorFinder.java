@@ -0,0 +1,31 @@
+package com.github.thestyleofme.plugin.framework.integration.pf4j;
+
+import java.util.Properties;
+
+import org.pf4j.DefaultPluginDescriptor;
+import org.pf4j.PluginDescriptor;
+import org.pf4j.PropertiesPluginDescriptorFinder;
+
+/**
+ * <p>
+ * 由 plugin.properties 创建扩展的插件描述
+ * </p>
+ *
+ * @author isaac 2020/10/26 14:00
+ * @since 1.0
+ */
+public class MyPropertiesPluginDescriptorFinder extends PropertiesPluginDescriptorFinder {
+
+    @Override
+    protected PluginDescriptor createPluginDescriptor(Properties properties) {
+        MyPluginDescriptor pluginDescriptor = (MyPluginDescriptor) super.createPluginDescriptor(properties);
+        pluginDescriptor.setSharedLibraries(properties.getProperty(MyPluginDescriptor.SHARED_LIBRARIES_PROPERTY));
+        return pluginDescriptor;
+    }
+
+    @Override
+    protected DefaultPluginDescriptor createPluginDescriptorInstance() {
+        return new MyPluginDescriptor();
+    }
+
+}
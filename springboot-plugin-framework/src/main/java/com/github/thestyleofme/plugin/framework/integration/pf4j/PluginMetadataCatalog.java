@@ -0,0 +1,350 @@
+package com.github.thestyleofme.plugin.framework.integration.pf4j;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.github.thestyleofme.plugin.framework.utils.PluginFileUtils;
+import org.pf4j.PluginDependency;
+import org.pf4j.PluginDescriptor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>
+ * 持久化的插件元数据目录。保存在插件目录下, 记录每个插件包的大小、修改时间、摘要、插件描述以及扫描到的类名。
+ * 重启时插件包的大小与修改时间未变化, 直接使用记录的元数据, 不再打开插件包
+ * </p>
+ *
+ * @author isaac 2020/10/24 15:20
+ * @since 1.0
+ */
+public class PluginMetadataCatalog {
+
+    private static final Logger LOG = LoggerFactory.getLogger(PluginMetadataCatalog.class);
+
+    public static final String CATALOG_FILE = ".plugin-catalog";
+
+    private static final String VERSION = "VERSION\t2";
+    private static final String SEPARATOR = "\t";
+    private static final String CLASS_SEPARATOR = ",";
+    private static final int ENTRY_FIELDS = 15;
+
+    private final Path root;
+    private final Path catalogPath;
+    private final Map<Path, Entry> entries = new ConcurrentHashMap<>();
+    private volatile boolean dirty = false;
+
+    public PluginMetadataCatalog(Path pluginsRoot) {
+        Objects.requireNonNull(pluginsRoot, "PluginsRoot can't be null");
+        this.root = pluginsRoot.toAbsolutePath();
+        this.catalogPath = root.resolve(CATALOG_FILE);
+        load();
+    }
+
+    /**
+     * 得到插件包的指纹, 由大小与修改时间组成
+     *
+     * @param path 插件包
+     * @return 指纹, 无法读取时为空
+     */
+    public static String fingerprint(Path path) {
+        try {
+            return Files.size(path) + ":" + Files.getLastModifiedTime(path).toMillis();
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 得到插件包记录的插件描述
+     *
+     * @param pluginPath 插件包
+     * @return 插件描述, 没有记录或者插件包已变化时为空
+     */
+    public PluginDescriptor getDescriptor(Path pluginPath) {
+        Entry entry = getEntry(pluginPath);
+        return entry == null ? null : entry.descriptor;
+    }
+
+    /**
+     * 记录插件包的插件描述与摘要, 替换该插件包之前的记录
+     *
+     * @param pluginPath 插件包
+     * @param descriptor 插件描述
+     */
+    public void putDescriptor(Path pluginPath, PluginDescriptor descriptor) {
+        Path path = pluginPath.toAbsolutePath();
+        String fingerprint = fingerprint(path);
+        if (fingerprint == null) {
+            return;
+        }
+        Entry entry = new Entry(fingerprint);
+        entry.descriptor = descriptor;
+        try {
+            entry.digest = PluginFileUtils.digest(path);
+        } catch (IOException e) {
+            LOG.debug("Digest plugin file '{}' failure. {}", path, e.getMessage());
+        }
+        entries.put(path, entry);
+        dirty = true;
+    }
+
+    /**
+     * 得到插件包记录的摘要
+     *
+     * @param pluginPath 插件包
+     * @return 十六进制的 SHA-256 摘要, 没有记录或者插件包已变化时为空
+     */
+    public String getDigest(Path pluginPath) {
+        Entry entry = getEntry(pluginPath);
+        return entry == null ? null : entry.digest;
+    }
+
+    /**
+     * 得到插件包记录的扫描到的类名
+     *
+     * @param pluginPath            插件包
+     * @param scanPackage           扫描的包名
+     * @param dependencyFingerprint 依赖插件的指纹, 依赖插件中的类同样会被扫描到
+     * @return 类名集合, 没有记录或者插件包、扫描的包名、依赖插件已变化时为空
+     */
+    public Set<String> getClassNames(Path pluginPath, String scanPackage, String dependencyFingerprint) {
+        Entry entry = getEntry(pluginPath);
+        if (entry == null) {
+            return null;
+        }
+        synchronized (entry) {
+            if (entry.classNames == null || !Objects.equals(entry.scanPackage, emptyToNull(scanPackage)) ||
+                    !Objects.equals(entry.dependencyFingerprint, emptyToNull(dependencyFingerprint))) {
+                return null;
+            }
+            return entry.classNames;
+        }
+    }
+
+    /**
+     * 记录插件包扫描到的类名
+     *
+     * @param pluginPath            插件包
+     * @param scanPackage           扫描的包名
+     * @param dependencyFingerprint 依赖插件的指纹
+     * @param classNames            类名集合
+     */
+    public void putClassNames(Path pluginPath, String scanPackage, String dependencyFingerprint,
+                              Set<String> classNames) {
+        Path path = pluginPath.toAbsolutePath();
+        String fingerprint = fingerprint(path);
+        if (fingerprint == null || classNames == null) {
+            return;
+        }
+        Entry entry = entries.compute(path, (key, old) ->
+                old != null && old.fingerprint.equals(fingerprint) ? old : new Entry(fingerprint));
+        synchronized (entry) {
+            entry.scanPackage = emptyToNull(scanPackage);
+            entry.dependencyFingerprint = emptyToNull(dependencyFingerprint);
+            entry.classNames = Collections.unmodifiableSet(new HashSet<>(classNames));
+        }
+        dirty = true;
+    }
+
+    /**
+     * 只保留指定插件包的记录, 删除已不存在的插件包的记录
+     *
+     * @param pluginPaths 插件包
+     */
+    public void retain(Collection<Path> pluginPaths) {
+        Set<Path> paths = new HashSet<>();
+        for (Path pluginPath : pluginPaths) {
+            paths.add(pluginPath.toAbsolutePath());
+        }
+        if (entries.keySet().retainAll(paths)) {
+            dirty = true;
+        }
+    }
+
+    /**
+     * 有变化时保存目录。先写入临时文件再原子重命名, 保存失败只影响下次启动的速度
+     */
+    public synchronized void save() {
+        if (!dirty) {
+            return;
+        }
+        dirty = false;
+        try {
+            Files.createDirectories(root);
+            Path temp = Files.createTempFile(root, CATALOG_FILE, ".tmp");
+            try {
+                try (BufferedWriter writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+                    writer.write(VERSION);
+                    writer.newLine();
+                    for (Map.Entry<Path, Entry> entry : entries.entrySet()) {
+                        writer.write(format(entry.getKey(), entry.getValue()));
+                        writer.newLine();
+                    }
+                }
+                PluginFileUtils.moveAtomically(temp, catalogPath);
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+        } catch (IOException e) {
+            dirty = true;
+            LOG.warn("Save plugin metadata catalog '{}' failure. {}", catalogPath, e.getMessage());
+        }
+    }
+
+    private Entry getEntry(Path pluginPath) {
+        Path path = pluginPath.toAbsolutePath();
+        Entry entry = entries.get(path);
+        if (entry == null) {
+            return null;
+        }
+        if (!entry.fingerprint.equals(fingerprint(path))) {
+            // 插件包已变化, 记录失效
+            entries.remove(path, entry);
+            dirty = true;
+            return null;
+        }
+        return entry;
+    }
+
+    private void load() {
+        if (!Files.isRegularFile(catalogPath)) {
+            return;
+        }
+        List<String> lines;
+        try {
+            lines = Files.readAllLines(catalogPath, StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            LOG.warn("Read plugin metadata catalog '{}' failure. {}", catalogPath, e.getMessage());
+            return;
+        }
+        if (lines.isEmpty() || !VERSION.equals(lines.get(0))) {
+            // 不认识的版本, 重新建立
+            dirty = true;
+            return;
+        }
+        for (int i = 1; i < lines.size(); i++) {
+            String[] fields = lines.get(i).split(SEPARATOR, -1);
+            if (fields.length != ENTRY_FIELDS) {
+                dirty = true;
+                continue;
+            }
+            entries.put(root.resolve(fields[0]).toAbsolutePath(), parse(fields));
+        }
+    }
+
+    /**
+     * 插件包路径相对于插件目录保存, 插件目录整体移动后记录仍然有效
+     */
+    private String format(Path path, Entry entry) {
+        StringBuilder builder = new StringBuilder();
+        builder.append(clean(root.relativize(path))).append(SEPARATOR)
+                .append(entry.fingerprint).append(SEPARATOR)
+                .append(clean(entry.digest)).append(SEPARATOR);
+        PluginDescriptor descriptor = entry.descriptor;
+        if (descriptor == null) {
+            for (int i = 0; i < 9; i++) {
+                builder.append(SEPARATOR);
+            }
+        } else {
+            builder.append(clean(descriptor.getPluginId())).append(SEPARATOR)
+                    .append(clean(descriptor.getPluginDescription())).append(SEPARATOR)
+                    .append(clean(descriptor.getPluginClass())).append(SEPARATOR)
+                    .append(clean(descriptor.getVersion())).append(SEPARATOR)
+                    .append(clean(descriptor.getRequires())).append(SEPARATOR)
+                    .append(clean(descriptor.getProvider())).append(SEPARATOR)
+                    .append(clean(descriptor.getLicense())).append(SEPARATOR)
+                    .append(clean(formatDependencies(descriptor.getDependencies()))).append(SEPARATOR)
+                    .append(clean(formatSharedLibraries(descriptor))).append(SEPARATOR);
+        }
+        synchronized (entry) {
+            builder.append(clean(entry.scanPackage)).append(SEPARATOR)
+                    .append(clean(entry.dependencyFingerprint)).append(SEPARATOR);
+            if (entry.classNames != null) {
+                builder.append("+").append(String.join(CLASS_SEPARATOR, entry.classNames));
+            }
+        }
+        return builder.toString();
+    }
+
+    private static Entry parse(String[] fields) {
+        Entry entry = new Entry(fields[1]);
+        entry.digest = emptyToNull(fields[2]);
+        if (!fields[3].isEmpty()) {
+            MyPluginDescriptor descriptor = new MyPluginDescriptor(fields[3], emptyToNull(fields[4]),
+                    emptyToNull(fields[5]), emptyToNull(fields[6]), fields[7], emptyToNull(fields[8]),
+                    emptyToNull(fields[9]));
+            for (String dependency : fields[10].split(CLASS_SEPARATOR)) {
+                if (!dependency.isEmpty()) {
+                    descriptor.addDependency(new PluginDependency(dependency));
+                }
+            }
+            descriptor.setSharedLibraries(fields[11]);
+            entry.descriptor = descriptor;
+        }
+        entry.scanPackage = emptyToNull(fields[12]);
+        entry.dependencyFingerprint = emptyToNull(fields[13]);
+        // 以 "+" 开头表示已扫描, 用于区分没有扫描与扫描到0个类
+        String classNames = fields[14];
+        if (classNames.startsWith("+")) {
+            Set<String> names = new HashSet<>();
+            for (String className : classNames.substring(1).split(CLASS_SEPARATOR)) {
+                if (!className.isEmpty()) {
+                    names.add(className);
+                }
+            }
+            entry.classNames = Collections.unmodifiableSet(names);
+        }
+        return entry;
+    }
+
+    private static String formatDependencies(List<PluginDependency> dependencies) {
+        if (dependencies == null || dependencies.isEmpty()) {
+            return null;
+        }
+        StringJoiner joiner = new StringJoiner(CLASS_SEPARATOR);
+        for (PluginDependency dependency : dependencies) {
+            joiner.add(dependency.getPluginId() + (dependency.isOptional() ? "?" : "") + "@" +
+                    dependency.getPluginVersionSupport());
+        }
+        return joiner.toString();
+    }
+
+    private static String formatSharedLibraries(PluginDescriptor descriptor) {
+        if (!(descriptor instanceof MyPluginDescriptor)) {
+            return null;
+        }
+        return String.join(CLASS_SEPARATOR, ((MyPluginDescriptor) descriptor).getSharedLibraries());
+    }
+
+    private static String clean(Object value) {
+        return value == null ? "" : value.toString().replaceAll("[\\t\\r\\n]", " ");
+    }
+
+    private static String emptyToNull(String value) {
+        return value == null || value.isEmpty() ? null : value;
+    }
+
+    /**
+     * 一个插件包的元数据
+     */
+    private static class Entry {
+
+        private final String fingerprint;
+        private String digest;
+        private PluginDescriptor descriptor;
+        private String scanPackage;
+        private String dependencyFingerprint;
+        private Set<String> classNames;
+
+        private Entry(String fingerprint) {
+            this.fingerprint = fingerprint;
+        }
+    }
+
+}
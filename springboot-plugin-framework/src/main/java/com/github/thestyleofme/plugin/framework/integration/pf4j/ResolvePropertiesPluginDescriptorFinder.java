@@ -8,7 +8,6 @@ import java.nio.file.Path;
 import java.util.Properties;
 
 import org.pf4j.PluginRuntimeException;
-import org.pf4j.PropertiesPluginDescriptorFinder;
 
 /**
  * <p>
@@ -18,7 +17,7 @@ import org.pf4j.PropertiesPluginDescriptorFinder;
  * @author isaac 2020/6/16 15:56
  * @since 1.0
  */
-class ResolvePropertiesPluginDescriptorFinder extends PropertiesPluginDescriptorFinder {
+class ResolvePropertiesPluginDescriptorFinder extends MyPropertiesPluginDescriptorFinder {
 
     @Override
     protected Properties readProperties(Path pluginPath) {
@@ -0,0 +1,89 @@
+package com.github.thestyleofme.plugin.framework.integration.pf4j;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Properties;
+import java.util.jar.JarFile;
+import java.util.jar.Manifest;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import org.pf4j.*;
+import org.pf4j.util.FileUtils;
+import org.springframework.util.StringUtils;
+
+/**
+ * <p>
+ * jar/zip 插件包的描述查找者。只读取压缩包的中央目录, 再按条目读取 plugin.properties 或 MANIFEST.MF,
+ * 不读取整个插件包。同时存在时优先使用 plugin.properties, 与 pf4j 默认的查找顺序一致
+ * </p>
+ *
+ * @author isaac 2020/10/22 16:10
+ * @since 1.0
+ */
+public class ZipPluginDescriptorFinder implements PluginDescriptorFinder {
+
+    private final PropertiesDescriptorFactory propertiesDescriptorFactory = new PropertiesDescriptorFactory();
+    private final ManifestDescriptorFactory manifestDescriptorFactory = new ManifestDescriptorFactory();
+
+    @Override
+    public boolean isApplicable(Path pluginPath) {
+        return Files.isRegularFile(pluginPath) &&
+                (FileUtils.isJarFile(pluginPath) || FileUtils.isZipFile(pluginPath));
+    }
+
+    @Override
+    public PluginDescriptor find(Path pluginPath) {
+        // ZipFile 打开时只读取中央目录, 条目内容按需读取
+        try (ZipFile zipFile = new ZipFile(pluginPath.toFile())) {
+            ZipEntry propertiesEntry = zipFile.getEntry(PropertiesPluginDescriptorFinder.DEFAULT_PROPERTIES_FILE_NAME);
+            if (propertiesEntry != null) {
+                Properties properties = new Properties();
+                try (InputStreamReader reader = new InputStreamReader(zipFile.getInputStream(propertiesEntry),
+                        StandardCharsets.UTF_8)) {
+                    properties.load(reader);
+                }
+                return propertiesDescriptorFactory.create(properties);
+            }
+            ZipEntry manifestEntry = zipFile.getEntry(JarFile.MANIFEST_NAME);
+            if (manifestEntry != null) {
+                Manifest manifest;
+                try (InputStream input = zipFile.getInputStream(manifestEntry)) {
+                    manifest = new Manifest(input);
+                }
+                if (!StringUtils.isEmpty(manifest.getMainAttributes()
+                        .getValue(ManifestPluginDescriptorFinder.PLUGIN_ID))) {
+                    return manifestDescriptorFactory.create(manifest);
+                }
+            }
+        } catch (IOException e) {
+            throw new PluginRuntimeException(e, "Cannot read plugin descriptor from '{}'", pluginPath);
+        }
+        throw new PluginRuntimeException("Cannot find the plugin descriptor in '{}'", pluginPath);
+    }
+
+    /**
+     * 复用 pf4j 由 Properties 创建插件描述的逻辑
+     */
+    private static class PropertiesDescriptorFactory extends MyPropertiesPluginDescriptorFinder {
+
+        private PluginDescriptor create(Properties properties) {
+            return createPluginDescriptor(properties);
+        }
+    }
+
+    /**
+     * 复用 pf4j 由 Manifest 创建插件描述的逻辑
+     */
+    private static class ManifestDescriptorFactory extends MyManifestPluginDescriptorFinder {
+
+        private PluginDescriptor create(Manifest manifest) {
+            return createPluginDescriptor(manifest);
+        }
+    }
+
+}
@@ -14,15 +14,25 @@ import org.pf4j.*;
  */
 public class MyDefaultPluginLoader extends DefaultPluginLoader {
 
+    private final int negativeCacheSize;
+    private final SharedLibraryClassLoader sharedLibraryClassLoader;
+
     public MyDefaultPluginLoader(PluginManager pluginManager) {
+        this(pluginManager, MyPluginClassLoader.DEFAULT_NEGATIVE_CACHE_SIZE, null);
+    }
+
+    public MyDefaultPluginLoader(PluginManager pluginManager, int negativeCacheSize,
+                                 SharedLibraryClassLoader sharedLibraryClassLoader) {
         super(pluginManager);
+        this.negativeCacheSize = negativeCacheSize;
+        this.sharedLibraryClassLoader = sharedLibraryClassLoader;
     }
 
     @Override
     protected PluginClassLoader createPluginClassLoader(Path pluginPath, PluginDescriptor pluginDescriptor) {
-        return new PluginClassLoader(pluginManager,
+        return new MyPluginClassLoader(pluginManager,
                 pluginDescriptor,
-                getClass().getClassLoader(),
-                ClassLoadingStrategy.APD);
+                SharedLibraryClassLoader.getParentClassLoader(sharedLibraryClassLoader, pluginDescriptor),
+                negativeCacheSize);
     }
 }
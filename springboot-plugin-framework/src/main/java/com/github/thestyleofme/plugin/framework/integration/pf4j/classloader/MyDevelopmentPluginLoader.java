@@ -14,15 +14,25 @@ import org.pf4j.*;
  */
 public class MyDevelopmentPluginLoader extends DevelopmentPluginLoader {
 
+    private final int negativeCacheSize;
+    private final SharedLibraryClassLoader sharedLibraryClassLoader;
+
     public MyDevelopmentPluginLoader(PluginManager pluginManager) {
+        this(pluginManager, MyPluginClassLoader.DEFAULT_NEGATIVE_CACHE_SIZE, null);
+    }
+
+    public MyDevelopmentPluginLoader(PluginManager pluginManager, int negativeCacheSize,
+                                     SharedLibraryClassLoader sharedLibraryClassLoader) {
         super(pluginManager);
+        this.negativeCacheSize = negativeCacheSize;
+        this.sharedLibraryClassLoader = sharedLibraryClassLoader;
     }
 
     @Override
     protected PluginClassLoader createPluginClassLoader(Path pluginPath, PluginDescriptor pluginDescriptor) {
-        return new PluginClassLoader(pluginManager,
+        return new MyPluginClassLoader(pluginManager,
                 pluginDescriptor,
-                getClass().getClassLoader(),
-                ClassLoadingStrategy.APD);
+                SharedLibraryClassLoader.getParentClassLoader(sharedLibraryClassLoader, pluginDescriptor),
+                negativeCacheSize);
     }
 }
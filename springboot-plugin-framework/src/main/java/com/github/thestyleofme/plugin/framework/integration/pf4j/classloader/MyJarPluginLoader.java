@@ -14,16 +14,26 @@ import org.pf4j.*;
  */
 public class MyJarPluginLoader extends JarPluginLoader {
 
+    private final int negativeCacheSize;
+    private final SharedLibraryClassLoader sharedLibraryClassLoader;
+
     public MyJarPluginLoader(PluginManager pluginManager) {
+        this(pluginManager, MyPluginClassLoader.DEFAULT_NEGATIVE_CACHE_SIZE, null);
+    }
+
+    public MyJarPluginLoader(PluginManager pluginManager, int negativeCacheSize,
+                             SharedLibraryClassLoader sharedLibraryClassLoader) {
         super(pluginManager);
+        this.negativeCacheSize = negativeCacheSize;
+        this.sharedLibraryClassLoader = sharedLibraryClassLoader;
     }
 
     @Override
     public ClassLoader loadPlugin(Path pluginPath, PluginDescriptor pluginDescriptor) {
-        PluginClassLoader pluginClassLoader = new PluginClassLoader(pluginManager,
+        MyPluginClassLoader pluginClassLoader = new MyPluginClassLoader(pluginManager,
                 pluginDescriptor,
-                getClass().getClassLoader(),
-                ClassLoadingStrategy.APD);
+                SharedLibraryClassLoader.getParentClassLoader(sharedLibraryClassLoader, pluginDescriptor),
+                negativeCacheSize);
         pluginClassLoader.addFile(pluginPath.toFile());
         return pluginClassLoader;
     }
@@ -0,0 +1,489 @@
+package com.github.thestyleofme.plugin.framework.integration.pf4j.classloader;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.security.CodeSource;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import com.github.thestyleofme.plugin.framework.cds.PluginCdsArchive;
+import com.github.thestyleofme.plugin.framework.metrics.PluginClassLoadingMetrics;
+import org.pf4j.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.util.ResourceUtils;
+
+/**
+ * <p>
+ * 框架的插件类加载器。按 APD(父类加载器、插件、依赖插件) 的顺序查找, 在 pf4j 的基础上增加:
+ * <p>
+ * 1. 不存在的类与资源的缓存(有上限), 再次查找时只是一次哈希查找, 不再经过各个类加载器, 也不再创建异常堆栈;
+ * <p>
+ * 2. 父类加载器中不存在的类与资源的缓存, 由同一个父类加载器下的所有插件共享;
+ * <p>
+ * 3. 由插件包中的条目建立的目录索引, 目录不在索引中时不再查找插件自身的类路径。插件目录(开发环境)无法建立索引, 始终查找
+ * <p>
+ * 已经找到的类由 findLoadedClass 得到, 查找缓存时不加锁。pf4j 的 PluginClassLoader 不是并行类加载器,
+ * 加载类时以类加载器自身加锁, 命中缓存的查找不经过该锁。依赖插件的类加载器变化时(插件重新加载), 清空不存在的类与资源的缓存
+ * <p>
+ * 同时记录定义的类的数量与字节数、查找类与资源的时间以及不存在的类与资源的查找次数, 由 {@link #getMetrics()} 得到
+ * </p>
+ *
+ * @author isaac 2020/10/26 10:00
+ * @since 1.0
+ */
+public class MyPluginClassLoader extends PluginClassLoader {
+
+    /**
+     * 默认缓存的不存在的类与资源的数量
+     */
+    public static final int DEFAULT_NEGATIVE_CACHE_SIZE = 4096;
+
+    private static final Logger LOG = LoggerFactory.getLogger(MyPluginClassLoader.class);
+
+    private static final String JAVA_PACKAGE_PREFIX = "java.";
+    private static final String PLUGIN_PACKAGE_PREFIX = "org.pf4j.";
+    private static final String CLASS_SUFFIX = ".class";
+    private static final String VERSIONS_DIRECTORY = "META-INF/versions/";
+
+    /**
+     * 父类加载器与其中不存在的类、资源。父类加载器的类路径在运行期间不变
+     */
+    private static final Map<ClassLoader, ParentMissing> PARENT_MISSING =
+            Collections.synchronizedMap(new WeakHashMap<>());
+
+    private final PluginManager pluginManager;
+    private final PluginDescriptor pluginDescriptor;
+
+    private final NameCache missingClasses;
+    private final NameCache missingResources;
+    private final ParentMissing parentMissing;
+
+    /**
+     * 插件包中的目录, 例如 com/github/, 根目录为空字符串
+     */
+    private final Set<String> directories = ConcurrentHashMap.newKeySet();
+    private volatile boolean indexed = true;
+
+    /**
+     * 建立缓存时依赖插件的类加载器, 依赖插件重新加载后缓存失效
+     */
+    private volatile ClassLoader[] dependencyClassLoaders;
+
+    private final LongAdder classHits = new LongAdder();
+    private final LongAdder classMisses = new LongAdder();
+    private final LongAdder resourceHits = new LongAdder();
+    private final LongAdder resourceMisses = new LongAdder();
+    private final LongAdder classNotFound = new LongAdder();
+    private final LongAdder resourceNotFound = new LongAdder();
+    private final LongAdder definedClasses = new LongAdder();
+    private final LongAdder classBytes = new LongAdder();
+    private final LongAdder loadClassNanos = new LongAdder();
+    private final LongAdder findClassNanos = new LongAdder();
+    private final LongAdder resourceNanos = new LongAdder();
+
+    /**
+     * 当前线程中 loadClass 与 findClass 的嵌套深度。定义类时会加载父类, 只计算最外层的时间
+     */
+    private final ThreadLocal<int[]> depth = ThreadLocal.withInitial(() -> new int[2]);
+
+    /**
+     * 读取类文件大小时打开的插件包, 关闭类加载器时关闭
+     */
+    private final Map<String, ZipFile> zipFiles = new ConcurrentHashMap<>();
+
+    /**
+     * 定义的类名, 只在生成 CDS 归档时记录
+     */
+    private final Set<String> definedClassNames = PluginCdsArchive.isDumping() ? ConcurrentHashMap.newKeySet() : null;
+
+    public MyPluginClassLoader(PluginManager pluginManager, PluginDescriptor pluginDescriptor,
+                               ClassLoader parent, int negativeCacheSize) {
+        super(pluginManager, pluginDescriptor, Objects.requireNonNull(parent, "Parent ClassLoader can't be null"),
+                ClassLoadingStrategy.APD);
+        this.pluginManager = pluginManager;
+        this.pluginDescriptor = pluginDescriptor;
+        this.missingClasses = new NameCache(negativeCacheSize);
+        this.missingResources = new NameCache(negativeCacheSize);
+        this.parentMissing = PARENT_MISSING.computeIfAbsent(parent, key -> new ParentMissing(negativeCacheSize));
+        this.dependencyClassLoaders = getDependencyClassLoaders();
+    }
+
+    @Override
+    public void addURL(URL url) {
+        index(url);
+        super.addURL(url);
+        // 新增的类路径中可能存在之前没有找到的类
+        missingClasses.clear();
+        missingResources.clear();
+    }
+
+    @Override
+    public Class<?> loadClass(String className) throws ClassNotFoundException {
+        if (className.startsWith(JAVA_PACKAGE_PREFIX) || className.startsWith(PLUGIN_PACKAGE_PREFIX)) {
+            return super.loadClass(className);
+        }
+        Class<?> loadedClass = findLoadedClass(className);
+        if (loadedClass != null) {
+            return loadedClass;
+        }
+        checkDependencies();
+        if (missingClasses.contains(className)) {
+            classHits.increment();
+            throw new MissingClassException(className);
+        }
+        classMisses.increment();
+        int[] current = depth.get();
+        long startNanos = current[0]++ == 0 ? System.nanoTime() : 0L;
+        try {
+            synchronized (getClassLoadingLock(className)) {
+                loadedClass = findLoadedClass(className);
+                if (loadedClass != null) {
+                    return loadedClass;
+                }
+                loadedClass = loadClassFromParent(className);
+                if (loadedClass == null) {
+                    loadedClass = findClassFromPlugin(className);
+                }
+                if (loadedClass == null) {
+                    loadedClass = loadClassFromDependencies(className);
+                }
+                if (loadedClass != null) {
+                    return loadedClass;
+                }
+                missingClasses.add(className);
+                classNotFound.increment();
+                throw new MissingClassException(className);
+            }
+        } finally {
+            if (--current[0] == 0) {
+                loadClassNanos.add(System.nanoTime() - startNanos);
+            }
+        }
+    }
+
+    @Override
+    protected Class<?> findClass(String className) throws ClassNotFoundException {
+        int[] current = depth.get();
+        long startNanos = current[1]++ == 0 ? System.nanoTime() : 0L;
+        try {
+            Class<?> foundClass = super.findClass(className);
+            definedClasses.increment();
+            classBytes.add(getClassSize(foundClass));
+            if (definedClassNames != null) {
+                definedClassNames.add(className);
+            }
+            return foundClass;
+        } finally {
+            if (--current[1] == 0) {
+                findClassNanos.add(System.nanoTime() - startNanos);
+            }
+        }
+    }
+
+    @Override
+    public URL getResource(String name) {
+        checkDependencies();
+        if (missingResources.contains(name)) {
+            resourceHits.increment();
+            return null;
+        }
+        resourceMisses.increment();
+        long startNanos = System.nanoTime();
+        URL url = null;
+        if (!parentMissing.resources.contains(name)) {
+            url = getParent().getResource(name);
+            if (url == null) {
+                parentMissing.resources.add(name);
+            }
+        }
+        if (url == null && mayContain(name)) {
+            url = findResource(name);
+        }
+        if (url == null) {
+            url = findResourceFromDependencies(name);
+        }
+        if (url == null) {
+            missingResources.add(name);
+            resourceNotFound.increment();
+        }
+        resourceNanos.add(System.nanoTime() - startNanos);
+        return url;
+    }
+
+    @Override
+    public void close() throws IOException {
+        for (ZipFile zipFile : zipFiles.values()) {
+            try {
+                zipFile.close();
+            } catch (IOException e) {
+                LOG.debug("Close plugin '{}' file '{}' failure. {}", pluginDescriptor.getPluginId(),
+                        zipFile.getName(), e.getMessage());
+            }
+        }
+        zipFiles.clear();
+        super.close();
+    }
+
+    /**
+     * 得到定义的类名。只在生成 CDS 归档时记录, 否则为空集合
+     *
+     * @return 类名
+     */
+    public Set<String> getDefinedClassNames() {
+        return definedClassNames == null ? Collections.emptySet() : Collections.unmodifiableSet(definedClassNames);
+    }
+
+    /**
+     * 得到类加载指标的快照
+     *
+     * @return 类加载指标
+     */
+    public PluginClassLoadingMetrics getMetrics() {
+        return new PluginClassLoadingMetrics(pluginDescriptor.getPluginId(),
+                definedClasses.sum(), classBytes.sum(),
+                classMisses.sum(), loadClassNanos.sum(), findClassNanos.sum(),
+                resourceMisses.sum(), resourceNanos.sum(),
+                classHits.sum() + classNotFound.sum(), resourceHits.sum() + resourceNotFound.sum());
+    }
+
+    /**
+     * 不存在的类从缓存中得到的次数
+     *
+     * @return 次数
+     */
+    public long getClassHits() {
+        return classHits.sum();
+    }
+
+    /**
+     * 没有加载过的类不在缓存中, 需要依次查找的次数
+     *
+     * @return 次数
+     */
+    public long getClassMisses() {
+        return classMisses.sum();
+    }
+
+    /**
+     * 不存在的资源从缓存中得到的次数
+     *
+     * @return 次数
+     */
+    public long getResourceHits() {
+        return resourceHits.sum();
+    }
+
+    /**
+     * 资源不在缓存中, 需要依次查找的次数
+     *
+     * @return 次数
+     */
+    public long getResourceMisses() {
+        return resourceMisses.sum();
+    }
+
+    private Class<?> loadClassFromParent(String className) {
+        if (parentMissing.classes.contains(className)) {
+            return null;
+        }
+        try {
+            return getParent().loadClass(className);
+        } catch (ClassNotFoundException e) {
+            parentMissing.classes.add(className);
+            return null;
+        }
+    }
+
+    private Class<?> findClassFromPlugin(String className) {
+        if (!mayContain(className.replace('.', '/') + CLASS_SUFFIX)) {
+            return null;
+        }
+        try {
+            return findClass(className);
+        } catch (ClassNotFoundException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 由类所在的类路径得到类文件的大小。类路径为插件包时读取条目, 为目录时读取文件, 无法得到时为0
+     */
+    private long getClassSize(Class<?> aClass) {
+        CodeSource codeSource = aClass.getProtectionDomain().getCodeSource();
+        if (codeSource == null || codeSource.getLocation() == null) {
+            return 0L;
+        }
+        String name = aClass.getName().replace('.', '/') + CLASS_SUFFIX;
+        try {
+            File file = new File(codeSource.getLocation().toURI());
+            if (file.isDirectory()) {
+                return new File(file, name).length();
+            }
+            ZipFile zipFile = zipFiles.get(file.getPath());
+            if (zipFile == null) {
+                zipFile = zipFiles.computeIfAbsent(file.getPath(), key -> openZipFile(file));
+            }
+            ZipEntry entry = zipFile == null ? null : zipFile.getEntry(name);
+            return entry == null ? 0L : Math.max(entry.getSize(), 0L);
+        } catch (URISyntaxException | IllegalArgumentException e) {
+            return 0L;
+        }
+    }
+
+    private ZipFile openZipFile(File file) {
+        try {
+            return new ZipFile(file);
+        } catch (IOException e) {
+            LOG.debug("Open plugin '{}' file '{}' failure. {}", pluginDescriptor.getPluginId(), file,
+                    e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * 插件自身的类路径中是否可能存在该资源
+     */
+    private boolean mayContain(String name) {
+        if (indexed) {
+            int index = name.lastIndexOf('/');
+            return directories.contains(index < 0 ? "" : name.substring(0, index + 1));
+        }
+        return true;
+    }
+
+    /**
+     * 读取插件包中的条目建立目录索引。插件目录等无法建立索引的类路径, 不再使用索引
+     */
+    private void index(URL url) {
+        if (!indexed) {
+            return;
+        }
+        File file;
+        try {
+            file = ResourceUtils.getFile(url);
+        } catch (IOException e) {
+            indexed = false;
+            return;
+        }
+        if (!file.isFile()) {
+            indexed = false;
+            return;
+        }
+        try (ZipFile zipFile = new ZipFile(file)) {
+            Enumeration<? extends ZipEntry> entries = zipFile.entries();
+            while (entries.hasMoreElements()) {
+                String name = entries.nextElement().getName();
+                if (name.startsWith(VERSIONS_DIRECTORY)) {
+                    // 多版本jar中的类, 去掉版本目录
+                    int index = name.indexOf('/', VERSIONS_DIRECTORY.length());
+                    name = index < 0 ? name : name.substring(index + 1);
+                }
+                int index = name.lastIndexOf('/');
+                directories.add(index < 0 ? "" : name.substring(0, index + 1));
+            }
+        } catch (IOException e) {
+            LOG.warn("Index plugin '{}' classpath '{}' failure. {}", pluginDescriptor.getPluginId(), url,
+                    e.getMessage());
+            indexed = false;
+        }
+    }
+
+    /**
+     * 依赖插件的类加载器变化时, 之前不存在的类可能已经存在, 清空缓存
+     */
+    private void checkDependencies() {
+        ClassLoader[] current = dependencyClassLoaders;
+        List<PluginDependency> dependencies = pluginDescriptor.getDependencies();
+        boolean changed = current.length != dependencies.size();
+        for (int i = 0; !changed && i < current.length; i++) {
+            changed = current[i] != pluginManager.getPluginClassLoader(dependencies.get(i).getPluginId());
+        }
+        if (changed) {
+            dependencyClassLoaders = getDependencyClassLoaders();
+            missingClasses.clear();
+            missingResources.clear();
+        }
+    }
+
+    private ClassLoader[] getDependencyClassLoaders() {
+        List<PluginDependency> dependencies = pluginDescriptor.getDependencies();
+        ClassLoader[] classLoaders = new ClassLoader[dependencies.size()];
+        for (int i = 0; i < classLoaders.length; i++) {
+            classLoaders[i] = pluginManager.getPluginClassLoader(dependencies.get(i).getPluginId());
+        }
+        return classLoaders;
+    }
+
+    /**
+     * 有上限的名称缓存。超过上限时淘汰任意一个名称, 上限小于等于0时不缓存
+     */
+    private static class NameCache {
+
+        private final int maxSize;
+        private final Set<String> names = ConcurrentHashMap.newKeySet();
+
+        private NameCache(int maxSize) {
+            this.maxSize = maxSize;
+        }
+
+        private boolean contains(String name) {
+            return names.contains(name);
+        }
+
+        private void add(String name) {
+            if (maxSize <= 0) {
+                return;
+            }
+            if (names.size() >= maxSize) {
+                Iterator<String> iterator = names.iterator();
+                if (iterator.hasNext()) {
+                    iterator.next();
+                    iterator.remove();
+                }
+            }
+            names.add(name);
+        }
+
+        private void clear() {
+            names.clear();
+        }
+    }
+
+    /**
+     * 父类加载器中不存在的类与资源
+     */
+    private static class ParentMissing {
+
+        private final NameCache classes;
+        private final NameCache resources;
+
+        private ParentMissing(int maxSize) {
+            this.classes = new NameCache(maxSize);
+            this.resources = new NameCache(maxSize);
+        }
+    }
+
+    /**
+     * 类不存在。查找失败是正常情况, 不记录异常堆栈
+     */
+    private static class MissingClassException extends ClassNotFoundException {
+
+        private static final long serialVersionUID = 1L;
+
+        private MissingClassException(String className) {
+            super(className);
+        }
+
+        @Override
+        public synchronized Throwable fillInStackTrace() {
+            return this;
+        }
+    }
+
+}
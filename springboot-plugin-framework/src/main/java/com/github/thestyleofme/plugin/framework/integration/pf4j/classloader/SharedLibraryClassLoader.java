@@ -0,0 +1,334 @@
+package com.github.thestyleofme.plugin.framework.integration.pf4j.classloader;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import com.github.thestyleofme.plugin.framework.integration.pf4j.MyPluginDescriptor;
+import org.pf4j.PluginDescriptor;
+import org.pf4j.util.FileUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>
+ * 共享库的类加载器, 位于主程序类加载器与插件类加载器之间。共享库目录中的 jar 只加载一次, 由声明使用的插件共享,
+ * 插件包中相同的依赖不再重复加载。
+ * <p>
+ * 插件只能看到自身声明的共享库: 每组声明对应一个视图, 视图按目录判断类与资源属于哪个共享库,
+ * 声明的共享库中的类由共享库的类加载器加载, 其余仍然委托主程序类加载器
+ * </p>
+ *
+ * @author isaac 2020/10/26 14:00
+ * @since 1.0
+ */
+public class SharedLibraryClassLoader extends URLClassLoader {
+
+    private static final Logger LOG = LoggerFactory.getLogger(SharedLibraryClassLoader.class);
+
+    private static final String MAVEN_DIRECTORY = "META-INF/maven/";
+    private static final String POM_PROPERTIES = "/pom.properties";
+    private static final String ALL_LIBRARIES = "*";
+
+    static {
+        registerAsParallelCapable();
+    }
+
+    private final List<Library> libraries;
+
+    /**
+     * 插件声明的共享库与对应的视图, 相同声明的插件共用视图
+     */
+    private final Map<Set<Library>, View> views = new ConcurrentHashMap<>();
+
+    private SharedLibraryClassLoader(List<Library> libraries, ClassLoader parent) {
+        super(toUrls(libraries), parent);
+        this.libraries = libraries;
+    }
+
+    /**
+     * 加载共享库目录中的 jar
+     *
+     * @param directory 共享库目录
+     * @param parent    主程序类加载器
+     * @return 共享库的类加载器, 目录不存在或者没有 jar 时为空
+     */
+    public static SharedLibraryClassLoader create(Path directory, ClassLoader parent) {
+        if (directory == null || !Files.isDirectory(directory)) {
+            return null;
+        }
+        List<Library> libraries = new ArrayList<>();
+        for (File jar : FileUtils.getJars(directory)) {
+            try {
+                libraries.add(Library.read(jar));
+            } catch (IOException e) {
+                LOG.warn("Read shared library '{}' failure, skip it. {}", jar, e.getMessage());
+            }
+        }
+        if (libraries.isEmpty()) {
+            return null;
+        }
+        LOG.info("Shared libraries {}", libraries);
+        return new SharedLibraryClassLoader(Collections.unmodifiableList(libraries), parent);
+    }
+
+    /**
+     * 得到插件的父类加载器, 供各插件加载者共用
+     *
+     * @param sharedLibraryClassLoader 共享库类加载器, 没有共享库时为空
+     * @param pluginDescriptor         插件描述
+     * @return 插件声明了共享库时为对应的视图, 否则为主程序类加载器
+     */
+    public static ClassLoader getParentClassLoader(SharedLibraryClassLoader sharedLibraryClassLoader,
+                                                   PluginDescriptor pluginDescriptor) {
+        if (sharedLibraryClassLoader == null) {
+            return SharedLibraryClassLoader.class.getClassLoader();
+        }
+        return sharedLibraryClassLoader.getClassLoader(pluginDescriptor);
+    }
+
+    /**
+     * 得到插件的父类加载器
+     *
+     * @param pluginDescriptor 插件描述
+     * @return 插件声明了共享库时为对应的视图, 否则为主程序类加载器
+     */
+    public ClassLoader getClassLoader(PluginDescriptor pluginDescriptor) {
+        if (!(pluginDescriptor instanceof MyPluginDescriptor)) {
+            return getParent();
+        }
+        List<String> coordinates = ((MyPluginDescriptor) pluginDescriptor).getSharedLibraries();
+        Set<Library> matched = new HashSet<>();
+        for (String coordinate : coordinates) {
+            boolean found = false;
+            for (Library library : libraries) {
+                if (library.matches(coordinate)) {
+                    matched.add(library);
+                    found = true;
+                }
+            }
+            if (!found) {
+                LOG.warn("Plugin '{}' shared library '{}' not found, use the library in plugin",
+                        pluginDescriptor.getPluginId(), coordinate);
+            }
+        }
+        if (matched.isEmpty()) {
+            return getParent();
+        }
+        return views.computeIfAbsent(matched, key -> new View(this, key));
+    }
+
+    /**
+     * 得到所有共享库
+     *
+     * @return 共享库的坐标
+     */
+    public List<String> getLibraries() {
+        List<String> coordinates = new ArrayList<>();
+        for (Library library : libraries) {
+            coordinates.add(library.toString());
+        }
+        return coordinates;
+    }
+
+    private static URL[] toUrls(List<Library> libraries) {
+        URL[] urls = new URL[libraries.size()];
+        for (int i = 0; i < urls.length; i++) {
+            urls[i] = libraries.get(i).url;
+        }
+        return urls;
+    }
+
+    private static String getDirectory(String name) {
+        int index = name.lastIndexOf('/');
+        return index < 0 ? "" : name.substring(0, index + 1);
+    }
+
+    /**
+     * 插件看到的共享库。类与资源所在的目录属于声明的共享库时由共享库的类加载器查找, 否则委托主程序类加载器
+     */
+    private static class View extends ClassLoader {
+
+        static {
+            registerAsParallelCapable();
+        }
+
+        private final SharedLibraryClassLoader sharedLibraryClassLoader;
+        private final Set<Library> visibleLibraries;
+        private final Set<String> directories = new HashSet<>();
+        private final Set<String> urlPrefixes = new HashSet<>();
+
+        private View(SharedLibraryClassLoader sharedLibraryClassLoader, Set<Library> visibleLibraries) {
+            super(sharedLibraryClassLoader.getParent());
+            this.sharedLibraryClassLoader = sharedLibraryClassLoader;
+            this.visibleLibraries = visibleLibraries;
+            for (Library library : visibleLibraries) {
+                directories.addAll(library.directories);
+                urlPrefixes.add("jar:" + library.url + "!/");
+            }
+        }
+
+        @Override
+        protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+            if (isVisible(name.replace('.', '/'))) {
+                return sharedLibraryClassLoader.loadClass(name);
+            }
+            return super.loadClass(name, resolve);
+        }
+
+        @Override
+        public URL getResource(String name) {
+            if (isVisible(name)) {
+                return sharedLibraryClassLoader.getResource(name);
+            }
+            return super.getResource(name);
+        }
+
+        @Override
+        public Enumeration<URL> getResources(String name) throws IOException {
+            if (!isVisible(name)) {
+                return super.getResources(name);
+            }
+            // 同一目录可能存在于多个共享库中, 只返回主程序与声明的共享库中的资源
+            List<URL> urls = new ArrayList<>();
+            Enumeration<URL> resources = sharedLibraryClassLoader.getResources(name);
+            while (resources.hasMoreElements()) {
+                URL url = resources.nextElement();
+                if (!isShared(url) || isVisible(url)) {
+                    urls.add(url);
+                }
+            }
+            return Collections.enumeration(urls);
+        }
+
+        private boolean isVisible(String name) {
+            return directories.contains(getDirectory(name));
+        }
+
+        private boolean isVisible(URL url) {
+            String externalForm = url.toExternalForm();
+            for (String urlPrefix : urlPrefixes) {
+                if (externalForm.startsWith(urlPrefix)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private boolean isShared(URL url) {
+            String externalForm = url.toExternalForm();
+            for (Library library : sharedLibraryClassLoader.libraries) {
+                if (externalForm.startsWith("jar:" + library.url + "!/")) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public String toString() {
+            return "SharedLibraries" + visibleLibraries;
+        }
+    }
+
+    /**
+     * 一个共享库。坐标从 META-INF/maven 下的 pom.properties 读取, 没有时由文件名得到 artifactId 与 version
+     */
+    private static class Library {
+
+        private final URL url;
+        private final List<String[]> coordinates = new ArrayList<>();
+        private final Set<String> directories = new HashSet<>();
+
+        private Library(URL url) {
+            this.url = url;
+        }
+
+        private static Library read(File jar) throws IOException {
+            Library library;
+            try {
+                library = new Library(jar.toURI().toURL());
+            } catch (MalformedURLException e) {
+                throw new IOException(e);
+            }
+            try (ZipFile zipFile = new ZipFile(jar)) {
+                Enumeration<? extends ZipEntry> entries = zipFile.entries();
+                while (entries.hasMoreElements()) {
+                    ZipEntry entry = entries.nextElement();
+                    String name = entry.getName();
+                    library.directories.add(getDirectory(name));
+                    if (name.startsWith(MAVEN_DIRECTORY) && name.endsWith(POM_PROPERTIES)) {
+                        Properties properties = new Properties();
+                        try (InputStream input = zipFile.getInputStream(entry)) {
+                            properties.load(input);
+                        }
+                        library.coordinates.add(new String[]{properties.getProperty("groupId"),
+                                properties.getProperty("artifactId"), properties.getProperty("version")});
+                    }
+                }
+            }
+            if (library.coordinates.isEmpty()) {
+                library.coordinates.add(parseFileName(jar.getName()));
+            }
+            return library;
+        }
+
+        /**
+         * 由文件名得到坐标, 例如 guava-29.0-jre.jar 的 artifactId 为 guava, version 为 29.0-jre
+         */
+        private static String[] parseFileName(String fileName) {
+            String name = fileName.substring(0, fileName.length() - ".jar".length());
+            for (int i = 0; i < name.length() - 1; i++) {
+                if (name.charAt(i) == '-' && Character.isDigit(name.charAt(i + 1))) {
+                    return new String[]{null, name.substring(0, i), name.substring(i + 1)};
+                }
+            }
+            return new String[]{null, name, null};
+        }
+
+        /**
+         * 是否匹配插件声明的坐标。声明为 artifactId、groupId:artifactId 或者 groupId:artifactId:version, * 匹配所有共享库
+         */
+        private boolean matches(String coordinate) {
+            if (ALL_LIBRARIES.equals(coordinate)) {
+                return true;
+            }
+            String[] parts = coordinate.split(":");
+            for (String[] libraryCoordinate : coordinates) {
+                boolean matched;
+                if (parts.length == 1) {
+                    matched = parts[0].equals(libraryCoordinate[1]);
+                } else {
+                    matched = parts[0].equals(libraryCoordinate[0]) && parts[1].equals(libraryCoordinate[1]) &&
+                            (parts.length == 2 || parts[2].equals(libraryCoordinate[2]));
+                }
+                if (matched) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public String toString() {
+            String[] coordinate = coordinates.get(0);
+            StringJoiner joiner = new StringJoiner(":");
+            for (String part : coordinate) {
+                if (part != null) {
+                    joiner.add(part);
+                }
+            }
+            return joiner.toString();
+        }
+    }
+
+}
@@ -7,9 +7,11 @@ import java.util.Objects;
 
 import com.github.thestyleofme.plugin.framework.exceptions.PluginException;
 import com.github.thestyleofme.plugin.framework.factory.PluginInfoContainer;
+import com.github.thestyleofme.plugin.framework.integration.lazy.LazyPluginActivator;
 import org.pf4j.PluginManager;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.NoSuchBeanDefinitionException;
 import org.springframework.context.ApplicationContext;
 import org.springframework.context.support.GenericApplicationContext;
 import org.springframework.util.CollectionUtils;
@@ -56,17 +58,28 @@ public class DefaultPluginUser implements PluginUser {
     @SuppressWarnings("unchecked")
     @Override
     public <T> T getBean(String name) {
+        activateBean(name);
         Object bean = applicationContext.getBean(name);
         return (T) bean;
     }
 
     @Override
     public <T> T getBean(Class<T> aClass) {
-        return applicationContext.getBean(aClass);
+        try {
+            return applicationContext.getBean(aClass);
+        } catch (NoSuchBeanDefinitionException e) {
+            LazyPluginActivator lazyPluginActivator = getLazyPluginActivator();
+            if (lazyPluginActivator == null || !lazyPluginActivator.hasLazyPlugins()) {
+                throw e;
+            }
+            lazyPluginActivator.activateType(aClass);
+            return applicationContext.getBean(aClass);
+        }
     }
 
     @Override
     public <T> T getPluginBean(String name) {
+        activateBean(name);
         if (isPluginBean(name)) {
             return getBean(name);
         }
@@ -82,6 +95,7 @@ public class DefaultPluginUser implements PluginUser {
      */
     @Override
     public <T> List<T> getBeans(Class<T> aClass) {
+        activateType(aClass);
         Map<String, T> beansOfTypeMap = applicationContext.getBeansOfType(aClass);
         return new ArrayList<>(beansOfTypeMap.values());
     }
@@ -107,6 +121,7 @@ public class DefaultPluginUser implements PluginUser {
      */
     @Override
     public <T> List<T> getPluginBeans(Class<T> aClass) {
+        activateType(aClass);
         Map<String, T> beansOfTypeMap = applicationContext.getBeansOfType(aClass);
         List<T> beans = new ArrayList<>();
         beansOfTypeMap.forEach((beanName, bean) -> {
@@ -119,6 +134,7 @@ public class DefaultPluginUser implements PluginUser {
 
     @Override
     public <T> List<T> getPluginBeans(String pluginId, Class<T> aClass) {
+        activate(pluginId);
         Map<String, T> beansOfTypeMap = applicationContext.getBeansOfType(aClass);
         List<T> beans = new ArrayList<>();
         beansOfTypeMap.forEach((beanName, bean) -> {
@@ -164,6 +180,7 @@ public class DefaultPluginUser implements PluginUser {
      */
     @Override
     public <T> List<T> getPluginExtensions(Class<T> tClass) {
+        activateType(tClass);
         return pluginManager.getExtensions(tClass);
     }
 
@@ -177,11 +194,13 @@ public class DefaultPluginUser implements PluginUser {
      */
     @Override
     public <T> List<T> getPluginExtensions(Class<T> tClass, String pluginId) {
+        activate(pluginId);
         return pluginManager.getExtensions(tClass, pluginId);
     }
 
     @Override
     public <T> T getPluginExtension(Class<T> tClass, String pluginId) {
+        activate(pluginId);
         List<T> extensions = pluginManager.getExtensions(tClass, pluginId);
         if (CollectionUtils.isEmpty(extensions)) {
             throw new PluginException(String.format("not find the [%s] implements class from pluginId[%s]",
@@ -203,4 +222,59 @@ public class DefaultPluginUser implements PluginUser {
         return PluginInfoContainer.existRegisterBeanName(beanName);
     }
 
+    /**
+     * 得到插件延迟激活者
+     *
+     * @return 插件延迟激活者, 未启用延迟激活时为空
+     */
+    protected LazyPluginActivator getLazyPluginActivator() {
+        return LazyPluginActivator.get(applicationContext);
+    }
+
+    /**
+     * 激活等待延迟激活的插件
+     *
+     * @param pluginId 插件id
+     */
+    protected void activate(String pluginId) {
+        LazyPluginActivator lazyPluginActivator = getLazyPluginActivator();
+        if (lazyPluginActivator != null && lazyPluginActivator.isLazy(pluginId)) {
+            lazyPluginActivator.activate(pluginId);
+        }
+    }
+
+    /**
+     * 激活所有等待延迟激活的插件
+     */
+    protected void activateAll() {
+        LazyPluginActivator lazyPluginActivator = getLazyPluginActivator();
+        if (lazyPluginActivator != null && lazyPluginActivator.hasLazyPlugins()) {
+            lazyPluginActivator.activateAll();
+        }
+    }
+
+    /**
+     * 激活可能提供该类型的bean的等待延迟激活的插件
+     *
+     * @param type bean的类型
+     */
+    protected void activateType(Class<?> type) {
+        LazyPluginActivator lazyPluginActivator = getLazyPluginActivator();
+        if (type != null && lazyPluginActivator != null && lazyPluginActivator.hasLazyPlugins()) {
+            lazyPluginActivator.activateType(type);
+        }
+    }
+
+    /**
+     * 激活提供该bean的插件
+     *
+     * @param beanName bean名称
+     */
+    protected void activateBean(String beanName) {
+        LazyPluginActivator lazyPluginActivator = getLazyPluginActivator();
+        if (beanName != null && lazyPluginActivator != null && lazyPluginActivator.hasLazyPlugins()) {
+            lazyPluginActivator.activateBean(beanName);
+        }
+    }
+
 }
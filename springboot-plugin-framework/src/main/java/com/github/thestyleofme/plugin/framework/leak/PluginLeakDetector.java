@@ -0,0 +1,229 @@
+package com.github.thestyleofme.plugin.framework.leak;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import com.github.thestyleofme.plugin.framework.exceptions.PluginException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>
+ * 插件类加载器的泄漏检测。以弱引用跟踪每个插件类加载器, 插件卸载或者释放后,
+ * 触发GC并通过引用队列判断类加载器是否被回收; 没有被回收时, 由探测查找仍然引用它的框架持有者并生成报告。
+ * <p>
+ * 插件停止时类加载器仍由插件管理者持有, 只检查卸载、替换后释放的类加载器
+ * </p>
+ *
+ * @author isaac 2020/10/26 16:30
+ * @since 1.0
+ */
+public class PluginLeakDetector {
+
+    private static final Logger LOG = LoggerFactory.getLogger(PluginLeakDetector.class);
+
+    private static final long GC_INTERVAL_MILLIS = 100L;
+
+    private final ReferenceQueue<ClassLoader> referenceQueue = new ReferenceQueue<>();
+    private final Set<ClassLoaderReference> references = ConcurrentHashMap.newKeySet();
+    private final List<PluginLeakProbe> probes = new CopyOnWriteArrayList<>();
+
+    private ExecutorService verifyExecutor;
+
+    /**
+     * 开始跟踪插件的类加载器
+     *
+     * @param pluginId    插件id
+     * @param classLoader 插件类加载器
+     */
+    public void track(String pluginId, ClassLoader classLoader) {
+        if (classLoader == null) {
+            return;
+        }
+        expunge();
+        references.add(new ClassLoaderReference(pluginId, classLoader, referenceQueue));
+    }
+
+    /**
+     * 插件类加载器已被释放, 此后应当可以被回收
+     *
+     * @param classLoader 插件类加载器
+     */
+    public void released(ClassLoader classLoader) {
+        if (classLoader == null) {
+            return;
+        }
+        for (ClassLoaderReference reference : references) {
+            if (reference.get() == classLoader && reference.releasedTime == 0L) {
+                reference.releasedTime = System.currentTimeMillis();
+            }
+        }
+    }
+
+    /**
+     * 添加泄漏的探测
+     *
+     * @param probe 探测
+     */
+    public void addProbe(PluginLeakProbe probe) {
+        if (probe != null) {
+            probes.add(probe);
+        }
+    }
+
+    /**
+     * 检查插件已释放的类加载器是否被回收。在超时时间内反复触发GC, 仍未回收的类加载器生成报告
+     *
+     * @param pluginId      插件id, 为空时检查所有插件
+     * @param timeoutMillis 等待回收的超时时间(毫秒)
+     * @return 没有被回收的类加载器的报告, 全部回收时为空集合
+     */
+    public List<PluginLeakReport> check(String pluginId, long timeoutMillis) {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        List<ClassLoaderReference> uncollected = getUncollected(pluginId);
+        while (!uncollected.isEmpty() && System.currentTimeMillis() < deadline) {
+            System.gc();
+            try {
+                Reference<? extends ClassLoader> reference = referenceQueue.remove(GC_INTERVAL_MILLIS);
+                if (reference != null) {
+                    references.remove(reference);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            uncollected = getUncollected(pluginId);
+        }
+        List<PluginLeakReport> reports = new ArrayList<>();
+        for (ClassLoaderReference reference : uncollected) {
+            PluginLeakReport report = report(reference);
+            if (report != null) {
+                reports.add(report);
+            }
+        }
+        return reports;
+    }
+
+    /**
+     * 断言插件已释放的类加载器全部被回收。用于测试与持续集成中验证插件卸载
+     *
+     * @param pluginId      插件id, 为空时检查所有插件
+     * @param timeoutMillis 等待回收的超时时间(毫秒)
+     * @throws PluginException 存在没有被回收的类加载器
+     */
+    public void assertUnloaded(String pluginId, long timeoutMillis) {
+        List<PluginLeakReport> reports = check(pluginId, timeoutMillis);
+        if (reports.isEmpty()) {
+            return;
+        }
+        StringJoiner joiner = new StringJoiner(System.lineSeparator());
+        reports.forEach(report -> joiner.add(report.toString()));
+        throw new PluginException(joiner.toString());
+    }
+
+    /**
+     * 在后台检查插件已释放的类加载器, 没有被回收时输出报告
+     *
+     * @param pluginId      插件id
+     * @param timeoutMillis 等待回收的超时时间(毫秒)
+     */
+    public void verifyLater(String pluginId, long timeoutMillis) {
+        getVerifyExecutor().execute(() -> {
+            try {
+                for (PluginLeakReport report : check(pluginId, timeoutMillis)) {
+                    LOG.warn("{}", report);
+                }
+            } catch (Exception e) {
+                LOG.error("Check plugin '{}' classloader leak failure. {}", pluginId, e.getMessage(), e);
+            }
+        });
+    }
+
+    /**
+     * 跟踪中的类加载器数量, 包括已释放但没有被回收的类加载器
+     *
+     * @return int
+     */
+    public int getTrackedCount() {
+        expunge();
+        return references.size();
+    }
+
+    /**
+     * 停止后台检查
+     */
+    public synchronized void shutdown() {
+        if (verifyExecutor != null) {
+            verifyExecutor.shutdownNow();
+            verifyExecutor = null;
+        }
+    }
+
+    private List<ClassLoaderReference> getUncollected(String pluginId) {
+        expunge();
+        List<ClassLoaderReference> uncollected = new ArrayList<>();
+        for (ClassLoaderReference reference : references) {
+            if (reference.releasedTime != 0L && (pluginId == null || pluginId.equals(reference.pluginId))) {
+                uncollected.add(reference);
+            }
+        }
+        return uncollected;
+    }
+
+    private PluginLeakReport report(ClassLoaderReference reference) {
+        ClassLoader classLoader = reference.get();
+        if (classLoader == null) {
+            return null;
+        }
+        List<String> holders = new ArrayList<>();
+        for (PluginLeakProbe probe : probes) {
+            try {
+                holders.addAll(probe.find(classLoader));
+            } catch (Exception e) {
+                LOG.debug("Plugin leak probe '{}' failure. {}", probe.getClass().getName(), e.getMessage());
+            }
+        }
+        return new PluginLeakReport(reference.pluginId, classLoader.toString(),
+                System.currentTimeMillis() - reference.releasedTime, holders);
+    }
+
+    private void expunge() {
+        Reference<? extends ClassLoader> reference;
+        while ((reference = referenceQueue.poll()) != null) {
+            references.remove(reference);
+        }
+    }
+
+    private synchronized ExecutorService getVerifyExecutor() {
+        if (verifyExecutor == null) {
+            verifyExecutor = Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "plugin-leak-detector");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return verifyExecutor;
+    }
+
+    /**
+     * 插件类加载器的弱引用。以对象本身判断相等, 回收后仍可从集合中删除
+     */
+    private static class ClassLoaderReference extends WeakReference<ClassLoader> {
+
+        private final String pluginId;
+        private volatile long releasedTime = 0L;
+
+        private ClassLoaderReference(String pluginId, ClassLoader classLoader,
+                                     ReferenceQueue<ClassLoader> referenceQueue) {
+            super(classLoader, referenceQueue);
+            this.pluginId = pluginId;
+        }
+    }
+
+}
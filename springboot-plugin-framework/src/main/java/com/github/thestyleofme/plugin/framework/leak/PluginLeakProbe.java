@@ -0,0 +1,25 @@
+package com.github.thestyleofme.plugin.framework.leak;
+
+import java.util.List;
+
+/**
+ * <p>
+ * 插件类加载器泄漏的探测。插件卸载后类加载器没有被回收时调用, 查找仍然引用该类加载器、
+ * 其中的类或者对象的持有者。定义为Spring bean或者由扩展的 AbstractExtension#getPluginLeakProbes 提供
+ * </p>
+ *
+ * @author isaac 2020/10/26 16:30
+ * @since 1.0
+ */
+@FunctionalInterface
+public interface PluginLeakProbe {
+
+    /**
+     * 查找引用插件类加载器的持有者。实现者不能保存类加载器
+     *
+     * @param pluginClassLoader 已卸载插件的类加载器
+     * @return 引用的描述, 没有时为空集合
+     */
+    List<String> find(ClassLoader pluginClassLoader);
+
+}
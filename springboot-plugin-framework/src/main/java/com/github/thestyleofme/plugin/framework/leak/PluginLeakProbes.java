@@ -0,0 +1,146 @@
+package com.github.thestyleofme.plugin.framework.leak;
+
+import java.lang.reflect.Field;
+import java.util.*;
+
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.type.TypeFactory;
+import com.github.thestyleofme.plugin.framework.utils.AopUtils;
+import com.github.thestyleofme.plugin.framework.utils.GlobalRegistryInfo;
+import org.springframework.context.ApplicationContext;
+import org.springframework.util.ReflectionUtils;
+
+/**
+ * <p>
+ * 框架内置的插件类加载器泄漏探测, 以及判断对象是否引用插件类加载器的工具方法
+ * </p>
+ *
+ * @author isaac 2020/10/26 16:30
+ * @since 1.0
+ */
+public final class PluginLeakProbes {
+
+    private PluginLeakProbes() {
+    }
+
+    /**
+     * 框架内置的探测: AOP 代理支持处理者保存的类加载器、全局扩展信息、线程以及 Jackson 的类型缓存
+     *
+     * @param applicationContext 主程序ApplicationContext
+     * @return 探测
+     */
+    public static List<PluginLeakProbe> defaults(ApplicationContext applicationContext) {
+        List<PluginLeakProbe> probes = new ArrayList<>();
+        probes.add(AopUtils::findReferences);
+        probes.add(GlobalRegistryInfo::findReferences);
+        probes.add(PluginLeakProbes::findThreadReferences);
+        probes.add(classLoader -> findJacksonReferences(applicationContext, classLoader));
+        return probes;
+    }
+
+    /**
+     * 对象是否引用插件类加载器: 对象为该类加载器、该类加载器加载的类或者其中类的实例。
+     * Map 与集合再判断一层元素
+     *
+     * @param value       对象
+     * @param classLoader 插件类加载器
+     * @return boolean
+     */
+    public static boolean refersTo(Object value, ClassLoader classLoader) {
+        if (isLoadedBy(value, classLoader)) {
+            return true;
+        }
+        if (value instanceof Map) {
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                if (isLoadedBy(entry.getKey(), classLoader) || isLoadedBy(entry.getValue(), classLoader)) {
+                    return true;
+                }
+            }
+        } else if (value instanceof Collection) {
+            for (Object element : (Collection<?>) value) {
+                if (isLoadedBy(element, classLoader)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static boolean isLoadedBy(Object value, ClassLoader classLoader) {
+        if (value == null) {
+            return false;
+        }
+        if (value == classLoader) {
+            return true;
+        }
+        Class<?> aClass = value instanceof Class ? (Class<?>) value : value.getClass();
+        return aClass.getClassLoader() == classLoader;
+    }
+
+    /**
+     * 线程的上下文类加载器为插件类加载器, 或者线程类由插件加载(插件启动后没有停止的线程)
+     */
+    private static List<String> findThreadReferences(ClassLoader classLoader) {
+        List<String> references = new ArrayList<>();
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            if (thread.getContextClassLoader() == classLoader) {
+                references.add("Thread '" + thread.getName() + "' context classloader");
+            } else if (thread.getClass().getClassLoader() == classLoader) {
+                references.add("Thread '" + thread.getName() + "' of plugin class " + thread.getClass().getName());
+            }
+        }
+        return references;
+    }
+
+    /**
+     * Jackson 的类型缓存中插件的类。可调用 TypeFactory#clearCache 清除
+     */
+    private static List<String> findJacksonReferences(ApplicationContext applicationContext,
+                                                      ClassLoader classLoader) {
+        Map<String, TypeFactory> typeFactories = new LinkedHashMap<>();
+        typeFactories.put("TypeFactory.defaultInstance()", TypeFactory.defaultInstance());
+        if (applicationContext != null) {
+            applicationContext.getBeansOfType(ObjectMapper.class, false, false).forEach((beanName, objectMapper) ->
+                    typeFactories.put("ObjectMapper '" + beanName + "'", objectMapper.getTypeFactory()));
+        }
+        List<String> references = new ArrayList<>();
+        Field typeCacheField = ReflectionUtils.findField(TypeFactory.class, "_typeCache");
+        if (typeCacheField == null) {
+            return references;
+        }
+        ReflectionUtils.makeAccessible(typeCacheField);
+        for (Map.Entry<String, TypeFactory> entry : typeFactories.entrySet()) {
+            Object typeCache = ReflectionUtils.getField(typeCacheField, entry.getValue());
+            Field mapField = typeCache == null ? null : ReflectionUtils.findField(typeCache.getClass(), "_map");
+            if (mapField == null) {
+                continue;
+            }
+            ReflectionUtils.makeAccessible(mapField);
+            Object map = ReflectionUtils.getField(mapField, typeCache);
+            if (!(map instanceof Map)) {
+                continue;
+            }
+            for (Object type : ((Map<?, ?>) map).values()) {
+                if (type instanceof JavaType && isPluginType((JavaType) type, classLoader)) {
+                    references.add(entry.getKey() + " type cache " + type + ", call TypeFactory.clearCache()");
+                }
+            }
+        }
+        return references;
+    }
+
+    private static boolean isPluginType(JavaType type, ClassLoader classLoader) {
+        if (type.getRawClass().getClassLoader() == classLoader) {
+            return true;
+        }
+        for (int i = 0; i < type.containedTypeCount(); i++) {
+            JavaType containedType = type.containedType(i);
+            if (containedType != null && isPluginType(containedType, classLoader)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+}
@@ -0,0 +1,76 @@
+package com.github.thestyleofme.plugin.framework.leak;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * <p>
+ * 插件卸载后没有被回收的类加载器, 以及探测到的仍然引用它的持有者。
+ * 持有者为空时说明引用来自探测范围之外, 需要通过堆转储分析
+ * </p>
+ *
+ * @author isaac 2020/10/26 16:30
+ * @since 1.0
+ */
+public class PluginLeakReport {
+
+    private final String pluginId;
+    private final String classLoader;
+    private final long releasedMillis;
+    private final List<String> references;
+
+    public PluginLeakReport(String pluginId, String classLoader, long releasedMillis, List<String> references) {
+        this.pluginId = pluginId;
+        this.classLoader = classLoader;
+        this.releasedMillis = releasedMillis;
+        this.references = Collections.unmodifiableList(references);
+    }
+
+    public String getPluginId() {
+        return pluginId;
+    }
+
+    /**
+     * 类加载器的描述
+     *
+     * @return String
+     */
+    public String getClassLoader() {
+        return classLoader;
+    }
+
+    /**
+     * 类加载器被释放到检查时经过的时间(毫秒)
+     *
+     * @return long
+     */
+    public long getReleasedMillis() {
+        return releasedMillis;
+    }
+
+    /**
+     * 探测到的仍然引用类加载器的持有者
+     *
+     * @return 持有者的描述
+     */
+    public List<String> getReferences() {
+        return references;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        builder.append("Plugin '").append(pluginId).append("' classloader ").append(classLoader)
+                .append(" is not collected ").append(releasedMillis).append(" ms after released");
+        if (references.isEmpty()) {
+            builder.append(", no known framework reference found, analyze the heap dump");
+        } else {
+            builder.append(", referenced by:");
+            for (String reference : references) {
+                builder.append(System.lineSeparator()).append("    ").append(reference);
+            }
+        }
+        return builder.toString();
+    }
+
+}
@@ -0,0 +1,297 @@
+package com.github.thestyleofme.plugin.framework.loader;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.net.URLConnection;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.type.ClassMetadata;
+import org.springframework.core.type.classreading.CachingMetadataReaderFactory;
+import org.springframework.core.type.classreading.MetadataReader;
+import org.springframework.core.type.classreading.MetadataReaderFactory;
+
+/**
+ * <p>
+ * 插件的类索引。记录插件中每个类的注解、实现的接口与父类, 用于在加载类之前判断类是否可能属于分组。
+ * 插件构建时由 springboot-plugin-framework-processor 生成(META-INF/plugin-index), 同时代替遍历插件包;
+ * 没有生成时, 扫描插件包后读取类文件生成, 不加载类
+ * </p>
+ *
+ * @author isaac 2020/10/25 11:00
+ * @since 1.0
+ */
+public class PluginClassIndex {
+
+    public static final String INDEX_FILE = "META-INF/plugin-index";
+
+    /**
+     * 在 ResourceWrapper 中保存索引的key
+     */
+    public static final String KEY = "PluginClassIndex";
+
+    private static final Logger LOG = LoggerFactory.getLogger(PluginClassIndex.class);
+
+    private static final String VERSION = "VERSION\t1";
+    private static final String SEPARATOR = "\t";
+    private static final String NAME_SEPARATOR = ",";
+
+    private final Map<String, Entry> entries;
+
+    private PluginClassIndex(Map<String, Entry> entries) {
+        this.entries = entries;
+    }
+
+    /**
+     * 读取插件自身的类索引, 不包括父类加载器与依赖插件中的索引
+     *
+     * @param pluginClassLoader 插件的类加载器
+     * @return 类索引, 插件构建时没有生成索引或者索引的版本不同时为空
+     * @throws IOException 读取异常
+     */
+    public static PluginClassIndex find(ClassLoader pluginClassLoader) throws IOException {
+        if (!(pluginClassLoader instanceof URLClassLoader)) {
+            return null;
+        }
+        URL url = ((URLClassLoader) pluginClassLoader).findResource(INDEX_FILE);
+        if (url == null) {
+            return null;
+        }
+        URLConnection connection = url.openConnection();
+        // 不缓存插件包, 避免卸载插件后插件包仍被占用
+        connection.setUseCaches(false);
+        Map<String, Entry> entries = new LinkedHashMap<>();
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(connection.getInputStream(), StandardCharsets.UTF_8))) {
+            if (!VERSION.equals(reader.readLine())) {
+                return null;
+            }
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] fields = line.split(SEPARATOR, -1);
+                if (fields[0].isEmpty()) {
+                    continue;
+                }
+                // 旧版本的处理器生成的索引没有父类
+                entries.put(fields[0], new Entry(fields[0], split(fields, 1), split(fields, 2),
+                        fields.length > 3 ? split(fields, 3) : null));
+            }
+        }
+        return new PluginClassIndex(entries);
+    }
+
+    /**
+     * 读取类文件生成类索引。通过字节码读取注解与接口, 不会加载类
+     *
+     * @param classLoader 插件的类加载器
+     * @param classNames  扫描到的类全路径
+     * @return 类索引, 无法读取的类不在索引中
+     */
+    public static PluginClassIndex read(ClassLoader classLoader, Set<String> classNames) {
+        return read(classLoader, classNames, null, Collections.emptySet());
+    }
+
+    /**
+     * 读取类文件生成类索引。复用上次的索引, 只读取变化的类以及父类或接口变化的类
+     *
+     * @param classLoader       插件的类加载器
+     * @param classNames        扫描到的类全路径
+     * @param previous          上次读取的类索引, 可以为空
+     * @param changedClassNames 上次读取后变化的类全路径
+     * @return 类索引, 无法读取的类不在索引中
+     */
+    public static PluginClassIndex read(ClassLoader classLoader, Set<String> classNames,
+                                        PluginClassIndex previous, Set<String> changedClassNames) {
+        // 缓存父类与接口的读取结果, 同一个插件中的类通常有相同的父类与接口
+        MetadataReaderFactory metadataReaderFactory = new CachingMetadataReaderFactory(classLoader);
+        Map<String, Entry> entries = new HashMap<>(classNames.size());
+        for (String className : classNames) {
+            Entry entry = previous == null ? null : previous.getEntry(className);
+            if (entry != null && entry.superClassNames != null && !changedClassNames.contains(className) &&
+                    Collections.disjoint(entry.superClassNames, changedClassNames) &&
+                    Collections.disjoint(entry.interfaceNames, changedClassNames)) {
+                entries.put(className, entry);
+                continue;
+            }
+            Set<String> annotationNames = new HashSet<>();
+            Set<String> interfaceNames = new HashSet<>();
+            Set<String> superClassNames = new HashSet<>();
+            try {
+                collect(metadataReaderFactory, className, annotationNames, interfaceNames, superClassNames);
+            } catch (IOException e) {
+                LOG.debug("Read class '{}' metadata failure. {}", className, e.getMessage());
+                continue;
+            }
+            entries.put(className, new Entry(className, annotationNames, interfaceNames, superClassNames));
+        }
+        return new PluginClassIndex(entries);
+    }
+
+    /**
+     * 收集类及其父类上的注解、实现的接口。父类上的注解全部收集, 因此预过滤的结果可能多于分组结果, 但不会遗漏。
+     * JDK 中的类只记录名称, 不再读取
+     */
+    private static void collect(MetadataReaderFactory metadataReaderFactory, String className,
+                                Set<String> annotationNames, Set<String> interfaceNames,
+                                Set<String> superClassNames) throws IOException {
+        MetadataReader metadataReader = metadataReaderFactory.getMetadataReader(className);
+        annotationNames.addAll(metadataReader.getAnnotationMetadata().getAnnotationTypes());
+        ClassMetadata classMetadata = metadataReader.getClassMetadata();
+        for (String interfaceName : classMetadata.getInterfaceNames()) {
+            if (interfaceNames.add(interfaceName) && !isJdkClass(interfaceName)) {
+                collectInterfaces(metadataReaderFactory, interfaceName, interfaceNames);
+            }
+        }
+        String superClassName = classMetadata.getSuperClassName();
+        if (superClassName != null && !isJdkClass(superClassName)) {
+            superClassNames.add(superClassName);
+            collect(metadataReaderFactory, superClassName, annotationNames, interfaceNames, superClassNames);
+        }
+    }
+
+    private static void collectInterfaces(MetadataReaderFactory metadataReaderFactory, String interfaceName,
+                                          Set<String> interfaceNames) throws IOException {
+        MetadataReader metadataReader = metadataReaderFactory.getMetadataReader(interfaceName);
+        for (String superInterfaceName : metadataReader.getClassMetadata().getInterfaceNames()) {
+            if (interfaceNames.add(superInterfaceName) && !isJdkClass(superInterfaceName)) {
+                collectInterfaces(metadataReaderFactory, superInterfaceName, interfaceNames);
+            }
+        }
+    }
+
+    private static boolean isJdkClass(String className) {
+        return className.startsWith("java.") || className.startsWith("javax.");
+    }
+
+    /**
+     * 得到指定包中的类名, 包括子包中的类。与扫描插件包的规则相同
+     *
+     * @param basePackage 包名
+     * @return 类全路径
+     */
+    public Set<String> getClassNames(String basePackage) {
+        Set<String> classNames = new HashSet<>();
+        for (String className : entries.keySet()) {
+            if (className.startsWith(basePackage)) {
+                classNames.add(className);
+            }
+        }
+        return classNames;
+    }
+
+    /**
+     * 得到所有类的索引
+     *
+     * @return 类的索引
+     */
+    public Collection<Entry> getEntries() {
+        return Collections.unmodifiableCollection(entries.values());
+    }
+
+    /**
+     * 得到类的索引
+     *
+     * @param className 类全路径
+     * @return 类的索引, 不在索引中时为空
+     */
+    public Entry getEntry(String className) {
+        return entries.get(className);
+    }
+
+    private static Set<String> split(String[] fields, int index) {
+        if (fields.length <= index || fields[index].isEmpty()) {
+            return Collections.emptySet();
+        }
+        return new HashSet<>(Arrays.asList(fields[index].split(NAME_SEPARATOR)));
+    }
+
+    /**
+     * 一个类的索引
+     */
+    public static class Entry {
+
+        private final String className;
+        private final Set<String> annotationNames;
+        private final Set<String> interfaceNames;
+
+        /**
+         * 父类, 不包括 JDK 中的类。读取类文件时用于父类变化时重新读取。旧版本的处理器构建时生成的索引中没有
+         */
+        private final Set<String> superClassNames;
+
+        private Entry(String className, Set<String> annotationNames, Set<String> interfaceNames,
+                      Set<String> superClassNames) {
+            this.className = className;
+            this.annotationNames = annotationNames;
+            this.interfaceNames = interfaceNames;
+            this.superClassNames = superClassNames;
+        }
+
+        public String getClassName() {
+            return className;
+        }
+
+        public Set<String> getAnnotationNames() {
+            return Collections.unmodifiableSet(annotationNames);
+        }
+
+        public Set<String> getInterfaceNames() {
+            return Collections.unmodifiableSet(interfaceNames);
+        }
+
+        /**
+         * 得到父类
+         *
+         * @return 父类, 不包括 JDK 中的类。旧版本的处理器生成的索引中没有父类时为空
+         */
+        public Set<String> getSuperClassNames() {
+            return superClassNames == null ? null : Collections.unmodifiableSet(superClassNames);
+        }
+
+        /**
+         * 得到类所在的包名
+         *
+         * @return 包名
+         */
+        public String getPackageName() {
+            int index = className.lastIndexOf('.');
+            return index < 0 ? "" : className.substring(0, index);
+        }
+
+        /**
+         * 类上是否存在任一注解, 包括继承的注解
+         *
+         * @param annotationClasses 注解类
+         * @return boolean
+         */
+        public boolean hasAnnotation(Class<?>... annotationClasses) {
+            for (Class<?> annotationClass : annotationClasses) {
+                if (annotationNames.contains(annotationClass.getName())) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * 类是否实现了任一接口, 包括父类实现的接口
+         *
+         * @param interfaceClasses 接口类
+         * @return boolean
+         */
+        public boolean hasInterface(Class<?>... interfaceClasses) {
+            for (Class<?> interfaceClass : interfaceClasses) {
+                if (interfaceNames.contains(interfaceClass.getName())) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+}
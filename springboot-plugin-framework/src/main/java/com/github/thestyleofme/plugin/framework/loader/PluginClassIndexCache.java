@@ -0,0 +1,111 @@
+package com.github.thestyleofme.plugin.framework.loader;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * <p>
+ * 开发环境下插件类名与类索引的缓存。由监听编译输出目录的监听者维护插件的类名与变化的类,
+ * 重启插件时不再遍历类目录, 类索引只重新读取变化的类。没有被监听的插件不缓存
+ * </p>
+ *
+ * @author isaac 2020/10/25 16:40
+ * @since 1.0
+ */
+public class PluginClassIndexCache {
+
+    private final Map<String, Cached> caches = new ConcurrentHashMap<>();
+
+    /**
+     * 开始缓存插件的类名与类索引
+     *
+     * @param pluginId   插件id
+     * @param classNames 编译输出目录中的所有类全路径
+     */
+    public void track(String pluginId, Set<String> classNames) {
+        caches.put(pluginId, new Cached(classNames));
+    }
+
+    /**
+     * 停止缓存插件的类名与类索引
+     *
+     * @param pluginId 插件id
+     */
+    public void untrack(String pluginId) {
+        caches.remove(pluginId);
+    }
+
+    /**
+     * 记录插件中新增、修改或者删除的类
+     *
+     * @param pluginId          插件id
+     * @param classNames        变化后编译输出目录中的所有类全路径
+     * @param changedClassNames 变化的类全路径
+     */
+    public void changed(String pluginId, Set<String> classNames, Set<String> changedClassNames) {
+        Cached cached = caches.get(pluginId);
+        if (cached == null) {
+            return;
+        }
+        synchronized (cached) {
+            cached.classNames = new HashSet<>(classNames);
+            cached.changedClassNames.addAll(changedClassNames);
+        }
+    }
+
+    /**
+     * 得到插件中指定包的类名, 包括子包中的类
+     *
+     * @param pluginId    插件id
+     * @param basePackage 包名
+     * @return 类全路径, 插件没有被缓存时为空
+     */
+    public Set<String> getClassNames(String pluginId, String basePackage) {
+        Cached cached = caches.get(pluginId);
+        if (cached == null) {
+            return null;
+        }
+        Set<String> classNames = new HashSet<>();
+        synchronized (cached) {
+            for (String className : cached.classNames) {
+                if (className.startsWith(basePackage)) {
+                    classNames.add(className);
+                }
+            }
+        }
+        return classNames;
+    }
+
+    /**
+     * 读取插件的类索引。插件被缓存时复用上次的类索引, 只读取变化的类
+     *
+     * @param pluginId    插件id
+     * @param classLoader 插件的类加载器
+     * @param classNames  类全路径
+     * @return 类索引
+     */
+    public PluginClassIndex read(String pluginId, ClassLoader classLoader, Set<String> classNames) {
+        Cached cached = caches.get(pluginId);
+        if (cached == null) {
+            return PluginClassIndex.read(classLoader, classNames);
+        }
+        synchronized (cached) {
+            cached.classIndex = PluginClassIndex.read(classLoader, classNames, cached.classIndex,
+                    cached.changedClassNames);
+            cached.changedClassNames.clear();
+            return cached.classIndex;
+        }
+    }
+
+    private static class Cached {
+
+        private Set<String> classNames;
+        private final Set<String> changedClassNames = new HashSet<>();
+        private PluginClassIndex classIndex;
+
+        private Cached(Set<String> classNames) {
+            this.classNames = new HashSet<>(classNames);
+        }
+    }
+
+}
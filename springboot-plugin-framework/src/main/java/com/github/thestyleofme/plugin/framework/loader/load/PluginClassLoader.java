@@ -1,14 +1,23 @@
 package com.github.thestyleofme.plugin.framework.loader.load;
 
 import java.io.IOException;
+import java.nio.file.Files;
 import java.util.Set;
+import java.util.StringJoiner;
 
 import com.github.thestyleofme.plugin.framework.exceptions.PluginException;
+import com.github.thestyleofme.plugin.framework.integration.pf4j.MyDefaultPluginManager;
+import com.github.thestyleofme.plugin.framework.integration.pf4j.PluginMetadataCatalog;
+import com.github.thestyleofme.plugin.framework.loader.PluginClassIndex;
+import com.github.thestyleofme.plugin.framework.loader.PluginClassIndexCache;
 import com.github.thestyleofme.plugin.framework.loader.PluginResourceLoader;
 import com.github.thestyleofme.plugin.framework.loader.ResourceWrapper;
 import com.github.thestyleofme.plugin.framework.realize.BasePlugin;
 import com.github.thestyleofme.plugin.framework.utils.OrderPriority;
 import com.github.thestyleofme.plugin.framework.utils.ScanUtils;
+import org.pf4j.PluginDependency;
+import org.pf4j.PluginManager;
+import org.pf4j.PluginWrapper;
 import org.pf4j.RuntimeMode;
 
 /**
@@ -32,25 +41,98 @@ public class PluginClassLoader implements PluginResourceLoader {
     public ResourceWrapper load(BasePlugin basePlugin) {
         RuntimeMode runtimeMode = basePlugin.getWrapper().getRuntimeMode();
         Set<String> classPackageName = null;
+        PluginClassIndex classIndex = null;
+        PluginClassIndexCache classIndexCache = getClassIndexCache(basePlugin);
+        String pluginId = basePlugin.getWrapper().getPluginId();
         try {
             if (runtimeMode == RuntimeMode.DEPLOYMENT) {
-                // 生产环境
-                classPackageName = ScanUtils.scanClassPackageName(
-                        basePlugin.scanPackage(), basePlugin.getWrapper().getPluginClassLoader());
-
+                // 生产环境。插件构建时生成了类索引, 直接使用索引, 不再扫描插件包
+                classIndex = PluginClassIndex.find(basePlugin.getWrapper().getPluginClassLoader());
+                if (classIndex != null) {
+                    classPackageName = classIndex.getClassNames(basePlugin.scanPackage());
+                } else {
+                    classPackageName = scanClassPackageName(basePlugin);
+                }
             } else if (runtimeMode == RuntimeMode.DEVELOPMENT) {
-                // 开发环境
-                classPackageName = ScanUtils.scanClassPackageName(
-                        basePlugin.scanPackage(), basePlugin.getClass());
+                // 开发环境。监听编译输出目录时, 使用监听者维护的类名, 不再遍历类目录
+                if (classIndexCache != null) {
+                    classPackageName = classIndexCache.getClassNames(pluginId, basePlugin.scanPackage());
+                }
+                if (classPackageName == null) {
+                    classPackageName = ScanUtils.scanClassPackageName(
+                            basePlugin.scanPackage(), basePlugin.getClass());
+                }
             }
         } catch (IOException e) {
             throw new PluginException(e);
         }
+        if (classIndex == null && classPackageName != null) {
+            // 读取类文件生成索引, 分组时只加载可能属于分组的类
+            ClassLoader pluginClassLoader = basePlugin.getWrapper().getPluginClassLoader();
+            classIndex = classIndexCache == null ? PluginClassIndex.read(pluginClassLoader, classPackageName) :
+                    classIndexCache.read(pluginId, pluginClassLoader, classPackageName);
+        }
         ResourceWrapper resourceWrapper = new ResourceWrapper();
         resourceWrapper.addClassPackageNames(classPackageName);
+        if (classIndex != null) {
+            resourceWrapper.addExtension(PluginClassIndex.KEY, classIndex);
+        }
         return resourceWrapper;
     }
 
+    private PluginClassIndexCache getClassIndexCache(BasePlugin basePlugin) {
+        PluginManager pluginManager = basePlugin.getWrapper().getPluginManager();
+        if (pluginManager instanceof MyDefaultPluginManager) {
+            return ((MyDefaultPluginManager) pluginManager).getClassIndexCache();
+        }
+        return null;
+    }
+
+    /**
+     * 扫描插件包中的类。插件包及其依赖的插件包未变化时, 使用插件元数据目录中记录的类名
+     *
+     * @param basePlugin 插件
+     * @return 类全路径
+     * @throws IOException 扫描异常
+     */
+    private Set<String> scanClassPackageName(BasePlugin basePlugin) throws IOException {
+        PluginWrapper pluginWrapper = basePlugin.getWrapper();
+        String scanPackage = basePlugin.scanPackage();
+        PluginMetadataCatalog metadataCatalog = null;
+        if (pluginWrapper.getPluginManager() instanceof MyDefaultPluginManager) {
+            metadataCatalog = ((MyDefaultPluginManager) pluginWrapper.getPluginManager()).getMetadataCatalog();
+        }
+        if (metadataCatalog == null || !Files.isRegularFile(pluginWrapper.getPluginPath())) {
+            return ScanUtils.scanClassPackageName(scanPackage, pluginWrapper.getPluginClassLoader());
+        }
+        String dependencyFingerprint = getDependencyFingerprint(pluginWrapper);
+        Set<String> classPackageName = metadataCatalog.getClassNames(pluginWrapper.getPluginPath(),
+                scanPackage, dependencyFingerprint);
+        if (classPackageName == null) {
+            classPackageName = ScanUtils.scanClassPackageName(scanPackage, pluginWrapper.getPluginClassLoader());
+            metadataCatalog.putClassNames(pluginWrapper.getPluginPath(), scanPackage, dependencyFingerprint,
+                    classPackageName);
+        }
+        return classPackageName;
+    }
+
+    /**
+     * 插件的类加载器同样会扫描到依赖插件中的类, 因此依赖插件的插件包变化时, 记录的类名失效
+     *
+     * @param pluginWrapper 插件
+     * @return 依赖插件的指纹
+     */
+    private String getDependencyFingerprint(PluginWrapper pluginWrapper) {
+        StringJoiner joiner = new StringJoiner(",");
+        for (PluginDependency dependency : pluginWrapper.getDescriptor().getDependencies()) {
+            PluginWrapper dependencyPlugin = pluginWrapper.getPluginManager().getPlugin(dependency.getPluginId());
+            String fingerprint = dependencyPlugin == null ? null :
+                    PluginMetadataCatalog.fingerprint(dependencyPlugin.getPluginPath());
+            joiner.add(dependency.getPluginId() + ":" + fingerprint);
+        }
+        return joiner.toString();
+    }
+
     @Override
     public void unload(BasePlugin basePlugin, ResourceWrapper resourceWrapper) {
         // Do nothing
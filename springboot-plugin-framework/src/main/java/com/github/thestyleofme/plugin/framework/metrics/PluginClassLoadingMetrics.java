@@ -0,0 +1,135 @@
+package com.github.thestyleofme.plugin.framework.metrics;
+
+/**
+ * <p>
+ * 插件类加载器的类加载指标, 为取得时的快照, 自类加载器创建开始累计。
+ * 定义的类的数量与字节数可用于估算插件占用的元空间
+ * </p>
+ *
+ * @author isaac 2020/10/27 9:30
+ * @since 1.0
+ */
+public class PluginClassLoadingMetrics {
+
+    /**
+     * 插件id
+     */
+    private final String pluginId;
+
+    /**
+     * 插件类加载器定义的类的数量
+     */
+    private final long definedClasses;
+
+    /**
+     * 定义的类读取的类文件字节数
+     */
+    private final long classBytes;
+
+    /**
+     * 不在缓存中、需要依次查找的类的次数
+     */
+    private final long classLookups;
+
+    /**
+     * 查找类的时间(纳秒), 包括委托父类加载器、依赖插件与定义类。嵌套的查找只计算最外层
+     */
+    private final long loadClassNanos;
+
+    /**
+     * 在插件自身类路径中查找并定义类的时间(纳秒)。嵌套的查找只计算最外层
+     */
+    private final long findClassNanos;
+
+    /**
+     * 不在缓存中、需要依次查找的资源的次数
+     */
+    private final long resourceLookups;
+
+    /**
+     * 查找资源的时间(纳秒)
+     */
+    private final long resourceNanos;
+
+    /**
+     * 不存在的类的查找次数, 包括从缓存中得到的次数
+     */
+    private final long negativeClassLookups;
+
+    /**
+     * 不存在的资源的查找次数, 包括从缓存中得到的次数
+     */
+    private final long negativeResourceLookups;
+
+    public PluginClassLoadingMetrics(String pluginId, long definedClasses, long classBytes,
+                                     long classLookups, long loadClassNanos, long findClassNanos,
+                                     long resourceLookups, long resourceNanos,
+                                     long negativeClassLookups, long negativeResourceLookups) {
+        this.pluginId = pluginId;
+        this.definedClasses = definedClasses;
+        this.classBytes = classBytes;
+        this.classLookups = classLookups;
+        this.loadClassNanos = loadClassNanos;
+        this.findClassNanos = findClassNanos;
+        this.resourceLookups = resourceLookups;
+        this.resourceNanos = resourceNanos;
+        this.negativeClassLookups = negativeClassLookups;
+        this.negativeResourceLookups = negativeResourceLookups;
+    }
+
+    public String getPluginId() {
+        return pluginId;
+    }
+
+    public long getDefinedClasses() {
+        return definedClasses;
+    }
+
+    public long getClassBytes() {
+        return classBytes;
+    }
+
+    public long getClassLookups() {
+        return classLookups;
+    }
+
+    public long getLoadClassNanos() {
+        return loadClassNanos;
+    }
+
+    public long getFindClassNanos() {
+        return findClassNanos;
+    }
+
+    public long getResourceLookups() {
+        return resourceLookups;
+    }
+
+    public long getResourceNanos() {
+        return resourceNanos;
+    }
+
+    public long getNegativeClassLookups() {
+        return negativeClassLookups;
+    }
+
+    public long getNegativeResourceLookups() {
+        return negativeResourceLookups;
+    }
+
+    @Override
+    public String toString() {
+        return "PluginClassLoadingMetrics{" +
+                "pluginId='" + pluginId + '\'' +
+                ", definedClasses=" + definedClasses +
+                ", classBytes=" + classBytes +
+                ", classLookups=" + classLookups +
+                ", loadClassNanos=" + loadClassNanos +
+                ", findClassNanos=" + findClassNanos +
+                ", resourceLookups=" + resourceLookups +
+                ", resourceNanos=" + resourceNanos +
+                ", negativeClassLookups=" + negativeClassLookups +
+                ", negativeResourceLookups=" + negativeResourceLookups +
+                '}';
+    }
+}
@@ -0,0 +1,63 @@
+package com.github.thestyleofme.plugin.framework.metrics;
+
+import com.github.thestyleofme.plugin.framework.integration.listener.PluginListener;
+import com.github.thestyleofme.plugin.framework.integration.pf4j.classloader.MyPluginClassLoader;
+import org.pf4j.PluginManager;
+
+/**
+ * <p>
+ * 插件注册完成后与卸载前, 将插件类加载器的类加载指标输出到指标输出。
+ * 注册完成时插件的类已基本加载, 卸载前为插件整个运行期间的累计值
+ * </p>
+ *
+ * @author isaac 2020/10/27 9:30
+ * @since 1.0
+ */
+public class PluginClassLoadingReporter implements PluginListener {
+
+    private final PluginManager pluginManager;
+    private final PluginStageRecorder stageRecorder;
+
+    public PluginClassLoadingReporter(PluginManager pluginManager, PluginStageRecorder stageRecorder) {
+        this.pluginManager = pluginManager;
+        this.stageRecorder = stageRecorder;
+    }
+
+    /**
+     * 得到插件的类加载指标
+     *
+     * @param pluginManager 插件管理者
+     * @param pluginId      插件id
+     * @return 类加载指标, 插件类加载器不是框架的类加载器时为空
+     */
+    public static PluginClassLoadingMetrics getMetrics(PluginManager pluginManager, String pluginId) {
+        ClassLoader classLoader = pluginManager.getPluginClassLoader(pluginId);
+        if (classLoader instanceof MyPluginClassLoader) {
+            return ((MyPluginClassLoader) classLoader).getMetrics();
+        }
+        return null;
+    }
+
+    @Override
+    public void register(String pluginId) {
+        report(pluginId);
+    }
+
+    @Override
+    public void unregister(String pluginId) {
+        report(pluginId);
+    }
+
+    @Override
+    public void failure(String pluginId, Throwable throwable) {
+        // ignore
+    }
+
+    private void report(String pluginId) {
+        PluginClassLoadingMetrics metrics = getMetrics(pluginManager, pluginId);
+        if (metrics != null) {
+            stageRecorder.recordClassLoading(metrics);
+        }
+    }
+
+}
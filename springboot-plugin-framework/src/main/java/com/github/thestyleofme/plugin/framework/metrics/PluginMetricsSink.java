@@ -0,0 +1,30 @@
+package com.github.thestyleofme.plugin.framework.metrics;
+
+/**
+ * <p>
+ * 插件指标的输出。定义为Spring bean或者通过 PluginStageRecorder#addSink 添加,
+ * 可将指标输出到日志、Micrometer等监控系统
+ * </p>
+ *
+ * @author isaac 2020/10/22 15:16
+ * @since 1.0
+ */
+public interface PluginMetricsSink {
+
+    /**
+     * 记录一次处理者的执行耗时。在执行处理者的线程中同步调用, 实现者不应执行耗时的操作
+     *
+     * @param timing 处理者的执行耗时
+     */
+    void recordStage(PluginStageTiming timing);
+
+    /**
+     * 记录插件类加载器的类加载指标。插件注册完成后与卸载前各调用一次
+     *
+     * @param metrics 类加载指标
+     */
+    default void recordClassLoading(PluginClassLoadingMetrics metrics) {
+        // ignore
+    }
+
+}
@@ -0,0 +1,170 @@
+package com.github.thestyleofme.plugin.framework.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import com.github.thestyleofme.plugin.framework.enums.ProcessOperationEnum;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>
+ * 插件处理者的耗时记录者。记录每个处理者每次执行的墙钟时间、CPU时间与分配的内存,
+ * 保留有限数量的历史记录, 并输出到指标输出
+ * </p>
+ *
+ * @author isaac 2020/10/22 15:25
+ * @since 1.0
+ */
+public class PluginStageRecorder {
+
+    private static final Logger LOG = LoggerFactory.getLogger(PluginStageRecorder.class);
+
+    private static final ThreadMXBean THREAD_MX_BEAN = ManagementFactory.getThreadMXBean();
+    private static final boolean CPU_TIME_SUPPORTED = isCpuTimeSupported();
+    private static final boolean ALLOCATED_BYTES_SUPPORTED = isAllocatedBytesSupported();
+
+    private final int historySize;
+    private final Deque<PluginStageTiming> history;
+    private final List<PluginMetricsSink> sinks = new CopyOnWriteArrayList<>();
+
+    /**
+     * @param historySize 保留的历史记录数量, 小于等于0时不保留历史记录
+     */
+    public PluginStageRecorder(int historySize) {
+        this.historySize = Math.max(0, historySize);
+        this.history = new ArrayDeque<>(Math.min(this.historySize, 1024));
+    }
+
+    /**
+     * 添加指标输出
+     *
+     * @param sink 指标输出
+     */
+    public void addSink(PluginMetricsSink sink) {
+        if (sink != null) {
+            sinks.add(sink);
+        }
+    }
+
+    /**
+     * 执行处理者并记录耗时。执行失败时同样记录
+     *
+     * @param pluginIds 插件id集合
+     * @param operation 执行的操作
+     * @param processor 处理者
+     * @param action    处理者的执行
+     */
+    public void record(List<String> pluginIds, ProcessOperationEnum operation, Object processor, Runnable action) {
+        long startTime = System.currentTimeMillis();
+        long startCpu = currentThreadCpuTime();
+        long startAllocated = currentThreadAllocatedBytes();
+        long startNanos = System.nanoTime();
+        boolean success = false;
+        try {
+            action.run();
+            success = true;
+        } finally {
+            long wallNanos = System.nanoTime() - startNanos;
+            long cpuNanos = elapsed(startCpu, currentThreadCpuTime());
+            long allocatedBytes = elapsed(startAllocated, currentThreadAllocatedBytes());
+            add(new PluginStageTiming(pluginIds, operation, processor.getClass().getName(),
+                    startTime, wallNanos, cpuNanos, allocatedBytes, success));
+        }
+    }
+
+    /**
+     * 得到插件的历史记录, 按时间先后排列
+     *
+     * @param pluginId 插件id, 为空时返回所有插件的历史记录
+     * @return 历史记录
+     */
+    public List<PluginStageTiming> getTimings(String pluginId) {
+        List<PluginStageTiming> timings;
+        synchronized (history) {
+            timings = new ArrayList<>(history);
+        }
+        if (pluginId == null) {
+            return timings;
+        }
+        timings.removeIf(timing -> !timing.getPluginIds().contains(pluginId));
+        return timings;
+    }
+
+    /**
+     * 输出插件的类加载指标
+     *
+     * @param metrics 类加载指标
+     */
+    public void recordClassLoading(PluginClassLoadingMetrics metrics) {
+        for (PluginMetricsSink sink : sinks) {
+            try {
+                sink.recordClassLoading(metrics);
+            } catch (Exception e) {
+                LOG.error("PluginMetricsSink {} record failure. {}", sink.getClass().getName(), e.getMessage(), e);
+            }
+        }
+    }
+
+    private void add(PluginStageTiming timing) {
+        if (historySize > 0) {
+            synchronized (history) {
+                if (history.size() >= historySize) {
+                    history.pollFirst();
+                }
+                history.addLast(timing);
+            }
+        }
+        for (PluginMetricsSink sink : sinks) {
+            try {
+                sink.recordStage(timing);
+            } catch (Exception e) {
+                LOG.error("PluginMetricsSink {} record failure. {}", sink.getClass().getName(), e.getMessage(), e);
+            }
+        }
+    }
+
+    private static long elapsed(long start, long end) {
+        if (start < 0 || end < 0) {
+            return -1;
+        }
+        return end - start;
+    }
+
+    private static long currentThreadCpuTime() {
+        return CPU_TIME_SUPPORTED ? THREAD_MX_BEAN.getCurrentThreadCpuTime() : -1;
+    }
+
+    private static long currentThreadAllocatedBytes() {
+        if (!ALLOCATED_BYTES_SUPPORTED) {
+            return -1;
+        }
+        return ((com.sun.management.ThreadMXBean) THREAD_MX_BEAN)
+                .getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    private static boolean isCpuTimeSupported() {
+        try {
+            return THREAD_MX_BEAN.isCurrentThreadCpuTimeSupported() && THREAD_MX_BEAN.isThreadCpuTimeEnabled();
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    private static boolean isAllocatedBytesSupported() {
+        try {
+            // 分配的内存只有 HotSpot 等提供 com.sun.management 扩展的JVM支持
+            return THREAD_MX_BEAN instanceof com.sun.management.ThreadMXBean &&
+                    ((com.sun.management.ThreadMXBean) THREAD_MX_BEAN).isThreadAllocatedMemorySupported() &&
+                    ((com.sun.management.ThreadMXBean) THREAD_MX_BEAN).isThreadAllocatedMemoryEnabled();
+        } catch (Throwable e) {
+            return false;
+        }
+    }
+
+}
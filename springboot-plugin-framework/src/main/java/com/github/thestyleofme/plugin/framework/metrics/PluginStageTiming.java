@@ -0,0 +1,116 @@
+package com.github.thestyleofme.plugin.framework.metrics;
+
+import java.util.Collections;
+import java.util.List;
+
+import com.github.thestyleofme.plugin.framework.enums.ProcessOperationEnum;
+
+/**
+ * <p>
+ * 一次处理者执行的耗时。CPU时间与分配的内存在当前JVM不支持时为 -1
+ * </p>
+ *
+ * @author isaac 2020/10/22 15:12
+ * @since 1.0
+ */
+public class PluginStageTiming {
+
+    /**
+     * 插件id。后置处理者批量处理时包括多个插件
+     */
+    private final List<String> pluginIds;
+
+    /**
+     * 执行的操作
+     */
+    private final ProcessOperationEnum operation;
+
+    /**
+     * 处理者的类名
+     */
+    private final String processor;
+
+    /**
+     * 开始时间戳(毫秒)
+     */
+    private final long startTime;
+
+    /**
+     * 墙钟时间(纳秒)
+     */
+    private final long wallNanos;
+
+    /**
+     * 当前线程的CPU时间(纳秒)
+     */
+    private final long cpuNanos;
+
+    /**
+     * 当前线程分配的内存(字节)
+     */
+    private final long allocatedBytes;
+
+    /**
+     * 是否执行成功
+     */
+    private final boolean success;
+
+    public PluginStageTiming(List<String> pluginIds, ProcessOperationEnum operation, String processor,
+                             long startTime, long wallNanos, long cpuNanos, long allocatedBytes,
+                             boolean success) {
+        this.pluginIds = Collections.unmodifiableList(pluginIds);
+        this.operation = operation;
+        this.processor = processor;
+        this.startTime = startTime;
+        this.wallNanos = wallNanos;
+        this.cpuNanos = cpuNanos;
+        this.allocatedBytes = allocatedBytes;
+        this.success = success;
+    }
+
+    public List<String> getPluginIds() {
+        return pluginIds;
+    }
+
+    public ProcessOperationEnum getOperation() {
+        return operation;
+    }
+
+    public String getProcessor() {
+        return processor;
+    }
+
+    public long getStartTime() {
+        return startTime;
+    }
+
+    public long getWallNanos() {
+        return wallNanos;
+    }
+
+    public long getCpuNanos() {
+        return cpuNanos;
+    }
+
+    public long getAllocatedBytes() {
+        return allocatedBytes;
+    }
+
+    public boolean isSuccess() {
+        return success;
+    }
+
+    @Override
+    public String toString() {
+        return "PluginStageTiming{" +
+                "pluginIds=" + pluginIds +
+                ", operation=" + operation +
+                ", processor='" + processor + '\'' +
+                ", startTime=" + startTime +
+                ", wallNanos=" + wallNanos +
+                ", cpuNanos=" + cpuNanos +
+                ", allocatedBytes=" + allocatedBytes +
+                ", success=" + success +
+                '}';
+    }
+}
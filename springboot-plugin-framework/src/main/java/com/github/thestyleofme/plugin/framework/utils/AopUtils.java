@@ -93,6 +93,26 @@ public class AopUtils {
         IS_RECOVER.set(true);
     }
 
+    /**
+     * 查找代理支持处理者当前使用的以及保存的原始类加载器中, 引用已卸载插件类加载器的处理者
+     *
+     * @param pluginClassLoader 插件类加载器
+     * @return 引用的描述
+     */
+    public static synchronized List<String> findReferences(ClassLoader pluginClassLoader) {
+        List<String> references = new ArrayList<>();
+        for (ProxyWrapper proxyWrapper : PROXY_WRAPPERS) {
+            ProxyProcessorSupport proxyProcessorSupport = proxyWrapper.getProxyProcessorSupport();
+            if (getClassLoader(proxyProcessorSupport) == pluginClassLoader) {
+                references.add("AopUtils " + proxyProcessorSupport.getClass().getName() + " proxyClassLoader");
+            }
+            if (proxyWrapper.getOriginalClassLoader() == pluginClassLoader) {
+                references.add("AopUtils " + proxyProcessorSupport.getClass().getName() + " originalClassLoader");
+            }
+        }
+        return references;
+    }
+
     /**
      * 反射获取代理支持处理者的ClassLoader属性值
      *
@@ -1,8 +1,12 @@
 package com.github.thestyleofme.plugin.framework.utils;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 
+import com.github.thestyleofme.plugin.framework.leak.PluginLeakProbes;
+
 /**
  * <p>
  * 全局注册信息
@@ -88,6 +92,22 @@ public final class GlobalRegistryInfo {
         EXTENSION_MAP.remove(key);
     }
 
+    /**
+     * 查找引用已卸载插件类加载器的全局扩展数据
+     *
+     * @param pluginClassLoader 插件类加载器
+     * @return 引用的描述
+     */
+    public static List<String> findReferences(ClassLoader pluginClassLoader) {
+        List<String> references = new ArrayList<>();
+        for (Map.Entry<String, Object> entry : EXTENSION_MAP.entrySet()) {
+            if (PluginLeakProbes.refersTo(entry.getValue(), pluginClassLoader)) {
+                references.add("GlobalRegistryInfo extension '" + entry.getKey() + "'");
+            }
+        }
+        return references;
+    }
+
     /**
      * 获取全局扩展值
      *
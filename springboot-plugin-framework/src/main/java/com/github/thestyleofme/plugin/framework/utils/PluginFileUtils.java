@@ -3,11 +3,16 @@ package com.github.thestyleofme.plugin.framework.utils;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.math.BigInteger;
 import java.nio.MappedByteBuffer;
 import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestInputStream;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.util.stream.Stream;
@@ -27,6 +32,9 @@ public final class PluginFileUtils {
 
     private static final Logger log = LoggerFactory.getLogger(PluginFileUtils.class);
 
+    private static final String DIGEST_ALGORITHM = "SHA-256";
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
     private PluginFileUtils() {
         throw new IllegalStateException("util class");
     }
@@ -92,5 +100,126 @@ public final class PluginFileUtils {
         return path;
     }
 
+    /**
+     * 将输入流写入到文件, 写入的同时计算文件的 SHA-256 摘要, 不在内存中保留整个文件
+     *
+     * @param inputStream 输入流, 由调用者关闭
+     * @param target      目标文件, 存在则覆盖
+     * @return 十六进制的摘要
+     * @throws IOException 写入异常
+     */
+    public static String copyWithDigest(InputStream inputStream, Path target) throws IOException {
+        MessageDigest messageDigest = newMessageDigest();
+        Files.copy(new DigestInputStream(inputStream, messageDigest), target, StandardCopyOption.REPLACE_EXISTING);
+        return toHex(messageDigest.digest());
+    }
+
+    /**
+     * 流式计算文件的 SHA-256 摘要
+     *
+     * @param path 文件路径
+     * @return 十六进制的摘要
+     * @throws IOException 读取异常
+     */
+    public static String digest(Path path) throws IOException {
+        MessageDigest messageDigest = newMessageDigest();
+        byte[] buffer = new byte[8192];
+        try (InputStream inputStream = Files.newInputStream(path)) {
+            int read;
+            while ((read = inputStream.read(buffer)) != -1) {
+                messageDigest.update(buffer, 0, read);
+            }
+        }
+        return toHex(messageDigest.digest());
+    }
+
+    /**
+     * 移动文件。优先使用原子重命名; 源文件与目标不在同一文件存储时, 先拷贝到目标目录下的临时文件,
+     * 再原子重命名为目标文件, 保证目标路径上不会出现写了一半的文件
+     *
+     * @param source 源文件
+     * @param target 目标文件, 存在则替换
+     * @throws IOException 移动异常
+     */
+    public static void moveAtomically(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            forceDirectory(target);
+            return;
+        } catch (AtomicMoveNotSupportedException e) {
+            log.debug("Atomic move '{}' to '{}' not supported, copy then rename", source, target);
+        }
+        copyAtomically(source, target);
+        Files.deleteIfExists(source);
+    }
+
+    /**
+     * 拷贝文件。先拷贝到目标目录下的临时文件并刷盘, 再原子重命名为目标文件
+     *
+     * @param source 源文件
+     * @param target 目标文件, 存在则替换
+     * @throws IOException 拷贝异常
+     */
+    public static void copyAtomically(Path source, Path target) throws IOException {
+        Path parent = target.toAbsolutePath().getParent();
+        Files.createDirectories(parent);
+        Path temp = Files.createTempFile(parent, "." + target.getFileName().toString(), ".tmp");
+        try {
+            Files.copy(source, temp, StandardCopyOption.REPLACE_EXISTING);
+            force(temp);
+            try {
+                Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+            forceDirectory(target);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * 将文件内容刷到磁盘
+     *
+     * @param path 文件
+     * @throws IOException 刷盘异常
+     */
+    public static void force(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+    }
+
+    /**
+     * 将文件所在目录的变化(重命名、删除)刷到磁盘。部分操作系统不支持打开目录, 此时忽略
+     *
+     * @param path 目录下的文件
+     */
+    private static void forceDirectory(Path path) {
+        Path parent = path.toAbsolutePath().getParent();
+        try (FileChannel channel = FileChannel.open(parent, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            log.debug("Force directory '{}' not supported. {}", parent, e.getMessage());
+        }
+    }
+
+    private static MessageDigest newMessageDigest() {
+        try {
+            return MessageDigest.getInstance(DIGEST_ALGORITHM);
+        } catch (NoSuchAlgorithmException e) {
+            // 每个Java平台的实现都必须支持 SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String toHex(byte[] bytes) {
+        char[] chars = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            chars[i * 2] = HEX_DIGITS[(bytes[i] >> 4) & 0xF];
+            chars[i * 2 + 1] = HEX_DIGITS[bytes[i] & 0xF];
+        }
+        return new String(chars);
+    }
 
 }
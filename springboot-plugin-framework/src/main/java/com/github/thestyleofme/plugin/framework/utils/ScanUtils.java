@@ -1,8 +1,8 @@
 package com.github.thestyleofme.plugin.framework.utils;
 
 import java.io.File;
+import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.net.JarURLConnection;
 import java.net.URL;
 import java.nio.file.Files;
 import java.nio.file.Path;
@@ -11,14 +11,14 @@ import java.util.Enumeration;
 import java.util.HashSet;
 import java.util.Objects;
 import java.util.Set;
-import java.util.jar.JarEntry;
-import java.util.jar.JarFile;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 import com.github.thestyleofme.plugin.framework.constants.BaseConstants;
 import org.springframework.util.ClassUtils;
-import sun.net.www.protocol.jar.Handler;
+import org.springframework.util.ResourceUtils;
 
 /**
  * <p>
@@ -127,7 +127,8 @@ public class ScanUtils {
 
 
     /**
-     * 扫描jar包中的类。
+     * 扫描插件类加载器中的类, 包括子包中的类。插件包与 lib 目录下的 jar 读取一次中央目录,
+     * 解压后的插件按目录遍历, 同一个 jar 或目录只扫描一次
      *
      * @param basePackage 包名
      * @param classLoader jar的ClassLoader
@@ -135,42 +136,71 @@ public class ScanUtils {
      * @throws IOException 扫描异常
      */
     public static Set<String> scanClassPackageName(String basePackage, ClassLoader classLoader) throws IOException {
-        Enumeration<URL> urlEnumeration = classLoader.getResources(basePackage.replace(".", "/"));
+        String packagePath = ClassUtils.convertClassNameToResourcePath(basePackage);
+        Enumeration<URL> urlEnumeration = classLoader.getResources(packagePath);
         Set<String> classPackageNames = new HashSet<>();
+        Set<File> scanned = new HashSet<>();
         while (urlEnumeration.hasMoreElements()) {
             URL url = urlEnumeration.nextElement();
-            String protocol = url.getProtocol();
-            if (!"jar".equalsIgnoreCase(protocol)) {
-                // 不是jar协议
-                return classPackageNames;
-            }
-            JarURLConnection connection =
-                    new sun.net.www.protocol.jar.JarURLConnection(url, new Handler());
-            connection.setUseCaches(false);
-            JarFile jarFile = connection.getJarFile();
-            if (jarFile == null) {
-                return classPackageNames;
-            }
-            Enumeration<JarEntry> jarEntryEnumeration = jarFile.entries();
-            // 迭代
-            try {
-                while (jarEntryEnumeration.hasMoreElements()) {
-                    JarEntry entry = jarEntryEnumeration.nextElement();
-                    String jarEntryName = entry.getName();
-                    if (jarEntryName.contains(JAVA_CLASS_SUFFIX) &&
-                            jarEntryName.replace("/", ".").startsWith(basePackage)) {
-                        String className = jarEntryName
-                                .substring(0, jarEntryName.lastIndexOf('.'))
-                                .replace("/", ".");
-                        classPackageNames.add(className);
-                    }
+            if (ResourceUtils.isJarURL(url)) {
+                File jarFile = getFile(ResourceUtils.extractJarFileURL(url));
+                if (jarFile != null && scanned.add(jarFile)) {
+                    scanJar(jarFile, packagePath, classPackageNames);
+                }
+            } else {
+                File directory = getFile(url);
+                if (directory != null && scanned.add(directory)) {
+                    scanDirectory(directory.toPath(), packagePath, classPackageNames);
                 }
-            } finally {
-                jarFile.close();
             }
         }
         return classPackageNames;
     }
 
+    /**
+     * 遍历 jar 的中央目录, 直接按条目名称匹配包路径, 只为匹配的类生成类名
+     */
+    private static void scanJar(File file, String packagePath, Set<String> classPackageNames) throws IOException {
+        try (ZipFile zipFile = new ZipFile(file)) {
+            Enumeration<? extends ZipEntry> entries = zipFile.entries();
+            while (entries.hasMoreElements()) {
+                String entryName = entries.nextElement().getName();
+                if (entryName.startsWith(packagePath) && entryName.endsWith(JAVA_CLASS_SUFFIX)) {
+                    classPackageNames.add(toClassName(entryName));
+                }
+            }
+        }
+    }
+
+    private static void scanDirectory(Path directory, String packagePath,
+                                      Set<String> classPackageNames) throws IOException {
+        try (Stream<Path> paths = filterPath(directory.toString())) {
+            paths.forEach(path -> {
+                String relativePath = directory.relativize(path).toString().replace(File.separatorChar, '/');
+                String entryName = packagePath.isEmpty() ? relativePath : packagePath + "/" + relativePath;
+                classPackageNames.add(toClassName(entryName));
+            });
+        }
+    }
+
+    private static String toClassName(String entryName) {
+        return ClassUtils.convertResourcePathToClassName(
+                entryName.substring(0, entryName.length() - JAVA_CLASS_SUFFIX.length()));
+    }
+
+    /**
+     * 得到 URL 对应的本地文件, 不是本地文件时返回空
+     */
+    private static File getFile(URL url) {
+        if (!ResourceUtils.isFileURL(url)) {
+            return null;
+        }
+        try {
+            return ResourceUtils.getFile(url);
+        } catch (FileNotFoundException e) {
+            return null;
+        }
+    }
+
 
 }
@@ -0,0 +1,74 @@
+package com.github.thestyleofme.plugin.framework.utils;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * <p>
+ * 按key分段的可重入锁。相同key得到同一把锁, 不同key大概率得到不同的锁, 锁的数量固定
+ * </p>
+ *
+ * @author isaac 2020/10/21 14:08
+ * @since 1.0
+ */
+public class StripedLocks {
+
+    private final Lock[] locks;
+    private final int mask;
+
+    /**
+     * @param stripes 锁的数量, 向上取整为2的幂
+     */
+    public StripedLocks(int stripes) {
+        if (stripes <= 0) {
+            throw new IllegalArgumentException("stripes must be greater than 0");
+        }
+        int size = 1;
+        while (size < stripes) {
+            size <<= 1;
+        }
+        this.locks = new Lock[size];
+        for (int i = 0; i < size; i++) {
+            this.locks[i] = new ReentrantLock();
+        }
+        this.mask = size - 1;
+    }
+
+    /**
+     * 得到key对应的锁
+     *
+     * @param key key
+     * @return 锁
+     */
+    public Lock get(String key) {
+        return locks[indexOf(key)];
+    }
+
+    /**
+     * 得到多个key对应的锁, 去重并按固定顺序排列。按返回的顺序加锁可避免死锁
+     *
+     * @param keys key集合
+     * @return 锁集合
+     */
+    public List<Lock> getAll(Collection<String> keys) {
+        TreeMap<Integer, Lock> sortedLocks = new TreeMap<>();
+        for (String key : keys) {
+            int index = indexOf(key);
+            sortedLocks.put(index, locks[index]);
+        }
+        return new ArrayList<>(sortedLocks.values());
+    }
+
+    private int indexOf(String key) {
+        int hash = Objects.hashCode(key);
+        // 打散hash的高位, 避免只有低位参与运算
+        hash ^= (hash >>> 16);
+        return hash & mask;
+    }
+
+}